@@ -0,0 +1,148 @@
+package com.eliaswalyba.gameoflife.benchmarks;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.HashLifeEngine;
+import com.eliaswalyba.gameoflife.backend.SparseEngine;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class AdaptiveCostBenchmark
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: AdaptiveCostBenchmark
+     * @description: Measures the costs the AdaptiveEngine estimates its stages with
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Each benchmark runs one of the stages on the boards the constants were chosen for, and counts in the units
+     * counter the quantity its cost is proportional to:
+     * - dense: the words of 64 cells of a BitEngine stepping a soup (DENSE_NANOS_PER_WORD);
+     * - sparse: the cells born or dead in a SparseEngine stepping a soup (SPARSE_NANOS_PER_CHANGE);
+     * - hashlife: the alive cells of a HashLifeEngine stepping still lifes and blinkers (HASHLIFE_NANOS_PER_CELL);
+     * - toDense, toSparse, toHashlife: the alive cells of a soup listed from a SparseEngine into a new engine of
+     *   each stage (MIGRATION_NANOS_PER_CELL, the mean of the three).
+     * A constant is 1e9 divided by the units per second, for one thread; the AdaptiveEngine takes the mean over
+     * the sizes, rounded, since only the ratios between the stages decide where a board goes.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    @Param({"512", "1024", "2048"})
+    public int size;
+
+    /**
+     * The engines of each stage
+     */
+    private BitEngine dense;
+    private SparseEngine sparse, soup;
+    private HashLifeEngine hashlife;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Counters
+         * @description: Counts the units the cost of a stage is proportional to, reported by JMH per second.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        public long units;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            units = 0;
+        }
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int[][] cells = Boards.build(size, Boards.Density.SOUP);
+        dense = new BitEngine(cells);
+        sparse = new SparseEngine(cells);
+        sparse.setCounting(true);
+        soup = new SparseEngine(cells);
+        hashlife = new HashLifeEngine(Boards.build(size, Boards.Density.STILL_LIFES), 4_000_000);
+    }
+
+    @Benchmark
+    public void dense(Counters counters)
+    {
+        dense.nextGeneration();
+        counters.units += (long) dense.getHeight() * ((dense.getWidth() + 63) >>> 6);
+    }
+
+    @Benchmark
+    public void sparse(Counters counters)
+    {
+        sparse.nextGeneration();
+        counters.units += sparse.getBirths() + sparse.getDeaths();
+    }
+
+    @Benchmark
+    public void hashlife(Counters counters)
+    {
+        hashlife.nextGeneration();
+        counters.units += hashlife.getPopulation();
+    }
+
+    @Benchmark
+    public Object toDense(Counters counters)
+    {
+        return this.move(new BitEngine(1, 1), counters);
+    }
+
+    @Benchmark
+    public Object toSparse(Counters counters)
+    {
+        return this.move(new SparseEngine(new int[0][0]), counters);
+    }
+
+    @Benchmark
+    public Object toHashlife(Counters counters)
+    {
+        return this.move(new HashLifeEngine(new int[1][1]), counters);
+    }
+
+    /**
+     * Allows to move the soup to another engine through the list of its alive cells, like the AdaptiveEngine.
+     *
+     * @param target   the engine receiving the soup
+     * @param counters the counters
+     * @return CellSink the engine, for JMH not to drop it
+     */
+    private CellSink move(CellSink target, Counters counters)
+    {
+        long[] bounds = soup.getBounds();
+        CellSource.copy(soup.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]), target);
+        counters.units += soup.getPopulation();
+        return target;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.eliaswalyba.gameoflife.benchmarks;
+
+import java.util.SplittableRandom;
+
+public final class Boards
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Boards
+     * @description: Builds the boards the benchmarks run on, always the same for a given size and density
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The kinds of boards: a random soup where half the cells are alive, a few gliders flying in an empty board,
+     * and a board full of still lifes with a few oscillators.
+     */
+    public enum Density { SOUP, GLIDERS, STILL_LIFES }
+
+    /**
+     * The seed of the random soups
+     */
+    private static final long SEED = 20170201L;
+
+    /**
+     * This class only holds static methods.
+     */
+    private Boards() {}
+
+    /**
+     * Allows to build a square board.
+     *
+     * @param size    the number of rows and columns
+     * @param density the kind of board
+     * @return int[][] the matrix of cells
+     */
+    public static int[][] build(int size, Density density)
+    {
+        int[][] cells = new int[size][size];
+        switch (density) {
+            case SOUP:
+                SplittableRandom random = new SplittableRandom(SEED);
+                for (int[] row : cells)
+                    for (int j = 0; j < size; j++)
+                        row[j] = random.nextInt(2);
+                break;
+            case GLIDERS:
+                /* One glider every 64 x 64 cells, at least one glider on small boards */
+                int spacing = Math.min(64, size);
+                for (int i = 0; i + spacing <= size; i += spacing)
+                    for (int j = 0; j + spacing <= size; j += spacing) {
+                        cells[i][j + 1] = 1;
+                        cells[i + 1][j + 2] = 1;
+                        cells[i + 2][j] = cells[i + 2][j + 1] = cells[i + 2][j + 2] = 1;
+                    }
+                break;
+            case STILL_LIFES:
+                /* Blocks every 6 x 6 cells, one of them out of 16 replaced by a blinker */
+                for (int i = 0; i + 6 <= size; i += 6)
+                    for (int j = 0; j + 6 <= size; j += 6) {
+                        if (((i / 6) * 7 + (j / 6)) % 16 == 0) {
+                            cells[i + 1][j] = cells[i + 1][j + 1] = cells[i + 1][j + 2] = 1;
+                        } else {
+                            cells[i][j] = cells[i][j + 1] = cells[i + 1][j] = cells[i + 1][j + 1] = 1;
+                        }
+                    }
+                break;
+        }
+        return cells;
+    }
+
+}
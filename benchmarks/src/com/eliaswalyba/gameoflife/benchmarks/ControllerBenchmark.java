@@ -0,0 +1,68 @@
+package com.eliaswalyba.gameoflife.benchmarks;
+
+import com.eliaswalyba.gameoflife.backend.Controller;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ControllerBenchmark
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: ControllerBenchmark
+     * @description: Measures how many generations, and how many cell updates, the Controller computes per second
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The Controller stores an int per cell and is far too slow for the 8k boards of StepBenchmark (its matrices
+     * alone would take 512 MB), so it is measured apart, on the boards of 25 and 1k cells only. The counters are
+     * the ones of StepBenchmark, so both reports compare directly.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    @Param({"25", "1024"})
+    public int size;
+
+    @Param({"SOUP", "GLIDERS", "STILL_LIFES"})
+    public Boards.Density density;
+
+    @Param({"B3/S23"})
+    public String rule;
+
+    /**
+     * The engine being measured
+     */
+    private Controller subject;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        subject = new Controller(Boards.build(size, density), Rule.parse(rule));
+    }
+
+    @Benchmark
+    public void nextGeneration(StepBenchmark.Counters counters)
+    {
+        subject.nextGeneration();
+        counters.cellUpdates += (long) size * size;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.eliaswalyba.gameoflife.benchmarks;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.pattern.Patterns;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class PatternBenchmark
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: PatternBenchmark
+     * @description: Measures how fast the patterns are read into an engine and written from it
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The throughput is in files per second; the cells counter turns it into cells per second so that the sizes
+     * can be compared. The file is read from the page cache, this measures the parsing, not the disk.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The formats measured, by extension
+     */
+    public enum Format { RLE, CELLS, MC }
+
+    @Param({"1024", "8192"})
+    public int size;
+
+    @Param({"SOUP", "GLIDERS", "STILL_LIFES"})
+    public Boards.Density density;
+
+    @Param({"RLE", "CELLS", "MC"})
+    public Format format;
+
+    /**
+     * The engine the pattern is read into and written from, and the files
+     */
+    private BitEngine engine;
+    private Path directory, pattern, output;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Counters
+         * @description: Counts the cells read or written, reported by JMH as cells per second.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        public long cells;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            cells = 0;
+        }
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        engine = new BitEngine(Boards.build(size, density));
+        directory = Files.createTempDirectory("patterns");
+        String extension = format.name().toLowerCase(Locale.ROOT);
+        pattern = directory.resolve("pattern." + extension);
+        output = directory.resolve("output." + extension);
+        Patterns.write(engine, pattern);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(pattern);
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long read(Counters counters) throws IOException
+    {
+        Patterns.read(pattern, engine);
+        counters.cells += (long) size * size;
+        return engine.getPopulation();
+    }
+
+    @Benchmark
+    public void write(Counters counters) throws IOException
+    {
+        Patterns.write(engine, output);
+        counters.cells += (long) size * size;
+    }
+
+}
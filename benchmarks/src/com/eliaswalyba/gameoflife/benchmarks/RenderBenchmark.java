@@ -0,0 +1,85 @@
+package com.eliaswalyba.gameoflife.benchmarks;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.frontend.Grid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class RenderBenchmark
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: RenderBenchmark
+     * @description: Measures how many frames per second the Grid draws into an offscreen image
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A few generations are computed beforehand and the benchmark feeds them to the Grid in a loop, so that only
+     * the drawing is measured: diffing the generation, writing the pixels of the changed cells and copying the
+     * dirty part of the raster into the offscreen image, as Swing would do on screen.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The number of generations fed to the Grid in a loop
+     */
+    private static final int FRAMES = 16;
+
+    @Param({"25", "1024", "2048"})
+    public int size;
+
+    @Param({"SOUP", "GLIDERS", "STILL_LIFES"})
+    public Boards.Density density;
+
+    @Param({"1", "4", "26"})
+    public int pitch;
+
+    private Grid grid;
+    private Graphics graphics;
+    private long[][] frames;
+    private int frame;
+
+    @Setup
+    public void setUp()
+    {
+        BitEngine engine = new BitEngine(Boards.build(size, density));
+        frames = new long[FRAMES][size * ((size + 63) >>> 6)];
+        for (int k = 0; k < FRAMES; k++) {
+            CellSource.toWords(engine, frames[k]);
+            engine.nextGeneration();
+        }
+        grid = new Grid(size, size, pitch);
+        grid.setSize(1024, 1024);
+        graphics = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB).getGraphics();
+        grid.paint(graphics);
+    }
+
+    @Benchmark
+    public void updateGrid()
+    {
+        grid.updateGrid(frames[frame]);
+        frame = (frame + 1) % FRAMES;
+        grid.paint(graphics);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.eliaswalyba.gameoflife.benchmarks;
+
+import com.eliaswalyba.gameoflife.backend.AdaptiveEngine;
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.Engine;
+import com.eliaswalyba.gameoflife.backend.HashLifeEngine;
+import com.eliaswalyba.gameoflife.backend.OffHeapBoard;
+import com.eliaswalyba.gameoflife.backend.OffHeapEngine;
+import com.eliaswalyba.gameoflife.backend.ParallelEngine;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.backend.SparseEngine;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class StepBenchmark
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: StepBenchmark
+     * @description: Measures how many generations, and how many cell updates, each engine computes per second
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The throughput of the benchmark is in generations per second; the cellUpdates counter turns it into cell
+     * updates per second (size x size cells per generation) so that the boards of different sizes can be
+     * compared. Run it with "-prof gc" to see the bytes allocated per generation.
+     * The AdaptiveEngine moves its board between the dense, the sparse and the Hashlife engine as it settles: its
+     * throughput is the one of the trial as a whole, the costs of each stage being measured in AdaptiveCostBenchmark.
+     * The Controller is far too slow for the 8k boards (and its int per cell takes 256 MB), it is measured apart
+     * up to 1k (see ControllerBenchmark).
+     * The rule is the game of life unless another one is given with "-p rule=B36/S23": the kernels must not be
+     * slower on B3/S23 than they were with the rule hard-coded.
+     * The forks load the Vector API, so the bit-packed engines use the VectorKernel; "-jvmArgsAppend
+     * -Dgameoflife.vector=false" measures them with the scalar kernel.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The engines measured
+     */
+    public enum Kind { BIT, PARALLEL, OFFHEAP, SPARSE, HASHLIFE, ADAPTIVE }
+
+    @Param({"25", "1024", "8192"})
+    public int size;
+
+    @Param({"SOUP", "GLIDERS", "STILL_LIFES"})
+    public Boards.Density density;
+
+    @Param({"BIT", "PARALLEL", "OFFHEAP", "SPARSE", "HASHLIFE", "ADAPTIVE"})
+    public Kind engine;
+
+    @Param({"B3/S23"})
+    public String rule;
+
+    /**
+     * The engine being measured
+     */
+    private Engine subject;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Counters
+         * @description: Counts the cells updated, reported by JMH as cell updates per second.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        public long cellUpdates;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            cellUpdates = 0;
+        }
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int[][] cells = Boards.build(size, density);
+        int threads = Runtime.getRuntime().availableProcessors();
+        switch (engine) {
+            case BIT:        subject = new BitEngine(cells); break;
+            case PARALLEL:   subject = new ParallelEngine(cells, threads, 64); break;
+            case OFFHEAP:
+                subject = new OffHeapEngine(OffHeapBoard.allocate(size, size), threads);
+                subject.setCells(cells);
+                break;
+            case SPARSE:     subject = new SparseEngine(cells); break;
+            case HASHLIFE:   subject = new HashLifeEngine(cells, 4_000_000); break;
+            case ADAPTIVE:   subject = new AdaptiveEngine(cells); break;
+        }
+        subject.setRule(Rule.parse(rule));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (subject instanceof ParallelEngine) ((ParallelEngine) subject).close();
+        if (subject instanceof OffHeapEngine) ((OffHeapEngine) subject).close();
+    }
+
+    @Benchmark
+    public void nextGeneration(Counters counters)
+    {
+        subject.nextGeneration();
+        counters.cellUpdates += (long) size * size;
+    }
+
+}
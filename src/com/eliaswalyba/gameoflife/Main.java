@@ -3,12 +3,35 @@ package com.eliaswalyba.gameoflife;
 import com.eliaswalyba.gameoflife.backend.Config;
 import com.eliaswalyba.gameoflife.frontend.Window;
 
+import java.util.Locale;
+
 public class Main {
+    /**
+     * Allows to open the window, on a board of Config.BOARD_SIZE cells or of the size given by "--size HxW".
+     *
+     * @param args the options
+     */
     public static void main(String[] args) {
+        int height = Config.BOARD_SIZE, width = Config.BOARD_SIZE;
+        for (int k = 0; k < args.length; k++) {
+            if (!args[k].equals("--size") || k + 1 == args.length)
+                throw new IllegalArgumentException("Usage: [--size HxW]");
+            String[] size = args[++k].toLowerCase(Locale.ROOT).split("x");
+            if (size.length != 2) throw new IllegalArgumentException("The size must be HxW: " + args[k]);
+            try {
+                height = Integer.parseInt(size[0]);
+                width = Integer.parseInt(size[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for --size: " + args[k]);
+            }
+            if (height <= 0 || width <= 0) throw new IllegalArgumentException("The board cannot be empty");
+        }
         new Window(
                 Config.WINDOW_TITLE,
                 Config.WINDOW_WIDTH,
-                Config.WINDOW_HEIGHT
+                Config.WINDOW_HEIGHT,
+                height,
+                width
         );
     }
-}
\ No newline at end of file
+}
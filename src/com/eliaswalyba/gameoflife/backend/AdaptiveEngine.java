@@ -0,0 +1,628 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+
+public class AdaptiveEngine implements Engine, CellSink, CellSource, Plane, BitKernel.Packed
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: AdaptiveEngine
+     * @description: An engine moving its board between a dense, a sparse and a Hashlife engine as the board changes
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A random soup starts dense and chaotic, which is the job of a BitEngine, and ends as a few still lifes and
+     * oscillators, which Hashlife remembers instead of computing, with gliders flying away, which make the box
+     * of a BitEngine grow for nothing but cost a SparseEngine only the cells they change. This engine holds the
+     * board in one of the three (see Stage) and moves it to another one when it should be cheaper.
+     * Every WINDOW generations the board is sampled: its population at each generation, the cells that changed
+     * and its bounding box. The cost of a generation in each engine is estimated from them with the costs
+     * measured by AdaptiveCostBenchmark (benchmarks/src) on soups of 512 x 512 to 2048 x 2048 cells, one thread:
+     * - dense: DENSE_NANOS_PER_WORD for each word of 64 cells of the box, whatever happens in it;
+     * - sparse: SPARSE_NANOS_PER_CHANGE for each cell that changed;
+     * - Hashlife: HASHLIFE_NANOS_PER_CELL for each alive cell once the board is periodic, and far more than the
+     *   others before, so it is only chosen when the population repeated itself with a period of MAX_PERIOD
+     *   generations at most over the whole window (a field of still lifes, oscillators and spaceships).
+     * The board only moves when the other engine looks HYSTERESIS times cheaper and when the time it saves over
+     * a window pays for the move, MIGRATION_NANOS_PER_CELL for each alive cell: a board on the edge of two
+     * engines does not go back and forth.
+     * Like the SparseEngine and the HashLifeEngine the board is the whole plane (see Plane): the matrix given to
+     * setCells is placed at the coordinates (0, 0) and getCells returns the same window of the plane. The dense
+     * engine only holds a box around the alive cells, with a margin of dead cells: as soon as a cell reaches the
+     * edge of the box, the box is moved and grown before the next generation, so that it never wraps around.
+     * The board moves through the list of its alive cells, in the coordinates of the plane: a move is exact
+     * whatever the engines, and it costs the population, not the size of the plane.
+     * Any rule of 2 states can be applied (see Rule), except the ones giving birth to a cell without neighbors.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The engines the board can be held in
+     */
+    public enum Stage { DENSE, SPARSE, HASHLIFE }
+
+    /**
+     * The measured cost of a generation: for each word of the box of the dense engine (6 to 16 ns, the vector
+     * kernel winning on the bigger boards), for each cell that changed in the sparse engine (800 to 2000 ns, the
+     * hash table missing the caches more as it grows) and for each alive cell of a periodic board in the Hashlife
+     * engine, in nanoseconds. Hashlife steps still lifes in about 100 ns whatever their population: its cost is
+     * an upper bound, kept for the boards whose spaceships make the universe grow.
+     */
+    static final double DENSE_NANOS_PER_WORD = 10, SPARSE_NANOS_PER_CHANGE = 1400, HASHLIFE_NANOS_PER_CELL = 2;
+
+    /**
+     * The measured cost of moving an alive cell from an engine to another, in nanoseconds (250 to 500 ns)
+     */
+    static final double MIGRATION_NANOS_PER_CELL = 350;
+
+    /**
+     * The share of the cells changing at each generation of a chaotic board, measured on soups
+     */
+    static final double CHAOTIC_ACTIVITY = 0.3;
+
+    /**
+     * How many times cheaper another engine must look to move the board to it
+     */
+    static final double HYSTERESIS = 2;
+
+    /**
+     * The generations between two samples of the board, and the longest period of the population of a board
+     * seen as periodic
+     */
+    static final int WINDOW = 128, MAX_PERIOD = 60;
+
+    /**
+     * The smallest margin of dead cells around the box of the dense engine
+     */
+    private static final int MARGIN = 32;
+
+    /**
+     * The number of nodes above which the Hashlife engine forgets its results
+     */
+    private static final long MAX_NODES = 16_000_000;
+
+    /**
+     * The engine holding the board
+     */
+    private Stage stage = Stage.DENSE;
+
+    /**
+     * The rule applied at each generation
+     */
+    private Rule rule = Rule.LIFE;
+
+    /**
+     * The dimensions of the window of the plane seen through getCells and setCells
+     */
+    private int height, width;
+
+    /**
+     * The dense engine, null unless it holds the board, and the coordinates of the north west cell of its box
+     */
+    private BitEngine dense;
+    private int top, left;
+
+    /**
+     * The sparse engine, empty unless it holds the board
+     */
+    private final SparseEngine sparse = new SparseEngine(new int[0][0]);
+
+    /**
+     * The Hashlife engine, empty unless it holds the board, and the coordinates in the plane of its cell (0, 0)
+     */
+    private final HashLifeEngine hashlife = new HashLifeEngine(new int[0][0], MAX_NODES);
+    private long originRow, originColumn;
+
+    /**
+     * The number of alive cells
+     */
+    private long population;
+
+    /**
+     * The population at each generation of the window, the generations sampled so far in the window and the
+     * cells that changed during them
+     */
+    private final long[] populations = new long[WINDOW];
+    private int sampled;
+    private long activity;
+
+    /**
+     * The number of times the board moved to another engine, and the number of times the box of the dense engine
+     * was moved
+     */
+    private long migrations, regrowths;
+
+    /**
+     * The alive cells listed by export, in the coordinates of the plane
+     */
+    private int[] rows = new int[256], cols = new int[256];
+    private int count;
+
+    /**
+     * The window of the plane, bit-packed like a BitEngine, and whether it is up to date
+     */
+    private long[] view;
+    private boolean viewed;
+
+    /**
+     * The constructor of the class
+     *
+     * @param cells [][]int the grids state to populate in the engine
+     */
+    public AdaptiveEngine(int[][] cells)
+    {
+        this.setCells(cells);
+    }
+
+    @Override
+    public void nextGeneration()
+    {
+        viewed = false;
+        switch (stage) {
+            case DENSE:
+                if (this.touchesEdge()) {
+                    this.export(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+                    this.load(Stage.DENSE);
+                    regrowths++;
+                }
+                dense.nextGeneration();
+                population += dense.getBirths() - dense.getDeaths();
+                activity += dense.getBirths() + dense.getDeaths();
+                break;
+            case SPARSE:
+                sparse.nextGeneration();
+                population = sparse.getPopulation();
+                activity += sparse.getActivity();
+                break;
+            case HASHLIFE:
+                hashlife.nextGeneration();
+                population = hashlife.getPopulation();
+                break;
+        }
+        populations[sampled++] = population;
+        if (sampled == WINDOW) {
+            this.adapt();
+            sampled = 0;
+            activity = 0;
+        }
+    }
+
+    /**
+     * Allows to know whether an alive cell is on the edge of the box of the dense engine, where it would see the
+     * other side of the box at the next generation.
+     */
+    private boolean touchesEdge()
+    {
+        int h = dense.getHeight(), w = dense.getWidth();
+        if (dense.nextCell(0, 0, true) < w || dense.nextCell(h - 1, 0, true) < w) return true;
+        for (int i = 1; i < h - 1; i++) if (dense.get(i, 0) || dense.get(i, w - 1)) return true;
+        return false;
+    }
+
+    /**
+     * Allows to estimate the cost of a generation in each engine from the window just sampled, and to move the
+     * board to the cheapest one if it is worth it.
+     */
+    private void adapt()
+    {
+        boolean periodic = this.periodic();
+        if (population == 0 || (stage == Stage.HASHLIFE && periodic)) return;
+        /* The cells listed to find the bounds are the ones moved by load */
+        long[] bounds = this.getBounds();
+
+        /* Hashlife does not tell what changed: a board leaving it is taken for chaotic */
+        double changes = stage == Stage.HASHLIFE ? population * CHAOTIC_ACTIVITY : activity / (double) WINDOW;
+        double[] costs = new double[Stage.values().length];
+        costs[Stage.DENSE.ordinal()] = AdaptiveEngine.denseCost(bounds[2], bounds[3]);
+        costs[Stage.SPARSE.ordinal()] = SPARSE_NANOS_PER_CHANGE * changes;
+        costs[Stage.HASHLIFE.ordinal()] = periodic ? HASHLIFE_NANOS_PER_CELL * population : Double.POSITIVE_INFINITY;
+        Stage best = Stage.DENSE;
+        for (Stage other : Stage.values()) if (costs[other.ordinal()] < costs[best.ordinal()]) best = other;
+
+        double current = stage == Stage.HASHLIFE ? Double.POSITIVE_INFINITY
+                : stage == Stage.DENSE ? DENSE_NANOS_PER_WORD * dense.getHeight() * ((dense.getWidth() + 63L) >>> 6)
+                : costs[stage.ordinal()];
+        double cheaper = costs[best.ordinal()];
+        /* A dense box much larger than the cells needs is shrunk the same way */
+        if (current < HYSTERESIS * cheaper) return;
+        if ((current - cheaper) * WINDOW < MIGRATION_NANOS_PER_CELL * population) return;
+        if (best != stage) migrations++;
+        else regrowths++;
+        this.load(best);
+    }
+
+    /**
+     * @return double the estimated cost of a generation of the dense engine around a bounding box, in nanoseconds
+     */
+    private static double denseCost(long height, long width)
+    {
+        long margin = AdaptiveEngine.margin(height, width);
+        return DENSE_NANOS_PER_WORD * (height + 2 * margin) * ((width + 2 * margin + 63) >>> 6);
+    }
+
+    /**
+     * @return int the margin of dead cells left around a bounding box in the dense engine
+     */
+    private static int margin(long height, long width)
+    {
+        return (int) Math.max(MARGIN, Math.max(height, width) / 8);
+    }
+
+    /**
+     * Allows to know whether the population repeated itself over the whole window with a short period.
+     */
+    private boolean periodic()
+    {
+        for (int p = 1; p <= MAX_PERIOD; p++) {
+            int k = p;
+            while (k < WINDOW && populations[k] == populations[k - p]) k++;
+            if (k == WINDOW) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Allows to list the alive cells of a rectangle of the plane into rows and cols.
+     *
+     * @param north the first row of the rectangle
+     * @param west  the first column of the rectangle
+     * @param south the row after the last one
+     * @param east  the column after the last one
+     */
+    private void export(long north, long west, long south, long east)
+    {
+        count = 0;
+        switch (stage) {
+            case DENSE:
+                int h = dense.getHeight(), w = dense.getWidth();
+                for (long i = Math.max(0, north - top); i < h && top + i < south; i++) {
+                    for (int j = dense.nextCell((int) i, 0, true); j < w; j = dense.nextCell((int) i, j + 1, true))
+                        if (left + j >= west && left + j < east) this.add(top + i, left + j);
+                }
+                break;
+            case SPARSE:
+                sparse.forEachCell(key -> {
+                    int x = SparseEngine.x(key), y = SparseEngine.y(key);
+                    if (y >= north && y < south && x >= west && x < east) this.add(y, x);
+                });
+                break;
+            case HASHLIFE:
+                QuadTree tree = hashlife.getTree();
+                if (tree.size() == 0) break;
+                long half = 1L << (tree.level(tree.size()) - 1);
+                this.walk(tree, tree.size(), originRow - half, originColumn - half, north, west, south, east);
+                break;
+        }
+    }
+
+    /**
+     * Allows to list the alive cells of a node of a tree that are in a rectangle of the plane.
+     *
+     * @param tree the tree
+     * @param id   the number of the node
+     * @param y    the row of the north west cell of the node
+     * @param x    the column of the north west cell of the node
+     */
+    private void walk(QuadTree tree, int id, long y, long x, long north, long west, long south, long east)
+    {
+        long side = 1L << tree.level(id);
+        if (y >= south || x >= east || y + side <= north || x + side <= west) return;
+        if (tree.level(id) == QuadTree.LEAF_LEVEL) {
+            for (long cells = tree.cells(id); cells != 0; cells &= cells - 1) {
+                int bit = Long.numberOfTrailingZeros(cells);
+                long i = y + (bit >>> 3), j = x + (bit & 7);
+                if (i >= north && i < south && j >= west && j < east) this.add(i, j);
+            }
+            return;
+        }
+        long half = side >>> 1;
+        for (int q = 0; q < 4; q++) {
+            int child = tree.child(id, q);
+            if (child != 0) this.walk(tree, child, y + (q >> 1) * half, x + (q & 1) * half, north, west, south, east);
+        }
+    }
+
+    /**
+     * Allows to add an alive cell to the list.
+     */
+    private void add(long i, long j)
+    {
+        if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count << 1);
+            cols = Arrays.copyOf(cols, count << 1);
+        }
+        rows[count] = (int) i;
+        cols[count++] = (int) j;
+    }
+
+    /**
+     * Allows to put the listed cells in an engine, which then holds the board, the other ones being emptied.
+     *
+     * @param target the engine
+     */
+    private void load(Stage target)
+    {
+        int north = 0, south = 0, west = 0, east = 0;
+        if (count > 0) {
+            north = west = Integer.MAX_VALUE;
+            south = east = Integer.MIN_VALUE;
+            for (int k = 0; k < count; k++) {
+                north = Math.min(north, rows[k]);
+                south = Math.max(south, rows[k]);
+                west = Math.min(west, cols[k]);
+                east = Math.max(east, cols[k]);
+            }
+        }
+        int h = south - north + 1, w = east - west + 1;
+
+        dense = null;
+        sparse.begin(height, width);
+        hashlife.setTree(new QuadTree());
+        switch (target) {
+            case DENSE:
+                int margin = AdaptiveEngine.margin(h, w);
+                top = north - margin;
+                left = west - margin;
+                dense = this.box(h + 2 * margin, w + 2 * margin);
+                for (int k = 0; k < count; k++) dense.set(rows[k] - top, cols[k] - left, true);
+                break;
+            case SPARSE:
+                for (int k = 0; k < count; k++) sparse.set(cols[k], rows[k], true);
+                break;
+            case HASHLIFE:
+                int level = QuadTree.LEAF_LEVEL;
+                while ((1L << level) < Math.max(h, w)) level++;
+                QuadTree tree = new QuadTree();
+                this.build(tree, 0, count, level, north, west);
+                hashlife.setTree(tree);
+                originRow = north;
+                originColumn = west;
+                break;
+        }
+        stage = target;
+        population = count;
+    }
+
+    /**
+     * @return BitEngine a dense engine of the rule, counting its births and deaths
+     */
+    private BitEngine box(int height, int width)
+    {
+        BitEngine box = new BitEngine(height, width);
+        box.setRule(rule);
+        box.setCounting(true);
+        return box;
+    }
+
+    /**
+     * Allows to add the node of a square of the plane to a tree, from the listed cells in it, which are sorted by
+     * quadrant on the way.
+     *
+     * @param tree  the tree
+     * @param from  the first of the cells in the square
+     * @param to    the cell after the last one
+     * @param level the level of the node
+     * @param y     the row of the north west cell of the square
+     * @param x     the column of the north west cell of the square
+     * @return int the number of the node, 0 if it is empty
+     */
+    private int build(QuadTree tree, int from, int to, int level, long y, long x)
+    {
+        if (from == to) return 0;
+        if (level == QuadTree.LEAF_LEVEL) {
+            long cells = 0;
+            for (int k = from; k < to; k++) cells |= 1L << ((rows[k] - y) * 8 + (cols[k] - x));
+            return tree.leaf(cells);
+        }
+        long half = 1L << (level - 1);
+        int south = this.partition(from, to, rows, y + half);
+        int northEast = this.partition(from, south, cols, x + half);
+        int southEast = this.partition(south, to, cols, x + half);
+        int nw = this.build(tree, from, northEast, level - 1, y, x);
+        int ne = this.build(tree, northEast, south, level - 1, y, x + half);
+        int sw = this.build(tree, south, southEast, level - 1, y + half, x);
+        int se = this.build(tree, southEast, to, level - 1, y + half, x + half);
+        return tree.node(level, nw, ne, sw, se);
+    }
+
+    /**
+     * Allows to put the listed cells below a bound of a coordinate before the others.
+     *
+     * @param from       the first cell
+     * @param to         the cell after the last one
+     * @param coordinate rows or cols
+     * @param bound      the bound
+     * @return int the first cell at or above the bound
+     */
+    private int partition(int from, int to, int[] coordinate, long bound)
+    {
+        int k = from;
+        for (int m = from; m < to; m++) {
+            if (coordinate[m] >= bound) continue;
+            int row = rows[m], col = cols[m];
+            rows[m] = rows[k];
+            cols[m] = cols[k];
+            rows[k] = row;
+            cols[k++] = col;
+        }
+        return k;
+    }
+
+    /**
+     * Allows to bring the bit-packed window of the plane up to date.
+     */
+    private void view()
+    {
+        if (viewed) return;
+        int words = (width + 63) >>> 6;
+        if (view == null || view.length != height * words) view = new long[height * words];
+        else Arrays.fill(view, 0);
+        this.export(0, 0, height, width);
+        for (int k = 0; k < count; k++) view[rows[k] * words + (cols[k] >>> 6)] |= 1L << cols[k];
+        viewed = true;
+    }
+
+    @Override
+    public int[][] getCells()
+    {
+        int[][] cells = new int[height][width];
+        this.copyCells(cells);
+        return cells;
+    }
+
+    @Override
+    public void copyCells(int[][] target)
+    {
+        this.view();
+        int words = (width + 63) >>> 6;
+        for (int i = 0; i < height; i++)
+            for (int j = 0; j < width; j++)
+                target[i][j] = (int) (view[i * words + (j >>> 6)] >>> j) & 1;
+    }
+
+    @Override
+    public void setCells(int[][] cells)
+    {
+        this.begin(cells.length, cells.length == 0 ? 0 : cells[0].length);
+        for (int i = 0; i < cells.length; i++)
+            for (int j = 0; j < width; j++)
+                if (cells[i][j] != 0) this.setRun(i, j, 1);
+        this.end();
+    }
+
+    @Override
+    public void begin(int height, int width)
+    {
+        if (height < 0 || width < 0)
+            throw new IllegalArgumentException("The board cannot be of size " + height + "x" + width);
+        this.height = height;
+        this.width = width;
+        sparse.begin(height, width);
+        hashlife.setTree(new QuadTree());
+        stage = Stage.DENSE;
+        int margin = AdaptiveEngine.margin(height, width);
+        top = -margin;
+        left = -margin;
+        dense = this.box(height + 2 * margin, width + 2 * margin);
+        sampled = 0;
+        activity = 0;
+        population = 0;
+        viewed = false;
+    }
+
+    @Override
+    public void setRun(int i, int j, int length)
+    {
+        dense.setRun(i - top, j - left, length);
+    }
+
+    @Override
+    public void end()
+    {
+        population = dense.getPopulation();
+    }
+
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        this.view();
+        return BitKernel.nextCell(this, i, j, alive, (width + 63) >>> 6, width);
+    }
+
+    /**
+     * @return long the word w of the row i of the window of the plane seen through getCells
+     */
+    @Override
+    public long getWord(int i, int w)
+    {
+        this.view();
+        return view[i * ((width + 63) >>> 6) + w];
+    }
+
+    /**
+     * The alive cells of the whole plane are left listed in rows and cols.
+     */
+    @Override
+    public long[] getBounds()
+    {
+        this.export(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        if (count == 0) return new long[]{0, 0, 1, 1};
+        long north = Long.MAX_VALUE, south = Long.MIN_VALUE, west = Long.MAX_VALUE, east = Long.MIN_VALUE;
+        for (int k = 0; k < count; k++) {
+            north = Math.min(north, rows[k]);
+            south = Math.max(south, rows[k]);
+            west = Math.min(west, cols[k]);
+            east = Math.max(east, cols[k]);
+        }
+        return new long[]{north, west, south - north + 1, east - west + 1};
+    }
+
+    @Override
+    public CellSource window(long top, long left, int height, int width)
+    {
+        this.export(top, left, top + height, left + width);
+        long[] cells = new long[count];
+        for (int k = 0; k < count; k++) cells[k] = CellList.key((int) (rows[k] - top), (int) (cols[k] - left));
+        return new CellList(cells, count, height, width);
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public long getPopulation()
+    {
+        return population;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if (rule.getStates() != 2 || rule.bornFromNothing())
+            throw new IllegalArgumentException("The adaptive engine cannot apply the rule " + rule);
+        this.rule = rule;
+        if (dense != null) dense.setRule(rule);
+        sparse.setRule(rule);
+        hashlife.setRule(rule);
+    }
+
+    /**
+     * @return Stage the engine holding the board
+     */
+    public Stage getStage()
+    {
+        return stage;
+    }
+
+    /**
+     * @return long the number of times the board moved to another engine
+     */
+    public long getMigrations()
+    {
+        return migrations;
+    }
+
+    /**
+     * @return long the number of times the box of the dense engine was moved or resized
+     */
+    public long getRegrowths()
+    {
+        return regrowths;
+    }
+
+}
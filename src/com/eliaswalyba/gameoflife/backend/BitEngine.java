@@ -0,0 +1,412 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.nio.LongBuffer;
+
+public class BitEngine implements Engine, CellSink, CellSource, BoardHash, CellCounter, BitKernel.Packed
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BitEngine
+     * @description: A fast engine storing 64 cells per long and computing them 64 at a time
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The board is stored row by row in a single array of longs (see BitKernel for the layout of a row).
+     * We keep two of those arrays: the current generation is only read while the next one is written in the
+     * other array, then we swap them. This way all the cells are updated at the same time and computing a
+     * generation never allocates anything.
+     * Like the Controller, the board is a torus: the rows and the columns wrap around.
+     * Any rule of 2 states can be applied (see Rule), Generations rules need more than a bit per cell.
+     * The pattern readers fill the words directly, a run at a time, and the writers skip the empty words.
+     *
+     * A generation can be lent to a snapshot (a checkpoint being written by another thread, for instance): the
+     * engine goes on stepping but never writes the lent buffer again. The next generation goes to a new buffer
+     * instead of the lent one, and an edit of the lent generation copies it first.
+     *
+     * When hashing is on, the words of each band just computed update the hash of the board with the words they
+     * replace (see BoardHash). An edit only marks the hash as stale, it is computed again from the whole board
+     * when it is asked for. Hashing is off by default: it costs a few multiplications per word.
+     * Counting the births and the deaths (see CellCounter) works the same way, on the words of each band.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The number of rows and columns of the board, and the number of words in a row
+     */
+    protected int height, width, words;
+
+    /**
+     * The current generation and the buffer receiving the next one
+     */
+    protected long[] current, next;
+
+    /**
+     * The rule applied at each generation, and its table for the kernel
+     */
+    private Rule rule = Rule.LIFE;
+    private long[] table = BitKernel.LIFE;
+
+    /**
+     * The buffer lent to snapshots, and the number of snapshots still reading it
+     */
+    private volatile long[] lent;
+    private int loans;
+
+    /**
+     * The hash of the current generation, whether it is kept up to date and whether an edit made it stale
+     */
+    private long hash;
+    private boolean hashing, rehash = true;
+
+    /**
+     * Whether the births and the deaths are counted, and their numbers during the last generation
+     */
+    private boolean counting;
+    private long births, deaths;
+
+    /**
+     * The constructor of the class
+     *
+     * @param cells [][]int the grids state to populate in the engine
+     */
+    public BitEngine(int[][] cells)
+    {
+        this.setCells(cells);
+    }
+
+    /**
+     * The constructor of an empty board
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    public BitEngine(int height, int width)
+    {
+        this.resize(height, width);
+    }
+
+    @Override
+    public void nextGeneration()
+    {
+        long changes = this.stepRows(0, height);
+        this.count(this.born(0, height), this.died(0, height));
+        this.swap(changes);
+    }
+
+    /**
+     * Allows to compute the next state of a band of rows into the next buffer.
+     *
+     * @param from the first row to compute
+     * @param to   the row after the last one to compute
+     * @return long how the rows change the hash of the board, 0 when hashing is off
+     */
+    protected long stepRows(int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            int above = (i == 0 ? height : i) - 1, below = i == height - 1 ? 0 : i + 1;
+            BitKernel.stepRow(current, above * words, current, i * words, current, below * words,
+                    next, i * words, words, width, table);
+        }
+        return hashing ? BoardHash.changes(current, next, from * words, to * words) : 0;
+    }
+
+    /**
+     * @return long the number of cells born in a band of rows just computed, 0 when counting is off
+     */
+    protected long born(int from, int to)
+    {
+        return counting ? BitKernel.born(current, next, from * words, to * words) : 0;
+    }
+
+    /**
+     * @return long the number of cells dead in a band of rows just computed, 0 when counting is off
+     */
+    protected long died(int from, int to)
+    {
+        return counting ? BitKernel.died(current, next, from * words, to * words) : 0;
+    }
+
+    /**
+     * Allows to record the births and the deaths of the generation being computed, before the swap.
+     *
+     * @param births the number of cells born in all the rows
+     * @param deaths the number of cells dead in all the rows
+     */
+    protected void count(long births, long deaths)
+    {
+        this.births = births;
+        this.deaths = deaths;
+    }
+
+    /**
+     * Allows to make the next buffer the current generation once all its rows are computed.
+     *
+     * @param changes how all the rows changed the hash of the board
+     */
+    protected void swap(long changes)
+    {
+        if (hashing) hash ^= changes;
+        else rehash = true;
+        long[] t = current;
+        current = next;
+        next = t != lent ? t : new long[t.length];
+    }
+
+    @Override
+    public int[][] getCells()
+    {
+        int[][] cells = new int[height][width];
+        this.copyCells(cells);
+        return cells;
+    }
+
+    @Override
+    public void copyCells(int[][] target)
+    {
+        for (int i = 0; i < height; i++) {
+            int[] row = target[i];
+            for (int j = 0; j < width; j++)
+                row[j] = (int) (current[i * words + (j >>> 6)] >>> j) & 1;
+        }
+    }
+
+    @Override
+    public void setCells(int[][] cells)
+    {
+        this.resize(cells.length, cells.length == 0 ? 0 : cells[0].length);
+        for (int i = 0; i < height; i++)
+            for (int j = 0; j < width; j++)
+                if (cells[i][j] != 0) set(i, j, true);
+    }
+
+    /**
+     * Allows to empty the board and to change its dimensions.
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    public void resize(int height, int width)
+    {
+        if (height <= 0 || width <= 0)
+            throw new IllegalArgumentException("The board must have at least one cell: " + height + "x" + width);
+        this.height = height;
+        this.width = width;
+        this.words = (width + 63) >>> 6;
+        this.current = new long[height * words];
+        this.next = new long[height * words];
+        this.rehash = true;
+    }
+
+    @Override
+    public void begin(int height, int width)
+    {
+        this.resize(height, width);
+    }
+
+    @Override
+    public void setRun(int i, int j, int length)
+    {
+        this.own();
+        int base = i * words, to = j + length;
+        while (j < to) {
+            int end = Math.min(to, (j & ~63) + 64);
+            current[base + (j >>> 6)] |= (-1L >>> (64 - (end - j))) << j;
+            j = end;
+        }
+    }
+
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        return BitKernel.nextCell(this, i, j, alive, words, width);
+    }
+
+    /**
+     * @return long the word w of the row i of the current generation
+     */
+    @Override
+    public long getWord(int i, int w)
+    {
+        return current[i * words + w];
+    }
+
+    /**
+     * Allows to know the state of a cell
+     *
+     * @param i the row of the cell
+     * @param j the column of the cell
+     * @return boolean true if alive and false if not
+     */
+    public boolean get(int i, int j)
+    {
+        return (current[i * words + (j >>> 6)] & (1L << j)) != 0;
+    }
+
+    /**
+     * Allows to change the state of a cell
+     *
+     * @param i     the row of the cell
+     * @param j     the column of the cell
+     * @param alive the new state of the cell
+     */
+    public void set(int i, int j, boolean alive)
+    {
+        this.own();
+        if (alive) current[i * words + (j >>> 6)] |= 1L << j;
+        else current[i * words + (j >>> 6)] &= ~(1L << j);
+    }
+
+    @Override
+    public void setCell(int i, int j, boolean alive)
+    {
+        this.set(i, j, alive);
+    }
+
+    /**
+     * Allows to replace a word of the current generation.
+     *
+     * @param i    the row of the word
+     * @param w    the index of the word in the row
+     * @param word the 64 cells of the word, the bits past the width being ignored
+     */
+    public void setWord(int i, int w, long word)
+    {
+        this.own();
+        current[i * words + w] = w == words - 1 ? BitKernel.mask(width, word) : word;
+    }
+
+    /**
+     * Allows to fill a part of the current generation at once with words laid out like it (see BitKernel), from
+     * a file mapped in memory for instance.
+     *
+     * @param from   the index of the first word to fill, i * words + w for the word w of the row i
+     * @param source the words, all its remaining words being read
+     */
+    public void setWords(int from, LongBuffer source)
+    {
+        this.own();
+        int to = from + source.remaining();
+        source.get(current, from, to - from);
+        for (int k = from / words * words + words - 1; k < to; k += words)
+            current[k] = BitKernel.mask(width, current[k]);
+    }
+
+    /**
+     * Allows to lend the current generation to a snapshot. The engine will not write it until it is given back.
+     * Only the thread running the engine can lend, but any thread can give back.
+     *
+     * @return long[] the words of the current generation, see BitKernel for their layout
+     */
+    public synchronized long[] lend()
+    {
+        if (lent != current) {
+            lent = current;
+            loans = 0;
+        }
+        loans++;
+        return current;
+    }
+
+    /**
+     * Allows a snapshot to tell that it does not read a lent generation anymore.
+     *
+     * @param words the words given by lend
+     */
+    public synchronized void giveBack(long[] words)
+    {
+        if (words == lent && --loans == 0) lent = null;
+    }
+
+    /**
+     * Allows to make sure the current generation is not lent before writing it, copying it if it is.
+     */
+    private void own()
+    {
+        if (current == lent) current = current.clone();
+        rehash = true;
+    }
+
+    @Override
+    public void setHashing(boolean hashing)
+    {
+        this.hashing = hashing;
+        rehash = true;
+    }
+
+    @Override
+    public long getHash()
+    {
+        if (rehash) {
+            hash = BoardHash.words(current);
+            rehash = false;
+        }
+        return hash;
+    }
+
+    @Override
+    public void setCounting(boolean counting)
+    {
+        this.counting = counting;
+    }
+
+    @Override
+    public long getBirths()
+    {
+        return births;
+    }
+
+    @Override
+    public long getDeaths()
+    {
+        return deaths;
+    }
+
+    /**
+     * Allows to count the alive cells of the board
+     *
+     * @return long the number of alive cells
+     */
+    @Override
+    public long getPopulation()
+    {
+        long population = 0;
+        for (long word : current) population += Long.bitCount(word);
+        return population;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        this.table = BitKernel.compile(rule);
+        this.rule = rule;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Allows to know whether the bit-packed engines compute several words per instruction (see BitKernel).
+     *
+     * @return String "vector, 256 bits" for instance, or "scalar"
+     */
+    public static String getKernel()
+    {
+        return BitKernel.WORDS.getName();
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.eliaswalyba.gameoflife.backend;
+
+final class BitKernel
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BitKernel
+     * @description: Computes a whole row of the next generation on bit-packed cells
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A row of the board is stored as an array of longs, 64 cells per word: the cell j of the row is the bit
+     * (j % 64) of the word (j / 64). The bits past the width of the board in the last word are always 0.
+     *
+     * To compute the next state of 64 cells at once we build the 8 words holding their 8 neighbors (the west and
+     * east neighbors are the row shifted by one bit, with the bit falling out of the word taken from the adjacent
+     * word) and we sum them bit by bit with a tree of adders. The sum is a 4 bits number (0 to 8) spread over 4
+     * words, which is enough to apply the rules with a handful of logical operations.
+     * Any other rule is compiled into a table of 18 words, all ones or all zeros, telling for each number of
+     * neighbors whether a dead cell is born and whether an alive cell survives. The 4 bits of the count then pick
+     * their entry through a tree of multiplexers, still without any branch. The kernel checks once per call
+     * whether the table is the one of the game of life and keeps its few operations for it.
+     * The rows wrap around like a torus: the west neighbor of the first cell is the last cell of the row.
+     * The inner words of a row go to the VectorKernel when the JVM has the Vector API (started with
+     * --add-modules jdk.incubator.vector), unless -Dgameoflife.vector=false; to stepWords otherwise.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * This class only holds static methods.
+     */
+    private BitKernel() {}
+
+    /**
+     * The table of the game of life, B3/S23
+     */
+    static final long[] LIFE = table(Rule.LIFE);
+
+    /**
+     * The name of the system property turning the VectorKernel off
+     */
+    static final String VECTOR_PROPERTY = "gameoflife.vector";
+
+    /**
+     * The loop computing the inner words of the rows: the VectorKernel if it can be loaded, stepWords otherwise
+     */
+    static final Words WORDS = words();
+
+    interface Words
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Words
+         * @description: A loop computing the words of a row whose both adjacent words exist, see stepWords
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        void step(long[] a, int ao, long[] r, int ro, long[] b, int bo, long[] d, int dO, int from, int to,
+                  long[] rule);
+
+        /**
+         * @return String the name of the loop, for the reports
+         */
+        default String getName()
+        {
+            return "scalar";
+        }
+    }
+
+    interface Packed
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Packed
+         * @description: A board bit-packed like a BitEngine, read a word at a time, see nextCell
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * @return long the word w of the row i, the bits past the width being 0
+         */
+        long getWord(int i, int w);
+    }
+
+    /**
+     * Allows to load the VectorKernel by its name, so that this class still loads without the Vector API.
+     *
+     * @return Words the VectorKernel, or stepWords if the Vector API is missing, turned off or useless here
+     */
+    private static Words words()
+    {
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) return BitKernel::stepWords;
+        try {
+            return (Words) Class.forName(BitKernel.class.getPackageName() + ".VectorKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return BitKernel::stepWords;
+        }
+    }
+
+
+    /**
+     * Allows to compile a rule of 2 states into the table of the kernel.
+     *
+     * @param rule the rule
+     * @return long[] the births for 0 to 8 neighbors, then the survivals, each word being all ones or all zeros
+     */
+    static long[] compile(Rule rule)
+    {
+        if (rule.getStates() != 2)
+            throw new IllegalArgumentException("The rule " + rule + " has " + rule.getStates()
+                    + " states, the bit-packed engines only store 2");
+        return rule.isLife() ? LIFE : table(rule);
+    }
+
+    /**
+     * @return long[] the table of a rule of 2 states
+     */
+    private static long[] table(Rule rule)
+    {
+        long[] table = new long[18];
+        for (int n = 0; n <= 8; n++) {
+            table[n] = -(long) (rule.getBorn() >>> n & 1);
+            table[9 + n] = -(long) (rule.getSurvive() >>> n & 1);
+        }
+        return table;
+    }
+
+    /**
+     * Allows to compute the next state of a row of cells.
+     *
+     * @param a     the array holding the row above
+     * @param ao    the offset of the row above in a
+     * @param r     the array holding the row to compute
+     * @param ro    the offset of the row in r
+     * @param b     the array holding the row below
+     * @param bo    the offset of the row below in b
+     * @param d     the array receiving the next state of the row
+     * @param dO    the offset of the row in d
+     * @param words the number of words in a row
+     * @param width the number of cells in a row
+     * @param rule  the table of the rule, see compile
+     */
+    static void stepRow(long[] a, int ao, long[] r, int ro, long[] b, int bo, long[] d, int dO, int words, int width,
+                        long[] rule)
+    {
+        int last = words - 1, shift = (width - 1) & 63;
+        long aLast = a[ao + last], rLast = r[ro + last], bLast = b[bo + last];
+        long aFirst = a[ao], rFirst = r[ro], bFirst = b[bo];
+        long aW = (aLast >>> shift) & 1L, rW = (rLast >>> shift) & 1L, bW = (bLast >>> shift) & 1L;
+
+        if (last == 0) {
+            d[dO] = mask(width, next(
+                    (aFirst << 1) | aW, aFirst, (aFirst >>> 1) | ((aFirst & 1L) << shift),
+                    (rFirst << 1) | rW, rFirst, (rFirst >>> 1) | ((rFirst & 1L) << shift),
+                    (bFirst << 1) | bW, bFirst, (bFirst >>> 1) | ((bFirst & 1L) << shift), rule
+            ));
+            return;
+        }
+
+        d[dO] = next(
+                (aFirst << 1) | aW, aFirst, (aFirst >>> 1) | (a[ao + 1] << 63),
+                (rFirst << 1) | rW, rFirst, (rFirst >>> 1) | (r[ro + 1] << 63),
+                (bFirst << 1) | bW, bFirst, (bFirst >>> 1) | (b[bo + 1] << 63), rule
+        );
+        WORDS.step(a, ao, r, ro, b, bo, d, dO, 1, last, rule);
+        d[dO + last] = mask(width, next(
+                (aLast << 1) | (a[ao + last - 1] >>> 63), aLast, (aLast >>> 1) | ((aFirst & 1L) << shift),
+                (rLast << 1) | (r[ro + last - 1] >>> 63), rLast, (rLast >>> 1) | ((rFirst & 1L) << shift),
+                (bLast << 1) | (b[bo + last - 1] >>> 63), bLast, (bLast >>> 1) | ((bFirst & 1L) << shift), rule
+        ));
+    }
+
+    /**
+     * Allows to compute the words of a row that are not on its edges, i.e. whose both adjacent words exist.
+     * This is the hot loop of the kernel: it has no branch at all.
+     *
+     * @param from the first word to compute, at least 1
+     * @param to   the word after the last one to compute, at most words - 1
+     * @param rule the table of the rule, see compile
+     */
+    static void stepWords(long[] a, int ao, long[] r, int ro, long[] b, int bo, long[] d, int dO, int from, int to,
+                          long[] rule)
+    {
+        for (int k = from; k < to; k++) {
+            long x = a[ao + k], y = r[ro + k], z = b[bo + k];
+            d[dO + k] = next(
+                    (x << 1) | (a[ao + k - 1] >>> 63), x, (x >>> 1) | (a[ao + k + 1] << 63),
+                    (y << 1) | (r[ro + k - 1] >>> 63), y, (y >>> 1) | (r[ro + k + 1] << 63),
+                    (z << 1) | (b[bo + k - 1] >>> 63), z, (z >>> 1) | (b[bo + k + 1] << 63), rule
+            );
+        }
+    }
+
+    /**
+     * Allows to apply the rules of the game on 64 cells at once.
+     * The parameters are the words of the 3x3 neighborhood, the cell itself being c, and the table of the rule.
+     *
+     * @return long the next state of the 64 cells
+     */
+    static long next(long nw, long n, long ne, long w, long c, long e, long sw, long s, long se, long[] rule)
+    {
+        /* Sum of the row above and of the row below with two full adders */
+        long a0 = nw ^ n ^ ne, a1 = (nw & n) | (ne & (nw ^ n));
+        long b0 = sw ^ s ^ se, b1 = (sw & s) | (se & (sw ^ s));
+        /* Sum of the 2 neighbors of the same row with an half adder */
+        long m0 = w ^ e, m1 = w & e;
+
+        /* Bit of weight 1 of the count */
+        long s0 = a0 ^ b0 ^ m0, c0 = (a0 & b0) | (m0 & (a0 ^ b0));
+        /* Bits of weight 2, 4 and 8 of the count */
+        long x = a1 ^ b1 ^ m1, y = (a1 & b1) | (m1 & (a1 ^ b1));
+        long s1 = x ^ c0, z = x & c0;
+        long s2 = y ^ z, s3 = y & z;
+
+        /* A cell is alive if it has 3 neighbors, or 2 if it was already alive */
+        if (rule == LIFE) return s1 & ~(s2 | s3) & (s0 | c);
+        return (pick(rule, 0, s0, s1, s2, s3) & ~c) | (pick(rule, 9, s0, s1, s2, s3) & c);
+    }
+
+    /**
+     * Allows to look up the births or the survivals of a rule for 64 counts of neighbors at once.
+     *
+     * @param rule the table of the rule
+     * @param o    0 for the births, 9 for the survivals
+     * @return long the entries of the table picked by the counts s3 s2 s1 s0
+     */
+    private static long pick(long[] rule, int o, long s0, long s1, long s2, long s3)
+    {
+        /* The counts 0 to 7, by pairs, then by fours, then all of them; 8 is the only count with s3 */
+        long v0 = (rule[o] & ~s0) | (rule[o + 1] & s0), v1 = (rule[o + 2] & ~s0) | (rule[o + 3] & s0);
+        long v2 = (rule[o + 4] & ~s0) | (rule[o + 5] & s0), v3 = (rule[o + 6] & ~s0) | (rule[o + 7] & s0);
+        long w0 = (v0 & ~s1) | (v1 & s1), w1 = (v2 & ~s1) | (v3 & s1);
+        return (((w0 & ~s2) | (w1 & s2)) & ~s3) | (rule[o + 8] & s3);
+    }
+
+    /**
+     * Allows to count the cells born between two generations of some words.
+     *
+     * @param before the words of the previous generation
+     * @param after  the words of the next generation
+     * @param from   the index of the first word
+     * @param to     the index after the last word
+     * @return long the number of bits set in after and not in before
+     */
+    static long born(long[] before, long[] after, int from, int to)
+    {
+        long born = 0;
+        for (int k = from; k < to; k++) born += Long.bitCount(after[k] & ~before[k]);
+        return born;
+    }
+
+    /**
+     * Allows to count the cells dead between two generations of some words, see born.
+     *
+     * @return long the number of bits set in before and not in after
+     */
+    static long died(long[] before, long[] after, int from, int to)
+    {
+        return born(after, before, from, to);
+    }
+
+    /**
+     * Allows to find the next cell of a row in a given state, skipping a word of 64 cells at a time.
+     *
+     * @param board the board
+     * @param i     the row
+     * @param j     the column to start from
+     * @param alive the state looked for
+     * @param words the number of words in a row
+     * @param width the number of cells in a row
+     * @return int the column of the first cell from j in that state, width if there is none
+     */
+    static int nextCell(Packed board, int i, int j, boolean alive, int words, int width)
+    {
+        if (j >= width) return width;
+        int w = j >>> 6;
+        /* The padding bits of the last word are dead, their complement stops the search of a dead cell there */
+        long word = (alive ? board.getWord(i, w) : ~board.getWord(i, w)) & (-1L << j);
+        while (word == 0) {
+            if (++w == words) return width;
+            word = alive ? board.getWord(i, w) : ~board.getWord(i, w);
+        }
+        return Math.min(width, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Allows to clear the bits past the width of the board in the last word of a row.
+     *
+     * @param width the number of cells in a row
+     * @param word  the last word of the row
+     * @return long the word without the bits past the width of the board
+     */
+    static long mask(int width, long word)
+    {
+        return word & (-1L >>> (-width & 63));
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public interface BoardHash
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BoardHash
+     * @description: An engine keeping a hash of its board up to date as the cells change
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The hash is Zobrist-style: every cell (or every word of 64 cells for the bit-packed engines) has its own
+     * random key, and the hash of the board is the XOR of the keys of its alive cells. A cell that changes toggles
+     * its key in the hash, so the hash follows the board without ever reading a previous generation again. The
+     * key of a word depends on the 64 cells it holds, the bit-packed engines toggling the key of the old word and
+     * the key of the new one.
+     * The keys are not stored, they are computed from the index of the cell with the finalizer of SplitMix64.
+     * An empty board hashes to 0. Two different boards get the same hash with a probability of 2^-64.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Allows to start or to stop keeping the hash up to date at each generation. When it is not kept, getHash
+     * computes it from the whole board.
+     *
+     * @param hashing whether the hash is kept up to date
+     */
+    void setHashing(boolean hashing);
+
+    /**
+     * @return long the hash of the current generation, 0 for an empty board
+     */
+    long getHash();
+
+    /**
+     * Allows to compute the key of an alive cell.
+     *
+     * @param index the index of the cell on the board
+     * @return long the key of the cell
+     */
+    static long cell(long index)
+    {
+        return mix(index * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L);
+    }
+
+    /**
+     * Allows to compute the key of a word of 64 cells, 0 if the word is empty.
+     *
+     * @param index the index of the word on the board
+     * @param word  the cells of the word
+     * @return long the key of the word
+     */
+    static long word(long index, long word)
+    {
+        return mix(word + index * 0x9E3779B97F4A7C15L) & -(word != 0 ? 1L : 0L);
+    }
+
+    /**
+     * Allows to compute how the hash changes between two generations of some words. Only the words that changed
+     * are keyed: most words of a board that settled keep their cells, and keying them all would cost as much as
+     * computing the hash again from scratch.
+     *
+     * @param before the words of the previous generation
+     * @param after  the words of the next generation
+     * @param from   the index of the first word
+     * @param to     the index after the last word
+     * @return long the value to XOR with the hash of the previous generation
+     */
+    static long changes(long[] before, long[] after, int from, int to)
+    {
+        long changes = 0;
+        for (int k = from; k < to; k++) if (before[k] != after[k]) changes ^= word(k, before[k]) ^ word(k, after[k]);
+        return changes;
+    }
+
+    /**
+     * Allows to compute how the hash changes between two generations of some words copied out of the board, a
+     * row of an OffHeapEngine for instance. Only the words that changed are keyed.
+     *
+     * @param index  the index on the board of the first word
+     * @param before the words of the previous generation, from 0
+     * @param after  the words of the next generation, from 0
+     * @param count  the number of words
+     * @return long the value to XOR with the hash of the previous generation
+     */
+    static long changes(long index, long[] before, long[] after, int count)
+    {
+        long changes = 0;
+        for (int k = 0; k < count; k++)
+            if (before[k] != after[k]) changes ^= word(index + k, before[k]) ^ word(index + k, after[k]);
+        return changes;
+    }
+
+    /**
+     * Allows to compute the hash of some words from scratch.
+     *
+     * @param words the words
+     * @return long the XOR of their keys
+     */
+    static long words(long[] words)
+    {
+        long hash = 0;
+        for (int k = 0; k < words.length; k++) if (words[k] != 0) hash ^= word(k, words[k]);
+        return hash;
+    }
+
+    /**
+     * @return long the finalizer of SplitMix64, a bijection spreading every bit of its input on all the bits
+     */
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
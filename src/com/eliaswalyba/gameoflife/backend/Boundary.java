@@ -0,0 +1,39 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public enum Boundary
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Boundary
+     * @description: What lies beyond the edges of a bounded board
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The Controller surrounds the board with a halo of one row and one column on each side, filled once per
+     * generation according to the boundary, so that every cell of the board has its 8 neighbors at hand.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The rows and the columns wrap around: the neighbor of the first column is the last one, same for the rows.
+     */
+    TORUS,
+
+    /**
+     * The cells beyond the edges are always dead.
+     */
+    DEAD,
+
+    /**
+     * The columns wrap around like a torus, but the first and the last rows are glued upside down: the neighbor
+     * of the cell j of the first row, above it, is the cell width - 1 - j of the last row.
+     */
+    KLEIN_BOTTLE,
+
+    /**
+     * The cells beyond the edges are dead, and the board grows before an alive cell reaches an edge: nothing is
+     * ever lost, like on an infinite plane. The rules giving birth without neighbors are not supported.
+     */
+    GROWING
+
+}
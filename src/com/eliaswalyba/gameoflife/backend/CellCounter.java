@@ -0,0 +1,36 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public interface CellCounter
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CellCounter
+     * @description: An engine counting the cells born and dead at each generation
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The bit-packed engines count the bits set in the new words and not in the old ones, and the other way
+     * around, once a band is computed: it costs two population counts per word, so it is off by default. The
+     * Controller and the SparseEngine see every birth and every death anyway, they always count them.
+     * The population of the board follows from the births and the deaths without counting all its cells again.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Allows to start or to stop counting the births and the deaths at each generation.
+     *
+     * @param counting whether the births and the deaths are counted
+     */
+    void setCounting(boolean counting);
+
+    /**
+     * @return long the number of dead cells that became alive during the last generation, 0 if not counted
+     */
+    long getBirths();
+
+    /**
+     * @return long the number of alive cells that died during the last generation, 0 if not counted
+     */
+    long getDeaths();
+
+}
@@ -0,0 +1,83 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+
+final class CellList implements CellSource
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CellList
+     * @description: A rectangle of the plane read run by run from the sorted list of its alive cells
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The engines storing their alive cells one by one (see Plane) list the ones of a rectangle, the row i and the
+     * column j of a cell in the rectangle packed in the 32 high and the 32 low bits of a long. Once sorted, the
+     * cells of a row follow each other from the left to the right: nextCell is a binary search, followed by a walk
+     * along a run when a dead cell is looked for. Reading the rectangle costs its population, not its area.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The alive cells, sorted
+     */
+    private final long[] cells;
+
+    /**
+     * The dimensions of the rectangle
+     */
+    private final int height, width;
+
+    /**
+     * The constructor of the class
+     *
+     * @param cells  the alive cells, each one packed by key; the array is sorted in place and kept
+     * @param count  the number of cells in the array
+     * @param height the number of rows of the rectangle
+     * @param width  the number of columns of the rectangle
+     */
+    CellList(long[] cells, int count, int height, int width)
+    {
+        Arrays.sort(cells, 0, count);
+        this.cells = count == cells.length ? cells : Arrays.copyOf(cells, count);
+        this.height = height;
+        this.width = width;
+    }
+
+    /**
+     * @return long the packed row and column of a cell of the rectangle
+     */
+    static long key(int i, int j)
+    {
+        return (long) i << 32 | j;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        if (j >= width) return width;
+        int k = Arrays.binarySearch(cells, key(i, j));
+        if (alive) {
+            if (k < 0) k = -k - 1;
+            return k < cells.length && cells[k] >>> 32 == i ? Math.min((int) cells[k], width) : width;
+        }
+        while (k >= 0 && k < cells.length && cells[k] == key(i, j)) {
+            k++;
+            j++;
+        }
+        return Math.min(j, width);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.nio.LongBuffer;
+
+public interface CellSink
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CellSink
+     * @description: A storage that can be filled with a board streamed row by row
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The pattern readers do not build a matrix of cells: they give the alive cells directly to the storage of an
+     * engine, as runs of consecutive alive cells. The runs are given row by row from the top to the bottom, and
+     * from the left to the right in a row, so that an engine can build its storage on the fly with a small buffer.
+     * A board being loaded is only valid once end has been called.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Allows to empty the board and to change its dimensions before it is filled.
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    void begin(int height, int width);
+
+    /**
+     * Allows to bring a run of consecutive cells of a row to life.
+     *
+     * @param i      the row of the run
+     * @param j      the column of the first cell of the run
+     * @param length the number of cells of the run
+     */
+    void setRun(int i, int j, int length);
+
+    /**
+     * Allows to tell that all the runs were given. Engines building their storage on the fly finish it here.
+     */
+    default void end() {}
+
+    /**
+     * Allows to change the state of a single cell of a board already filled, an edit of the user for instance,
+     * without going through the whole board. The storages that cannot change a cell in place do not support it.
+     *
+     * @param i     the row of the cell
+     * @param j     the column of the cell
+     * @param alive the new state of the cell
+     */
+    default void setCell(int i, int j, boolean alive)
+    {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " cannot change a single cell");
+    }
+
+    /**
+     * Allows to fill a storage with words laid out like a BitEngine (see BitKernel). A BitEngine takes them in
+     * bulk, the other storages run by run.
+     *
+     * @param words  the words, (width + 63) / 64 per row
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     * @param sink   the storage to fill
+     */
+    static void fromWords(long[] words, int height, int width, CellSink sink)
+    {
+        int count = (width + 63) >>> 6;
+        sink.begin(height, width);
+        if (sink instanceof BitEngine) {
+            ((BitEngine) sink).setWords(0, LongBuffer.wrap(words, 0, height * count));
+        } else {
+            for (int k = 0; k < height * count; k++) {
+                long word = words[k];
+                while (word != 0) {
+                    int from = Long.numberOfTrailingZeros(word);
+                    int to = Math.min(64, from + Long.numberOfTrailingZeros(~(word >>> from)));
+                    sink.setRun(k / count, (k % count << 6) + from, to - from);
+                    word = to == 64 ? 0 : word & -1L << to;
+                }
+            }
+        }
+        sink.end();
+    }
+
+    /**
+     * Allows to put a pattern at the center of a board of a given size, whatever the size of the pattern is.
+     *
+     * @param target the storage receiving the board
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     * @return CellSink the storage receiving the pattern
+     */
+    static CellSink centered(CellSink target, int height, int width)
+    {
+        return new CellSink()
+        {
+            private int top, left;
+
+            @Override
+            public void begin(int h, int w)
+            {
+                if (h > height || w > width)
+                    throw new IllegalArgumentException("The pattern (" + h + "x" + w + ") is bigger than the board ("
+                            + height + "x" + width + ")");
+                top = (height - h) / 2;
+                left = (width - w) / 2;
+                target.begin(height, width);
+            }
+
+            @Override
+            public void setRun(int i, int j, int length)
+            {
+                target.setRun(top + i, left + j, length);
+            }
+
+            @Override
+            public void end()
+            {
+                target.end();
+            }
+        };
+    }
+
+}
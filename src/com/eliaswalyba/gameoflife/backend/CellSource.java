@@ -0,0 +1,90 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+
+public interface CellSource
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CellSource
+     * @description: A storage that can be read run by run, without building a matrix of cells
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The pattern writers walk the rows of the board by jumping from a run of dead cells to a run of alive cells
+     * and back, so that an engine can answer from its own storage: a word of a bit-packed row or a whole empty
+     * node of a quadtree is skipped at once.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * @return int the number of rows of the board
+     */
+    int getHeight();
+
+    /**
+     * @return int the number of columns of the board
+     */
+    int getWidth();
+
+    /**
+     * Allows to find the next cell of a row in a given state.
+     *
+     * @param i     the row
+     * @param j     the first column to look at
+     * @param alive the state looked for
+     * @return int the column of the first cell at or after j in this state, the width if there is none
+     */
+    int nextCell(int i, int j, boolean alive);
+
+    /**
+     * Allows to copy a board from a storage to another one, run by run.
+     *
+     * @param source the storage to read
+     * @param sink   the storage to fill
+     */
+    static void copy(CellSource source, CellSink sink)
+    {
+        int height = source.getHeight(), width = source.getWidth();
+        sink.begin(height, width);
+        for (int i = 0; i < height; i++) {
+            for (int j = source.nextCell(i, 0, true); j < width; ) {
+                int dead = source.nextCell(i, j, false);
+                sink.setRun(i, j, dead - j);
+                j = dead < width ? source.nextCell(i, dead, true) : width;
+            }
+        }
+        sink.end();
+    }
+
+    /**
+     * Allows to copy a board into words laid out like a BitEngine (see BitKernel). A BitEngine is copied word
+     * for word, the other storages run by run.
+     *
+     * @param source the storage to read
+     * @param words  the words to fill, (width + 63) / 64 per row
+     */
+    static void toWords(CellSource source, long[] words)
+    {
+        if (source instanceof BitEngine) {
+            BitEngine engine = (BitEngine) source;
+            long[] cells = engine.lend();
+            try {
+                System.arraycopy(cells, 0, words, 0, cells.length);
+            } finally {
+                engine.giveBack(cells);
+            }
+            return;
+        }
+        int height = source.getHeight(), width = source.getWidth(), count = (width + 63) >>> 6;
+        Arrays.fill(words, 0, height * count, 0);
+        for (int i = 0; i < height; i++) {
+            for (int j = source.nextCell(i, 0, true); j < width; ) {
+                int dead = source.nextCell(i, j, false);
+                for (int k = j; k < dead; k++) words[i * count + (k >>> 6)] |= 1L << k;
+                j = dead < width ? source.nextCell(i, dead, true) : width;
+            }
+        }
+    }
+
+}
@@ -4,7 +4,21 @@ public class Config
 {
     public static final int WINDOW_WIDTH = 650, WINDOW_HEIGHT = 700;
 
+    public static final int BOARD_SIZE = 25, CELL_PITCH = 26;
+
+    public static final int FRAMES_PER_SECOND = 60;
+    public static final int GENERATIONS_PER_SECOND = 10, MAX_GENERATIONS_PER_SECOND = 60;
+    public static final int METRICS_REFRESH_MILLIS = 250;
+    public static final int EVENTS_CAPACITY = 64, KEYFRAME_INTERVAL = 100;
+    public static final long HISTORY_BUDGET = 64L << 20;
+    public static final int HISTORY_KEYFRAME_INTERVAL = 64;
+    public static final int LOOKAHEAD_DEPTH = 8;
+
     public static final String WINDOW_TITLE = "GAME OF LIFE | By Elias Waly BA";
     public static final String NEXT_GENERATION_BUTTON_TITLE = "Next Generation";
+    public static final String PREVIOUS_GENERATION_BUTTON_TITLE = "Previous Generation";
+    public static final String PLAY_BUTTON_TITLE = "Play", PAUSE_BUTTON_TITLE = "Pause";
+    public static final String OPEN_BUTTON_TITLE = "Open", SAVE_BUTTON_TITLE = "Save";
+    public static final String METRICS_BUTTON_TITLE = "Metrics";
     public static final String EMPTY_PATTERN_ALERT_MESSAGE = "Veuillez dessiner un pattern s'il vous plait";
 }
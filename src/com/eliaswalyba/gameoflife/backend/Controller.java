@@ -1,12 +1,14 @@
 package com.eliaswalyba.gameoflife.backend;
 
-public class Controller
+import java.util.Arrays;
+
+public class Controller implements Engine, CellSource, BoardHash, CellCounter
 {
     /*
      * -----------------------------------------------------------------------------------------------------------------
      * @className: Controller
      * @description: Handles all the algorithms behind scene that allows the game to work correctly
-     * @version: 0.1
+     * @version: 0.2
      * @author: Elias W. BA (eliaswalyba@gmail.com)
      * @date: february 2017
      * -----------------------------------------------------------------------------------------------------------------
@@ -18,46 +20,56 @@ public class Controller
      * value of 1 in it's corresponding cell M[i][j] in the matrix and when it's DEAD we set it to 0
      * At the beginning all cells are DEAD by default (When we launch the UI the grid has no black
      * cell) and whenever the user clicks on a cell we update the matrix.
+     *
+     * The board can have any height and width. The matrix is stored with a halo: one more row above and below,
+     * one more column on the left and on the right, filled once per generation according to the boundary (see
+     * Boundary). So every cell of the board, on the edges too, reads its 8 neighbors the same way and the loop
+     * over the cells never checks a bound.
      *------------------------------------------------------------------------------------------------------------------
      */
 
     /**
-     * A 2D array of integers to store the states of the cells in the grid
+     * The states of the cells with their halo: the cell (i, j) of the board is at [i + 1][j + 1]
      */
     private int [][]cells;
 
     /**
-     * A bunch of integers class constants to normalize some aspects and concepts
+     * The matrix receiving the next generation, with a halo too, swapped with cells once all of them are computed
      */
-    private static final int
+    private int [][]next;
 
-            /* The state of a cell: ALIVE or DEAD */
-            ALIVE            = 1,
-            DEAD             = 0,
+    /**
+     * The number of rows and columns of the board, without the halo
+     */
+    private int height, width;
 
-            /* The 4 corners in the grid */
-            TOP_LEFT         = 0,
-            TOP_RIGHT        = 1,
-            BOTTOM_RIGHT     = 2,
-            BOTTOM_LEFT      = 3,
+    /**
+     * The rule of the game, compiled into a table (see Rule)
+     */
+    private Rule rule = Rule.LIFE;
 
-            /* The 4 borders in the grid */
-            BORDER_TOP       = 0,
-            BORDER_RIGHT     = 1,
-            BORDER_BOTTOM    = 2,
-            BORDER_LEFT      = 3,
+    /**
+     * What lies beyond the edges of the board
+     */
+    private Boundary boundary = Boundary.TORUS;
+
+    /**
+     * The hash of the states of the cells (see BoardHash), updated by changeState when hashing is on, and whether
+     * it is stale: a new board or a generation computed with hashing off computes it again when it is asked for
+     */
+    private long hash;
+    private boolean hashing, rehash = true;
 
-            /* The 3 different number of neighbors possible in the grid */
-            CORNER_NEIGHBORS = 3,
-            BORDER_NEIGHBORS = 5,
-            CENTER_NEIGHBORS = 8;
+    /**
+     * The number of cells that became alive, and of alive cells that stopped being alive, during the last
+     * generation, counted by changeState
+     */
+    private long births, deaths;
 
     /**
-     * The lowest and highest indexes of the matrix
+     * The state of a cell counted as an alive neighbor, the other states being dead or dying
      */
-    private final int
-            MIN_BOUND,
-            MAX_BOUND;
+    private static final int ALIVE = 1;
 
     /**
      * The constructor of the class
@@ -66,33 +78,82 @@ public class Controller
      */
     public Controller(int [][]cells)
     {
-        this.cells = cells;
-        this.MIN_BOUND = 0;
-        this.MAX_BOUND = this.cells.length - 1;
+        this.setCells(cells);
+    }
+
+    /**
+     * The constructor of a game following another rule than B3/S23
+     *
+     * @param cells [][]int the grids state to populate in the matrix
+     * @param rule  the rule of the game, its states being the values of the cells
+     */
+    public Controller(int [][]cells, Rule rule)
+    {
+        this(cells, rule, Boundary.TORUS);
+    }
+
+    /**
+     * The constructor of a game following another rule or with other edges than a torus
+     *
+     * @param cells    [][]int the grids state to populate in the matrix
+     * @param rule     the rule of the game, its states being the values of the cells
+     * @param boundary what lies beyond the edges of the board
+     */
+    public Controller(int [][]cells, Rule rule, Boundary boundary)
+    {
+        this.setCells(cells);
+        this.setRule(rule);
+        this.setBoundary(boundary);
     }
 
     /**
      * Allows to access the matrix of cells
      *
-     * @return [][]int the matrix of cells
+     * @return [][]int a copy of the matrix of cells, without the halo
      */
+    @Override
     public int[][] getCells() {
-        return cells;
+        int[][] copy = new int[height][width];
+        this.copyCells(copy);
+        return copy;
+    }
+
+    @Override
+    public void copyCells(int[][] target)
+    {
+        for (int i = 0; i < height; i++) System.arraycopy(cells[i + 1], 1, target[i], 0, width);
     }
 
     /**
      * Allows to mutate the matrix of cells
      *
-     * @param cells int[][] the new matrix of cells
+     * @param cells int[][] the new matrix of cells, whose rows all have the same length
      */
+    @Override
     public void setCells(int[][] cells) {
-        this.cells = cells;
+        this.resize(cells.length, cells.length == 0 ? 0 : cells[0].length);
+        for (int i = 0; i < height; i++) System.arraycopy(cells[i], 0, this.cells[i + 1], 1, width);
+        this.rehash = true;
+    }
+
+    /**
+     * Allows to empty the board and to change its dimensions.
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    private void resize(int height, int width)
+    {
+        this.height = height;
+        this.width = width;
+        this.cells = new int[height + 2][width + 2];
+        this.next = new int[height + 2][width + 2];
     }
 
     /**
      * This method computes the next generation according to the state of each cell and the number of alive cells
      * around it in the current generation.
-     * The rules are pretty simple:
+     * The rules of the classic game are pretty simple:
      *      - if a cell is DEAD
      *              if it is surrounded by 3 alive cells it rebirths
      *              else it stays dead
@@ -100,268 +161,257 @@ public class Controller
      *              if it is surrounded by 2 or 3 alive cells it stays alive
      *              else if it is surrounded by less than 2 alive cells it died by underpopulation
      *              else it dies by overpopulation
+     * Other rules are given as a Rule. The new states are written in a second matrix, so that every cell sees the
+     * current generation of its neighbors, then the two matrices are swapped.
      */
+    @Override
     public void nextGeneration() {
-        for (int i = 0; i < cells.length; i++) {
-            for (int j = 0; j < cells.length; j++) {
-                Position position = new Position(i, j);
-                int cpt = 0;
-                Neighborhood neighborhood = extractNeighborhood(position);
-                for (int k = 0; k < (neighborhood != null ? neighborhood.neighbors.length : 0); k++) {
-                    for (int l = 0; l < neighborhood.neighbors.length; l++) {
-                        Position p = neighborhood.target;
-                        if (!(p.getX() == k && p.getY() == l)) {
-                            if (neighborhood.neighbors[k][l] == ALIVE) {
-                                cpt++;
-                            }
-                        }
-                    }
-                }
-                this.changeState(position, cpt);
+        if (boundary == Boundary.GROWING) this.grow();
+        this.fillHalo();
+        births = 0;
+        deaths = 0;
+        for (int i = 1; i <= height; i++) {
+            int[] above = cells[i - 1], row = cells[i], below = cells[i + 1];
+            for (int j = 1; j <= width; j++) {
+                int n = alive(above[j - 1]) + alive(above[j]) + alive(above[j + 1])
+                        + alive(row[j - 1]) + alive(row[j + 1])
+                        + alive(below[j - 1]) + alive(below[j]) + alive(below[j + 1]);
+                this.changeState(i, j, n);
             }
         }
+        int[][] t = cells;
+        cells = next;
+        next = t;
+        if (!hashing) rehash = true;
     }
 
     /**
-     * Allows to change the status of cell.
-     *
-     * @param p position of the cell to change it's status
-     * @param n the number of alive neighbors around that cell
+     * Allows to fill the halo around the board according to the boundary.
      */
-    private void changeState(Position p, int n)
+    private void fillHalo()
     {
-        if (isAlive(cells[p.getX()][p.getY()]) && (n < 2 || n > 3))
-            this.cells[p.getX()][p.getY()] = DEAD;
-        else if ((!isAlive(cells[p.getX()][p.getY()]) && n == 3))
-            this.cells[p.getX()][p.getY()] = ALIVE;
+        int last = height + 1, end = width + 1;
+        if (boundary == Boundary.DEAD || boundary == Boundary.GROWING) {
+            for (int i = 0; i <= last; i++) cells[i][0] = cells[i][end] = 0;
+            Arrays.fill(cells[0], 0);
+            Arrays.fill(cells[last], 0);
+            return;
+        }
+        /* The columns first, so that the rows copied next bring the corners with them */
+        for (int i = 1; i < last; i++) {
+            cells[i][0] = cells[i][width];
+            cells[i][end] = cells[i][1];
+        }
+        if (boundary == Boundary.TORUS) {
+            System.arraycopy(cells[height], 0, cells[0], 0, width + 2);
+            System.arraycopy(cells[1], 0, cells[last], 0, width + 2);
+        } else {
+            for (int j = 0; j <= end; j++) {
+                cells[0][j] = cells[height][end - j];
+                cells[last][j] = cells[1][end - j];
+            }
+        }
     }
 
     /**
-     * Allows to extract a neighborhood according to the given position.
-     * This methods switches the 3 different possible values of the return value of evaluateNumberOfNeighbors(p) method.
-     * For each case it applies a specific treatment to find out the neighborhood to return.
-     *
-     * @param p the position of the cell to find its neighborhood
-     * @return Neighborhood an object of type Neighborhood.
+     * Allows to make room around the board when an alive cell lies on one of its edges, so that no cell is ever
+     * born beyond the edges. Each side touched grows by half the size of the board, at least 8 cells, so that
+     * the board is copied only a few times while a pattern spreads.
      */
-    private Neighborhood extractNeighborhood(Position p)
+    private void grow()
     {
-        int neighbors[][] = new int[3][3], i = p.getX(), j = p.getY();
-        Neighborhood neighborhood = new Neighborhood();
-        int []A;
-        int []B;
-        int n = cells.length - 1;
-        switch (evaluateNumberOfNeighbors(p)) {
-            case CORNER_NEIGHBORS:
-                switch (whichCorner(p)) {
-                    case TOP_LEFT:
-                        A = new int[]{n, 0, 1};
-                        neighborhood.target = new Position(0, 0);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < A.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][A[b]];
-                            }
-                        }
-                        break;
-                    case TOP_RIGHT:
-                        A = new int[]{n, 0, 1};
-                        B = new int[]{n-1, n, 0};
-                        neighborhood.target = new Position(0, 1);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < B.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][B[b]];
-                            }
-                        }
-                        break;
-                    case BOTTOM_RIGHT:
-                        A = new int[]{n-1, n, 0};
-                        neighborhood.target = new Position(1, 1);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < A.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][A[b]];
-                            }
-                        }
-                        break;
-                    case BOTTOM_LEFT:
-                        A = new int[]{n-1, n, 0};
-                        B = new int[]{n, 0, 1};
-                        neighborhood.target = new Position(1, 0);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < B.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][B[b]];
-                            }
-                        }
-                        break;
-                    default: return null;
-                }
-                break;
-            case BORDER_NEIGHBORS:
-                switch (whichBorder(p)) {
-                    case BORDER_TOP:
-                        A = new int[]{n, 0, 1};
-                        B = new int[]{j-1, j, j+1};
-                        neighborhood.target = new Position(0, 1);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < B.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][B[b]];
-                            }
-                        }
-                        break;
-                    case BORDER_RIGHT:
-                        A = new int[]{i-1, i, i+1};
-                        B = new int[]{n-1, n, 0};
-                        neighborhood.target = new Position(1, 1);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < B.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][B[b]];
-                            }
-                        }
-                        break;
-                    case BORDER_BOTTOM:
-                        A = new int[]{n-1, n, 0};
-                        B = new int[]{j-1, j, j+1};
-                        neighborhood.target = new Position(1, 1);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < B.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][B[b]];
-                            }
-                        }
-                        break;
-                    case BORDER_LEFT:
-                        B = new int[]{n, 0, 1};
-                        A = new int[]{i-1, i, i+1};
-                        neighborhood.target = new Position(1, 0);
-                        for (int k = 0, a = 0; k < neighbors.length && a < A.length; k++, a++) {
-                            for (int l = 0, b = 0; l < neighbors.length && b < B.length; l++, b++) {
-                                neighbors[k][l] = cells[A[a]][B[b]];
-                            }
-                        }
-                        break;
-                    default: return null;
-                }
-                break;
-            case CENTER_NEIGHBORS:
-                neighborhood.target = new Position(1, 1);
-                for (int k = 0; k < neighbors.length; k++) for (int l = 0; l < neighbors.length; l++)
-                        neighbors[k][l] = cells[i-(1-k)][j-(1-l)];
-                break;
-            default: return null;
+        boolean top = false, bottom = false, left = false, right = false;
+        for (int j = 1; j <= width; j++) {
+            top |= cells[1][j] != 0;
+            bottom |= cells[height][j] != 0;
         }
-        neighborhood.neighbors = neighbors;
-        return neighborhood;
+        for (int i = 1; i <= height; i++) {
+            left |= cells[i][1] != 0;
+            right |= cells[i][width] != 0;
+        }
+        if (!(top || bottom || left || right)) return;
+
+        int rows = Math.max(8, height / 2), columns = Math.max(8, width / 2);
+        int up = top ? rows : 0, down = bottom ? rows : 0, west = left ? columns : 0, east = right ? columns : 0;
+        int[][] old = cells;
+        int oldHeight = height, oldWidth = width;
+        this.resize(height + up + down, width + west + east);
+        for (int i = 1; i <= oldHeight; i++) System.arraycopy(old[i], 1, cells[i + up], 1 + west, oldWidth);
+        this.rehash = true;
     }
 
     /**
-     * Allows to check whether a given position in the grid is in corners or not
+     * Allows to know whether a neighbor counts as alive, without any branch.
      *
-     * @param p the position of the cell
-     * @return boolean true if it's in a corner and false if not
+     * @param state the state of the neighbor
+     * @return int 1 if it is alive and 0 if not
      */
-    private boolean isInCorner(Position p)
+    private static int alive(int state)
     {
-        int i = p.getX(), j = p.getY();
-        return (i == MIN_BOUND && j == MIN_BOUND) || (i == MIN_BOUND && j == MAX_BOUND)
-                        || (i == MAX_BOUND && j == MIN_BOUND) || (i == MAX_BOUND && j == MAX_BOUND);
+        return state == ALIVE ? 1 : 0;
     }
 
     /**
-     * Allows to know exactly in which corner is located a given position
+     * Allows to change the status of cell. The rule gives the new state from a table, and the births and the
+     * deaths are counted without any branch. Only a cell that changes toggles its keys in the hash, when it is
+     * kept: most of the cells keep their state, and hashing them all would cost as much as a full rehash.
      *
-     * @param p the position
-     * @return int an integer representing the corner
+     * @param i the row of the cell in the matrix with its halo
+     * @param j the column of the cell in the matrix with its halo
+     * @param n the number of alive neighbors around that cell
      */
-    private int whichCorner(Position p)
+    private void changeState(int i, int j, int n)
     {
-        int i = p.getX(), j = p.getY();
-        if (i == MIN_BOUND && j == MIN_BOUND) return TOP_LEFT;
-        else if (i == MIN_BOUND && j == MAX_BOUND) return TOP_RIGHT;
-        else if (i == MAX_BOUND && j == MAX_BOUND) return BOTTOM_RIGHT;
-        else return BOTTOM_LEFT;
+        int state = cells[i][j], update = rule.next(state, n);
+        this.next[i][j] = update;
+        if (hashing && state != update) {
+            long index = (long) (i - 1) * width + j - 1;
+            this.hash ^= BoardHash.word(index, state) ^ BoardHash.word(index, update);
+        }
+        this.births += alive(update) & (alive(state) ^ 1);
+        this.deaths += alive(state) & (alive(update) ^ 1);
     }
 
     /**
-     * Allows to check whether a given position in the grid is in a border or not
+     * Allows to count the alive cells of the board, the dying states of a Generations rule being dead like they
+     * are for nextCell and for the births and the deaths.
      *
-     * @param p the position of the cell
-     * @return boolean true if it's in a border and false if not
+     * @return long the number of cells in the state 1
      */
-    private boolean isInBorder(Position p)
+    @Override
+    public long getPopulation()
+    {
+        long population = 0;
+        for (int i = 1; i <= height; i++)
+            for (int j = 1; j <= width; j++)
+                population += alive(cells[i][j]);
+        return population;
+    }
+
+    @Override
+    public Rule getRule()
     {
-        int i = p.getX(), j = p.getY();
-        return (
-                (i == MIN_BOUND || i == MAX_BOUND) && (j > MIN_BOUND && j < MAX_BOUND)
-        ) || (
-                (j == MIN_BOUND || j == MAX_BOUND) && (i > MIN_BOUND && i < MAX_BOUND)
-        );
+        return rule;
     }
 
     /**
-     * Allows to know exactly in which border is located a given position
+     * Allows to change the rule of the game, Generations rules included: the cells then take the values 0 to
+     * the number of states of the rule minus 1.
      *
-     * @param p the position
-     * @return int an integer representing the border
+     * @param rule the new rule
      */
-    private int whichBorder(Position p)
+    @Override
+    public void setRule(Rule rule)
     {
-        int i = p.getX(), j = p.getY();
-        if (i == MIN_BOUND && (j > MIN_BOUND && j < MAX_BOUND)) return BORDER_TOP;
-        else if ((i > MIN_BOUND && i < MAX_BOUND) && j == MAX_BOUND) return BORDER_RIGHT;
-        else if (i == MAX_BOUND && (j > MIN_BOUND && j < MAX_BOUND)) return BORDER_BOTTOM;
-        else return BORDER_LEFT;
+        if (boundary == Boundary.GROWING && rule.bornFromNothing())
+            throw new IllegalArgumentException("A growing board cannot apply the rule " + rule);
+        this.rule = rule;
     }
 
     /**
-     * Allows to calculate the number of neighbors a given position in the cell has.
-     *
-     * @param p the position
-     * @return int the number of neighbors
+     * @return Boundary what lies beyond the edges of the board
      */
-    private int evaluateNumberOfNeighbors(Position p)
+    public Boundary getBoundary()
     {
-        if (isInCorner(p)) return CORNER_NEIGHBORS;
-        else if (isInBorder(p)) return BORDER_NEIGHBORS;
-        else return CENTER_NEIGHBORS;
+        return boundary;
     }
 
     /**
-     * Allows to test if a cell is alive or not
+     * Allows to change what lies beyond the edges of the board
      *
-     * @param e the value of the cell
-     * @return boolean true if alive and false if not
+     * @param boundary the new boundary
+     */
+    public void setBoundary(Boundary boundary)
+    {
+        if (boundary == Boundary.GROWING && rule.bornFromNothing())
+            throw new IllegalArgumentException("A growing board cannot apply the rule " + rule);
+        this.boundary = boundary;
+    }
+
+    /**
+     * @return int the number of rows of the board, which changes when it grows
+     */
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return int the number of columns of the board, which changes when it grows
+     */
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Allows to find the next cell of a row in a given state, the dying states of a Generations rule being dead.
+     */
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        int[] row = cells[i + 1];
+        while (j < width && (row[j + 1] == ALIVE) != alive) j++;
+        return j;
+    }
+
+    @Override
+    public void setHashing(boolean hashing)
+    {
+        this.hashing = hashing;
+        this.rehash = true;
+    }
+
+    /**
+     * The births and the deaths are always counted, the Controller ignores this setting.
      */
-    private boolean isAlive(int e)
+    @Override
+    public void setCounting(boolean counting)
+    {
+    }
+
+    @Override
+    public long getBirths()
+    {
+        return births;
+    }
+
+    @Override
+    public long getDeaths()
     {
-        return e == ALIVE;
+        return deaths;
     }
 
-    private class Neighborhood
+    /**
+     * Allows to access the hash of the board. It is computed again when a growing board grows, the cells having
+     * moved in the matrix.
+     *
+     * @return long the hash of the board
+     */
+    @Override
+    public long getHash()
     {
-        /*
-         * -------------------------------------------------------------------------------------------------------------
-         * @className: Neighborhood
-         * @description: Represents a neighborhood in the matrix.
-         * @version: 0.1
-         * @author: Elias W. BA (eliaswalyba@gmail.com)
-         * @date: february 2017
-         * -------------------------------------------------------------------------------------------------------------
-         */
-
-        /**
-         * An object of type position to represent the position of the cell we wanna compute it's neighborhood.
-         */
-        private Position target;
-
-        /**
-         * A 2D array of integers to store the states of the neighbors of the cell the position in target
-         */
-        private int[][] neighbors;
-
-
-        /**
-         * The default constructor. This method does nothing but creating an object of type Neighborhood.
-         */
-        public Neighborhood(){}
+        if (rehash) {
+            hash = hash();
+            rehash = false;
+        }
+        return hash;
+    }
 
+    /**
+     * Allows to compute the hash of the board from scratch.
+     *
+     * @return long the XOR of the keys of the states of its cells
+     */
+    private long hash()
+    {
+        long hash = 0;
+        for (int i = 1; i <= height; i++)
+            for (int j = 1; j <= width; j++)
+                hash ^= BoardHash.word((long) (i - 1) * width + j - 1, cells[i][j]);
+        return hash;
     }
 
 }
@@ -0,0 +1,137 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public class CycleDetector
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CycleDetector
+     * @description: Finds out when a board became empty, stable or an oscillator, from the hashes of its generations
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The hashes of the last generations are kept in a ring (see BoardHash). As soon as the hash of a generation
+     * is the hash of the generation P before, the board repeats itself every P generations from then on: it is
+     * stable when P is 1 and an oscillator of period P otherwise (a board of spaceships on a torus is one too).
+     * An empty board hashes to 0. The ring bounds both the memory and the longest period found: a board cycling
+     * with a longer period is seen as running forever. Nothing is ever compared cell by cell.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * What the detector knows of the board
+     */
+    public enum Outcome { RUNNING, EMPTY, STABLE, OSCILLATOR }
+
+    /**
+     * The hashes of the last generations, the one of the generation g being at g % hashes.length
+     */
+    private final long[] hashes;
+
+    /**
+     * The number of consecutive generations recorded, and the last one
+     */
+    private long recorded, generation;
+
+    /**
+     * What the detector found, the period of the cycle and the generation it started at
+     */
+    private Outcome outcome = Outcome.RUNNING;
+    private int period;
+    private long start;
+
+    /**
+     * The constructor of the class
+     *
+     * @param maxPeriod the longest period to find
+     */
+    public CycleDetector(int maxPeriod)
+    {
+        if (maxPeriod <= 0) throw new IllegalArgumentException("The longest period must be positive: " + maxPeriod);
+        this.hashes = new long[maxPeriod + 1];
+    }
+
+    /**
+     * Allows to record the hash of a generation. Once a cycle is found, the next records are ignored until reset.
+     * A generation that does not follow the previous one starts a new history.
+     *
+     * @param generation the generation
+     * @param hash       its hash
+     * @return Outcome what is known of the board so far
+     */
+    public Outcome record(long generation, long hash)
+    {
+        if (outcome != Outcome.RUNNING) return outcome;
+        if (recorded > 0 && generation != this.generation + 1) recorded = 0;
+        this.generation = generation;
+        if (hash == 0) return this.found(Outcome.EMPTY, 1, generation);
+        int ring = hashes.length;
+        long depth = Math.min(recorded, ring - 1);
+        for (int p = 1; p <= depth; p++) {
+            if (hashes[(int) ((generation - p) % ring)] == hash)
+                return this.found(p == 1 ? Outcome.STABLE : Outcome.OSCILLATOR, p, generation - p);
+        }
+        hashes[(int) (generation % ring)] = hash;
+        recorded++;
+        return outcome;
+    }
+
+    /**
+     * Allows to remember the cycle found.
+     */
+    private Outcome found(Outcome outcome, int period, long start)
+    {
+        this.outcome = outcome;
+        this.period = period;
+        this.start = start;
+        return outcome;
+    }
+
+    /**
+     * Allows to forget the history, after an edit of the board for instance.
+     */
+    public void reset()
+    {
+        recorded = 0;
+        outcome = Outcome.RUNNING;
+        period = 0;
+        start = 0;
+    }
+
+    /**
+     * @return Outcome what is known of the board
+     */
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+
+    /**
+     * @return int the period of the cycle found, 1 for a stable or an empty board, 0 while running
+     */
+    public int getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * @return long the first generation of the cycle found
+     */
+    public long getStart()
+    {
+        return start;
+    }
+
+    /**
+     * Allows to find out the board of a far generation without computing it: once in a cycle, the generation g
+     * has the board of the generation g - P.
+     *
+     * @param from   the generation of the current board, in the cycle
+     * @param target the generation wanted, after from
+     * @return long the number of generations left to compute from the current board to get the target
+     */
+    public long remaining(long from, long target)
+    {
+        return outcome == Outcome.RUNNING ? target - from : (target - from) % period;
+    }
+
+}
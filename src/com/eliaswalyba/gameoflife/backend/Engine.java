@@ -0,0 +1,83 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public interface Engine
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Engine
+     * @description: The contract every stepping algorithm of the game has to fulfill
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * An engine owns the state of the board and knows how to compute the next generation from it.
+     * The rest of the application only talks to the board through a matrix of binaries (1 and 0), the
+     * same representation the Grid uses, so that engines with very different internal storages can be
+     * swapped without touching the UI.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Computes the next generation of the board.
+     */
+    void nextGeneration();
+
+    /**
+     * Allows to access the matrix of cells
+     *
+     * @return [][]int the matrix of cells
+     */
+    int[][] getCells();
+
+    /**
+     * Allows to mutate the matrix of cells
+     *
+     * @param cells int[][] the new matrix of cells
+     */
+    void setCells(int[][] cells);
+
+    /**
+     * Allows to copy the matrix of cells into a matrix owned by the caller, so that the engine can go on mutating
+     * its own storage. Engines able to fill the matrix without building a new one should override this method.
+     *
+     * @param target int[][] the matrix receiving the cells, with the dimensions of the board
+     */
+    default void copyCells(int[][] target)
+    {
+        int[][] cells = getCells();
+        for (int i = 0; i < cells.length; i++) System.arraycopy(cells[i], 0, target[i], 0, cells[i].length);
+    }
+
+    /**
+     * Allows to count the alive cells of the board. Engines keeping track of them should override this method.
+     *
+     * @return long the number of alive cells
+     */
+    default long getPopulation()
+    {
+        long population = 0;
+        for (int[] row : getCells()) for (int cell : row) if (cell != 0) population++;
+        return population;
+    }
+
+    /**
+     * Allows to access the rule applied at each generation
+     *
+     * @return Rule the rule, the game of life unless the engine supports others
+     */
+    default Rule getRule()
+    {
+        return Rule.LIFE;
+    }
+
+    /**
+     * Allows to change the rule applied at each generation. Engines supporting other rules than the game of life
+     * should override this method.
+     *
+     * @param rule the new rule
+     */
+    default void setRule(Rule rule)
+    {
+        if (!rule.isLife()) throw new IllegalArgumentException("This engine only supports " + Rule.LIFE);
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FrameSlot
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: FrameSlot
+     * @description: Hands the latest generation from the simulation thread to the UI without any lock
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * This is a triple buffer. The producer (the simulation thread) always owns the back buffer and the consumer
+     * (the UI) always owns the front buffer: each of them can read or write its own buffer freely. The third
+     * buffer sits in the middle, in an atomic integer holding its index and a flag telling whether it holds a
+     * frame the consumer has not seen yet.
+     * Publishing a frame swaps the back buffer with the middle one and polling swaps the middle buffer with the
+     * front one. If the producer publishes twice before the consumer polls, the first frame is simply overwritten:
+     * the consumer always gets the latest generation and never waits for the stale ones.
+     * A buffer holds the cells packed like in a BitEngine, (width + 63) / 64 words per row: the 3 buffers of an
+     * 8k x 8k board weigh 24 MB, where matrices of ints would weigh 768 MB.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The flag added to the index of the middle buffer when it holds a new frame
+     */
+    private static final int FRESH = 4;
+
+    /**
+     * The 3 buffers and the generations they hold
+     */
+    private final long[][] buffers;
+    private final long[] generations = new long[3];
+
+    /**
+     * The index of the middle buffer, with the FRESH flag
+     */
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    /**
+     * The indexes of the buffers owned by the producer and by the consumer
+     */
+    private int back = 0, front = 2;
+
+    /**
+     * The constructor of the class
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    public FrameSlot(int height, int width)
+    {
+        this.buffers = new long[3][height * ((width + 63) >>> 6)];
+    }
+
+    /**
+     * Allows the producer to access the words it has to fill before publishing them.
+     *
+     * @return long[] the back buffer
+     */
+    public long[] back()
+    {
+        return buffers[back];
+    }
+
+    /**
+     * Allows the producer to hand the back buffer to the consumer. The producer gets a new back buffer.
+     *
+     * @param generation the generation held by the back buffer
+     */
+    public void publish(long generation)
+    {
+        generations[back] = generation;
+        back = middle.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * Allows the consumer to take the latest frame published, if any.
+     *
+     * @return boolean true if the front buffer now holds a new frame
+     */
+    public boolean poll()
+    {
+        if ((middle.get() & FRESH) == 0) return false;
+        front = middle.getAndSet(front) & ~FRESH;
+        return true;
+    }
+
+    /**
+     * Allows the consumer to access the last frame it polled.
+     *
+     * @return long[] the front buffer
+     */
+    public long[] front()
+    {
+        return buffers[front];
+    }
+
+    /**
+     * @return long the generation held by the front buffer
+     */
+    public long frontGeneration()
+    {
+        return generations[front];
+    }
+
+}
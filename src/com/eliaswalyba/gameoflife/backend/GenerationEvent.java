@@ -0,0 +1,248 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+
+public final class GenerationEvent
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: GenerationEvent
+     * @description: The cells born and dead between two generations, and sometimes the whole board
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * An event takes the board from the generation getBase to the generation getGeneration, usually the next
+     * one: the cells of getBorn become alive and the cells of getDied become dead. A cell is packed in a long,
+     * its row in the 32 high bits and its column in the 32 low bits (see pack), and both arrays are sorted.
+     * A keyframe also holds the whole board, bit-packed like a BitEngine (see BitKernel): a subscriber that just
+     * arrived, or that missed some events, starts again from it. A keyframe that does not follow any known board
+     * has a base of -1 and no cells born nor dead.
+     * Several events can be merged into one spanning all their generations (see coalesce). The arrays of an event
+     * are shared by all its subscribers, they must not be modified.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * An array without any cell
+     */
+    private static final long[] NONE = new long[0];
+
+    /**
+     * The generation the changes start from, -1 if there is none, and the generation they lead to
+     */
+    private final long base, generation;
+
+    /**
+     * The number of rows and columns of the board
+     */
+    private final int height, width;
+
+    /**
+     * The packed cells that became alive and the ones that became dead, sorted
+     */
+    private final long[] born, died;
+
+    /**
+     * The whole board after the changes, null if this is not a keyframe
+     */
+    private final long[] cells;
+
+    /**
+     * The constructor of the class
+     *
+     * @param base       the generation the changes start from, -1 if there is none
+     * @param generation the generation the changes lead to
+     * @param height     the number of rows of the board
+     * @param width      the number of columns of the board
+     * @param born       the packed cells that became alive, sorted
+     * @param died       the packed cells that became dead, sorted
+     * @param cells      the whole board after the changes, bit-packed, or null
+     */
+    public GenerationEvent(long base, long generation, int height, int width, long[] born, long[] died,
+                           long[] cells)
+    {
+        this.base = base;
+        this.generation = generation;
+        this.height = height;
+        this.width = width;
+        this.born = born;
+        this.died = died;
+        this.cells = cells;
+    }
+
+    /**
+     * Allows to build a keyframe that does not follow any known board.
+     *
+     * @param generation the generation of the board
+     * @param height     the number of rows of the board
+     * @param width      the number of columns of the board
+     * @param cells      the board, bit-packed
+     * @return GenerationEvent the keyframe
+     */
+    public static GenerationEvent keyframe(long generation, int height, int width, long[] cells)
+    {
+        return new GenerationEvent(-1, generation, height, width, NONE, NONE, cells);
+    }
+
+    /**
+     * Allows to turn an event into a keyframe holding the given board.
+     *
+     * @param cells the whole board after the changes of the event, bit-packed
+     * @return GenerationEvent the same changes with the board
+     */
+    public GenerationEvent withCells(long[] cells)
+    {
+        return new GenerationEvent(base, generation, height, width, born, died, cells);
+    }
+
+    /**
+     * Allows to merge two consecutive events into a single one, from the base of the first one to the generation
+     * of the second one. A cell born then dead again is neither born nor dead. The result is a keyframe if any of
+     * the two events is, so that a subscriber waiting for a keyframe still gets one.
+     *
+     * @param first  the first event
+     * @param second the event following the first one
+     * @return GenerationEvent the merged event
+     */
+    public static GenerationEvent coalesce(GenerationEvent first, GenerationEvent second)
+    {
+        if (first.height != second.height || first.width != second.width || second.base < 0) return second;
+        long[] born = union(minus(first.born, second.died), minus(second.born, first.died));
+        long[] died = union(minus(first.died, second.born), minus(second.died, first.born));
+        long[] cells = second.cells;
+        if (cells == null && first.cells != null) {
+            /* The board of the first keyframe, moved forward by the changes of the second event */
+            cells = first.cells.clone();
+            int words = (first.width + 63) >>> 6;
+            for (long key : second.born) cells[row(key) * words + (column(key) >>> 6)] |= 1L << column(key);
+            for (long key : second.died) cells[row(key) * words + (column(key) >>> 6)] &= ~(1L << column(key));
+        }
+        return first.base < 0
+                ? new GenerationEvent(-1, second.generation, second.height, second.width, NONE, NONE, cells)
+                : new GenerationEvent(first.base, second.generation, second.height, second.width, born, died, cells);
+    }
+
+    /**
+     * @return long[] the sorted keys of x that are not in y, both being sorted
+     */
+    private static long[] minus(long[] x, long[] y)
+    {
+        long[] result = new long[x.length];
+        int n = 0, l = 0;
+        for (long key : x) {
+            while (l < y.length && y[l] < key) l++;
+            if (l == y.length || y[l] != key) result[n++] = key;
+        }
+        return n == x.length ? x : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * @return long[] the sorted keys of x and of y, both being sorted
+     */
+    private static long[] union(long[] x, long[] y)
+    {
+        if (y.length == 0) return x;
+        if (x.length == 0) return y;
+        long[] result = new long[x.length + y.length];
+        int n = 0, k = 0, l = 0;
+        while (k < x.length || l < y.length) {
+            long key = l == y.length || (k < x.length && x[k] <= y[l]) ? x[k++] : y[l++];
+            if (n == 0 || result[n - 1] != key) result[n++] = key;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Allows to pack the coordinates of a cell in a long.
+     *
+     * @param i the row of the cell
+     * @param j the column of the cell
+     * @return long the key of the cell, ordered like the cells row by row
+     */
+    public static long pack(int i, int j)
+    {
+        return ((long) i << 32) | (j & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return int the row of a packed cell
+     */
+    public static int row(long key)
+    {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * @return int the column of a packed cell
+     */
+    public static int column(long key)
+    {
+        return (int) key;
+    }
+
+    /**
+     * @return long the generation the changes start from, -1 for a keyframe that does not follow any board
+     */
+    public long getBase()
+    {
+        return base;
+    }
+
+    /**
+     * @return long the generation the changes lead to
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return int the number of rows of the board
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return int the number of columns of the board
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return long[] the packed cells that became alive, sorted, not to be modified
+     */
+    public long[] getBorn()
+    {
+        return born;
+    }
+
+    /**
+     * @return long[] the packed cells that became dead, sorted, not to be modified
+     */
+    public long[] getDied()
+    {
+        return died;
+    }
+
+    /**
+     * @return boolean true if the event holds the whole board
+     */
+    public boolean isKeyframe()
+    {
+        return cells != null;
+    }
+
+    /**
+     * @return long[] the whole board after the changes, bit-packed row by row (see BitKernel), null if this is
+     * not a keyframe; not to be modified
+     */
+    public long[] getCells()
+    {
+        return cells;
+    }
+
+}
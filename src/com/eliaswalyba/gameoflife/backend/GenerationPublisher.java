@@ -0,0 +1,403 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+public class GenerationPublisher implements Flow.Publisher<GenerationEvent>, AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: GenerationPublisher
+     * @description: Publishes the changes of each generation to subscribers, without ever waiting for them
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The thread running the engine calls publish after each generation. The publisher keeps the previous board,
+     * bit-packed, and compares it with the new one a word at a time: only the words that changed are looked at
+     * to list the cells born and dead (see GenerationEvent). A BitEngine is copied word for word, the other
+     * engines run by run, never through a matrix of ints. Every keyframeInterval generations the event also
+     * holds the whole board. Nothing is done while there is no subscriber.
+     *
+     * Each subscriber has its own queue of at most capacity events, emptied by a task of the executor as fast as
+     * the subscriber asks for them (see Flow.Subscription). When its queue is full, the new event is, as chosen
+     * by the subscriber or else by the publisher:
+     *      - DROP: dropped, and the next event given to the subscriber is a keyframe so that it can start again
+     *      - COALESCE: merged with the last event of the queue, the subscriber gets all the changes, later
+     *      - BLOCK: queued once the subscriber made room, the simulation waiting for it
+     * Only BLOCK can slow the simulation down, the slow subscribers never slow the other ones.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * What is done with an event when the queue of a subscriber is full
+     */
+    public enum Backpressure { DROP, COALESCE, BLOCK }
+
+    /**
+     * The subscriptions still running
+     */
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * The executor delivering the events to the subscribers
+     */
+    private final Executor executor;
+
+    /**
+     * What is done with an event when the queue of a subscriber is full, unless it asked for something else
+     */
+    private final Backpressure backpressure;
+
+    /**
+     * The number of events a subscriber can be late, and the number of generations between two keyframes
+     */
+    private final int capacity, keyframeInterval;
+
+    /**
+     * The number of rows and columns of the previous board, and the number of words in a row
+     */
+    private int height, width, words;
+
+    /**
+     * The previous board, the board being published and whether the previous board is known
+     */
+    private long[] previous = new long[0], current = new long[0];
+    private boolean known;
+
+    /**
+     * The generation of the previous board
+     */
+    private long generation;
+
+    /**
+     * The cells born and dead being listed
+     */
+    private long[] born = new long[64], died = new long[64];
+    private int bornCount, diedCount;
+
+    /**
+     * The event being published and its keyframe, built once for all the subscribers needing it
+     */
+    private GenerationEvent event, keyframe;
+
+    /**
+     * Whether the publisher is closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * The constructor of a publisher delivering the events on the common fork/join pool
+     *
+     * @param backpressure     what is done with an event when the queue of a subscriber is full
+     * @param capacity         the number of events a subscriber can be late
+     * @param keyframeInterval the number of generations between two keyframes
+     */
+    public GenerationPublisher(Backpressure backpressure, int capacity, int keyframeInterval)
+    {
+        this(backpressure, capacity, keyframeInterval, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The constructor of the class
+     *
+     * @param backpressure     what is done with an event when the queue of a subscriber is full
+     * @param capacity         the number of events a subscriber can be late
+     * @param keyframeInterval the number of generations between two keyframes
+     * @param executor         the executor delivering the events to the subscribers
+     */
+    public GenerationPublisher(Backpressure backpressure, int capacity, int keyframeInterval, Executor executor)
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        if (keyframeInterval <= 0)
+            throw new IllegalArgumentException("The keyframe interval must be positive: " + keyframeInterval);
+        this.backpressure = backpressure;
+        this.capacity = capacity;
+        this.keyframeInterval = keyframeInterval;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super GenerationEvent> subscriber)
+    {
+        this.subscribe(subscriber, backpressure);
+    }
+
+    /**
+     * Allows to subscribe with a backpressure of its own, a subscriber that must see every generation blocking
+     * while the others coalesce for instance.
+     *
+     * @param subscriber   the subscriber
+     * @param backpressure what is done with an event when its queue is full
+     */
+    public void subscribe(Flow.Subscriber<? super GenerationEvent> subscriber, Backpressure backpressure)
+    {
+        Subscription subscription = new Subscription(subscriber, backpressure);
+        if (!closed) subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) subscription.complete();
+    }
+
+    /**
+     * @return boolean true if someone is subscribed
+     */
+    public boolean hasSubscribers()
+    {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Allows to publish a board, on the thread running the engine, after a generation or an edit.
+     *
+     * @param generation the generation of the board
+     * @param board      the board
+     */
+    public void publish(long generation, CellSource board)
+    {
+        if (closed || subscriptions.isEmpty()) {
+            /* The boards nobody saw are not kept, the next subscriber starts from a keyframe anyway */
+            known = false;
+            return;
+        }
+        if (board.getHeight() != height || board.getWidth() != width) {
+            height = board.getHeight();
+            width = board.getWidth();
+            words = (width + 63) >>> 6;
+            previous = new long[height * words];
+            current = new long[height * words];
+            known = false;
+        }
+        CellSource.toWords(board, current);
+        keyframe = null;
+        if (known) {
+            this.compare();
+            event = new GenerationEvent(this.generation, generation, height, width,
+                    Arrays.copyOf(born, bornCount), Arrays.copyOf(died, diedCount), null);
+            if (generation % keyframeInterval == 0) event = this.keyframe();
+        } else {
+            event = GenerationEvent.keyframe(generation, height, width, current.clone());
+            keyframe = event;
+        }
+        for (Subscription subscription : subscriptions) subscription.offer(event);
+        long[] t = previous;
+        previous = current;
+        current = t;
+        this.generation = generation;
+        known = true;
+    }
+
+    /**
+     * Allows to list the cells born and dead between the previous board and the current one.
+     */
+    private void compare()
+    {
+        bornCount = 0;
+        diedCount = 0;
+        for (int k = 0; k < current.length; k++) {
+            long before = previous[k], after = current[k];
+            if (before == after) continue;
+            int i = k / words, column = (k % words) << 6;
+            for (long bits = after & ~before; bits != 0; bits &= bits - 1) {
+                if (bornCount == born.length) born = Arrays.copyOf(born, bornCount << 1);
+                born[bornCount++] = GenerationEvent.pack(i, column + Long.numberOfTrailingZeros(bits));
+            }
+            for (long bits = before & ~after; bits != 0; bits &= bits - 1) {
+                if (diedCount == died.length) died = Arrays.copyOf(died, diedCount << 1);
+                died[diedCount++] = GenerationEvent.pack(i, column + Long.numberOfTrailingZeros(bits));
+            }
+        }
+    }
+
+    /**
+     * @return GenerationEvent the event being published with the whole board, built the first time it is needed
+     */
+    private GenerationEvent keyframe()
+    {
+        if (keyframe == null) keyframe = event.isKeyframe() ? event : event.withCells(current.clone());
+        return keyframe;
+    }
+
+    /**
+     * Allows to complete all the subscriptions once their queued events are delivered. Nothing is published
+     * anymore.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        for (Subscription subscription : subscriptions) subscription.complete();
+    }
+
+    private final class Subscription implements Flow.Subscription, Runnable
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Subscription
+         * @description: The queue of a subscriber, emptied by a task of the executor as fast as it asks for events
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The subscriber
+         */
+        private final Flow.Subscriber<? super GenerationEvent> subscriber;
+
+        /**
+         * What is done with an event when the queue is full
+         */
+        private final Backpressure backpressure;
+
+        /**
+         * The events not delivered yet
+         */
+        private final ArrayDeque<GenerationEvent> queue = new ArrayDeque<>();
+
+        /**
+         * The number of events the subscriber asked for and did not get yet
+         */
+        private long demand;
+
+        /**
+         * Whether a task delivers the events, whether the subscriber needs a keyframe, and whether the
+         * subscription is cancelled or has to be completed
+         */
+        private boolean scheduled, lost = true, cancelled, completing;
+
+        /**
+         * Allows to create the subscription of a subscriber.
+         *
+         * @param subscriber   the subscriber
+         * @param backpressure what is done with an event when the queue is full
+         */
+        Subscription(Flow.Subscriber<? super GenerationEvent> subscriber, Backpressure backpressure)
+        {
+            this.subscriber = subscriber;
+            this.backpressure = backpressure;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0) {
+                this.cancel();
+                executor.execute(() -> subscriber.onError(
+                        new IllegalArgumentException("The number of events asked must be positive: " + n)));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                this.schedule();
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            synchronized (this) {
+                cancelled = true;
+                queue.clear();
+                this.notifyAll();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Allows to queue an event, on the thread publishing them.
+         *
+         * @param event the event
+         */
+        synchronized void offer(GenerationEvent event)
+        {
+            if (cancelled || completing) return;
+            if (lost) {
+                event = keyframe();
+                lost = false;
+            }
+            if (queue.size() == capacity) {
+                switch (backpressure) {
+                    case DROP:
+                        lost = true;
+                        return;
+                    case COALESCE:
+                        event = GenerationEvent.coalesce(queue.pollLast(), event);
+                        break;
+                    case BLOCK:
+                        while (queue.size() == capacity && !cancelled && !completing) {
+                            try {
+                                this.wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                        if (cancelled || completing) return;
+                        break;
+                }
+            }
+            queue.add(event);
+            this.schedule();
+        }
+
+        /**
+         * Allows to deliver the events left and then to complete the subscription.
+         */
+        synchronized void complete()
+        {
+            completing = true;
+            this.notifyAll();
+            this.schedule();
+        }
+
+        /**
+         * Allows to start a task delivering the events, if there is something to deliver and none is running.
+         */
+        private void schedule()
+        {
+            if (scheduled || cancelled) return;
+            if ((demand > 0 && !queue.isEmpty()) || (completing && queue.isEmpty())) {
+                scheduled = true;
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * The task delivering the events, one at a time, while the subscriber asks for them.
+         */
+        @Override
+        public void run()
+        {
+            while (true) {
+                GenerationEvent event;
+                synchronized (this) {
+                    if (cancelled) return;
+                    if (completing && queue.isEmpty()) {
+                        cancelled = true;
+                        subscriptions.remove(this);
+                        break;
+                    }
+                    if (demand == 0 || queue.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                    event = queue.poll();
+                    demand--;
+                    this.notifyAll();
+                }
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    this.cancel();
+                    subscriber.onError(e);
+                    return;
+                }
+            }
+            subscriber.onComplete();
+        }
+
+    }
+
+}
@@ -0,0 +1,910 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public class HashLifeEngine implements Engine, CellSink, CellSource, Plane
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: HashLifeEngine
+     * @description: An engine able to jump over huge numbers of generations using the Hashlife algorithm
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The universe is a quadtree: a node of level k is a square of 2^k x 2^k cells made of 4 nodes of level k-1,
+     * the nodes of level 0 being the cells themselves. All the nodes are canonical: two nodes with the same content
+     * are the same object, which is ensured by building them only through the join method and its hash table.
+     * Thanks to that a node can remember its result: the centered square of level k-1 it becomes 2^(k-2)
+     * generations later. Computing it for one node computes it for all its copies, and a repetitive pattern
+     * jumps ahead in time and space at an exponential pace.
+     *
+     * Unlike the Controller, Hashlife simulates an infinite plane. The matrix given to setCells is placed at the
+     * coordinates (0, 0) and getCells returns the same window of the plane: what leaves it is not lost, it is
+     * simply not visible (see Plane).
+     * Any rule of 2 states can be applied (see Rule), except the ones giving birth to a cell without neighbors.
+     * Changing the rule forgets all the results.
+     * The hash table keeps every node ever built. On chaotic patterns it can exhaust the heap, that's why it is
+     * possible to give the engine a maximum number of nodes: when it is exceeded, between two steps, we only keep
+     * the nodes of the current universe and we forget all the results.
+     *
+     * A pattern streamed row by row (see CellSink) is gathered in bands of 64 rows: each band is turned into
+     * canonical nodes of 64x64 cells before the next one is read, so loading a huge pattern only needs one band
+     * and the canonical nodes. A Macrocell file goes even more directly through a QuadTree.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    private static final class Node
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Node
+         * @description: Represents a canonical square of 2^level x 2^level cells.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The 4 quadrants of the square, null for a cell
+         */
+        private final Node nw, ne, sw, se;
+
+        /**
+         * The level of the node, its side being 2^level cells
+         */
+        private final int level;
+
+        /**
+         * The number of alive cells in the square
+         */
+        private final long population;
+
+        /**
+         * A unique number used to hash the nodes built on top of this one
+         */
+        private final long id;
+
+        /**
+         * The centered node 2^(level-2) generations later, and the centered node 2^slowStep generations later
+         */
+        private Node result, slow;
+
+        /**
+         * The number of generations (as a power of 2) the slow result stands for, -1 when there is none
+         */
+        private int slowStep = -1;
+
+        /**
+         * The next node in the same bucket of the hash table
+         */
+        private Node next;
+
+        /**
+         * The last collection that kept this node
+         */
+        private int mark;
+
+        /**
+         * Allows to create a node.
+         *
+         * @param nw the north west quadrant
+         * @param ne the north east quadrant
+         * @param sw the south west quadrant
+         * @param se the south east quadrant
+         * @param level the level of the node
+         * @param population the number of alive cells
+         * @param id the unique number of the node
+         */
+        Node(Node nw, Node ne, Node sw, Node se, int level, long population, long id)
+        {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.level = level;
+            this.population = population;
+            this.id = id;
+        }
+
+    }
+
+    /**
+     * The highest level of the universe: the coordinates of its cells must fit in a long
+     */
+    private static final int MAX_LEVEL = 62;
+
+    /**
+     * The abscissa returned by find when there is no cell, the others being in the universe
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * The dead and the alive cells
+     */
+    private final Node off = new Node(null, null, null, null, 0, 0, 0),
+                       on  = new Node(null, null, null, null, 0, 1, 1);
+
+    /**
+     * The hash table holding all the canonical nodes
+     */
+    private Node[] table = new Node[1 << 10];
+
+    /**
+     * The number of nodes in the hash table, the last id given to a node and the maximum number of nodes
+     * (0 for no limit)
+     */
+    private long size, lastId = 1, maxNodes;
+
+    /**
+     * The number of the current collection
+     */
+    private int collections;
+
+    /**
+     * The rule applied at each generation
+     */
+    private Rule rule = Rule.LIFE;
+
+    /**
+     * The canonical empty nodes of each level
+     */
+    private Node[] empties = new Node[MAX_LEVEL + 2];
+
+    /**
+     * The whole universe, centered on the coordinates (0, 0)
+     */
+    private Node root;
+
+    /**
+     * The dimensions of the window of the plane seen through getCells and setCells
+     */
+    private int height, width;
+
+    /**
+     * The number of generations computed since the last setCells
+     */
+    private long generation;
+
+    /**
+     * The level of the nodes built from a band of rows being loaded
+     */
+    private static final int TILE_LEVEL = 6;
+
+    /**
+     * While a pattern is being loaded: the band of 64 rows being received, bit-packed, and its first row
+     */
+    private long[] band;
+    private int bandRow, bandWords;
+
+    /**
+     * While a pattern is being loaded: the nodes of 64x64 cells built from the bands already received
+     */
+    private Node[][] tiles;
+
+    /**
+     * The constructor of the class
+     *
+     * @param cells [][]int the grids state to populate in the engine
+     */
+    public HashLifeEngine(int[][] cells)
+    {
+        this(cells, 0);
+    }
+
+    /**
+     * The constructor of an engine with a bounded memory
+     *
+     * @param cells    [][]int the grids state to populate in the engine
+     * @param maxNodes the number of nodes above which the hash table is collected, 0 for no limit
+     */
+    public HashLifeEngine(int[][] cells, long maxNodes)
+    {
+        this.maxNodes = maxNodes;
+        this.setCells(cells);
+    }
+
+    @Override
+    public void nextGeneration()
+    {
+        this.advance(1);
+    }
+
+    /**
+     * Allows to compute the universe a given number of generations later.
+     * The number of generations is split in powers of 2 and each of them is computed in one step of the tree.
+     *
+     * @param generations the number of generations to compute
+     */
+    public void advance(long generations)
+    {
+        if (generations < 0) throw new IllegalArgumentException("Cannot go back in time: " + generations);
+        while (generations != 0) {
+            int j = Long.numberOfTrailingZeros(generations);
+            if (maxNodes > 0 && size > maxNodes) collect();
+            while (root.level < j + 3 || center(center(root)).population != root.population) {
+                if (root.level == MAX_LEVEL)
+                    throw new IllegalStateException("The pattern outgrew the biggest universe possible");
+                root = expand(root);
+            }
+            root = step(root, j);
+            generation += 1L << j;
+            generations &= generations - 1;
+        }
+    }
+
+    /**
+     * Allows to compute the centered node of level k-1 of a node of level k, 2^j generations later.
+     *
+     * @param n the node
+     * @param j the number of generations as a power of 2, at most level - 2
+     * @return Node the center of the node in the future
+     */
+    private Node step(Node n, int j)
+    {
+        if (n.population == 0) return empty(n.level - 1);
+        boolean fast = j == n.level - 2;
+        if (fast && n.result != null) return n.result;
+        if (!fast && n.slowStep == j) return n.slow;
+
+        Node r;
+        if (n.level == 2) {
+            r = base(n);
+        } else {
+            Node n00 = n.nw, n01 = horizontal(n.nw, n.ne), n02 = n.ne,
+                 n10 = vertical(n.nw, n.sw), n11 = center(n), n12 = vertical(n.ne, n.se),
+                 n20 = n.sw, n21 = horizontal(n.sw, n.se), n22 = n.se;
+            Node r00, r01, r02, r10, r11, r12, r20, r21, r22;
+            int k = fast ? j - 1 : j;
+            if (fast) {
+                r00 = step(n00, k); r01 = step(n01, k); r02 = step(n02, k);
+                r10 = step(n10, k); r11 = step(n11, k); r12 = step(n12, k);
+                r20 = step(n20, k); r21 = step(n21, k); r22 = step(n22, k);
+            } else {
+                r00 = center(n00); r01 = center(n01); r02 = center(n02);
+                r10 = center(n10); r11 = center(n11); r12 = center(n12);
+                r20 = center(n20); r21 = center(n21); r22 = center(n22);
+            }
+            r = join(
+                    step(join(r00, r01, r10, r11), k),
+                    step(join(r01, r02, r11, r12), k),
+                    step(join(r10, r11, r20, r21), k),
+                    step(join(r11, r12, r21, r22), k)
+            );
+        }
+
+        if (fast) n.result = r;
+        else {
+            n.slow = r;
+            n.slowStep = j;
+        }
+        return r;
+    }
+
+    /**
+     * Allows to compute by brute force the centered 2x2 cells of a 4x4 node one generation later.
+     *
+     * @param n the node of level 2
+     * @return Node the node of level 1 in the next generation
+     */
+    private Node base(Node n)
+    {
+        int bits = 0;
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 4; x++)
+                if (cell(n, x, y)) bits |= 1 << (y * 4 + x);
+        return join(
+                nextCell(bits, 1, 1), nextCell(bits, 2, 1),
+                nextCell(bits, 1, 2), nextCell(bits, 2, 2)
+        );
+    }
+
+    /**
+     * Allows to apply the rule on one of the centered cells of a 4x4 node.
+     *
+     * @param bits the 16 cells of the node, row by row
+     * @param x the abscissa of the cell in the node
+     * @param y the ordinate of the cell in the node
+     * @return Node the cell in the next generation
+     */
+    private Node nextCell(int bits, int x, int y)
+    {
+        int n = 0;
+        for (int dy = -1; dy <= 1; dy++)
+            for (int dx = -1; dx <= 1; dx++)
+                if ((dx != 0 || dy != 0) && (bits & (1 << ((y + dy) * 4 + x + dx))) != 0) n++;
+        int state = bits >>> (y * 4 + x) & 1;
+        return rule.next(state, n) != 0 ? on : off;
+    }
+
+    /**
+     * Allows to read a cell of a 4x4 node.
+     *
+     * @param n the node of level 2
+     * @param x the abscissa of the cell in the node
+     * @param y the ordinate of the cell in the node
+     * @return boolean true if alive and false if not
+     */
+    private static boolean cell(Node n, int x, int y)
+    {
+        Node q = y < 2 ? (x < 2 ? n.nw : n.ne) : (x < 2 ? n.sw : n.se);
+        Node c = (y & 1) == 0 ? ((x & 1) == 0 ? q.nw : q.ne) : ((x & 1) == 0 ? q.sw : q.se);
+        return c.population != 0;
+    }
+
+    /**
+     * Allows to get the canonical node made of 4 quadrants.
+     *
+     * @return Node the node, built only if it does not exist yet
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se)
+    {
+        int index = hash(nw, ne, sw, se) & (table.length - 1);
+        for (Node n = table[index]; n != null; n = n.next)
+            if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) return n;
+
+        Node n = new Node(nw, ne, sw, se, nw.level + 1,
+                nw.population + ne.population + sw.population + se.population, ++lastId);
+        insert(n);
+        return n;
+    }
+
+    /**
+     * Allows to add a node in the hash table, growing it when it is too full.
+     *
+     * @param n the node to add
+     */
+    private void insert(Node n)
+    {
+        if (++size > (table.length >> 1) + (table.length >> 2)) {
+            Node[] old = table;
+            table = new Node[old.length << 1];
+            for (Node bucket : old) {
+                while (bucket != null) {
+                    Node following = bucket.next;
+                    int index = hash(bucket.nw, bucket.ne, bucket.sw, bucket.se) & (table.length - 1);
+                    bucket.next = table[index];
+                    table[index] = bucket;
+                    bucket = following;
+                }
+            }
+        }
+        int index = hash(n.nw, n.ne, n.sw, n.se) & (table.length - 1);
+        n.next = table[index];
+        table[index] = n;
+    }
+
+    /**
+     * Allows to hash the 4 quadrants of a node.
+     *
+     * @return int the hash
+     */
+    private static int hash(Node nw, Node ne, Node sw, Node se)
+    {
+        long h = nw.id;
+        h = h * 0x9E3779B97F4A7C15L + ne.id;
+        h = h * 0x9E3779B97F4A7C15L + sw.id;
+        h = h * 0x9E3779B97F4A7C15L + se.id;
+        return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+    }
+
+    /**
+     * Allows to forget all the nodes that are not part of the current universe, and all the results.
+     */
+    private void collect()
+    {
+        collections++;
+        table = new Node[table.length];
+        size = 0;
+        empties = new Node[empties.length];
+        keep(root);
+    }
+
+    /**
+     * Allows to put back a node and all its descendants in the hash table.
+     *
+     * @param n the node to keep
+     */
+    private void keep(Node n)
+    {
+        if (n.level == 0 || n.mark == collections) return;
+        n.mark = collections;
+        n.result = null;
+        n.slow = null;
+        n.slowStep = -1;
+        keep(n.nw);
+        keep(n.ne);
+        keep(n.sw);
+        keep(n.se);
+        insert(n);
+    }
+
+    /**
+     * @return Node the canonical empty node of the given level
+     */
+    private Node empty(int level)
+    {
+        if (level == 0) return off;
+        if (empties[level] == null) {
+            Node e = empty(level - 1);
+            empties[level] = join(e, e, e, e);
+        }
+        return empties[level];
+    }
+
+    /**
+     * @return Node the node of level k-1 at the center of a node of level k
+     */
+    private Node center(Node n)
+    {
+        return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+    }
+
+    /**
+     * @return Node the node of level k-1 at the middle of two nodes of level k side by side
+     */
+    private Node horizontal(Node w, Node e)
+    {
+        return join(w.ne, e.nw, w.se, e.sw);
+    }
+
+    /**
+     * @return Node the node of level k-1 at the middle of two nodes of level k one above the other
+     */
+    private Node vertical(Node n, Node s)
+    {
+        return join(n.sw, n.se, s.nw, s.ne);
+    }
+
+    /**
+     * @return Node a node of level k+1 with the same center and the given node of level k in its middle
+     */
+    private Node expand(Node n)
+    {
+        Node e = empty(n.level - 1);
+        return join(
+                join(e, e, e, n.nw), join(e, e, n.ne, e),
+                join(e, n.sw, e, e), join(n.se, e, e, e)
+        );
+    }
+
+    @Override
+    public int[][] getCells()
+    {
+        int[][] cells = new int[height][width];
+        long half = 1L << (root.level - 1);
+        this.extract(root, -half, -half, cells);
+        return cells;
+    }
+
+    /**
+     * Allows to copy the alive cells of a node that are in the window of the plane.
+     *
+     * @param n the node
+     * @param x the abscissa of the north west cell of the node
+     * @param y the ordinate of the north west cell of the node
+     * @param cells the window to fill
+     */
+    private void extract(Node n, long x, long y, int[][] cells)
+    {
+        long side = 1L << n.level;
+        if (n.population == 0 || x >= width || y >= height || x + side <= 0 || y + side <= 0) return;
+        if (n.level == 0) {
+            cells[(int) y][(int) x] = 1;
+            return;
+        }
+        long half = side >>> 1;
+        extract(n.nw, x, y, cells);
+        extract(n.ne, x + half, y, cells);
+        extract(n.sw, x, y + half, cells);
+        extract(n.se, x + half, y + half, cells);
+    }
+
+    @Override
+    public void setCells(int[][] cells)
+    {
+        this.height = cells.length;
+        this.width = cells.length == 0 ? 0 : cells[0].length;
+        this.generation = 0;
+        int level = 3;
+        while ((1L << (level - 1)) < Math.max(height, width)) level++;
+        long half = 1L << (level - 1);
+        this.root = build(cells, level, -half, -half);
+    }
+
+    /**
+     * Allows to build the node covering a square of the plane from the window given to setCells.
+     *
+     * @param cells the window of the plane
+     * @param level the level of the node
+     * @param x the abscissa of the north west cell of the node
+     * @param y the ordinate of the north west cell of the node
+     * @return Node the canonical node
+     */
+    private Node build(int[][] cells, int level, long x, long y)
+    {
+        long side = 1L << level;
+        if (x >= width || y >= height || x + side <= 0 || y + side <= 0) return empty(level);
+        if (level == 0) return cells[(int) y][(int) x] != 0 ? on : off;
+        long half = side >>> 1;
+        return join(
+                build(cells, level - 1, x, y), build(cells, level - 1, x + half, y),
+                build(cells, level - 1, x, y + half), build(cells, level - 1, x + half, y + half)
+        );
+    }
+
+    @Override
+    public void begin(int height, int width)
+    {
+        if (height < 0 || width < 0)
+            throw new IllegalArgumentException("The board cannot be of size " + height + "x" + width);
+        this.height = height;
+        this.width = width;
+        this.generation = 0;
+        this.bandRow = 0;
+        this.bandWords = (width + 63) >>> 6;
+        this.band = new long[bandWords << TILE_LEVEL];
+        this.tiles = new Node[(height + 63) >>> TILE_LEVEL][bandWords];
+    }
+
+    @Override
+    public void setRun(int i, int j, int length)
+    {
+        while (i >= bandRow + 64) this.flush();
+        int base = (i - bandRow) * bandWords, to = j + length;
+        while (j < to) {
+            int end = Math.min(to, (j & ~63) + 64);
+            band[base + (j >>> 6)] |= (-1L >>> (64 - (end - j))) << j;
+            j = end;
+        }
+    }
+
+    @Override
+    public void end()
+    {
+        while (bandRow < height) this.flush();
+        int level = TILE_LEVEL + 1;
+        while ((1L << (level - 1)) < Math.max(height, width)) level++;
+        long half = 1L << (level - 1);
+        this.root = assemble(level, -half, -half);
+        this.band = null;
+        this.tiles = null;
+    }
+
+    /**
+     * Allows to turn the band of rows received into nodes of 64x64 cells, and to start the next band.
+     */
+    private void flush()
+    {
+        for (int c = 0; c < bandWords; c++) tiles[bandRow >>> TILE_LEVEL][c] = tile(TILE_LEVEL, 0, c << 6);
+        Arrays.fill(band, 0);
+        bandRow += 64;
+    }
+
+    /**
+     * Allows to build the node covering a square of the band of rows being loaded.
+     *
+     * @param level the level of the node, at most the level of a tile
+     * @param y     the row of the north west cell of the node in the band
+     * @param x     the column of the north west cell of the node
+     * @return Node the canonical node
+     */
+    private Node tile(int level, int y, int x)
+    {
+        int side = 1 << level;
+        long mask = (-1L >>> (64 - side)) << x;
+        boolean empty = true;
+        for (int r = y; r < y + side && empty; r++) empty = (band[r * bandWords + (x >>> 6)] & mask) == 0;
+        if (empty) return empty(level);
+        if (level == 0) return on;
+        int half = side >>> 1;
+        return join(
+                tile(level - 1, y, x), tile(level - 1, y, x + half),
+                tile(level - 1, y + half, x), tile(level - 1, y + half, x + half)
+        );
+    }
+
+    /**
+     * Allows to build the node covering a square of the plane from the tiles of a loaded pattern.
+     *
+     * @param level the level of the node, at least the level of a tile
+     * @param x the abscissa of the north west cell of the node
+     * @param y the ordinate of the north west cell of the node
+     * @return Node the canonical node
+     */
+    private Node assemble(int level, long x, long y)
+    {
+        long side = 1L << level;
+        if (x >= width || y >= height || x + side <= 0 || y + side <= 0) return empty(level);
+        if (level == TILE_LEVEL) return tiles[(int) (y >>> TILE_LEVEL)][(int) (x >>> TILE_LEVEL)];
+        long half = side >>> 1;
+        return join(
+                assemble(level - 1, x, y), assemble(level - 1, x + half, y),
+                assemble(level - 1, x, y + half), assemble(level - 1, x + half, y + half)
+        );
+    }
+
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        return next(root, 0, 0, width, i, j, alive);
+    }
+
+    /**
+     * Allows to find the next cell of a row of a rectangle of the plane in a given state.
+     *
+     * @param universe the root of the universe
+     * @param top      the first row of the rectangle
+     * @param left     the first column of the rectangle
+     * @param width    the number of columns of the rectangle
+     * @param i        the row in the rectangle
+     * @param j        the first column of the rectangle to look at
+     * @param alive    the state looked for
+     * @return int the column in the rectangle of the first cell at or after j in this state, the width if none
+     */
+    private static int next(Node universe, long top, long left, int width, int i, int j, boolean alive)
+    {
+        if (j >= width) return width;
+        long half = 1L << (universe.level - 1), row = top + i;
+        long found = find(universe, -half, -half, row, left + j, alive);
+        if (found != NONE) return (int) Math.min(found - left, width);
+        if (alive) return width;
+        /* The plane beyond the universe is dead */
+        return (int) Math.min(row < -half || row >= half ? j : Math.max(left + j, half) - left, width);
+    }
+
+    /**
+     * Allows to find the first cell in a given state of a row of a node, at or after a column.
+     *
+     * @param n     the node
+     * @param x     the abscissa of the north west cell of the node
+     * @param y     the ordinate of the north west cell of the node
+     * @param row   the ordinate of the row
+     * @param from  the first abscissa to look at
+     * @param alive the state looked for
+     * @return long the abscissa of the cell, NONE if the node has none
+     */
+    private static long find(Node n, long x, long y, long row, long from, boolean alive)
+    {
+        long side = 1L << n.level;
+        if (row < y || row >= y + side || x + side <= from) return NONE;
+        boolean full = n.level < 32 && n.population == 1L << (2 * n.level);
+        if (n.population == 0) return alive ? NONE : Math.max(x, from);
+        if (full) return alive ? Math.max(x, from) : NONE;
+        long half = side >>> 1;
+        boolean north = row < y + half;
+        long top = north ? y : y + half;
+        long found = find(north ? n.nw : n.sw, x, top, row, from, alive);
+        return found != NONE ? found : find(north ? n.ne : n.se, x + half, top, row, from, alive);
+    }
+
+    @Override
+    public long[] getBounds()
+    {
+        if (root.population == 0) return new long[]{0, 0, 1, 1};
+        long half = 1L << (root.level - 1);
+        long north = first(root, -half, true), west = first(root, -half, false);
+        long south = last(root, -half, true), east = last(root, -half, false);
+        return new long[]{north, west, south - north + 1, east - west + 1};
+    }
+
+    /**
+     * Allows to find the first row (or column) of a node holding an alive cell. The halves are searched from the
+     * north (or the west) and the second one only when the first one is empty.
+     *
+     * @param n    the node
+     * @param at   the first row (or column) of the node
+     * @param rows true for a row, false for a column
+     * @return long the row (or column), Long.MAX_VALUE if the node is empty
+     */
+    private static long first(Node n, long at, boolean rows)
+    {
+        if (n.population == 0) return Long.MAX_VALUE;
+        if (n.level == 0) return at;
+        long half = 1L << (n.level - 1);
+        long found = Math.min(first(n.nw, at, rows), first(rows ? n.ne : n.sw, at, rows));
+        if (found != Long.MAX_VALUE) return found;
+        return Math.min(first(rows ? n.sw : n.ne, at + half, rows), first(n.se, at + half, rows));
+    }
+
+    /**
+     * Allows to find the last row (or column) of a node holding an alive cell.
+     *
+     * @param n    the node
+     * @param at   the first row (or column) of the node
+     * @param rows true for a row, false for a column
+     * @return long the row (or column), Long.MIN_VALUE if the node is empty
+     */
+    private static long last(Node n, long at, boolean rows)
+    {
+        if (n.population == 0) return Long.MIN_VALUE;
+        if (n.level == 0) return at;
+        long half = 1L << (n.level - 1);
+        long found = Math.max(last(rows ? n.sw : n.ne, at + half, rows), last(n.se, at + half, rows));
+        if (found != Long.MIN_VALUE) return found;
+        return Math.max(last(n.nw, at, rows), last(rows ? n.ne : n.sw, at, rows));
+    }
+
+    @Override
+    public CellSource window(long top, long left, int height, int width)
+    {
+        Node universe = root;
+        return new CellSource()
+        {
+            @Override
+            public int getHeight()
+            {
+                return height;
+            }
+
+            @Override
+            public int getWidth()
+            {
+                return width;
+            }
+
+            @Override
+            public int nextCell(int i, int j, boolean alive)
+            {
+                return next(universe, top, left, width, i, j, alive);
+            }
+        };
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Allows to get the whole universe, not only the window, as a list of distinct nodes.
+     *
+     * @return QuadTree the universe, its root being centered on the coordinates (0, 0)
+     */
+    public QuadTree getTree()
+    {
+        Node top = root;
+        while (top.level < QuadTree.LEAF_LEVEL) top = expand(top);
+        QuadTree tree = new QuadTree();
+        this.number(top, tree, new IdentityHashMap<>());
+        return tree;
+    }
+
+    /**
+     * Allows to add a node to a tree after its children, once.
+     *
+     * @param n       the node, at least of the level of the leaves
+     * @param tree    the tree
+     * @param numbers the numbers of the nodes already added
+     * @return int the number of the node in the tree, 0 if it is empty
+     */
+    private int number(Node n, QuadTree tree, Map<Node, Integer> numbers)
+    {
+        if (n.population == 0) return 0;
+        Integer known = numbers.get(n);
+        if (known != null) return known;
+        int id = n.level == QuadTree.LEAF_LEVEL
+                ? tree.leaf(leafCells(n, 0, 0, 0))
+                : tree.node(n.level,
+                        number(n.nw, tree, numbers), number(n.ne, tree, numbers),
+                        number(n.sw, tree, numbers), number(n.se, tree, numbers));
+        numbers.put(n, id);
+        return id;
+    }
+
+    /**
+     * @return long the cells of a node inside a leaf, the cell (x, y) of the leaf being the bit y * 8 + x
+     */
+    private static long leafCells(Node n, int x, int y, long cells)
+    {
+        if (n.population == 0) return cells;
+        if (n.level == 0) return cells | 1L << (y * 8 + x);
+        int half = 1 << (n.level - 1);
+        cells = leafCells(n.nw, x, y, cells);
+        cells = leafCells(n.ne, x + half, y, cells);
+        cells = leafCells(n.sw, x, y + half, cells);
+        return leafCells(n.se, x + half, y + half, cells);
+    }
+
+    /**
+     * Allows to replace the universe by a tree. The north west corner of the tree is put at the coordinates (0, 0),
+     * and the window becomes the square covered by the tree (at most 2^30 cells wide).
+     *
+     * @param tree the new universe
+     */
+    public void setTree(QuadTree tree)
+    {
+        Node[] nodes = new Node[tree.size() + 1];
+        for (int id = 1; id <= tree.size(); id++) {
+            int level = tree.level(id);
+            if (level == QuadTree.LEAF_LEVEL) {
+                nodes[id] = leaf(tree.cells(id), level, 0, 0);
+            } else {
+                Node[] children = new Node[4];
+                for (int q = 0; q < 4; q++) {
+                    int child = tree.child(id, q);
+                    children[q] = child == 0 ? empty(level - 1) : nodes[child];
+                }
+                nodes[id] = join(children[0], children[1], children[2], children[3]);
+            }
+        }
+        Node top = tree.size() == 0 ? empty(QuadTree.LEAF_LEVEL) : nodes[tree.size()];
+        if (top.level >= MAX_LEVEL) throw new IllegalArgumentException("The tree is too big: level " + top.level);
+        Node e = empty(top.level);
+        this.root = join(e, e, e, top);
+        this.height = this.width = (int) Math.min(1L << top.level, 1 << 30);
+        this.generation = 0;
+    }
+
+    /**
+     * @return Node the canonical node of a square inside a leaf of a QuadTree
+     */
+    private Node leaf(long cells, int level, int x, int y)
+    {
+        if (level == 0) return (cells >>> (y * 8 + x) & 1) != 0 ? on : off;
+        int half = 1 << (level - 1);
+        return join(
+                leaf(cells, level - 1, x, y), leaf(cells, level - 1, x + half, y),
+                leaf(cells, level - 1, x, y + half), leaf(cells, level - 1, x + half, y + half)
+        );
+    }
+
+    /**
+     * @return long the number of alive cells in the whole plane
+     */
+    @Override
+    public long getPopulation()
+    {
+        return root.population;
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if (rule.getStates() != 2 || rule.bornFromNothing())
+            throw new IllegalArgumentException("The hashlife engine cannot apply the rule " + rule);
+        if (rule.equals(this.rule)) return;
+        this.rule = rule;
+        this.collect();
+    }
+
+    /**
+     * @return long the number of generations computed since the last setCells
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return long the number of canonical nodes currently in memory
+     */
+    public long getNodeCount()
+    {
+        return size;
+    }
+
+    /**
+     * Allows to bound the memory used by the engine.
+     *
+     * @param maxNodes the number of nodes above which the hash table is collected, 0 for no limit
+     */
+    public void setMaxNodes(long maxNodes)
+    {
+        this.maxNodes = maxNodes;
+    }
+
+}
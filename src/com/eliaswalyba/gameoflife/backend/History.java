@@ -0,0 +1,388 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+
+public class History
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: History
+     * @description: Keeps the recent boards of a simulation in a memory budget, to go back to any of them
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The boards are kept in a ring, from the oldest to the newest, bit-packed like a BitEngine (see BitKernel).
+     * Most of them are kept as the XOR of their words with the words of the board before: only the words that
+     * changed are stored, with their index. From time to time a board is kept whole, a keyframe: after
+     * keyframeInterval boards, or as soon as the changes stored since the last keyframe weigh as much as a
+     * keyframe. A board is then rebuilt from the keyframe before it and at most a keyframe worth of changes,
+     * a few copies of the board whatever its size. As the XOR of two boards takes either of them to the other
+     * one, the history also moves from the current board to a close one, backwards or forwards, without going
+     * through a keyframe at all: scrubbing costs the changes scrubbed over.
+     * When the history weighs more than its budget, its oldest keyframe and the changes following it are
+     * forgotten. The keyframe of the current board is always kept, even if it alone is over the budget.
+     * Going back to a board and then recording another one forgets the boards that came after it, like the
+     * undo of an editor. The same generation can be recorded several times, after an edit of the board for
+     * instance: the last one is the one given back.
+     * The history belongs to the thread running the engine, except its bounds, which any thread can read.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The bytes taken by a board of the ring besides its words, roughly
+     */
+    private static final long OVERHEAD = 64;
+
+    /**
+     * The number of bytes the history can take and the greatest number of boards between two keyframes
+     */
+    private final long budget;
+    private final int keyframeInterval;
+
+    /**
+     * The boards of the ring, by position: their generation, their words for the keyframes, and the index and
+     * the XOR of the words that changed for the others
+     */
+    private long[] generations = new long[16];
+    private long[][] keyframes = new long[16][], changes = new long[16][];
+    private int[][] indices = new int[16][];
+
+    /**
+     * The position of the oldest board in the arrays, the number of boards and the position of the current
+     * board counted from the oldest one, -1 if there is none
+     */
+    private int head, size, cursor = -1;
+
+    /**
+     * The number of bytes the boards take
+     */
+    private long bytes;
+
+    /**
+     * The number of boards and of bytes of changes recorded since the last keyframe
+     */
+    private int sinceKeyframe;
+    private long changedBytes;
+
+    /**
+     * The number of rows and columns of the boards, and the number of words in a row
+     */
+    private int height, width, words;
+
+    /**
+     * The current board and the board being recorded
+     */
+    private long[] board = new long[0], scratch = new long[0];
+
+    /**
+     * The oldest generation, the newest one and the current one, -1 while the history is empty
+     */
+    private volatile long oldest = -1, newest = -1, current = -1;
+
+    /**
+     * The constructor of the class
+     *
+     * @param budget           the number of bytes the history can take
+     * @param keyframeInterval the greatest number of boards between two keyframes
+     */
+    public History(long budget, int keyframeInterval)
+    {
+        if (budget <= 0) throw new IllegalArgumentException("The budget must be positive: " + budget);
+        if (keyframeInterval <= 0)
+            throw new IllegalArgumentException("The keyframe interval must be positive: " + keyframeInterval);
+        this.budget = budget;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Allows to record a board after the current one, forgetting the boards after the current one if the
+     * history went back.
+     *
+     * @param generation the generation of the board
+     * @param source     the board
+     */
+    public void record(long generation, CellSource source)
+    {
+        if (source.getHeight() != height || source.getWidth() != width) {
+            this.clear();
+            height = source.getHeight();
+            width = source.getWidth();
+            words = (width + 63) >>> 6;
+            board = new long[height * words];
+            scratch = new long[height * words];
+        }
+        CellSource.toWords(source, scratch);
+        if (size > cursor + 1) {
+            while (size > cursor + 1) this.forget(this.slot(--size));
+            this.recount();
+        }
+        if (size > 0 && generation < generations[this.slot(size - 1)]) {
+            /* The generations go back without going through the history: what follows does not match anymore */
+            this.clear();
+        }
+        int count = 0;
+        for (int k = 0; k < scratch.length; k++) if (scratch[k] != board[k]) count++;
+        this.grow();
+        int slot = this.slot(size);
+        long keyframeBytes = (long) scratch.length * Long.BYTES, deltaBytes = (long) count * 12;
+        generations[slot] = generation;
+        if (size == 0 || sinceKeyframe >= keyframeInterval || changedBytes + deltaBytes >= keyframeBytes) {
+            keyframes[slot] = scratch.clone();
+            bytes += OVERHEAD + keyframeBytes;
+            sinceKeyframe = 0;
+            changedBytes = 0;
+        } else {
+            int[] index = new int[count];
+            long[] xor = new long[count];
+            for (int k = 0, n = 0; n < count; k++) {
+                if (scratch[k] == board[k]) continue;
+                index[n] = k;
+                xor[n++] = scratch[k] ^ board[k];
+            }
+            indices[slot] = index;
+            changes[slot] = xor;
+            bytes += OVERHEAD + deltaBytes;
+            sinceKeyframe++;
+            changedBytes += deltaBytes;
+        }
+        long[] t = board;
+        board = scratch;
+        scratch = t;
+        cursor = size++;
+        this.evict();
+        this.bounds();
+    }
+
+    /**
+     * Allows to go back, or forward again, to a board of the history.
+     *
+     * @param generation the generation wanted, the closest one before it being taken if it is not kept
+     * @param sink       the storage receiving the board
+     * @return long the generation given, -1 if the history holds nothing that old
+     */
+    public long restore(long generation, CellSink sink)
+    {
+        int position = this.find(generation);
+        if (position < 0) return -1;
+        this.move(position);
+        CellSink.fromWords(board, height, width, sink);
+        this.bounds();
+        return generations[this.slot(position)];
+    }
+
+    /**
+     * Allows to move the current board to another position of the ring, along the cheapest path.
+     *
+     * @param position the position of the board wanted
+     */
+    private void move(int position)
+    {
+        int keyframe = position;
+        while (keyframes[this.slot(keyframe)] == null) keyframe--;
+        if (position >= cursor && keyframe <= cursor) {
+            for (int p = cursor + 1; p <= position; p++) this.apply(p);
+        } else if (position < cursor && this.keyframeAfter(position) > cursor
+                && cursor - position < position - keyframe) {
+            /* The XOR of a board with the one before takes it back as well */
+            for (int p = cursor; p > position; p--) this.apply(p);
+        } else {
+            long[] start = keyframes[this.slot(keyframe)];
+            System.arraycopy(start, 0, board, 0, start.length);
+            for (int p = keyframe + 1; p <= position; p++) this.apply(p);
+        }
+        cursor = position;
+    }
+
+    /**
+     * @return int the position of the first keyframe after a position, the size if there is none
+     */
+    private int keyframeAfter(int position)
+    {
+        int p = position + 1;
+        while (p < size && keyframes[this.slot(p)] == null) p++;
+        return p;
+    }
+
+    /**
+     * Allows to apply the changes kept at a position on the current board.
+     *
+     * @param position the position of changes, not a keyframe
+     */
+    private void apply(int position)
+    {
+        int slot = this.slot(position);
+        int[] index = indices[slot];
+        long[] xor = changes[slot];
+        for (int n = 0; n < index.length; n++) board[index[n]] ^= xor[n];
+    }
+
+    /**
+     * @return int the position of the last board of a generation, or of the closest generation before it, -1 if
+     * there is none
+     */
+    private int find(long generation)
+    {
+        int low = 0, high = size - 1, found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (generations[this.slot(middle)] <= generation) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Allows to forget the oldest keyframes and their changes while the history is over its budget, the
+     * keyframe of the current board being kept.
+     */
+    private void evict()
+    {
+        while (bytes > budget) {
+            int next = this.keyframeAfter(0);
+            if (next > cursor) return;
+            for (int p = 0; p < next; p++) this.forget(this.slot(p));
+            head = this.slot(next);
+            size -= next;
+            cursor -= next;
+        }
+    }
+
+    /**
+     * Allows to count the boards and the bytes of changes since the last keyframe again.
+     */
+    private void recount()
+    {
+        sinceKeyframe = 0;
+        changedBytes = 0;
+        for (int p = size - 1; p >= 0 && keyframes[this.slot(p)] == null; p--) {
+            sinceKeyframe++;
+            changedBytes += (long) indices[this.slot(p)].length * 12;
+        }
+    }
+
+    /**
+     * Allows to free a slot of the ring.
+     *
+     * @param slot the slot
+     */
+    private void forget(int slot)
+    {
+        if (keyframes[slot] != null) {
+            bytes -= OVERHEAD + (long) keyframes[slot].length * Long.BYTES;
+            keyframes[slot] = null;
+        } else {
+            bytes -= OVERHEAD + (long) indices[slot].length * 12;
+            indices[slot] = null;
+            changes[slot] = null;
+        }
+    }
+
+    /**
+     * Allows to forget all the boards.
+     */
+    public void clear()
+    {
+        for (int p = 0; p < size; p++) {
+            int slot = this.slot(p);
+            keyframes[slot] = null;
+            indices[slot] = null;
+            changes[slot] = null;
+        }
+        head = 0;
+        size = 0;
+        cursor = -1;
+        bytes = 0;
+        sinceKeyframe = 0;
+        changedBytes = 0;
+        Arrays.fill(board, 0);
+        this.bounds();
+    }
+
+    /**
+     * Allows to make room in the ring for one more board.
+     */
+    private void grow()
+    {
+        if (size < generations.length) return;
+        int capacity = generations.length << 1;
+        long[] g = new long[capacity];
+        long[][] k = new long[capacity][], c = new long[capacity][];
+        int[][] x = new int[capacity][];
+        for (int p = 0; p < size; p++) {
+            int slot = this.slot(p);
+            g[p] = generations[slot];
+            k[p] = keyframes[slot];
+            c[p] = changes[slot];
+            x[p] = indices[slot];
+        }
+        generations = g;
+        keyframes = k;
+        changes = c;
+        indices = x;
+        head = 0;
+    }
+
+    /**
+     * @return int the slot of the arrays holding a position of the ring
+     */
+    private int slot(int position)
+    {
+        int slot = head + position;
+        return slot >= generations.length ? slot - generations.length : slot;
+    }
+
+    /**
+     * Allows to publish the bounds of the history to the other threads.
+     */
+    private void bounds()
+    {
+        oldest = size == 0 ? -1 : generations[head];
+        newest = size == 0 ? -1 : generations[this.slot(size - 1)];
+        current = cursor < 0 ? -1 : generations[this.slot(cursor)];
+    }
+
+    /**
+     * @return long the oldest generation kept, -1 if there is none
+     */
+    public long getOldest()
+    {
+        return oldest;
+    }
+
+    /**
+     * @return long the newest generation kept, -1 if there is none
+     */
+    public long getNewest()
+    {
+        return newest;
+    }
+
+    /**
+     * @return long the generation of the current board, -1 if there is none
+     */
+    public long getCurrent()
+    {
+        return current;
+    }
+
+    /**
+     * @return long the number of bytes the boards take, roughly, read by the thread running the engine
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return int the number of boards kept, read by the thread running the engine
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: LatencyHistogram
+     * @description: Counts durations in buckets of constant relative precision, to read their percentiles
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The buckets follow the layout of an HdrHistogram: the values below 32 have a bucket each, then every power
+     * of two is cut in 32 buckets of the same width. A value is counted in the bucket of its 6 highest bits, so
+     * a percentile is known within 1/32 (about 3%) of its value, from a nanosecond to centuries, with 1888
+     * counters in all. Recording a value is a few shifts and an increment: it allocates nothing and it never
+     * waits.
+     * A single thread records the values (the simulation thread, or the event dispatch thread for the frames),
+     * any thread can read them. The counters are written with lazySet, which is enough for a single writer, so
+     * a reader sees the counts of a moment, give or take the values being recorded. A reset asked by a reader is
+     * done by the writer, with its next value.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The number of bits telling the bucket of a value within its power of two
+     */
+    private static final int SUB_BITS = 5, SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * The number of values counted in each bucket
+     */
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+
+    /**
+     * The number of values, their sum and the greatest one
+     */
+    private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+    /**
+     * Whether a reader asked to forget the values recorded so far
+     */
+    private volatile boolean resetting;
+
+    /**
+     * Allows to count a value. Only one thread may record the values of a histogram.
+     *
+     * @param value the value, in nanoseconds for instance, negative values being counted as 0
+     */
+    public void record(long value)
+    {
+        if (resetting) this.clear();
+        value = Math.max(0, value);
+        int index = index(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        count.lazySet(count.get() + 1);
+        sum.lazySet(sum.get() + value);
+        if (value > max.get()) max.lazySet(value);
+    }
+
+    /**
+     * Allows to forget all the values, from any thread. The values are forgotten when the next one is recorded.
+     */
+    public void reset()
+    {
+        resetting = true;
+    }
+
+    /**
+     * Allows the writer to forget all the values.
+     */
+    private void clear()
+    {
+        for (int k = 0; k < counts.length(); k++) counts.lazySet(k, 0);
+        count.lazySet(0);
+        sum.lazySet(0);
+        max.lazySet(0);
+        resetting = false;
+    }
+
+    /**
+     * @return int the bucket of a value
+     */
+    private static int index(long value)
+    {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return long the greatest value counted in a bucket
+     */
+    private static long highest(int index)
+    {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Allows to read a percentile of the values.
+     *
+     * @param percentile the percentage of values, 99 for the 99th percentile for instance
+     * @return long the value below which that percentage of the values falls, within 3%, or 0 if there is none
+     */
+    public long getPercentile(double percentile)
+    {
+        long total = count.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total)), seen = 0;
+        for (int k = 0; k < counts.length(); k++) {
+            seen += counts.get(k);
+            if (seen >= rank) return Math.min(highest(k), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @return long the number of values counted
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return double the mean of the values, 0 if there is none
+     */
+    public double getMean()
+    {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+
+    /**
+     * @return long the greatest value counted, exactly
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+public class LongHashSet
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: LongHashSet
+     * @description: A set of primitive longs that never boxes its elements
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The elements are stored in a single array with open addressing and linear probing. A free slot holds the
+     * value FREE; since FREE is also a valid element, its presence is tracked by a separate flag.
+     * Removing an element shifts back the elements of its probe sequence instead of leaving a tombstone, so the
+     * set never degrades however many times its elements change.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The value of a free slot
+     */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /**
+     * The slots of the set
+     */
+    private long[] keys;
+
+    /**
+     * The number of elements, without FREE
+     */
+    private int size;
+
+    /**
+     * Whether FREE itself is in the set
+     */
+    private boolean hasFree;
+
+    /**
+     * The constructor of an empty set
+     */
+    public LongHashSet()
+    {
+        this(16);
+    }
+
+    /**
+     * The constructor of an empty set able to hold some elements without growing
+     *
+     * @param expected the number of elements expected
+     */
+    public LongHashSet(int expected)
+    {
+        this.keys = new long[capacityFor(expected)];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Allows to add an element.
+     *
+     * @param key the element
+     * @return boolean true if it was not in the set yet
+     */
+    public boolean add(long key)
+    {
+        if (key == FREE) {
+            boolean added = !hasFree;
+            hasFree = true;
+            return added;
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return false;
+            if (k == FREE) {
+                keys[i] = key;
+                if (++size > (keys.length >> 1) + (keys.length >> 2)) grow();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Allows to know if an element is in the set.
+     *
+     * @param key the element
+     * @return boolean true if it is in the set
+     */
+    public boolean contains(long key)
+    {
+        if (key == FREE) return hasFree;
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return true;
+            if (k == FREE) return false;
+        }
+    }
+
+    /**
+     * Allows to remove an element.
+     *
+     * @param key the element
+     * @return boolean true if it was in the set
+     */
+    public boolean remove(long key)
+    {
+        if (key == FREE) {
+            boolean removed = hasFree;
+            hasFree = false;
+            return removed;
+        }
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == FREE) return false;
+            i = (i + 1) & mask;
+        }
+        /* Shift back the following elements which would not be found anymore */
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * Allows to empty the set. The slots are kept unless they are far more than the elements removed, so that
+     * clearing a set costs about as much as filling it did.
+     */
+    public void clear()
+    {
+        if (keys.length > 1024 && size < keys.length >> 3) {
+            keys = new long[capacityFor(size)];
+            Arrays.fill(keys, FREE);
+        } else if (size > 0) Arrays.fill(keys, FREE);
+        size = 0;
+        hasFree = false;
+    }
+
+    /**
+     * @return int the number of elements in the set
+     */
+    public int size()
+    {
+        return size + (hasFree ? 1 : 0);
+    }
+
+    /**
+     * Allows to visit all the elements of the set, in no particular order.
+     *
+     * @param action what to do with each element
+     */
+    public void forEach(LongConsumer action)
+    {
+        if (hasFree) action.accept(FREE);
+        for (long k : keys) if (k != FREE) action.accept(k);
+    }
+
+    /**
+     * Allows to double the number of slots when the set is 75% full.
+     */
+    private void grow()
+    {
+        long[] old = keys;
+        keys = new long[old.length << 1];
+        Arrays.fill(keys, FREE);
+        int mask = keys.length - 1;
+        for (long k : old) {
+            if (k == FREE) continue;
+            int i = mix(k) & mask;
+            while (keys[i] != FREE) i = (i + 1) & mask;
+            keys[i] = k;
+        }
+    }
+
+    /**
+     * @return int the smallest power of 2 able to hold the expected number of elements under 75%
+     */
+    private static int capacityFor(int expected)
+    {
+        int capacity = 16;
+        while (capacity * 3L / 4 <= expected) capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Allows to spread the bits of an element so that neighbor cells do not fall in neighbor slots.
+     *
+     * @param key the element
+     * @return int the hash of the element
+     */
+    private static int mix(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
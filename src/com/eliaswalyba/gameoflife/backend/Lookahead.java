@@ -0,0 +1,255 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.nio.LongBuffer;
+
+public class Lookahead implements AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Lookahead
+     * @description: Computes the next generations of a board in the background, before they are asked for
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The look-ahead has its own BitEngine and its own thread. Given a board (see restart), it computes the
+     * generations following it into a ring of depth frames, bit-packed like a BitEngine, and sleeps once the ring
+     * is full. Taking the next generation (see take) then copies a frame into the engine of the simulation
+     * instead of computing it, which the thread of the look-ahead makes up for by computing a generation
+     * further.
+     * An edit of the board makes the frames wrong. Restarting the look-ahead from the edited board only copies
+     * the board and bumps an epoch: the frames are forgotten at once, and a generation being computed from the
+     * old board is thrown away when it is done instead of being waited for. The look-ahead also keeps the board
+     * its first frame follows (the frame taken last takes its place), so that a single cell painted by the user
+     * only changes a word of it (see edit) instead of copying the whole board again.
+     * The frames follow the rules of a BitEngine, so the look-ahead can only stand in for a BitEngine or one of
+     * its subclasses. The births and the deaths of each frame are kept, so that the metrics of a generation taken
+     * from the look-ahead are the ones of a generation computed.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The number of frames computed ahead at most
+     */
+    private final int depth;
+
+    /**
+     * The engine computing the frames, only touched by the thread of the look-ahead
+     */
+    private final BitEngine engine = new BitEngine(1, 1);
+
+    /**
+     * The thread of the look-ahead
+     */
+    private final Thread thread;
+
+    /**
+     * The ring of the frames, and the births and the deaths of each one
+     */
+    private final long[][] frames;
+    private final long[] births, deaths;
+
+    /**
+     * The generation of the board the first frame follows, the position of the first frame and the number of
+     * frames ready
+     */
+    private long base;
+    private int head, count;
+
+    /**
+     * The number of the board the frames are computed from, bumped by each restart
+     */
+    private long epoch;
+
+    /**
+     * The board the first frame follows, its size and its rule, and whether the thread of the look-ahead still
+     * has to load it
+     */
+    private long[] board;
+    private int height, width;
+    private Rule rule;
+    private boolean pending;
+
+    /**
+     * Whether the look-ahead is closed
+     */
+    private boolean closed;
+
+    /**
+     * The constructor of the class
+     *
+     * @param depth the number of frames computed ahead at most
+     */
+    public Lookahead(int depth)
+    {
+        if (depth <= 0) throw new IllegalArgumentException("The depth must be positive: " + depth);
+        this.depth = depth;
+        this.frames = new long[depth][];
+        this.births = new long[depth];
+        this.deaths = new long[depth];
+        engine.setCounting(true);
+        this.thread = new Thread(this::compute, "lookahead");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Allows to start the thread of the look-ahead, which waits for a first board.
+     */
+    public void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Allows to forget the frames and to compute the generations following a board instead, on the thread
+     * running the engine of the board.
+     *
+     * @param generation the generation of the board
+     * @param source     the engine holding the board
+     */
+    public synchronized void restart(long generation, BitEngine source)
+    {
+        int length = source.getHeight() * ((source.getWidth() + 63) >>> 6);
+        if (board == null || board.length != length) {
+            board = new long[length];
+            for (int k = 0; k < depth; k++) frames[k] = new long[length];
+        }
+        CellSource.toWords(source, board);
+        height = source.getHeight();
+        width = source.getWidth();
+        rule = source.getRule();
+        base = generation;
+        head = 0;
+        count = 0;
+        epoch++;
+        pending = true;
+        this.notifyAll();
+    }
+
+    /**
+     * Allows to change a cell of the board the look-ahead follows, on the thread running the engine of the
+     * board, which changed the same cell. The frames computed from the board are forgotten, the thread of the
+     * look-ahead starting again from the edited board.
+     *
+     * @param generation the generation of the board
+     * @param i          the row of the cell
+     * @param j          the column of the cell
+     * @param alive      the new state of the cell
+     * @return boolean true if the cell was changed, false if the look-ahead follows another board and must be
+     * restarted
+     */
+    public synchronized boolean edit(long generation, int i, int j, boolean alive)
+    {
+        if (board == null || base != generation || i < 0 || i >= height || j < 0 || j >= width) return false;
+        int k = i * ((width + 63) >>> 6) + (j >>> 6);
+        board[k] = alive ? board[k] | 1L << j : board[k] & ~(1L << j);
+        head = 0;
+        count = 0;
+        epoch++;
+        pending = true;
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * Allows to take the generation following a board from the look-ahead, on the thread running the engine
+     * of the board. If the look-ahead follows this board but the frame is not ready yet, it is waited for: it
+     * is already being computed.
+     *
+     * @param generation the generation of the board
+     * @param target     the engine holding the board, which gets the next generation
+     * @param metrics    where to record the generation, null if it is not measured
+     * @return boolean true if the engine got the next generation, false if the look-ahead follows another board
+     */
+    public synchronized boolean take(long generation, BitEngine target, Metrics metrics)
+    {
+        while (!closed && board != null && count == 0 && base == generation) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (count == 0 || base != generation) return false;
+        if (target.getHeight() != height || target.getWidth() != width) return false;
+        long allocated = Metrics.allocatedBytes(), start = System.nanoTime();
+        target.setWords(0, LongBuffer.wrap(frames[head]));
+        long nanos = System.nanoTime() - start;
+        /* The frame taken is the board the next frames follow, the slot gets the previous one to write into */
+        long[] taken = frames[head];
+        frames[head] = board;
+        board = taken;
+        if (metrics != null) {
+            allocated = allocated < 0 ? -1 : Metrics.allocatedBytes() - allocated;
+            metrics.recordGeneration(nanos, births[head], deaths[head],
+                    metrics.getPopulation() + births[head] - deaths[head], allocated);
+        }
+        head = (head + 1) % depth;
+        count--;
+        base++;
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * @return int the number of frames ready
+     */
+    public synchronized int getReady()
+    {
+        return count;
+    }
+
+    /**
+     * The loop of the thread of the look-ahead: it loads the board to restart from, and computes a frame
+     * whenever the ring has room for it.
+     */
+    private void compute()
+    {
+        while (true) {
+            long computing;
+            synchronized (this) {
+                while (!closed && !pending && (board == null || count == depth)) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                if (pending) {
+                    if (engine.getHeight() != height || engine.getWidth() != width) engine.resize(height, width);
+                    engine.setRule(rule);
+                    engine.setWords(0, LongBuffer.wrap(board));
+                    pending = false;
+                }
+                computing = epoch;
+            }
+
+            /* The generation is computed without holding the lock, an edit can restart the look-ahead meanwhile */
+            engine.nextGeneration();
+
+            synchronized (this) {
+                if (computing != epoch) continue;
+                int slot = (head + count) % depth;
+                long[] words = engine.lend();
+                try {
+                    System.arraycopy(words, 0, frames[slot], 0, words.length);
+                } finally {
+                    engine.giveBack(words);
+                }
+                births[slot] = engine.getBirths();
+                deaths[slot] = engine.getDeaths();
+                count++;
+                this.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        closed = true;
+        this.notifyAll();
+    }
+
+}
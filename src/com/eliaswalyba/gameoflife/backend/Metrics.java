@@ -0,0 +1,344 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+public class Metrics implements MetricsMBean
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Metrics
+     * @description: Measures how a simulation behaves: its pace, its board, the time and the memory it takes
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The thread running the engine records each generation: how long it took, the cells born and dead, the
+     * population and the bytes it allocated. The thread drawing the board records each frame. Anyone can read
+     * the metrics at any time, from the window or through JMX once they are registered (see register): the
+     * readers never slow the writers down.
+     * A generation costs two reads of the clock, two reads of the bytes allocated by the thread and a few
+     * increments, a few hundred nanoseconds, so the metrics stay on. The population follows from the births and
+     * the deaths when the engine counts them (see CellCounter), it is only counted again after an edit.
+     * The pace is measured over windows of half a second, and drops to 0 once the simulation stops.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The domain of the names of the metrics in JMX
+     */
+    public static final String DOMAIN = "com.eliaswalyba.gameoflife";
+
+    /**
+     * The length of the windows over which the pace is measured
+     */
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * The thread bean, if it tells the bytes allocated by the current thread
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /**
+     * The time taken by the generations and by the frames, in nanoseconds
+     */
+    private final LatencyHistogram steps = new LatencyHistogram(), frames = new LatencyHistogram();
+
+    /**
+     * The number of cells of the board
+     */
+    private volatile long area;
+
+    /**
+     * The number of generations, the population, the births and the deaths of the last generation, and the bytes
+     * it allocated
+     */
+    private volatile long generations, population, births = -1, deaths = -1, allocated = -1;
+
+    /**
+     * The generations per second over the last window, and the time of the last generation
+     */
+    private volatile double pace;
+    private volatile long last;
+
+    /**
+     * The start of the current window and the number of generations at that time, only used by the writer
+     */
+    private long windowStart, windowGenerations;
+
+    /**
+     * The name under which the metrics are registered, null if they are not
+     */
+    private ObjectName name;
+
+    /**
+     * The constructor of the class
+     *
+     * @param area the number of cells of the board
+     */
+    public Metrics(long area)
+    {
+        this.area = area;
+    }
+
+    /**
+     * Allows to prepare an engine to be measured: it counts its births and deaths if it can, and its population
+     * is counted once.
+     *
+     * @param engine the engine
+     */
+    public void watch(Engine engine)
+    {
+        if (engine instanceof CellCounter) ((CellCounter) engine).setCounting(true);
+        this.setPopulation(engine.getPopulation());
+    }
+
+    /**
+     * Allows to compute a generation of an engine and to record it, on the thread running the engine.
+     *
+     * @param engine the engine, prepared by watch
+     */
+    public void step(Engine engine)
+    {
+        long allocated = allocatedBytes(), start = System.nanoTime();
+        engine.nextGeneration();
+        long nanos = System.nanoTime() - start;
+        allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+        if (engine instanceof CellCounter) {
+            long births = ((CellCounter) engine).getBirths(), deaths = ((CellCounter) engine).getDeaths();
+            this.recordGeneration(nanos, births, deaths, population + births - deaths, allocated);
+        } else {
+            this.recordGeneration(nanos, -1, -1, engine.getPopulation(), allocated);
+        }
+    }
+
+    /**
+     * Allows to record a generation, on the thread computing them.
+     *
+     * @param nanos      the time it took, in nanoseconds
+     * @param births     the number of cells born, -1 if unknown
+     * @param deaths     the number of cells dead, -1 if unknown
+     * @param population the number of alive cells after the generation
+     * @param allocated  the bytes allocated while computing it, -1 if unknown
+     */
+    public void recordGeneration(long nanos, long births, long deaths, long population, long allocated)
+    {
+        steps.record(nanos);
+        this.births = births;
+        this.deaths = deaths;
+        this.population = population;
+        this.allocated = allocated;
+        long now = System.nanoTime(), count = generations + 1;
+        generations = count;
+        if (now - last > WINDOW) {
+            /* The simulation was paused: the pause is not part of the pace */
+            windowStart = now;
+            windowGenerations = count;
+        } else if (now - windowStart >= WINDOW) {
+            pace = (count - windowGenerations) * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowGenerations = count;
+        }
+        last = now;
+    }
+
+    /**
+     * Allows to record a frame, on the thread drawing them.
+     *
+     * @param nanos the time it took to draw, in nanoseconds
+     */
+    public void recordFrame(long nanos)
+    {
+        frames.record(nanos);
+    }
+
+    /**
+     * Allows to give the population after an edit of the board, on the thread computing the generations.
+     *
+     * @param population the number of alive cells
+     */
+    public void setPopulation(long population)
+    {
+        this.population = population;
+    }
+
+    /**
+     * Allows to give the size of the board, when it changes.
+     *
+     * @param area the number of cells of the board
+     */
+    public void setArea(long area)
+    {
+        this.area = area;
+    }
+
+    /**
+     * @return long the bytes allocated so far by the current thread, -1 if the JVM does not tell
+     */
+    public static long allocatedBytes()
+    {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * @return ThreadMXBean the thread bean of the JVM if it tracks the allocations of the threads, null if not
+     */
+    private static com.sun.management.ThreadMXBean threads()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+    }
+
+    /**
+     * Allows to publish the metrics through JMX, as com.eliaswalyba.gameoflife:type=Metrics,name=NAME.
+     *
+     * @param name the name of the simulation, "window" or "batch" for instance
+     * @return ObjectName the name of the metrics in the platform MBean server
+     */
+    public synchronized ObjectName register(String name)
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("The metrics cannot be registered as " + name, e);
+        }
+    }
+
+    /**
+     * Allows to stop publishing the metrics through JMX.
+     */
+    public synchronized void unregister()
+    {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ignored) {
+            /* Somebody else unregistered them */
+        }
+        name = null;
+    }
+
+    /**
+     * @return LatencyHistogram the time taken by the generations, in nanoseconds
+     */
+    public LatencyHistogram getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return LatencyHistogram the time taken by the frames, in nanoseconds
+     */
+    public LatencyHistogram getFrames()
+    {
+        return frames;
+    }
+
+    @Override
+    public long getGenerations()
+    {
+        return generations;
+    }
+
+    @Override
+    public double getGenerationsPerSecond()
+    {
+        return System.nanoTime() - last > 2 * WINDOW ? 0 : pace;
+    }
+
+    @Override
+    public double getCellUpdatesPerSecond()
+    {
+        return this.getGenerationsPerSecond() * area;
+    }
+
+    @Override
+    public long getPopulation()
+    {
+        return population;
+    }
+
+    @Override
+    public long getBirths()
+    {
+        return births;
+    }
+
+    @Override
+    public long getDeaths()
+    {
+        return deaths;
+    }
+
+    @Override
+    public double getStepMeanMicros()
+    {
+        return steps.getMean() / 1e3;
+    }
+
+    @Override
+    public double getStepP50Micros()
+    {
+        return steps.getPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getStepP90Micros()
+    {
+        return steps.getPercentile(90) / 1e3;
+    }
+
+    @Override
+    public double getStepP99Micros()
+    {
+        return steps.getPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getStepP999Micros()
+    {
+        return steps.getPercentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getStepMaxMicros()
+    {
+        return steps.getMax() / 1e3;
+    }
+
+    @Override
+    public double getFrameMeanMillis()
+    {
+        return frames.getMean() / 1e6;
+    }
+
+    @Override
+    public double getFrameP99Millis()
+    {
+        return frames.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public long getAllocatedBytesPerGeneration()
+    {
+        return allocated;
+    }
+
+    @Override
+    public void reset()
+    {
+        steps.reset();
+        frames.reset();
+    }
+
+}
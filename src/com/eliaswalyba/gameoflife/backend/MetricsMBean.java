@@ -0,0 +1,53 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public interface MetricsMBean
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: MetricsMBean
+     * @description: The attributes of a simulation published through JMX, see Metrics
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The durations are in microseconds for the generations and in milliseconds for the frames. A value that
+     * cannot be measured (the births of an engine that does not count them, the allocations on a JVM that does
+     * not track them) is -1.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    long getGenerations();
+
+    double getGenerationsPerSecond();
+
+    double getCellUpdatesPerSecond();
+
+    long getPopulation();
+
+    long getBirths();
+
+    long getDeaths();
+
+    double getStepMeanMicros();
+
+    double getStepP50Micros();
+
+    double getStepP90Micros();
+
+    double getStepP99Micros();
+
+    double getStepP999Micros();
+
+    double getStepMaxMicros();
+
+    double getFrameMeanMillis();
+
+    double getFrameP99Millis();
+
+    long getAllocatedBytesPerGeneration();
+
+    /**
+     * Allows to forget the durations measured so far, to measure a new phase of the simulation.
+     */
+    void reset();
+
+}
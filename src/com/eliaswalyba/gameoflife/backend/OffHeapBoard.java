@@ -0,0 +1,237 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class OffHeapBoard implements BitKernel.Packed
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: OffHeapBoard
+     * @description: A bit-packed board stored outside of the Java heap, in memory or in a file mapped in memory
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The cells are laid out like in a BitEngine (see BitKernel): 64 cells per long, row by row, the bits past the
+     * width being 0. A 100k x 100k board takes 1.25 GB this way, and none of it is seen by the garbage collector.
+     * A buffer cannot hold more than 2 GB, so the rows are spread over chunks of at most 1 GB, a row never being
+     * cut between two chunks.
+     * The words are little endian, like in the checkpoints: a file mapped by a board holds exactly the body of an
+     * uncompressed checkpoint. Mapping a file lets the operating system page the board in and out, so a board
+     * bigger than the memory only costs disk reads. The memory of a board is released once it is unreachable.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The maximum number of words of a chunk
+     */
+    private static final int CHUNK_WORDS = 1 << 27;
+
+    /**
+     * The number of rows and columns of the board, and the number of words in a row
+     */
+    private final int height, width, words;
+
+    /**
+     * The number of rows of a chunk
+     */
+    private final int chunkRows;
+
+    /**
+     * The chunks of rows, the row i being in the chunk i / chunkRows
+     */
+    private final LongBuffer[] chunks;
+
+    /**
+     * The mappings of the chunks when the board is backed by a file, null otherwise
+     */
+    private final MappedByteBuffer[] mappings;
+
+    /**
+     * The file holding the board, null if it is only in memory
+     */
+    private final Path file;
+
+    /**
+     * The constructor of the class
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     * @param file   the file holding the board, null to keep it in memory
+     * @throws IOException if the file cannot be mapped
+     */
+    private OffHeapBoard(int height, int width, Path file) throws IOException
+    {
+        if (height <= 0 || width <= 0)
+            throw new IllegalArgumentException("The board must have at least one cell: " + height + "x" + width);
+        this.height = height;
+        this.width = width;
+        this.words = (width + 63) >>> 6;
+        this.file = file;
+        this.chunkRows = Math.max(1, CHUNK_WORDS / words);
+        int count = (height + chunkRows - 1) / chunkRows;
+        this.chunks = new LongBuffer[count];
+        this.mappings = file == null ? null : new MappedByteBuffer[count];
+        FileChannel channel = file == null ? null : FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            for (int c = 0; c < count; c++) {
+                long bytes = 8L * Math.min(chunkRows, height - c * chunkRows) * words;
+                ByteBuffer chunk;
+                if (channel == null) {
+                    chunk = ByteBuffer.allocateDirect((int) bytes);
+                } else {
+                    mappings[c] = channel.map(FileChannel.MapMode.READ_WRITE, 8L * c * chunkRows * words, bytes);
+                    chunk = mappings[c];
+                }
+                chunks[c] = chunk.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+        } finally {
+            /* The mappings stay valid once the channel is closed */
+            if (channel != null) channel.close();
+        }
+    }
+
+    /**
+     * Allows to create an empty board in memory, outside of the heap.
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     * @return OffHeapBoard the board
+     */
+    public static OffHeapBoard allocate(int height, int width)
+    {
+        try {
+            return new OffHeapBoard(height, width, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("No file to map", e);
+        }
+    }
+
+    /**
+     * Allows to map a board onto a file, created or extended if needed. The cells already in the file are kept,
+     * the file of a board of the same dimensions can be mapped again to get the board back.
+     *
+     * @param file   the file holding the board
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     * @return OffHeapBoard the board
+     * @throws IOException if the file cannot be mapped
+     */
+    public static OffHeapBoard map(Path file, int height, int width) throws IOException
+    {
+        return new OffHeapBoard(height, width, file);
+    }
+
+    /**
+     * Allows to copy a row of the board.
+     *
+     * @param i      the row
+     * @param target the array receiving the words of the row
+     * @param offset the index of the first word in the array
+     */
+    public void getRow(int i, long[] target, int offset)
+    {
+        chunks[i / chunkRows].get((i % chunkRows) * words, target, offset, words);
+    }
+
+    /**
+     * Allows to replace a row of the board.
+     *
+     * @param i      the row
+     * @param source the array holding the words of the row, the bits past the width being 0
+     * @param offset the index of the first word in the array
+     */
+    public void putRow(int i, long[] source, int offset)
+    {
+        chunks[i / chunkRows].put((i % chunkRows) * words, source, offset, words);
+    }
+
+    /**
+     * @return long the word w of the row i
+     */
+    @Override
+    public long getWord(int i, int w)
+    {
+        return chunks[i / chunkRows].get((i % chunkRows) * words + w);
+    }
+
+    /**
+     * Allows to replace a word of the board.
+     *
+     * @param i    the row of the word
+     * @param w    the index of the word in the row
+     * @param word the 64 cells of the word, the bits past the width being ignored
+     */
+    public void setWord(int i, int w, long word)
+    {
+        chunks[i / chunkRows].put((i % chunkRows) * words + w, w == words - 1 ? BitKernel.mask(width, word) : word);
+    }
+
+    /**
+     * Allows to kill all the cells.
+     */
+    public void clear()
+    {
+        long[] empty = new long[words];
+        for (int i = 0; i < height; i++) this.putRow(i, empty, 0);
+    }
+
+    /**
+     * Allows to write the board to its file, if it has one, so that it survives the process.
+     */
+    public void force()
+    {
+        if (mappings != null) for (MappedByteBuffer mapping : mappings) mapping.force();
+    }
+
+    /**
+     * @return long the number of alive cells
+     */
+    public long getPopulation()
+    {
+        long population = 0;
+        for (LongBuffer chunk : chunks)
+            for (int k = 0, n = chunk.capacity(); k < n; k++) population += Long.bitCount(chunk.get(k));
+        return population;
+    }
+
+    /**
+     * @return int the number of rows of the board
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return int the number of columns of the board
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return int the number of words in a row
+     */
+    public int getWords()
+    {
+        return words;
+    }
+
+    /**
+     * @return Path the file holding the board, null if it is only in memory
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+}
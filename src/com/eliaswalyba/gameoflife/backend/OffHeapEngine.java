@@ -0,0 +1,414 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class OffHeapEngine implements Engine, CellSink, CellSource, BoardHash, CellCounter, AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: OffHeapEngine
+     * @description: A bit-packed engine stepping a board stored outside of the Java heap, in place
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The board is an OffHeapBoard, in memory or in a file mapped in memory, and there is only one of it: the
+     * next generation overwrites the current one row by row. The rows being computed are copied on the heap, in
+     * a window of a few rows sliding down the board: a row is written back once the row below it is read, and
+     * the original of the row above is kept in the window. So the heap only holds a handful of rows, whatever
+     * the size of the board, and computing a generation allocates nothing.
+     * With several threads, the board is cut in bands, each band sliding its own window. The first row above a
+     * band and the first row below it belong to other bands, which overwrite them: both are copied before any
+     * band starts. The result is the same, bit for bit, as a BitEngine on the same board.
+     * Like the BitEngine, the board is a torus and any rule of 2 states can be applied.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The board, overwritten by each generation
+     */
+    private OffHeapBoard board;
+
+    /**
+     * The pool running the bands, null to compute the board on the calling thread
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The rows of each band on the heap: the row above the band, the row below it, the three rows of the window
+     * and the row being computed
+     */
+    private long[][][] windows = new long[0][][];
+
+    /**
+     * How each band changed the hash of the board during the last generation
+     */
+    private long[] bandChanges = new long[0];
+
+    /**
+     * The cells born and dead in each band during the last generation, when they are counted
+     */
+    private long[] bandBirths = new long[0], bandDeaths = new long[0];
+
+    /**
+     * The rule applied at each generation, and its table for the kernel
+     */
+    private Rule rule = Rule.LIFE;
+    private long[] table = BitKernel.LIFE;
+
+    /**
+     * The hash of the current generation, whether it is kept up to date and whether an edit made it stale
+     */
+    private long hash;
+    private boolean hashing, rehash = true;
+
+    /**
+     * Whether the births and the deaths are counted, and their numbers during the last generation
+     */
+    private boolean counting;
+    private long births, deaths;
+
+    /**
+     * The constructor of an engine computing the board on the calling thread
+     *
+     * @param board the board, in memory or mapped from a file
+     */
+    public OffHeapEngine(OffHeapBoard board)
+    {
+        this(board, 1);
+    }
+
+    /**
+     * The constructor of an engine computing bands of the board on several threads
+     *
+     * @param board       the board, in memory or mapped from a file
+     * @param parallelism the number of threads computing the bands
+     */
+    public OffHeapEngine(OffHeapBoard board, int parallelism)
+    {
+        if (parallelism <= 0) throw new IllegalArgumentException("At least one thread is needed: " + parallelism);
+        /* A generation cuts the board in bands of at least one row */
+        if (board.getHeight() <= 0) throw new IllegalArgumentException("The board has no row");
+        this.board = board;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    @Override
+    public void nextGeneration()
+    {
+        int height = board.getHeight(), words = board.getWords();
+        int bands = pool == null ? 1 : Math.min(height, 4 * pool.getParallelism());
+        if (windows.length != bands || windows[0][0].length != words) {
+            windows = new long[bands][6][words];
+            bandChanges = new long[bands];
+            bandBirths = new long[bands];
+            bandDeaths = new long[bands];
+        }
+        /* The rows around the bands are overwritten by their neighbor bands, they are copied first */
+        for (int b = 0; b < bands; b++) {
+            int from = this.bandStart(b, bands), to = this.bandStart(b + 1, bands);
+            board.getRow((from == 0 ? height : from) - 1, windows[b][0], 0);
+            board.getRow(to == height ? 0 : to, windows[b][1], 0);
+        }
+        if (pool == null) this.stepBand(0);
+        else pool.invoke(new Bands(0, bands));
+        long changes = 0;
+        births = 0;
+        deaths = 0;
+        for (int b = 0; b < bands; b++) {
+            changes ^= bandChanges[b];
+            births += bandBirths[b];
+            deaths += bandDeaths[b];
+        }
+        if (hashing) hash ^= changes;
+        else rehash = true;
+    }
+
+    /**
+     * @return int the first row of the band b out of a number of bands of the same size, give or take a row
+     */
+    private int bandStart(int b, int bands)
+    {
+        return (int) ((long) b * board.getHeight() / bands);
+    }
+
+    /**
+     * Allows to compute the next state of a band of rows, in place, the rows around the band being already
+     * copied in its window. How the rows change the hash of the board, and their births and deaths, are recorded
+     * for the band when they are asked for.
+     *
+     * @param band the index of the band
+     */
+    private void stepBand(int band)
+    {
+        int words = board.getWords(), width = board.getWidth();
+        int from = this.bandStart(band, windows.length), to = this.bandStart(band + 1, windows.length);
+        long[][] window = windows[band];
+        long[] halo = window[0], above = halo, center = window[2], below = window[3], spare = window[4];
+        long[] out = window[5];
+        long changes = 0, born = 0, died = 0;
+        board.getRow(from, center, 0);
+        for (int i = from; i < to; i++) {
+            boolean last = i + 1 == to;
+            if (!last) board.getRow(i + 1, below, 0);
+            BitKernel.stepRow(above, 0, center, 0, last ? window[1] : below, 0, out, 0, words, width, table);
+            if (hashing) changes ^= BoardHash.changes((long) i * words, center, out, words);
+            if (counting) {
+                born += BitKernel.born(center, out, 0, words);
+                died += BitKernel.died(center, out, 0, words);
+            }
+            board.putRow(i, out, 0);
+            /* The window slides down a row, the original of the row just written becoming the row above */
+            long[] free = above == halo ? spare : above;
+            above = center;
+            center = below;
+            below = free;
+        }
+        bandChanges[band] = changes;
+        bandBirths[band] = born;
+        bandDeaths[band] = died;
+    }
+
+    private class Bands extends RecursiveAction
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Bands
+         * @description: Computes a range of bands, splitting it in two until there is a single band left.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The version of the serialized tasks stepping the off-heap bands
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first band and the band after the last one
+         */
+        private final int from, to;
+
+        /**
+         * Allows to create the task of a range of bands.
+         *
+         * @param from the first band
+         * @param to   the band after the last one
+         */
+        Bands(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1) {
+                stepBand(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Bands(from, middle), new Bands(middle, to));
+            }
+        }
+
+    }
+
+    /**
+     * Allows to copy the board on the heap, for small boards only.
+     *
+     * @return [][]int the states of the cells
+     */
+    @Override
+    public int[][] getCells()
+    {
+        int[][] cells = new int[board.getHeight()][board.getWidth()];
+        this.copyCells(cells);
+        return cells;
+    }
+
+    @Override
+    public void copyCells(int[][] target)
+    {
+        long[] row = new long[board.getWords()];
+        for (int i = 0; i < board.getHeight(); i++) {
+            board.getRow(i, row, 0);
+            for (int j = 0; j < board.getWidth(); j++) target[i][j] = (int) (row[j >>> 6] >>> j) & 1;
+        }
+    }
+
+    @Override
+    public void setCells(int[][] cells)
+    {
+        this.begin(cells.length, cells.length == 0 ? 0 : cells[0].length);
+        for (int i = 0; i < cells.length; i++)
+            for (int j = 0; j < cells[i].length; j++)
+                if (cells[i][j] != 0) this.setRun(i, j, 1);
+    }
+
+    /**
+     * Allows to empty the board. A board of other dimensions replaces it, mapped from the same file if the board
+     * had one.
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    @Override
+    public void begin(int height, int width)
+    {
+        if (height != board.getHeight() || width != board.getWidth()) {
+            Path file = board.getFile();
+            try {
+                board = file == null ? OffHeapBoard.allocate(height, width) : OffHeapBoard.map(file, height, width);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        board.clear();
+        rehash = true;
+    }
+
+    @Override
+    public void setRun(int i, int j, int length)
+    {
+        int to = j + length;
+        while (j < to) {
+            int end = Math.min(to, (j & ~63) + 64), w = j >>> 6;
+            board.setWord(i, w, board.getWord(i, w) | (-1L >>> (64 - (end - j))) << j);
+            j = end;
+        }
+        rehash = true;
+    }
+
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        return BitKernel.nextCell(board, i, j, alive, board.getWords(), board.getWidth());
+    }
+
+    /**
+     * Allows to know the state of a cell
+     *
+     * @param i the row of the cell
+     * @param j the column of the cell
+     * @return boolean true if alive and false if not
+     */
+    public boolean get(int i, int j)
+    {
+        return (board.getWord(i, j >>> 6) & (1L << j)) != 0;
+    }
+
+    /**
+     * Allows to change the state of a cell
+     *
+     * @param i     the row of the cell
+     * @param j     the column of the cell
+     * @param alive the new state of the cell
+     */
+    public void set(int i, int j, boolean alive)
+    {
+        long word = board.getWord(i, j >>> 6);
+        board.setWord(i, j >>> 6, alive ? word | 1L << j : word & ~(1L << j));
+        rehash = true;
+    }
+
+    @Override
+    public void setCell(int i, int j, boolean alive)
+    {
+        this.set(i, j, alive);
+    }
+
+    @Override
+    public void setHashing(boolean hashing)
+    {
+        this.hashing = hashing;
+        rehash = true;
+    }
+
+    @Override
+    public long getHash()
+    {
+        if (rehash) {
+            int words = board.getWords();
+            long[] row = new long[words];
+            hash = 0;
+            for (int i = 0; i < board.getHeight(); i++) {
+                board.getRow(i, row, 0);
+                for (int w = 0; w < words; w++) hash ^= BoardHash.word((long) i * words + w, row[w]);
+            }
+            rehash = false;
+        }
+        return hash;
+    }
+
+    @Override
+    public void setCounting(boolean counting)
+    {
+        this.counting = counting;
+    }
+
+    @Override
+    public long getBirths()
+    {
+        return births;
+    }
+
+    @Override
+    public long getDeaths()
+    {
+        return deaths;
+    }
+
+    @Override
+    public long getPopulation()
+    {
+        return board.getPopulation();
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        this.table = BitKernel.compile(rule);
+        this.rule = rule;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return board.getHeight();
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return board.getWidth();
+    }
+
+    /**
+     * @return OffHeapBoard the board, which changes when a pattern of other dimensions is loaded
+     */
+    public OffHeapBoard getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Allows to stop the threads of the engine and to write the board to its file, if it has one.
+     */
+    @Override
+    public void close()
+    {
+        if (pool != null) pool.shutdown();
+        board.force();
+    }
+
+}
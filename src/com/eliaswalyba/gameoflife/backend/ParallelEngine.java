@@ -0,0 +1,213 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelEngine extends BitEngine implements AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: ParallelEngine
+     * @description: A BitEngine computing bands of rows on several cores at once
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The board is cut in bands of consecutive rows and each band is a task of a fork/join pool.
+     * The bands only read the current generation, which nobody writes while a generation is computed, and each
+     * of them writes its own rows of the next buffer. So a band can read the rows of its neighbor bands directly
+     * as its halo, without copying them, and the rows of the first and of the last band wrap around exactly like
+     * in the BitEngine. The result is the same, bit for bit, as computing the rows one after the other.
+     * Each band also works out how its rows change the hash of the board, and counts its births and deaths when
+     * asked, the bands being combined after the join.
+     * The time spent on each band is recorded to find out when some bands are much slower than others.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The pool running the bands
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Whether the pool was created by this engine, and must be shut down with it
+     */
+    private final boolean ownsPool;
+
+    /**
+     * The number of rows in a band
+     */
+    private int bandRows;
+
+    /**
+     * The time spent on each band during the last generation, in nanoseconds
+     */
+    private long[] bandNanos = new long[0];
+
+    /**
+     * How each band changed the hash of the board during the last generation
+     */
+    private long[] bandChanges = new long[0];
+
+    /**
+     * The cells born and dead in each band during the last generation, when they are counted
+     */
+    private long[] bandBirths = new long[0], bandDeaths = new long[0];
+
+    /**
+     * The constructor of an engine with its own pool
+     *
+     * @param cells       [][]int the grids state to populate in the engine
+     * @param parallelism the number of threads computing the bands
+     * @param bandRows    the number of rows in a band
+     */
+    public ParallelEngine(int[][] cells, int parallelism, int bandRows)
+    {
+        this(cells, new ForkJoinPool(parallelism), bandRows, true);
+    }
+
+    /**
+     * The constructor of an engine sharing a pool
+     *
+     * @param cells    [][]int the grids state to populate in the engine
+     * @param pool     the pool running the bands
+     * @param bandRows the number of rows in a band
+     */
+    public ParallelEngine(int[][] cells, ForkJoinPool pool, int bandRows)
+    {
+        this(cells, pool, bandRows, false);
+    }
+
+    /**
+     * The constructor of the class
+     *
+     * @param cells    [][]int the grids state to populate in the engine
+     * @param pool     the pool running the bands
+     * @param bandRows the number of rows in a band
+     * @param ownsPool whether the pool must be shut down with the engine
+     */
+    private ParallelEngine(int[][] cells, ForkJoinPool pool, int bandRows, boolean ownsPool)
+    {
+        super(cells);
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.setBandRows(bandRows);
+    }
+
+    @Override
+    public void nextGeneration()
+    {
+        int bands = (height + bandRows - 1) / bandRows;
+        if (bandNanos.length != bands) {
+            bandNanos = new long[bands];
+            bandChanges = new long[bands];
+            bandBirths = new long[bands];
+            bandDeaths = new long[bands];
+        }
+        pool.invoke(new Bands(0, bands));
+        long changes = 0, births = 0, deaths = 0;
+        for (int b = 0; b < bands; b++) {
+            changes ^= bandChanges[b];
+            births += bandBirths[b];
+            deaths += bandDeaths[b];
+        }
+        this.count(births, deaths);
+        this.swap(changes);
+    }
+
+    private class Bands extends RecursiveAction
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Bands
+         * @description: Computes a range of bands, splitting it in two until there is a single band left.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The version of the serialized bands, RecursiveAction being serializable
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first band and the band after the last one
+         */
+        private final int from, to;
+
+        /**
+         * Allows to create the task of a range of bands.
+         *
+         * @param from the first band
+         * @param to   the band after the last one
+         */
+        Bands(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1) {
+                long start = System.nanoTime();
+                int first = from * bandRows, end = Math.min(height, (from + 1) * bandRows);
+                bandChanges[from] = stepRows(first, end);
+                bandBirths[from] = born(first, end);
+                bandDeaths[from] = died(first, end);
+                bandNanos[from] = System.nanoTime() - start;
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Bands(from, middle), new Bands(middle, to));
+            }
+        }
+
+    }
+
+    /**
+     * Allows to change the size of the bands.
+     *
+     * @param bandRows the number of rows in a band
+     */
+    public void setBandRows(int bandRows)
+    {
+        if (bandRows <= 0) throw new IllegalArgumentException("A band must have at least one row: " + bandRows);
+        this.bandRows = bandRows;
+    }
+
+    /**
+     * @return int the number of rows in a band
+     */
+    public int getBandRows()
+    {
+        return bandRows;
+    }
+
+    /**
+     * @return int the number of threads computing the bands
+     */
+    public int getParallelism()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Allows to find out the load imbalance between the bands.
+     *
+     * @return long[] the time spent on each band during the last generation, in nanoseconds
+     */
+    public long[] getBandNanos()
+    {
+        return bandNanos.clone();
+    }
+
+    /**
+     * Allows to stop the threads of the pool if it belongs to this engine.
+     */
+    @Override
+    public void close()
+    {
+        if (ownsPool) pool.shutdown();
+    }
+
+}
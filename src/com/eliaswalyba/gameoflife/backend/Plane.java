@@ -0,0 +1,37 @@
+package com.eliaswalyba.gameoflife.backend;
+
+public interface Plane
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Plane
+     * @description: An engine whose board is the whole plane, seen through a window
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The SparseEngine, the HashLifeEngine and the AdaptiveEngine have no border: their window, placed at the
+     * coordinates (0, 0), is only what getCells and nextCell show, and the cells that leave it go on living. A
+     * board saved through the window loses them, so the checkpoints and the snapshots of these engines save the
+     * smallest rectangle holding all the alive cells, with its position in the plane.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * @return long[] the smallest rectangle holding all the alive cells of the plane: its first row, its first
+     *         column, its number of rows and its number of columns; a single cell at (0, 0) when there is none
+     */
+    long[] getBounds();
+
+    /**
+     * Allows to read any rectangle of the plane run by run.
+     *
+     * @param top    the first row of the rectangle
+     * @param left   the first column of the rectangle
+     * @param height the number of rows of the rectangle
+     * @param width  the number of columns of the rectangle
+     * @return CellSource the rectangle, its cell (i, j) being the cell (top + i, left + j) of the plane; it is only
+     *         valid until the next generation
+     */
+    CellSource window(long top, long left, int height, int width);
+
+}
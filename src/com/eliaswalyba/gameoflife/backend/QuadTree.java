@@ -0,0 +1,121 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+
+public final class QuadTree
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: QuadTree
+     * @description: A flat list of the distinct nodes of a quadtree, the way the Macrocell files store them
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The nodes are numbered from 1 in the order they are added, and a node can only refer to nodes added before
+     * it, so the last one is the root. The number 0 stands for an empty node of any level. The leaves are squares
+     * of 8x8 cells (level 3) held in a long: the cell (x, y) of a leaf is the bit y * 8 + x.
+     * This is how the HashLifeEngine gives its universe to the pattern writers and gets one from the readers
+     * without building its nodes anywhere else: a node shared a million times is still a single entry here.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The level of the leaves
+     */
+    public static final int LEAF_LEVEL = 3;
+
+    /**
+     * The level of each node, and its 4 children (or the cells of the leaves) in one array
+     */
+    private byte[] levels = new byte[64];
+    private long[] nodes = new long[64 * 2];
+
+    /**
+     * The number of nodes
+     */
+    private int size;
+
+    /**
+     * Allows to add a leaf.
+     *
+     * @param cells the 8x8 cells of the leaf, the cell (x, y) being the bit y * 8 + x
+     * @return int the number of the leaf
+     */
+    public int leaf(long cells)
+    {
+        int id = this.add(LEAF_LEVEL);
+        nodes[2 * id] = cells;
+        return id;
+    }
+
+    /**
+     * Allows to add a node made of 4 nodes already added.
+     *
+     * @param level the level of the node, above the level of the leaves
+     * @return int the number of the node
+     */
+    public int node(int level, int nw, int ne, int sw, int se)
+    {
+        if (level <= LEAF_LEVEL || level > 63)
+            throw new IllegalArgumentException("A node cannot be of level " + level);
+        for (int child : new int[] {nw, ne, sw, se})
+            if (child < 0 || child > size || (child != 0 && levels[child] != level - 1))
+                throw new IllegalArgumentException("The node " + child + " cannot be a child of level " + (level - 1));
+        int id = this.add(level);
+        nodes[2 * id] = (long) nw << 32 | ne & 0xFFFFFFFFL;
+        nodes[2 * id + 1] = (long) sw << 32 | se & 0xFFFFFFFFL;
+        return id;
+    }
+
+    /**
+     * @return int the number of the new node
+     */
+    private int add(int level)
+    {
+        int id = ++size;
+        if (id == levels.length) {
+            levels = Arrays.copyOf(levels, id * 2);
+            nodes = Arrays.copyOf(nodes, id * 4);
+        }
+        levels[id] = (byte) level;
+        return id;
+    }
+
+    /**
+     * @return int the number of nodes, which is also the number of the root
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return int the level of a node
+     */
+    public int level(int id)
+    {
+        return levels[id];
+    }
+
+    /**
+     * @return long the cells of a leaf
+     */
+    public long cells(int id)
+    {
+        return nodes[2 * id];
+    }
+
+    /**
+     * Allows to get a child of a node.
+     *
+     * @param id       the number of the node
+     * @param quadrant 0 for the north west child, 1 for the north east, 2 for the south west and 3 for the south east
+     * @return int the number of the child, 0 if it is empty
+     */
+    public int child(int id, int quadrant)
+    {
+        long pair = nodes[2 * id + (quadrant >> 1)];
+        return (int) ((quadrant & 1) == 0 ? pair >> 32 : pair);
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Locale;
+
+public final class Rule
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Rule
+     * @description: A life-like rule, read from its rulestring and compiled into a table
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A rule tells which numbers of alive neighbors give birth to a dead cell (B) and which ones keep an alive
+     * cell alive (S): Conway's game is "B3/S23", HighLife "B36/S23", Day & Night "B3678/S34678" and Seeds "B2/S".
+     * The order "S/B" without letters ("23/3") is read too.
+     * A Generations rule adds a number of states C ("B2/S/C3" or "/2/3"): an alive cell that does not survive
+     * is not dead yet, it goes through the states 2 to C-1, one per generation, before dying. Only the cells in
+     * the state 1 count as alive neighbors, and a dying cell cannot be born again.
+     *
+     * The rule is compiled once into a table giving the next state of a cell from its state and its number of
+     * alive neighbors, so applying it is a lookup without any branch. The rulestrings are described at
+     * https://conwaylife.com/wiki/Rulestring.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The game of life, B3/S23
+     */
+    public static final Rule LIFE = new Rule(1 << 3, 1 << 2 | 1 << 3, 2);
+
+    /**
+     * The numbers of neighbors giving birth and keeping alive, the bit n standing for n neighbors
+     */
+    private final int born, survive;
+
+    /**
+     * The number of states of a cell, 2 unless it is a Generations rule
+     */
+    private final int states;
+
+    /**
+     * The next state of a cell in the state s with n alive neighbors, at s * 9 + n
+     */
+    private final byte[] table;
+
+    /**
+     * The constructor of the class
+     *
+     * @param born    the numbers of neighbors giving birth, the bit n standing for n neighbors
+     * @param survive the numbers of neighbors keeping alive, the bit n standing for n neighbors
+     * @param states  the number of states of a cell
+     */
+    private Rule(int born, int survive, int states)
+    {
+        this.born = born;
+        this.survive = survive;
+        this.states = states;
+        this.table = new byte[states * 9];
+        for (int n = 0; n <= 8; n++) {
+            table[n] = (byte) (born >>> n & 1);
+            table[9 + n] = (byte) ((survive >>> n & 1) != 0 ? 1 : states == 2 ? 0 : 2);
+            for (int s = 2; s < states; s++) table[s * 9 + n] = (byte) (s + 1 < states ? s + 1 : 0);
+        }
+    }
+
+    /**
+     * Allows to read a rule from its rulestring, or from the name of a well known rule (life, highlife,
+     * daynight, seeds, brianbrain).
+     *
+     * @param rulestring the rulestring, "B36/S23" for instance
+     * @return Rule the rule
+     */
+    public static Rule parse(String rulestring)
+    {
+        String text = rulestring.trim().toUpperCase(Locale.ROOT);
+        switch (text) {
+            case "LIFE":       return LIFE;
+            case "HIGHLIFE":   text = "B36/S23"; break;
+            case "DAYNIGHT":   text = "B3678/S34678"; break;
+            case "SEEDS":      text = "B2/S"; break;
+            case "BRIANBRAIN": text = "B2/S/C3"; break;
+        }
+        String[] parts = text.split("/", -1);
+        if (parts.length < 2 || parts.length > 3) throw invalid(rulestring);
+        int born = -1, survive = -1, states = 2;
+        boolean letters = parts[0].startsWith("B") || parts[0].startsWith("S");
+        for (int k = 0; k < parts.length; k++) {
+            String part = parts[k];
+            char kind = letters ? (part.isEmpty() ? ' ' : part.charAt(0)) : "SBC".charAt(k);
+            String digits = letters ? part.substring(part.isEmpty() ? 0 : 1) : part;
+            if (kind == 'B' && born < 0) born = neighbors(digits, rulestring);
+            else if (kind == 'S' && survive < 0) survive = neighbors(digits, rulestring);
+            else if ((kind == 'C' || kind == 'G') && k == 2) states = count(digits, rulestring);
+            else throw invalid(rulestring);
+        }
+        if (born < 0 || survive < 0) throw invalid(rulestring);
+        return born == LIFE.born && survive == LIFE.survive && states == 2 ? LIFE : new Rule(born, survive, states);
+    }
+
+    /**
+     * @return int the numbers of neighbors written in a rulestring, the bit n standing for n neighbors
+     */
+    private static int neighbors(String digits, String rulestring)
+    {
+        int mask = 0;
+        for (int k = 0; k < digits.length(); k++) {
+            int n = digits.charAt(k) - '0';
+            if (n < 0 || n > 8) throw invalid(rulestring);
+            mask |= 1 << n;
+        }
+        return mask;
+    }
+
+    /**
+     * @return int the number of states written in a rulestring
+     */
+    private static int count(String digits, String rulestring)
+    {
+        try {
+            int states = Integer.parseInt(digits);
+            if (states < 2 || states > 127) throw invalid(rulestring);
+            return states;
+        } catch (NumberFormatException e) {
+            throw invalid(rulestring);
+        }
+    }
+
+    /**
+     * @return IllegalArgumentException the error of a rulestring that cannot be read
+     */
+    private static IllegalArgumentException invalid(String rulestring)
+    {
+        return new IllegalArgumentException("Invalid rule: " + rulestring + " (B3/S23, 23/3 or B2/S/C3 expected)");
+    }
+
+    /**
+     * Allows to apply the rule on a cell.
+     *
+     * @param state     the state of the cell
+     * @param neighbors the number of its neighbors in the state 1
+     * @return int the state of the cell in the next generation
+     */
+    public int next(int state, int neighbors)
+    {
+        return table[state * 9 + neighbors];
+    }
+
+    /**
+     * @return int the numbers of neighbors giving birth to a dead cell, the bit n standing for n neighbors
+     */
+    public int getBorn()
+    {
+        return born;
+    }
+
+    /**
+     * @return int the numbers of neighbors keeping a cell alive, the bit n standing for n neighbors
+     */
+    public int getSurvive()
+    {
+        return survive;
+    }
+
+    /**
+     * @return int the number of states of a cell, 2 unless it is a Generations rule
+     */
+    public int getStates()
+    {
+        return states;
+    }
+
+    /**
+     * @return boolean true if this is the game of life, B3/S23
+     */
+    public boolean isLife()
+    {
+        return this == LIFE;
+    }
+
+    /**
+     * @return boolean true if a dead cell surrounded by dead cells is born: an infinite plane would fill at once
+     */
+    public boolean bornFromNothing()
+    {
+        return (born & 1) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof Rule)) return false;
+        Rule rule = (Rule) o;
+        return born == rule.born && survive == rule.survive && states == rule.states;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (born * 512 + survive) * 128 + states;
+    }
+
+    /**
+     * @return String the rulestring of the rule, "B36/S23" or "B2/S/C3" for instance
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder("B");
+        for (int n = 0; n <= 8; n++) if ((born >>> n & 1) != 0) text.append(n);
+        text.append("/S");
+        for (int n = 0; n <= 8; n++) if ((survive >>> n & 1) != 0) text.append(n);
+        if (states > 2) text.append("/C").append(states);
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,432 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class Simulation implements Runnable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Simulation
+     * @description: Runs an engine on its own thread, at a given number of generations per second
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The engine belongs to the simulation thread: no other thread ever touches it. The UI drives it by sending
+     * commands (play, pause, step, edit a cell...) which are queued and applied by the simulation thread between
+     * two generations, and it receives the generations through a FrameSlot. When the UI is slower than the
+     * simulation it skips the generations it had no time to draw instead of queueing them.
+     * Each generation is measured in the Metrics of the simulation: the engine is asked to count its births and
+     * deaths if it can (see CellCounter), so that the population never has to be counted again.
+     * The changes of each generation and of each edit are also published to the subscribers of getEvents, as
+     * cells born and dead with a keyframe from time to time. The simulation never waits for a slow subscriber,
+     * unless it subscribed with the BLOCK backpressure.
+     * The recent boards are kept in a History, so that the simulation can go back to any of them (see rewind) and
+     * forward again, as long as nothing else happens in between. This needs an engine that is a CellSink, any
+     * engine but the Controller.
+     * The generations following the board are computed ahead by a Lookahead while the user looks at the board,
+     * when the engine is a BitEngine: stepping, or playing, then copies a ready generation into the engine. A
+     * cell painted by the user is changed in place in the engine and in the board the look-ahead follows, only
+     * the frames after it being computed again; any other change of the board, a rewind or a pattern loaded,
+     * restarts the look-ahead from it.
+     * A headless simulation, run by a server without any window, only publishes its events: it keeps no frames
+     * for a UI, no history and no look-ahead, whose buffers and thread nobody would use.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The engine computing the generations
+     */
+    private final Engine engine;
+
+    /**
+     * The slot receiving the generations for the UI, null if the simulation is headless
+     */
+    private final FrameSlot frames;
+
+    /**
+     * The commands waiting to be applied on the engine
+     */
+    private final ConcurrentLinkedQueue<Consumer<Engine>> commands = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The simulation thread
+     */
+    private final Thread thread;
+
+    /**
+     * Whether the generations are computed continuously, and whether the thread must stop
+     */
+    private volatile boolean playing, stopped;
+
+    /**
+     * The target number of generations per second while playing
+     */
+    private volatile double generationsPerSecond;
+
+    /**
+     * The number of generations computed so far, only touched by the simulation thread
+     */
+    private long generation;
+
+    /**
+     * What the simulation measures, readable from any thread
+     */
+    private final Metrics metrics;
+
+    /**
+     * The publisher of the changes of the board, to which anyone can subscribe
+     */
+    private final GenerationPublisher events = new GenerationPublisher(GenerationPublisher.Backpressure.COALESCE,
+            Config.EVENTS_CAPACITY, Config.KEYFRAME_INTERVAL);
+
+    /**
+     * The recent boards, only touched by the simulation thread, null if the simulation is headless
+     */
+    private final History history;
+
+    /**
+     * Whether the board comes from the history, so that it is not recorded again
+     */
+    private boolean rewound;
+
+    /**
+     * The generations computed ahead, null if the engine is not a BitEngine or if the simulation is headless
+     */
+    private final Lookahead lookahead;
+
+    /**
+     * Whether the look-ahead followed the last change of the board (a generation taken from it, or a cell it
+     * changed too), and whether the board changed otherwise since the look-ahead was restarted, only touched by
+     * the simulation thread
+     */
+    private boolean speculated, diverged;
+
+    /**
+     * The constructor of the class
+     *
+     * @param engine               the engine, which must not be used by anyone else anymore
+     * @param height               the number of rows of the board
+     * @param width                the number of columns of the board
+     * @param generationsPerSecond the target number of generations per second while playing
+     */
+    public Simulation(Engine engine, int height, int width, double generationsPerSecond)
+    {
+        this(engine, height, width, generationsPerSecond, false);
+    }
+
+    /**
+     * The constructor of a simulation that may be headless
+     *
+     * @param engine               the engine, which must not be used by anyone else anymore
+     * @param height               the number of rows of the board
+     * @param width                the number of columns of the board
+     * @param generationsPerSecond the target number of generations per second while playing
+     * @param headless             true if nothing but the events of the simulation are followed
+     */
+    public Simulation(Engine engine, int height, int width, double generationsPerSecond, boolean headless)
+    {
+        this.engine = engine;
+        this.frames = headless ? null : new FrameSlot(height, width);
+        this.history = headless ? null : new History(Config.HISTORY_BUDGET, Config.HISTORY_KEYFRAME_INTERVAL);
+        this.metrics = new Metrics((long) height * width);
+        this.metrics.watch(engine);
+        this.setGenerationsPerSecond(generationsPerSecond);
+        this.lookahead = !headless && engine instanceof BitEngine ? new Lookahead(Config.LOOKAHEAD_DEPTH) : null;
+        this.thread = new Thread(this, "simulation");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Allows to start the simulation thread, paused.
+     */
+    public void start()
+    {
+        if (lookahead != null) lookahead.start();
+        thread.start();
+    }
+
+    /**
+     * Allows to stop the simulation thread for good.
+     */
+    public void stop()
+    {
+        stopped = true;
+        events.close();
+        if (lookahead != null) lookahead.close();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Allows to compute the generations continuously.
+     */
+    public void play()
+    {
+        playing = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Allows to stop computing the generations, the last one staying on the board.
+     */
+    public void pause()
+    {
+        playing = false;
+    }
+
+    /**
+     * @return boolean true if the generations are computed continuously
+     */
+    public boolean isPlaying()
+    {
+        return playing;
+    }
+
+    /**
+     * Allows to compute a single generation. The simulation is paused first.
+     */
+    public void step()
+    {
+        playing = false;
+        this.submit(this::advance);
+    }
+
+    /**
+     * Allows to go back one generation. The simulation is paused first.
+     */
+    public void stepBack()
+    {
+        playing = false;
+        this.submit(engine -> this.restore(engine, generation - 1));
+    }
+
+    /**
+     * Allows to go back, or forward again, to a generation kept in the history. The simulation is paused first.
+     *
+     * @param generation the generation, the closest one kept before it being taken if it is not kept
+     */
+    public void rewind(long generation)
+    {
+        playing = false;
+        this.submit(engine -> this.restore(engine, generation));
+    }
+
+    /**
+     * Allows to know the generations kept in the history, from any thread.
+     *
+     * @return History the history, of which only the bounds can be read from another thread, null if the
+     * simulation is headless
+     */
+    public History getHistory()
+    {
+        return history;
+    }
+
+    /**
+     * Allows to change the state of a cell. The new state is published like a generation.
+     *
+     * @param i     the row of the cell
+     * @param j     the column of the cell
+     * @param alive the new state of the cell
+     */
+    public void setCell(int i, int j, boolean alive)
+    {
+        this.submit(engine -> this.edit(engine, i, j, alive));
+    }
+
+    /**
+     * Allows to replace the whole board. The matrix is copied, the caller can go on using it.
+     *
+     * @param cells int[][] the new matrix of cells
+     */
+    public void setCells(int[][] cells)
+    {
+        int[][] copy = new int[cells.length][];
+        for (int i = 0; i < cells.length; i++) copy[i] = cells[i].clone();
+        this.submit(engine -> engine.setCells(copy));
+    }
+
+    /**
+     * Allows to change the pace of the simulation.
+     *
+     * @param generationsPerSecond the target number of generations per second while playing
+     */
+    public void setGenerationsPerSecond(double generationsPerSecond)
+    {
+        if (!(generationsPerSecond > 0))
+            throw new IllegalArgumentException("The pace must be positive: " + generationsPerSecond);
+        this.generationsPerSecond = generationsPerSecond;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Allows the UI to get the generations.
+     *
+     * @return FrameSlot the slot receiving the generations, null if the simulation is headless
+     */
+    public FrameSlot getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * Allows to read what the simulation measures, from any thread.
+     *
+     * @return Metrics the metrics of the simulation
+     */
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Allows to follow the changes of the board, from any thread. The events of a subscriber coalesce when it is
+     * late, unless it subscribed with another backpressure.
+     *
+     * @return GenerationPublisher the publisher of the changes of the board
+     */
+    public GenerationPublisher getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Allows to queue a command for the simulation thread and to wake it up. The board is published once the
+     * command is applied, like after a generation.
+     *
+     * @param command what to do with the engine, on the simulation thread
+     */
+    public void submit(Consumer<Engine> command)
+    {
+        commands.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Allows to compute a generation on the simulation thread, or to take it from the look-ahead if it is there.
+     *
+     * @param engine the engine of the simulation
+     */
+    private void advance(Engine engine)
+    {
+        speculated = lookahead != null && !diverged && lookahead.take(generation, (BitEngine) engine, metrics);
+        if (!speculated) metrics.step(engine);
+        generation++;
+    }
+
+    /**
+     * Allows to change a cell on the simulation thread, in place when the engine can (see CellSink), the
+     * look-ahead changing it too instead of starting again from a copy of the board.
+     *
+     * @param engine the engine of the simulation
+     * @param i      the row of the cell
+     * @param j      the column of the cell
+     * @param alive  the new state of the cell
+     */
+    private void edit(Engine engine, int i, int j, boolean alive)
+    {
+        if (engine instanceof CellSink) {
+            try {
+                ((CellSink) engine).setCell(i, j, alive);
+                speculated = lookahead != null && !diverged && lookahead.edit(generation, i, j, alive);
+                return;
+            } catch (UnsupportedOperationException e) {
+                /* Hashlife cannot change a cell in place, it gets a whole new board like the Controller */
+            }
+        }
+        int[][] cells = engine.getCells();
+        cells[i][j] = alive ? 1 : 0;
+        engine.setCells(cells);
+    }
+
+    /**
+     * Allows to put a board of the history back in the engine, on the simulation thread.
+     *
+     * @param engine the engine of the simulation
+     * @param target the generation wanted
+     */
+    private void restore(Engine engine, long target)
+    {
+        if (history == null || !(engine instanceof CellSink) || target < 0) return;
+        long restored = history.restore(target, (CellSink) engine);
+        if (restored < 0) return;
+        generation = restored;
+        rewound = true;
+    }
+
+    /**
+     * Allows to copy the board of the engine in a buffer of the UI, as words of 64 cells.
+     *
+     * @param words the buffer
+     */
+    private void pack(long[] words)
+    {
+        if (engine instanceof CellSource) {
+            CellSource.toWords((CellSource) engine, words);
+            return;
+        }
+        /* The other engines only give a matrix of states, the cells that are not dead are shown alive */
+        int[][] cells = engine.getCells();
+        int count = cells.length == 0 ? 0 : (cells[0].length + 63) >>> 6;
+        Arrays.fill(words, 0);
+        for (int i = 0; i < cells.length; i++)
+            for (int j = 0; j < cells[i].length; j++)
+                if (cells[i][j] != 0) words[i * count + (j >>> 6)] |= 1L << j;
+    }
+
+    /**
+     * The loop of the simulation thread: it applies the commands, computes a generation when it is time to and
+     * sleeps until the next generation or the next command.
+     */
+    @Override
+    public void run()
+    {
+        long deadline = System.nanoTime();
+        if (lookahead != null) lookahead.restart(generation, (BitEngine) engine);
+        while (!stopped) {
+            /* Anything but a generation taken from the look-ahead leaves it behind the board */
+            boolean changed = false;
+            for (Consumer<Engine> command; (command = commands.poll()) != null; ) {
+                speculated = false;
+                command.accept(engine);
+                changed = true;
+                diverged |= !speculated;
+            }
+            /* A command may have edited the board, the births and the deaths do not tell */
+            if (changed) metrics.setPopulation(engine.getPopulation());
+
+            long now = System.nanoTime();
+            if (playing && now - deadline >= 0) {
+                this.advance(engine);
+                changed = true;
+                diverged |= !speculated;
+                long period = (long) (TimeUnit.SECONDS.toNanos(1) / generationsPerSecond);
+                /* When we are late we do not try to catch up with a burst of generations */
+                deadline = Math.max(deadline + period, now);
+            }
+
+            if (changed) {
+                if (frames != null) {
+                    this.pack(frames.back());
+                    frames.publish(generation);
+                }
+                if (engine instanceof CellSource) {
+                    if (history != null && !rewound) history.record(generation, (CellSource) engine);
+                    events.publish(generation, (CellSource) engine);
+                }
+                rewound = false;
+                if (diverged && lookahead != null) lookahead.restart(generation, (BitEngine) engine);
+                diverged = false;
+            } else if (playing) {
+                LockSupport.parkNanos(this, deadline - now);
+            } else {
+                LockSupport.park(this);
+                deadline = System.nanoTime();
+            }
+        }
+    }
+
+}
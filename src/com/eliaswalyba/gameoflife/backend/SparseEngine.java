@@ -0,0 +1,374 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+public class SparseEngine implements Engine, CellSink, CellSource, Plane, BoardHash, CellCounter
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: SparseEngine
+     * @description: An engine whose cost only depends on the cells that changed, not on the size of the board
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Only the alive cells are stored, in a set of longs: the abscissa x and the ordinate y of a cell are packed
+     * in the 32 high and the 32 low bits of a long (see pack). There is no bound: the board is the whole plane.
+     * A cell can only change if itself or one of its neighbors changed during the previous generation. So we keep
+     * the set of the cells that changed (the frontier) and we only evaluate them and their neighbors, the rest of
+     * the plane being dead or stable for sure. A still life costs nothing at all.
+     *
+     * Like the HashLifeEngine the matrix given to setCells is placed at the coordinates (0, 0) and getCells
+     * returns the same window of the plane (see Plane).
+     * The hash of the board (see BoardHash) is updated with the cells born and dead, which costs little next to
+     * evaluating them, so it is always kept. The births and the deaths are always counted too.
+     * Any rule of 2 states can be applied (see Rule), except the ones giving birth to a cell without neighbors:
+     * they would fill the whole plane at once.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The alive cells, the cells that changed during the last generation and the cells to evaluate
+     */
+    private final LongHashSet alive = new LongHashSet(), changed = new LongHashSet(), candidates = new LongHashSet();
+
+    /**
+     * The cells born and dead during the generation being computed
+     */
+    private long[] births = new long[64], deaths = new long[64];
+
+    /**
+     * The number of cells born and dead during the last generation
+     */
+    private int birthCount, deathCount;
+
+    /**
+     * The number of cells evaluated during the last generation
+     */
+    private long evaluated;
+
+    /**
+     * The hash of the alive cells
+     */
+    private long hash;
+
+    /**
+     * The rule applied at each generation
+     */
+    private Rule rule = Rule.LIFE;
+
+    /**
+     * The visitors of the frontier and of the cells to evaluate, built once to not allocate at each generation
+     */
+    private final LongConsumer neighborhood = this::addNeighborhood, evaluation = this::evaluate;
+
+    /**
+     * The dimensions of the window of the plane seen through getCells and setCells
+     */
+    private int height, width;
+
+    /**
+     * The constructor of the class
+     *
+     * @param cells [][]int the grids state to populate in the engine
+     */
+    public SparseEngine(int[][] cells)
+    {
+        this.setCells(cells);
+    }
+
+    @Override
+    public void nextGeneration()
+    {
+        candidates.clear();
+        changed.forEach(neighborhood);
+
+        birthCount = 0;
+        deathCount = 0;
+        evaluated = candidates.size();
+        candidates.forEach(evaluation);
+
+        changed.clear();
+        for (int k = 0; k < deathCount; k++) {
+            alive.remove(deaths[k]);
+            changed.add(deaths[k]);
+            hash ^= BoardHash.cell(deaths[k]);
+        }
+        for (int k = 0; k < birthCount; k++) {
+            alive.add(births[k]);
+            changed.add(births[k]);
+            hash ^= BoardHash.cell(births[k]);
+        }
+    }
+
+    /**
+     * Allows to add a cell and its 8 neighbors to the cells to evaluate.
+     *
+     * @param key the packed coordinates of the cell
+     */
+    private void addNeighborhood(long key)
+    {
+        int x = x(key), y = y(key);
+        for (int dy = -1; dy <= 1; dy++)
+            for (int dx = -1; dx <= 1; dx++)
+                candidates.add(pack(x + dx, y + dy));
+    }
+
+    /**
+     * Allows to apply the rule on a cell, recording whether it is born or dies.
+     *
+     * @param key the packed coordinates of the cell
+     */
+    private void evaluate(long key)
+    {
+        int x = x(key), y = y(key), n = 0;
+        for (int dy = -1; dy <= 1; dy++)
+            for (int dx = -1; dx <= 1; dx++)
+                if ((dx != 0 || dy != 0) && alive.contains(pack(x + dx, y + dy))) n++;
+        if (alive.contains(key)) {
+            if (rule.next(1, n) == 0) {
+                if (deathCount == deaths.length) deaths = Arrays.copyOf(deaths, deathCount << 1);
+                deaths[deathCount++] = key;
+            }
+        } else if (rule.next(0, n) != 0) {
+            if (birthCount == births.length) births = Arrays.copyOf(births, birthCount << 1);
+            births[birthCount++] = key;
+        }
+    }
+
+    @Override
+    public int[][] getCells()
+    {
+        int[][] cells = new int[height][width];
+        alive.forEach(key -> {
+            int x = x(key), y = y(key);
+            if (x >= 0 && x < width && y >= 0 && y < height) cells[y][x] = 1;
+        });
+        return cells;
+    }
+
+    @Override
+    public void setCells(int[][] cells)
+    {
+        this.height = cells.length;
+        this.width = cells.length == 0 ? 0 : cells[0].length;
+        alive.clear();
+        changed.clear();
+        hash = 0;
+        for (int i = 0; i < height; i++)
+            for (int j = 0; j < width; j++)
+                if (cells[i][j] != 0) set(j, i, true);
+    }
+
+    @Override
+    public void begin(int height, int width)
+    {
+        this.height = height;
+        this.width = width;
+        alive.clear();
+        changed.clear();
+        hash = 0;
+    }
+
+    @Override
+    public void setRun(int i, int j, int length)
+    {
+        for (int k = 0; k < length; k++) set(j + k, i, true);
+    }
+
+    @Override
+    public int nextCell(int i, int j, boolean alive)
+    {
+        while (j < width && get(j, i) != alive) j++;
+        return Math.min(j, width);
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public long[] getBounds()
+    {
+        if (alive.size() == 0) return new long[]{0, 0, 1, 1};
+        long[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        alive.forEach(key -> {
+            box[0] = Math.min(box[0], y(key));
+            box[1] = Math.min(box[1], x(key));
+            box[2] = Math.max(box[2], y(key));
+            box[3] = Math.max(box[3], x(key));
+        });
+        return new long[]{box[0], box[1], box[2] - box[0] + 1, box[3] - box[1] + 1};
+    }
+
+    @Override
+    public CellSource window(long top, long left, int height, int width)
+    {
+        int[] count = new int[1];
+        long[] cells = new long[alive.size()];
+        alive.forEach(key -> {
+            long i = y(key) - top, j = x(key) - left;
+            if (i >= 0 && i < height && j >= 0 && j < width) cells[count[0]++] = CellList.key((int) i, (int) j);
+        });
+        return new CellList(cells, count[0], height, width);
+    }
+
+    /**
+     * Allows to know the state of a cell
+     *
+     * @param x the abscissa of the cell
+     * @param y the ordinate of the cell
+     * @return boolean true if alive and false if not
+     */
+    public boolean get(int x, int y)
+    {
+        return alive.contains(pack(x, y));
+    }
+
+    /**
+     * Allows to change the state of a cell anywhere in the plane
+     *
+     * @param x     the abscissa of the cell
+     * @param y     the ordinate of the cell
+     * @param state the new state of the cell
+     */
+    public void set(int x, int y, boolean state)
+    {
+        long key = pack(x, y);
+        if (state ? alive.add(key) : alive.remove(key)) {
+            changed.add(key);
+            hash ^= BoardHash.cell(key);
+        }
+    }
+
+    @Override
+    public void setCell(int i, int j, boolean alive)
+    {
+        this.set(j, i, alive);
+    }
+
+    /**
+     * The hash is always kept, the engine ignores this setting.
+     */
+    @Override
+    public void setHashing(boolean hashing)
+    {
+    }
+
+    /**
+     * The births and the deaths are always counted, the engine ignores this setting.
+     */
+    @Override
+    public void setCounting(boolean counting)
+    {
+    }
+
+    @Override
+    public long getBirths()
+    {
+        return birthCount;
+    }
+
+    @Override
+    public long getDeaths()
+    {
+        return deathCount;
+    }
+
+    @Override
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * @return long the number of alive cells in the whole plane
+     */
+    @Override
+    public long getPopulation()
+    {
+        return alive.size();
+    }
+
+    @Override
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    @Override
+    public void setRule(Rule rule)
+    {
+        if (rule.getStates() != 2 || rule.bornFromNothing())
+            throw new IllegalArgumentException("The sparse engine cannot apply the rule " + rule);
+        if (rule.equals(this.rule)) return;
+        this.rule = rule;
+        /* The stable cells may not be stable under the new rule: the whole board is the frontier again */
+        alive.forEach(changed::add);
+    }
+
+    /**
+     * Allows to check how much work the last generation needed.
+     *
+     * @return long the number of cells evaluated during the last generation
+     */
+    public long getEvaluatedCells()
+    {
+        return evaluated;
+    }
+
+    /**
+     * @return int the number of cells that changed during the last generation
+     */
+    public int getActivity()
+    {
+        return changed.size();
+    }
+
+    /**
+     * Allows to visit the alive cells of the whole plane, not only the ones in the window.
+     *
+     * @param action what to do with the packed coordinates of each cell (see pack)
+     */
+    public void forEachCell(LongConsumer action)
+    {
+        alive.forEach(action);
+    }
+
+    /**
+     * Allows to pack the coordinates of a cell in a long.
+     *
+     * @param x the abscissa of the cell
+     * @param y the ordinate of the cell
+     * @return long the key of the cell
+     */
+    public static long pack(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return int the abscissa of a packed cell
+     */
+    public static int x(long key)
+    {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * @return int the ordinate of a packed cell
+     */
+    public static int y(long key)
+    {
+        return (int) key;
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+public class StripeEngine implements CellSink
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: StripeEngine
+     * @description: A bit-packed engine computing a band of consecutive rows of a board shared with other ones
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The stripe holds its rows bit-packed like a BitEngine (see BitKernel) between two more rows: the halo
+     * above, a copy of the last row of the stripe above, and the halo below, a copy of the first row of the
+     * stripe below. Whoever runs the stripe gives it its halos before each generation (see setHalo) and takes
+     * its first and last rows for its neighbors (see getEdge). The inner rows do not need the halos: they can be
+     * computed while the halos travel (see stepInner), then the first and the last rows (see stepEdges).
+     * The stripes follow the boundaries of the Controller, the board being cut in rows:
+     *      - TORUS: the halo above the first stripe is the last row of the board, and conversely
+     *      - DEAD: the halos beyond the first and the last rows are empty and never given, and the rows are
+     *        stored with one more column, always dead, which both edges of a row see as their neighbor
+     *      - KLEIN_BOTTLE: like TORUS, but the halos crossing the top or the bottom of the board are given as
+     *        they are and reversed here, so that the cell j sees the cell width - 1 - j of the other side
+     * A GROWING board cannot be cut in stripes known in advance. Only the rules of 2 states are supported.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The first row of the stripe on the board, its number of rows, and the number of rows and columns of the
+     * board
+     */
+    private final int top, rows, height, width;
+
+    /**
+     * The number of columns stored in a row, the dead one included, and the number of words in a row
+     */
+    private final int span, words;
+
+    /**
+     * The boundary of the board
+     */
+    private final Boundary boundary;
+
+    /**
+     * The table of the rule for the kernel
+     */
+    private final long[] table;
+
+    /**
+     * The current generation and the next one, the halo above as row 0 and the halo below as row rows + 1
+     */
+    private long[] current, next;
+
+    /**
+     * The row reversed for a KLEIN_BOTTLE
+     */
+    private final long[] reversed;
+
+    /**
+     * The constructor of the class
+     *
+     * @param top      the first row of the stripe on the board
+     * @param rows     the number of rows of the stripe
+     * @param height   the number of rows of the board
+     * @param width    the number of columns of the board
+     * @param rule     the rule of the game, of 2 states
+     * @param boundary the boundary of the board, anything but GROWING
+     */
+    public StripeEngine(int top, int rows, int height, int width, Rule rule, Boundary boundary)
+    {
+        if (boundary == Boundary.GROWING)
+            throw new IllegalArgumentException("A board cut in stripes cannot have the boundary " + boundary);
+        if (rows <= 0 || top < 0 || top + rows > height || width <= 0)
+            throw new IllegalArgumentException("The rows " + top + " to " + (top + rows) + " are not on a board of "
+                    + height + "x" + width);
+        this.top = top;
+        this.rows = rows;
+        this.height = height;
+        this.width = width;
+        this.boundary = boundary;
+        this.table = BitKernel.compile(rule);
+        this.span = boundary == Boundary.DEAD ? width + 1 : width;
+        this.words = (span + 63) >>> 6;
+        this.current = new long[(rows + 2) * words];
+        this.next = new long[(rows + 2) * words];
+        this.reversed = new long[words];
+    }
+
+    /**
+     * Allows to empty the stripe before a board is given, of which only the rows of the stripe are kept.
+     *
+     * @param height the number of rows of the board, the one of the stripe
+     * @param width  the number of columns of the board, the one of the stripe
+     */
+    @Override
+    public void begin(int height, int width)
+    {
+        if (height != this.height || width != this.width)
+            throw new IllegalArgumentException("The board (" + height + "x" + width + ") is not the board of the "
+                    + "stripe (" + this.height + "x" + this.width + ")");
+        Arrays.fill(current, 0);
+    }
+
+    @Override
+    public void setRun(int i, int j, int length)
+    {
+        if (i < top || i >= top + rows) return;
+        int base = (i - top + 1) * words, to = j + length;
+        while (j < to) {
+            int end = Math.min(to, (j & ~63) + 64);
+            current[base + (j >>> 6)] |= (-1L >>> (64 - (end - j))) << j;
+            j = end;
+        }
+    }
+
+    /**
+     * Allows to know whether a halo has to be given before each generation, false for the empty halos beyond the
+     * edges of a DEAD board.
+     *
+     * @param above true for the halo above the stripe, false for the one below
+     * @return boolean true if the halo has to be given
+     */
+    public boolean needsHalo(boolean above)
+    {
+        return boundary != Boundary.DEAD || !this.crosses(above);
+    }
+
+    /**
+     * @return boolean true if a halo lies beyond the first or the last row of the board
+     */
+    private boolean crosses(boolean above)
+    {
+        return above ? top == 0 : top + rows == height;
+    }
+
+    /**
+     * Allows to take the first or the last row of the stripe, to give it to a neighbor as its halo.
+     *
+     * @param first  true for the first row, false for the last one
+     * @param target where to put the words of the row, see getRowWords for their number
+     */
+    public void getEdge(boolean first, LongBuffer target)
+    {
+        target.put(current, (first ? 1 : rows) * words, words);
+    }
+
+    /**
+     * Allows to give a halo, the edge of a neighbor, before computing a generation.
+     *
+     * @param above  true for the halo above the stripe, false for the one below
+     * @param source the words of the row, as taken by getEdge
+     */
+    public void setHalo(boolean above, LongBuffer source)
+    {
+        int offset = above ? 0 : (rows + 1) * words;
+        if (boundary == Boundary.KLEIN_BOTTLE && this.crosses(above)) {
+            source.get(reversed, 0, words);
+            reverse(reversed, current, offset, words, width);
+        } else {
+            source.get(current, offset, words);
+        }
+    }
+
+    /**
+     * Allows to reverse a row: the cell j of the result is the cell width - 1 - j of the row.
+     *
+     * @param row    the words of the row
+     * @param target the array receiving the reversed row
+     * @param offset the offset of the reversed row in target
+     * @param words  the number of words of the row
+     * @param width  the number of cells of the row
+     */
+    static void reverse(long[] row, long[] target, int offset, int words, int width)
+    {
+        /* Reversing all the words in reverse order reverses the padding too: it is shifted out afterwards */
+        int pad = words * 64 - width;
+        for (int k = 0; k < words; k++) {
+            long low = Long.reverse(row[words - 1 - k]), high = k + 1 < words ? Long.reverse(row[words - 2 - k]) : 0;
+            target[offset + k] = pad == 0 ? low : (low >>> pad) | (high << (64 - pad));
+        }
+        target[offset + words - 1] = BitKernel.mask(width, target[offset + words - 1]);
+    }
+
+    /**
+     * Allows to compute a whole generation, the halos being given.
+     */
+    public void nextGeneration()
+    {
+        this.stepInner();
+        this.stepEdges();
+        this.swap();
+    }
+
+    /**
+     * Allows to compute the rows of the next generation that do not touch the halos, while they are not given.
+     */
+    public void stepInner()
+    {
+        for (int r = 2; r < rows; r++) this.stepRow(r);
+    }
+
+    /**
+     * Allows to compute the first and the last rows of the next generation, once the halos are given.
+     */
+    public void stepEdges()
+    {
+        this.stepRow(1);
+        if (rows > 1) this.stepRow(rows);
+    }
+
+    /**
+     * Allows to make the next generation the current one, once all its rows are computed.
+     */
+    public void swap()
+    {
+        long[] t = current;
+        current = next;
+        next = t;
+    }
+
+    /**
+     * Allows to compute a row of the next generation.
+     *
+     * @param r the row in the stripe, from 1, the halos being 0 and rows + 1
+     */
+    private void stepRow(int r)
+    {
+        BitKernel.stepRow(current, (r - 1) * words, current, r * words, current, (r + 1) * words,
+                next, r * words, words, span, table);
+        /* The extra column of a DEAD board stays dead */
+        if (span != width) next[r * words + (width >>> 6)] &= ~(1L << width);
+    }
+
+    /**
+     * @return long the number of alive cells of the stripe
+     */
+    public long getPopulation()
+    {
+        long population = 0;
+        for (int k = words; k < (rows + 1) * words; k++) population += Long.bitCount(current[k]);
+        return population;
+    }
+
+    /**
+     * Allows to compute the share of the stripe in the hash of the board, the hash of a BitEngine holding the
+     * same board being the XOR of the shares of all its stripes.
+     *
+     * @return long the XOR of the keys of the words of the stripe
+     */
+    public long getHash()
+    {
+        int count = (width + 63) >>> 6;
+        long hash = 0;
+        for (int r = 1; r <= rows; r++) {
+            long index = (long) (top + r - 1) * count;
+            for (int w = 0; w < count; w++) {
+                long word = w == count - 1 ? BitKernel.mask(width, current[r * words + w]) : current[r * words + w];
+                hash ^= BoardHash.word(index + w, word);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Allows to know the state of a cell of the stripe
+     *
+     * @param i the row of the cell on the board
+     * @param j the column of the cell
+     * @return boolean true if alive and false if not
+     */
+    public boolean get(int i, int j)
+    {
+        return (current[(i - top + 1) * words + (j >>> 6)] & (1L << j)) != 0;
+    }
+
+    /**
+     * @return int the number of words of a row, as taken by getEdge and given to setHalo
+     */
+    public int getRowWords()
+    {
+        return words;
+    }
+
+    /**
+     * @return int the first row of the stripe on the board
+     */
+    public int getTop()
+    {
+        return top;
+    }
+
+    /**
+     * @return int the number of rows of the stripe
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+}
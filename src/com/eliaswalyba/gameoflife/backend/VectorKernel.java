@@ -0,0 +1,137 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorKernel implements BitKernel.Words
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: VectorKernel
+     * @description: Computes the inner words of a row several words per instruction with the Vector API
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * This is the loop of BitKernel.stepWords, word for word the same operations, written on vectors of words:
+     * with AVX2 a vector holds 4 words (256 cells), with AVX-512 8 words (512 cells). The neighbors of a word in
+     * the adjacent words are read by loading the same row again one word to the left and one word to the right,
+     * so the shifts never cross the lanes. The words left after the last full vector go to the scalar loop.
+     * Every operation is a logical operation on bits, the result is exactly the one of the scalar kernel.
+     *
+     * The Vector API is an incubator module of the JDK: this class is only loaded, by BitKernel, when the JVM
+     * was started with --add-modules jdk.incubator.vector. Nothing else refers to it, so without the module the
+     * engines simply keep the scalar kernel.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The widest vectors of words the processor computes at once
+     */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * The constructor of the class, refusing a processor without vectors of at least 2 words
+     */
+    VectorKernel()
+    {
+        if (SPECIES.length() < 2)
+            throw new UnsupportedOperationException("The vectors of this processor hold a single word");
+    }
+
+    @Override
+    public String getName()
+    {
+        return "vector, " + SPECIES.vectorBitSize() + " bits";
+    }
+
+    @Override
+    public void step(long[] a, int ao, long[] r, int ro, long[] b, int bo, long[] d, int dO, int from, int to,
+                     long[] rule)
+    {
+        int k = from, lanes = SPECIES.length(), bound = from + SPECIES.loopBound(to - from);
+        boolean life = rule == BitKernel.LIFE;
+        for (; k < bound; k += lanes) {
+            LongVector x = LongVector.fromArray(SPECIES, a, ao + k);
+            LongVector y = LongVector.fromArray(SPECIES, r, ro + k);
+            LongVector z = LongVector.fromArray(SPECIES, b, bo + k);
+            LongVector nw = west(x, LongVector.fromArray(SPECIES, a, ao + k - 1));
+            LongVector ne = east(x, LongVector.fromArray(SPECIES, a, ao + k + 1));
+            LongVector w = west(y, LongVector.fromArray(SPECIES, r, ro + k - 1));
+            LongVector e = east(y, LongVector.fromArray(SPECIES, r, ro + k + 1));
+            LongVector sw = west(z, LongVector.fromArray(SPECIES, b, bo + k - 1));
+            LongVector se = east(z, LongVector.fromArray(SPECIES, b, bo + k + 1));
+
+            /* Sum of the row above and of the row below with two full adders */
+            LongVector a0 = nw.lanewise(VectorOperators.XOR, x).lanewise(VectorOperators.XOR, ne);
+            LongVector a1 = nw.and(x).or(ne.and(nw.lanewise(VectorOperators.XOR, x)));
+            LongVector b0 = sw.lanewise(VectorOperators.XOR, z).lanewise(VectorOperators.XOR, se);
+            LongVector b1 = sw.and(z).or(se.and(sw.lanewise(VectorOperators.XOR, z)));
+            /* Sum of the 2 neighbors of the same row with an half adder */
+            LongVector m0 = w.lanewise(VectorOperators.XOR, e), m1 = w.and(e);
+
+            /* Bit of weight 1 of the count */
+            LongVector ab0 = a0.lanewise(VectorOperators.XOR, b0);
+            LongVector s0 = ab0.lanewise(VectorOperators.XOR, m0), c0 = a0.and(b0).or(m0.and(ab0));
+            /* Bits of weight 2, 4 and 8 of the count */
+            LongVector ab1 = a1.lanewise(VectorOperators.XOR, b1);
+            LongVector p = ab1.lanewise(VectorOperators.XOR, m1), q = a1.and(b1).or(m1.and(ab1));
+            LongVector s1 = p.lanewise(VectorOperators.XOR, c0), t = p.and(c0);
+            LongVector s2 = q.lanewise(VectorOperators.XOR, t), s3 = q.and(t);
+
+            LongVector next;
+            if (life) {
+                /* A cell is alive if it has 3 neighbors, or 2 if it was already alive */
+                next = s1.lanewise(VectorOperators.AND_NOT, s2.or(s3)).and(s0.or(y));
+            } else {
+                next = pick(rule, 0, s0, s1, s2, s3).lanewise(VectorOperators.AND_NOT, y)
+                        .or(pick(rule, 9, s0, s1, s2, s3).and(y));
+            }
+            next.intoArray(d, dO + k);
+        }
+        BitKernel.stepWords(a, ao, r, ro, b, bo, d, dO, k, to, rule);
+    }
+
+    /**
+     * @return LongVector the west neighbors of words, the bit falling out of each word taken from its left word
+     */
+    private static LongVector west(LongVector words, LongVector left)
+    {
+        return words.lanewise(VectorOperators.LSHL, 1).or(left.lanewise(VectorOperators.LSHR, 63));
+    }
+
+    /**
+     * @return LongVector the east neighbors of words, the bit falling out of each word taken from its right word
+     */
+    private static LongVector east(LongVector words, LongVector right)
+    {
+        return words.lanewise(VectorOperators.LSHR, 1).or(right.lanewise(VectorOperators.LSHL, 63));
+    }
+
+    /**
+     * Allows to look up the births or the survivals of a rule for vectors of counts, like BitKernel.pick.
+     *
+     * @param rule the table of the rule
+     * @param o    0 for the births, 9 for the survivals
+     * @return LongVector the entries of the table picked by the counts s3 s2 s1 s0
+     */
+    private static LongVector pick(long[] rule, int o, LongVector s0, LongVector s1, LongVector s2, LongVector s3)
+    {
+        /* The counts 0 to 7, by pairs, then by fours, then all of them; 8 is the only count with s3 */
+        LongVector v0 = select(rule[o], rule[o + 1], s0), v1 = select(rule[o + 2], rule[o + 3], s0);
+        LongVector v2 = select(rule[o + 4], rule[o + 5], s0), v3 = select(rule[o + 6], rule[o + 7], s0);
+        LongVector w0 = v0.lanewise(VectorOperators.AND_NOT, s1).or(v1.and(s1));
+        LongVector w1 = v2.lanewise(VectorOperators.AND_NOT, s1).or(v3.and(s1));
+        return w0.lanewise(VectorOperators.AND_NOT, s2).or(w1.and(s2)).lanewise(VectorOperators.AND_NOT, s3)
+                .or(s3.and(rule[o + 8]));
+    }
+
+    /**
+     * @return LongVector the bits of one where the bits of a selector are 0, and of other where they are 1
+     */
+    private static LongVector select(long one, long other, LongVector selector)
+    {
+        return selector.not().and(one).or(selector.and(other));
+    }
+
+}
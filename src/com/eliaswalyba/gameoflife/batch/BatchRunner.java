@@ -0,0 +1,467 @@
+package com.eliaswalyba.gameoflife.batch;
+
+import com.eliaswalyba.gameoflife.backend.AdaptiveEngine;
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.BoardHash;
+import com.eliaswalyba.gameoflife.backend.Boundary;
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.Controller;
+import com.eliaswalyba.gameoflife.backend.CycleDetector;
+import com.eliaswalyba.gameoflife.backend.Engine;
+import com.eliaswalyba.gameoflife.backend.HashLifeEngine;
+import com.eliaswalyba.gameoflife.backend.Metrics;
+import com.eliaswalyba.gameoflife.backend.OffHeapBoard;
+import com.eliaswalyba.gameoflife.backend.OffHeapEngine;
+import com.eliaswalyba.gameoflife.backend.ParallelEngine;
+import com.eliaswalyba.gameoflife.backend.Plane;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.backend.SparseEngine;
+import com.eliaswalyba.gameoflife.checkpoint.Checkpoint;
+import com.eliaswalyba.gameoflife.checkpoint.Checkpointer;
+import com.eliaswalyba.gameoflife.export.FrameExporter;
+import com.eliaswalyba.gameoflife.pattern.Patterns;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class BatchRunner
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BatchRunner
+     * @description: Runs a simulation from the command line, without any window
+     * @version: 0.3
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * This is the entry point of the servers: it loads a pattern (or builds a random soup), runs it for a number
+     * of generations or until a time budget is spent, optionally writes snapshots of the board on the way, and
+     * prints the throughput, the final population and the wall time.
+     * This class and everything it uses never touch AWT nor Swing, so it starts fast and it runs with
+     * -Djava.awt.headless=true in any container.
+     * The pattern, or the soup, is streamed straight into the storage of the engine: loading a huge board never
+     * needs a matrix of ints on the side.
+     * The checkpoints are written by a background thread while the run goes on, and a run killed with its JVM
+     * can be resumed from the last one. The sparse, hashlife and adaptive engines have no border: their
+     * checkpoints and their snapshots hold the alive cells wherever they went in the plane, the checkpoints
+     * being resumed by one of them.
+     * With --max-period, the hash of the board is kept at each generation and a board that became empty, stable
+     * or an oscillator is noticed as soon as it happens: the run jumps over the whole periods left before the
+     * next snapshot, checkpoint or frame and only computes the last few generations, and the report tells what
+     * the board became.
+     * With --metrics, each generation is measured (see Metrics) and the metrics can be watched through JMX while
+     * the run goes on, with jconsole for instance; the report adds the percentiles of the time per generation.
+     * The offheap engine keeps the board outside of the heap, optionally in a file given by --map, for boards
+     * of billions of cells run with a small heap.
+     * The adaptive engine moves the board between a dense, a sparse and a Hashlife engine as it evolves, and the
+     * report tells where it ended.
+     * With --export-every, frames of the board are written as PNG images, cropped and scaled as asked, by
+     * encoders running beside the simulation (see FrameExporter).
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The help printed when the arguments are wrong
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: BatchRunner [options]",
+            "  --pattern FILE        the pattern to load (.rle, .cells or .mc)",
+            "  --soup SIZE           a random soup of SIZE x SIZE cells instead of a pattern",
+            "  --resume FILE         the checkpoint to resume instead of a pattern",
+            "  --density D           the probability of a cell of the soup to be alive (default 0.5)",
+            "  --seed S              the seed of the soup (default 1)",
+            "  --size HxW            the size of the board, the pattern being centered (default: the pattern)",
+            "  --engine NAME         bit, parallel, sparse, hashlife, adaptive, offheap or controller (default bit)",
+            "  --map FILE            the file holding the board of the offheap engine (default: in memory)",
+            "  --boundary NAME       torus, dead, klein_bottle or growing (controller only, default torus)",
+            "  --rule RULE           B36/S23, 23/3, B2/S/C3 (controller only)... (default: the checkpoint's, B3/S23)",
+            "  --threads N           the threads of the parallel and offheap engines (default: all the cores)",
+            "  --generations N       the number of generations to run (default 1000)",
+            "  --time SECONDS        stop when the time budget is spent, even before N generations",
+            "  --snapshot-every K    write the board every K generations (RLE)",
+            "  --checkpoint-every K  write a checkpoint every K generations",
+            "  --compression NAME    none, runs or tiles: how the checkpoints are compressed (default tiles)",
+            "  --export-every K      write a PNG frame of the board every K generations",
+            "  --crop T,L,HxW        the part of the board in the frames: top, left, height, width (default: all)",
+            "  --scale S             the side of a cell in the frames, in pixels (default 1)",
+            "  --encoders N          the threads encoding the frames (default: all the cores)",
+            "  --snapshot-dir DIR    where to write the snapshots, checkpoints and frames (default .)",
+            "  --max-period P        find still lifes and oscillators up to period P and skip their cycles",
+            "  --metrics NAME        measure each generation and publish the metrics through JMX as NAME"
+    );
+
+    /**
+     * The options of the run
+     */
+    private Path pattern, resume, map, snapshotDir = Paths.get(".");
+    private int soup, height, width, threads = Runtime.getRuntime().availableProcessors();
+    private double density = 0.5, time;
+    private long seed = 1, generations = 1000, snapshotEvery, checkpointEvery, exportEvery;
+    private int[] crop = new int[4];
+    private int scale = 1, encoders = Runtime.getRuntime().availableProcessors();
+    private int maxPeriod;
+    private String engine = "bit", metricsName;
+    private Rule rule;
+    private Boundary boundary;
+    private Checkpoint.Compression compression = Checkpoint.Compression.TILES;
+
+    /**
+     * The generation the run starts from, 0 unless it is resumed
+     */
+    private long first;
+
+    /**
+     * The coordinates in the plane of the cell (0, 0) of an engine of the plane, 0 unless it resumed a checkpoint
+     * of the plane
+     */
+    private long originRow, originColumn;
+
+    /**
+     * The entry point of the batch mode.
+     *
+     * @param args the options, see USAGE
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parse(args);
+            runner.run(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Allows to read the options.
+     *
+     * @param args the options, see USAGE
+     */
+    void parse(String[] args)
+    {
+        for (int k = 0; k < args.length; k++) {
+            String option = args[k];
+            if (k + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++k];
+            try {
+                switch (option) {
+                    case "--pattern":        pattern = Paths.get(value); break;
+                    case "--soup":           soup = Integer.parseInt(value); break;
+                    case "--resume":         resume = Paths.get(value); break;
+                    case "--map":            map = Paths.get(value); break;
+                    case "--density":        density = Double.parseDouble(value); break;
+                    case "--seed":           seed = Long.parseLong(value); break;
+                    case "--engine":         engine = value.toLowerCase(Locale.ROOT); break;
+                    case "--rule":           rule = Rule.parse(value); break;
+                    case "--boundary":
+                        try {
+                            boundary = Boundary.valueOf(value.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown boundary " + value);
+                        }
+                        break;
+                    case "--threads":        threads = Integer.parseInt(value); break;
+                    case "--generations":    generations = Long.parseLong(value); break;
+                    case "--time":           time = Double.parseDouble(value); break;
+                    case "--snapshot-every": snapshotEvery = Long.parseLong(value); break;
+                    case "--snapshot-dir":   snapshotDir = Paths.get(value); break;
+                    case "--checkpoint-every": checkpointEvery = Long.parseLong(value); break;
+                    case "--export-every":   exportEvery = Long.parseLong(value); break;
+                    case "--scale":          scale = Integer.parseInt(value); break;
+                    case "--encoders":       encoders = Integer.parseInt(value); break;
+                    case "--crop":
+                        String[] parts = value.toLowerCase(Locale.ROOT).split("[,x]");
+                        if (parts.length != 4) throw new IllegalArgumentException("The crop must be T,L,HxW: " + value);
+                        for (int p = 0; p < 4; p++) crop[p] = Integer.parseInt(parts[p].trim());
+                        break;
+                    case "--max-period":     maxPeriod = Integer.parseInt(value); break;
+                    case "--metrics":        metricsName = value; break;
+                    case "--compression":
+                        try {
+                            compression = Checkpoint.Compression.valueOf(value.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown compression " + value);
+                        }
+                        break;
+                    case "--size":
+                        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                        if (size.length != 2) throw new IllegalArgumentException("The size must be HxW: " + value);
+                        height = Integer.parseInt(size[0]);
+                        width = Integer.parseInt(size[1]);
+                        break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if ((pattern != null ? 1 : 0) + (soup > 0 ? 1 : 0) + (resume != null ? 1 : 0) != 1)
+            throw new IllegalArgumentException("Give either a pattern, a soup or a checkpoint to resume");
+        if (map != null && !engine.equals("offheap"))
+            throw new IllegalArgumentException("Only the offheap engine maps its board from a file");
+    }
+
+    /**
+     * Allows to run the simulation and to print its report.
+     *
+     * @param out where to print the report
+     * @throws IOException if the pattern cannot be read or a snapshot or a checkpoint cannot be written
+     */
+    void run(PrintStream out) throws IOException
+    {
+        Engine subject = this.load();
+        CycleDetector detector = this.detector(subject);
+        Metrics metrics = this.metrics(subject);
+        if (snapshotEvery > 0 || checkpointEvery > 0 || exportEvery > 0) Files.createDirectories(snapshotDir);
+        if (checkpointEvery > 0 && subject.getRule().getStates() > 2)
+            throw new IllegalArgumentException("The checkpoints cannot hold the dying cells of the rule "
+                    + subject.getRule());
+        Checkpointer checkpointer = checkpointEvery > 0 ? new Checkpointer(compression) : null;
+        FrameExporter exporter = exportEvery > 0
+                ? new FrameExporter(crop[0], crop[1], crop[2], crop[3], scale, encoders)
+                : null;
+        List<Future<Checkpoint>> checkpoints = new ArrayList<>();
+        CellSource board = this.source(subject);
+        long area = (long) board.getHeight() * board.getWidth();
+        out.printf(Locale.ROOT, "engine: %s%n", engine);
+        out.printf(Locale.ROOT, "rule: %s%n", subject.getRule());
+        if (subject instanceof BitEngine || subject instanceof OffHeapEngine)
+            out.printf(Locale.ROOT, "kernel: %s%n", BitEngine.getKernel());
+        out.printf(Locale.ROOT, "board: %dx%d%n", board.getHeight(), board.getWidth());
+
+        long start = System.nanoTime(), budget = time > 0 ? (long) (time * 1e9) : Long.MAX_VALUE, done = first;
+        long skipped = 0;
+        while (done < generations && System.nanoTime() - start < budget) {
+            /* Hashlife computes a whole chunk of generations at once, the other engines one by one */
+            long chunk = Math.min(until(done, snapshotEvery), Math.min(until(done, checkpointEvery),
+                    until(done, exportEvery)));
+            chunk = Math.min(chunk, generations - done);
+            if (subject instanceof HashLifeEngine && time <= 0) {
+                ((HashLifeEngine) subject).advance(chunk);
+                done += chunk;
+            } else {
+                long target = done + chunk;
+                while (done < target && System.nanoTime() - start < budget) {
+                    if (metrics != null) metrics.step(subject);
+                    else subject.nextGeneration();
+                    done++;
+                    if (detector == null) continue;
+                    if (detector.record(done, ((BoardHash) subject).getHash()) != CycleDetector.Outcome.RUNNING) {
+                        /* The board of the generation N is the one of N - P: only the end of the period is left */
+                        long skip = target - done - detector.remaining(done, target);
+                        done += skip;
+                        skipped += skip;
+                    }
+                }
+            }
+            if (snapshotEvery > 0 && done % snapshotEvery == 0)
+                Patterns.write(this.source(subject), originRow, originColumn,
+                        snapshotDir.resolve(String.format("snapshot-%012d.rle", done)));
+            if (checkpointEvery > 0 && done % checkpointEvery == 0)
+                checkpoints.add(checkpointer.save(subject, done, originRow, originColumn,
+                        snapshotDir.resolve(String.format("checkpoint-%012d.ckpt", done))));
+            if (exportEvery > 0 && done % exportEvery == 0)
+                exporter.export(this.source(subject), snapshotDir.resolve(String.format("frame-%012d.png", done)));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (exporter != null) exporter.close();
+        double flushed = (System.nanoTime() - start) / 1e9;
+        if (checkpointer != null) {
+            checkpointer.close();
+            for (Future<Checkpoint> checkpoint : checkpoints) {
+                try {
+                    checkpoint.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("A checkpoint could not be written", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (subject instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) subject).close();
+            } catch (Exception ignored) {
+            }
+        }
+
+        long computed = done - first - skipped;
+        out.printf(Locale.ROOT, "generations: %d%n", done - first);
+        if (first > 0) out.printf(Locale.ROOT, "final generation: %d%n", done);
+        if (detector != null) {
+            out.printf(Locale.ROOT, "outcome: %s%n", describe(detector));
+            out.printf(Locale.ROOT, "skipped generations: %d%n", skipped);
+        }
+        out.printf(Locale.ROOT, "wall time: %.3f s%n", seconds);
+        out.printf(Locale.ROOT, "generations per second: %.1f%n", computed / seconds);
+        out.printf(Locale.ROOT, "cell updates per second: %.4g%n", computed * (double) area / seconds);
+        out.printf(Locale.ROOT, "final population: %d%n", subject.getPopulation());
+        if (exporter != null)
+            out.printf(Locale.ROOT, "frames: %d, %.1f per second, waited %.3f s for the encoders, "
+                    + "written after %.3f s%n", exporter.getFrames(), exporter.getFrames() / seconds,
+                    exporter.getWaitNanos() / 1e9, flushed);
+        if (metrics != null) {
+            out.printf(Locale.ROOT, "generation time: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                    metrics.getStepP50Micros(), metrics.getStepP99Micros(), metrics.getStepP999Micros(),
+                    metrics.getStepMaxMicros());
+            if (metrics.getAllocatedBytesPerGeneration() >= 0)
+                out.printf(Locale.ROOT, "allocated per generation: %d B%n", metrics.getAllocatedBytesPerGeneration());
+            metrics.unregister();
+        }
+        if (subject instanceof AdaptiveEngine)
+            out.printf(Locale.ROOT, "final stage: %s after %d migrations%n", ((AdaptiveEngine) subject).getStage(),
+                    ((AdaptiveEngine) subject).getMigrations());
+        if (subject instanceof Controller && ((Controller) subject).getBoundary() == Boundary.GROWING)
+            out.printf(Locale.ROOT, "final board: %dx%d%n", ((Controller) subject).getHeight(),
+                    ((Controller) subject).getWidth());
+    }
+
+    /**
+     * Allows to build the engine chosen in the options and to load the pattern or the soup into it.
+     *
+     * @return Engine the engine
+     * @throws IOException if the pattern cannot be read
+     */
+    private Engine load() throws IOException
+    {
+        Engine subject;
+        switch (engine) {
+            case "bit":
+            case "controller": subject = new BitEngine(1, 1); break;
+            case "parallel":   subject = new ParallelEngine(new int[1][1], threads, 64); break;
+            case "sparse":     subject = new SparseEngine(new int[0][0]); break;
+            case "hashlife":   subject = new HashLifeEngine(new int[0][0], 16_000_000); break;
+            case "adaptive":   subject = new AdaptiveEngine(new int[0][0]); break;
+            case "offheap":
+                OffHeapBoard board = map != null ? OffHeapBoard.map(map, 1, 1) : OffHeapBoard.allocate(1, 1);
+                subject = new OffHeapEngine(board, threads);
+                break;
+            default: throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+        CellSink sink = height > 0 && width > 0
+                ? CellSink.centered((CellSink) subject, height, width)
+                : (CellSink) subject;
+        if (pattern != null) {
+            Patterns.read(pattern, sink);
+        } else if (resume != null) {
+            boolean plane = Checkpoint.PLANE.equals(Checkpoint.readHeader(resume).getBoundary());
+            if (plane && !(subject instanceof Plane))
+                throw new IllegalArgumentException("The checkpoint holds a part of the plane: resume it with the "
+                        + "sparse, hashlife or adaptive engine");
+            Checkpoint checkpoint = Checkpoint.read(resume, sink);
+            first = checkpoint.getGeneration();
+            if (rule == null) rule = Rule.parse(checkpoint.getRule());
+            if (plane) {
+                /* The rectangle saved is put in the window, at its center when the size is given */
+                originRow = checkpoint.getTop() - (height > 0 ? (height - checkpoint.getHeight()) / 2 : 0);
+                originColumn = checkpoint.getLeft() - (width > 0 ? (width - checkpoint.getWidth()) / 2 : 0);
+            } else if (boundary == null) {
+                boundary = Boundary.valueOf(checkpoint.getBoundary());
+            }
+        } else {
+            this.soup(sink);
+        }
+        Rule chosen = rule != null ? rule : Rule.LIFE;
+        Boundary edges = boundary != null ? boundary : Boundary.TORUS;
+        /* The Controller has no storage of its own to stream into, it gets the board loaded by a BitEngine */
+        if (engine.equals("controller")) return new Controller(subject.getCells(), chosen, edges);
+        if (edges != Boundary.TORUS)
+            throw new IllegalArgumentException("The " + engine + " engine cannot have the boundary " + edges);
+        subject.setRule(chosen);
+        return subject;
+    }
+
+    /**
+     * Allows to build the detector of cycles asked in the options, and to make the engine keep the hash it needs.
+     *
+     * @param subject the engine
+     * @return CycleDetector the detector, already holding the first generation, or null if none is asked
+     */
+    private CycleDetector detector(Engine subject)
+    {
+        if (maxPeriod <= 0) return null;
+        if (!(subject instanceof BoardHash))
+            throw new IllegalArgumentException("The " + engine + " engine cannot find cycles");
+        ((BoardHash) subject).setHashing(true);
+        CycleDetector detector = new CycleDetector(maxPeriod);
+        detector.record(first, ((BoardHash) subject).getHash());
+        return detector;
+    }
+
+    /**
+     * Allows to build the metrics asked in the options, published through JMX, and to make the engine count its
+     * births and deaths.
+     *
+     * @param subject the engine
+     * @return Metrics the metrics, or null if none are asked
+     */
+    private Metrics metrics(Engine subject)
+    {
+        if (metricsName == null) return null;
+        CellSource board = this.source(subject);
+        Metrics metrics = new Metrics((long) board.getHeight() * board.getWidth());
+        metrics.watch(subject);
+        metrics.register(metricsName);
+        return metrics;
+    }
+
+    /**
+     * @return String what a detector found, "oscillator of period 2 since generation 180" for instance
+     */
+    private static String describe(CycleDetector detector)
+    {
+        CycleDetector.Outcome outcome = detector.getOutcome();
+        if (outcome == CycleDetector.Outcome.RUNNING) return "running";
+        String name = outcome.name().toLowerCase(Locale.ROOT);
+        if (outcome == CycleDetector.Outcome.OSCILLATOR) name += " of period " + detector.getPeriod();
+        return name + " since generation " + detector.getStart();
+    }
+
+    /**
+     * Allows to give the random soup described by the options to a storage, row by row.
+     *
+     * @param sink the storage receiving the soup
+     */
+    private void soup(CellSink sink)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        sink.begin(soup, soup);
+        for (int i = 0; i < soup; i++) {
+            for (int j = 0; j < soup; j++)
+                if (random.nextDouble() < density) sink.setRun(i, j, 1);
+        }
+        sink.end();
+    }
+
+    /**
+     * @return long the number of generations from a generation to the next multiple of a period, if there is one
+     */
+    private static long until(long generation, long period)
+    {
+        return period > 0 ? period - generation % period : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return CellSource the storage of an engine, or a copy of its board if it cannot be read run by run
+     */
+    private CellSource source(Engine subject)
+    {
+        return subject instanceof CellSource ? (CellSource) subject : new BitEngine(subject.getCells());
+    }
+
+}
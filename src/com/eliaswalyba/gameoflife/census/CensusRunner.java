@@ -0,0 +1,229 @@
+package com.eliaswalyba.gameoflife.census;
+
+import com.eliaswalyba.gameoflife.backend.Config;
+import com.eliaswalyba.gameoflife.backend.CycleDetector;
+import com.eliaswalyba.gameoflife.backend.Rule;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class CensusRunner
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CensusRunner
+     * @description: Runs a census of random soups from the command line and counts the objects they leave
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A census runs a large number of random soups, 25 x 25 on a torus by default like the board of the window,
+     * each until it is empty, stable or an oscillator, and counts the objects left: the still lifes, the
+     * oscillators and the spaceships, told apart by the Classifier.
+     * The soups are shared by a work-stealing ForkJoinPool: the range of the soups is cut in halves until the
+     * pieces are small, and an idle thread steals the largest piece left of a busy one, so the threads stay
+     * busy even though a soup may last ten or a thousand generations. Each thread runs its soups in its own
+     * Universe and counts in it without any lock; the universes are added up once at the end.
+     * The soup k only depends on the seed and on k: a census gives the same counts whatever the number of
+     * threads.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The help printed when the arguments are wrong
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: CensusRunner [options]",
+            "  --soups N             the number of soups to run (default 10000)",
+            "  --size S              the size of the soups, S x S on a torus (default 25)",
+            "  --density D           the probability of a cell of a soup to be alive (default 0.5)",
+            "  --seed S              the seed of the census (default 1)",
+            "  --rule RULE           B36/S23, 23/3... of 2 states (default B3/S23)",
+            "  --threads N           the threads running the soups (default: all the cores)",
+            "  --max-generations N   the most generations a soup is run for (default 10000)",
+            "  --max-period P        the longest period looked for (default 200)",
+            "  --top K               the number of objects listed (default 20)"
+    );
+
+    /**
+     * The number of soups under which a range of soups is not cut anymore
+     */
+    private static final long GRAIN = 64;
+
+    /**
+     * The options of the census
+     */
+    private long soups = 10000, seed = 1, maxGenerations = 10000;
+    private int size = Config.BOARD_SIZE, threads = Runtime.getRuntime().availableProcessors();
+    private int maxPeriod = 200, top = 20;
+    private double density = 0.5;
+    private Rule rule = Rule.LIFE;
+
+    /**
+     * The entry point of the census mode.
+     *
+     * @param args the options, see USAGE
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        CensusRunner runner = new CensusRunner();
+        try {
+            runner.parse(args);
+            runner.run(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Allows to read the options.
+     *
+     * @param args the options, see USAGE
+     */
+    void parse(String[] args)
+    {
+        for (int k = 0; k < args.length; k++) {
+            String option = args[k];
+            if (k + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++k];
+            try {
+                switch (option) {
+                    case "--soups":           soups = Long.parseLong(value); break;
+                    case "--size":            size = Integer.parseInt(value); break;
+                    case "--density":         density = Double.parseDouble(value); break;
+                    case "--seed":            seed = Long.parseLong(value); break;
+                    case "--rule":            rule = Rule.parse(value); break;
+                    case "--threads":         threads = Integer.parseInt(value); break;
+                    case "--max-generations": maxGenerations = Long.parseLong(value); break;
+                    case "--max-period":      maxPeriod = Integer.parseInt(value); break;
+                    case "--top":             top = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (soups <= 0) throw new IllegalArgumentException("The number of soups must be positive");
+        if (size < 8) throw new IllegalArgumentException("The soups must be 8 x 8 or larger: " + size);
+        if (density < 0 || density > 1) throw new IllegalArgumentException("The density must be between 0 and 1");
+        if (threads <= 0) throw new IllegalArgumentException("The number of threads must be positive");
+        if (maxPeriod <= 0) throw new IllegalArgumentException("The longest period must be positive");
+        if (rule.getStates() != 2) throw new IllegalArgumentException("The rule " + rule + " has more than 2 states");
+        if (rule.bornFromNothing())
+            throw new IllegalArgumentException("The rule " + rule + " gives birth on an empty board");
+    }
+
+    /**
+     * Allows to run the census and to print its report.
+     *
+     * @param out where to print the report
+     */
+    void run(PrintStream out)
+    {
+        Classifier classifier = new Classifier(rule, maxPeriod);
+        Queue<Universe> universes = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Universe> universe = ThreadLocal.withInitial(() -> {
+            Universe created = new Universe(size, density, seed, rule, maxGenerations, maxPeriod, classifier);
+            universes.add(created);
+            return created;
+        });
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Soups(universe, 0, soups));
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<ObjectClass, long[]> objects = new HashMap<>();
+        long[] outcomes = new long[CycleDetector.Outcome.values().length];
+        long generations = 0, total = 0;
+        for (Universe done : universes) {
+            for (Map.Entry<ObjectClass, long[]> entry : done.getObjects().entrySet())
+                objects.computeIfAbsent(entry.getKey(), key -> new long[1])[0] += entry.getValue()[0];
+            for (int k = 0; k < outcomes.length; k++) outcomes[k] += done.getOutcomes()[k];
+            generations += done.getGenerations();
+        }
+        List<Map.Entry<ObjectClass, long[]>> ranked = new ArrayList<>(objects.entrySet());
+        for (Map.Entry<ObjectClass, long[]> entry : ranked) total += entry.getValue()[0];
+        ranked.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(b.getValue()[0], a.getValue()[0])
+                : a.getKey().getCode().compareTo(b.getKey().getCode()));
+
+        out.printf(Locale.ROOT, "soups: %d%n", soups);
+        out.printf(Locale.ROOT, "size: %dx%d%n", size, size);
+        out.printf(Locale.ROOT, "rule: %s%n", rule);
+        out.printf(Locale.ROOT, "threads: %d%n", threads);
+        out.printf(Locale.ROOT, "wall time: %.3f s%n", seconds);
+        out.printf(Locale.ROOT, "soups per second: %.1f%n", soups / seconds);
+        out.printf(Locale.ROOT, "generations per soup: %.1f%n", generations / (double) soups);
+        out.printf(Locale.ROOT, "stable: %d%n", outcomes[CycleDetector.Outcome.STABLE.ordinal()]);
+        out.printf(Locale.ROOT, "oscillating: %d%n", outcomes[CycleDetector.Outcome.OSCILLATOR.ordinal()]);
+        out.printf(Locale.ROOT, "empty: %d%n", outcomes[CycleDetector.Outcome.EMPTY.ordinal()]);
+        out.printf(Locale.ROOT, "unresolved: %d%n", outcomes[CycleDetector.Outcome.RUNNING.ordinal()]);
+        out.printf(Locale.ROOT, "objects: %d of %d kinds (%d signatures)%n", total, ranked.size(), classifier.size());
+        for (Map.Entry<ObjectClass, long[]> entry : ranked.subList(0, Math.min(top, ranked.size()))) {
+            String name = classifier.getName(entry.getKey());
+            out.printf(Locale.ROOT, "%12d  %-32s %s%n", entry.getValue()[0], entry.getKey().getCode(),
+                    name != null ? name : "");
+        }
+    }
+
+    private static final class Soups extends RecursiveAction
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Soups
+         * @description: Runs a range of soups, cutting it in halves until it is small enough for a single thread.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The version of the serialized ranges of soups
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The universes of the threads
+         */
+        private final ThreadLocal<Universe> universe;
+
+        /**
+         * The first soup of the range and the soup after the last one
+         */
+        private final long from, to;
+
+        Soups(ThreadLocal<Universe> universe, long from, long to)
+        {
+            this.universe = universe;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= GRAIN) {
+                Universe mine = universe.get();
+                for (long k = from; k < to; k++) mine.run(k);
+                return;
+            }
+            long middle = (from + to) >>> 1;
+            invokeAll(new Soups(universe, from, middle), new Soups(universe, middle, to));
+        }
+    }
+
+}
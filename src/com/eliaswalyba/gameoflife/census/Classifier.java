@@ -0,0 +1,370 @@
+package com.eliaswalyba.gameoflife.census;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.BoardHash;
+import com.eliaswalyba.gameoflife.backend.Rule;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Classifier
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Classifier
+     * @description: Tells what an object left by a soup is, remembering the objects it already met
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * An object comes as the coordinates of its cells. Its signature is its shape in the smallest of its 8
+     * orientations, the rows of its bounding box packed in a long each, and the key of the cache is a 64 bits
+     * hash of the signature: the same shape anywhere, turned or mirrored, gets the same key.
+     * Most objects of a census are a few common ones, so nearly every object is a lookup in a concurrent map,
+     * without any lock. An object never met before is run alone on a board of its own until one of its phases
+     * comes back, which tells its period and whether it moves (see ObjectClass); the keys of all its phases are
+     * then remembered, so that it is never run again whatever the phase it is met in.
+     * Something that does not come back within the longest period, a piece of a larger object that does not
+     * live alone for instance, is remembered as unidentified (zz). An object wider than a long cannot get a
+     * signature and is counted as LARGE, and an object wrapping around the torus of the soup as TORUS.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The largest height or width of an object that gets a signature
+     */
+    public static final int SPAN = 64;
+
+    /**
+     * The objects that cannot get a signature
+     */
+    static final ObjectClass LARGE = new ObjectClass("zz_LARGE", 0, 0, 0, 0);
+    static final ObjectClass TORUS = new ObjectClass("zz_TORUS", 0, 0, 0, 0);
+
+    /**
+     * The common objects of Life, named from their cells in plain text
+     */
+    private static final String[][] COMMON = {
+            {"block", "OO", "OO"},
+            {"blinker", "OOO"},
+            {"beehive", ".OO.", "O..O", ".OO."},
+            {"loaf", ".OO.", "O..O", ".O.O", "..O."},
+            {"boat", "OO.", "O.O", ".O."},
+            {"ship", "OO.", "O.O", ".OO"},
+            {"tub", ".O.", "O.O", ".O."},
+            {"pond", ".OO.", "O..O", "O..O", ".OO."},
+            {"long boat", "OO..", "O.O.", ".O.O", "..O."},
+            {"barge", ".O..", "O.O.", ".O.O", "..O."},
+            {"mango", ".OO..", "O..O.", ".O..O", "..OO."},
+            {"eater 1", "OO..", "O.O.", "..O.", "..OO"},
+            {"glider", ".O.", "..O", "OOO"},
+            {"toad", ".OOO", "OOO."},
+            {"beacon", "OO..", "OO..", "..OO", "..OO"},
+            {"traffic light", "..OOO..", "", "O.....O", "O.....O", "O.....O", "", "..OOO.."}
+    };
+
+    /**
+     * The rule the objects live by, and the longest period looked for
+     */
+    private final Rule rule;
+    private final int maxPeriod;
+
+    /**
+     * The objects met, by the key of each of their phases
+     */
+    private final ConcurrentHashMap<Long, ObjectClass> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The objects met, by their code, so that each has a single instance
+     */
+    private final ConcurrentHashMap<String, ObjectClass> classes = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the common objects, by their code
+     */
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * The constructor of the class
+     *
+     * @param rule      the rule the objects live by
+     * @param maxPeriod the longest period looked for
+     */
+    public Classifier(Rule rule, int maxPeriod)
+    {
+        if (maxPeriod <= 0) throw new IllegalArgumentException("The longest period must be positive: " + maxPeriod);
+        this.rule = rule;
+        this.maxPeriod = maxPeriod;
+        if (!rule.isLife()) return;
+        long[] buffer = Classifier.buffer();
+        for (String[] common : COMMON) {
+            int[] rows = new int[SPAN], cols = new int[SPAN];
+            int count = 0;
+            for (int i = 1; i < common.length; i++) {
+                for (int j = 0; j < common[i].length(); j++) {
+                    if (common[i].charAt(j) != 'O') continue;
+                    rows[count] = i;
+                    cols[count++] = j;
+                }
+            }
+            names.put(this.classify(rows, cols, count, buffer).getCode(), common[0]);
+        }
+    }
+
+    /**
+     * @return long[] the buffer a thread needs to classify objects, to be given again at each call
+     */
+    public static long[] buffer()
+    {
+        return new long[2 * (SPAN + 2)];
+    }
+
+    /**
+     * Allows to tell what an object is. Any thread can call it, each with its own buffer.
+     *
+     * @param rows   the rows of the cells of the object, from any origin
+     * @param cols   the columns of its cells
+     * @param count  the number of its cells
+     * @param buffer the buffer of the thread, see buffer
+     * @return ObjectClass what the object is
+     */
+    public ObjectClass classify(int[] rows, int[] cols, int count, long[] buffer)
+    {
+        if (!Classifier.fits(rows, cols, count)) return LARGE;
+        long key = Classifier.canonical(rows, cols, count, buffer);
+        ObjectClass known = cache.get(key);
+        return known != null ? known : this.identify(rows, cols, count, key, buffer);
+    }
+
+    /**
+     * Allows to find out what an object met for the first time is, by running it alone.
+     *
+     * @param rows   the rows of the cells of the object
+     * @param cols   the columns of its cells
+     * @param count  the number of its cells
+     * @param key    the key of the object
+     * @param buffer the buffer of the thread, holding the signature of the object
+     * @return ObjectClass what the object is
+     */
+    private ObjectClass identify(int[] rows, int[] cols, int count, long key, long[] buffer)
+    {
+        long[] first = Arrays.copyOf(buffer, SPAN + 2), smallest = first.clone();
+        int top = Integer.MAX_VALUE, left = Integer.MAX_VALUE;
+        for (int k = 0; k < count; k++) {
+            top = Math.min(top, rows[k]);
+            left = Math.min(left, cols[k]);
+        }
+
+        /* The board leaves room for a spaceship at the speed of light over the longest period */
+        int margin = maxPeriod + 2, height = (int) Math.max(first[0], first[1]) + 2 * margin, width = height;
+        BitEngine board = new BitEngine(height, width);
+        board.setRule(rule);
+        for (int k = 0; k < count; k++) board.set(rows[k] - top + margin, cols[k] - left + margin, true);
+        long[] start = new long[SPAN + 2], phase = new long[SPAN + 2];
+        Classifier.encode(rows, cols, count, 0, start);
+
+        long[] keys = new long[maxPeriod];
+        keys[0] = key;
+        int[] r = new int[Math.max(count, 16)], c = new int[r.length];
+        int period = 0, dy = 0, dx = 0;
+        for (int g = 1; g <= maxPeriod && period == 0; g++) {
+            board.nextGeneration();
+            int n = 0, up = Integer.MAX_VALUE, down = -1, west = Integer.MAX_VALUE, east = -1;
+            for (int i = 0; i < height; i++) {
+                for (int j = board.nextCell(i, 0, true); j < width; j = board.nextCell(i, j + 1, true)) {
+                    if (n == r.length) {
+                        r = Arrays.copyOf(r, 2 * n);
+                        c = Arrays.copyOf(c, 2 * n);
+                    }
+                    r[n] = i;
+                    c[n++] = j;
+                    up = Math.min(up, i);
+                    down = i;
+                    west = Math.min(west, j);
+                    east = Math.max(east, j);
+                }
+            }
+            if (n == 0 || up < 2 || west < 2 || down >= height - 2 || east >= width - 2) break;
+            if (!Classifier.fits(r, c, n)) break;
+            Classifier.encode(r, c, n, 0, phase);
+            if (Arrays.equals(start, phase)) {
+                period = g;
+                dy = up - margin;
+                dx = west - margin;
+            } else if (g < maxPeriod) {
+                keys[g] = Classifier.canonical(r, c, n, buffer);
+                if (Classifier.compare(buffer, smallest) < 0) System.arraycopy(buffer, 0, smallest, 0, SPAN + 2);
+            }
+        }
+
+        ObjectClass found;
+        if (period == 0) {
+            found = this.unify(new ObjectClass("zz_" + Classifier.body(first), 0, count, 0, 0));
+        } else {
+            int population = 0;
+            for (int i = 0; i < smallest[0]; i++) population += Long.bitCount(smallest[2 + i]);
+            String prefix = dy != 0 || dx != 0 ? "xq" + period : period == 1 ? "xs" + population : "xp" + period;
+            found = this.unify(new ObjectClass(prefix + "_" + Classifier.body(smallest), period, population, dy, dx));
+            for (int g = 1; g < period; g++) cache.putIfAbsent(keys[g], found);
+        }
+        ObjectClass known = cache.putIfAbsent(key, found);
+        return known != null ? known : found;
+    }
+
+    /**
+     * Allows to keep a single instance of each object.
+     */
+    private ObjectClass unify(ObjectClass found)
+    {
+        ObjectClass known = classes.putIfAbsent(found.getCode(), found);
+        return known != null ? known : found;
+    }
+
+    /**
+     * Allows to know whether the bounding box of some cells fits in a signature.
+     */
+    private static boolean fits(int[] rows, int[] cols, int count)
+    {
+        int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE, left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+        for (int k = 0; k < count; k++) {
+            top = Math.min(top, rows[k]);
+            bottom = Math.max(bottom, rows[k]);
+            left = Math.min(left, cols[k]);
+            right = Math.max(right, cols[k]);
+        }
+        return count > 0 && bottom - top < SPAN && right - left < SPAN;
+    }
+
+    /**
+     * Allows to compute the signature of some cells in their smallest orientation, into the first half of the
+     * buffer.
+     *
+     * @param rows   the rows of the cells
+     * @param cols   the columns of the cells
+     * @param count  the number of cells
+     * @param buffer the buffer, see buffer
+     * @return long the key of the signature
+     */
+    static long canonical(int[] rows, int[] cols, int count, long[] buffer)
+    {
+        int half = SPAN + 2;
+        Classifier.encode(rows, cols, count, 0, buffer);
+        for (int t = 1; t < 8; t++) {
+            Classifier.encodeInto(rows, cols, count, t, buffer, half);
+            if (Classifier.compare(buffer, half, buffer, 0) < 0) System.arraycopy(buffer, half, buffer, 0, half);
+        }
+        long key = BoardHash.mix(buffer[0] << 32 | buffer[1]);
+        for (int i = 0; i < buffer[0]; i++) key = BoardHash.mix(key ^ buffer[2 + i]);
+        return key;
+    }
+
+    /**
+     * Allows to compute the signature of some cells in one of their orientations: the height and the width of
+     * their bounding box, then its rows.
+     *
+     * @param rows      the rows of the cells
+     * @param cols      the columns of the cells
+     * @param count     the number of cells
+     * @param transform the orientation, bit 0 mirroring the rows, bit 1 the columns and bit 2 swapping both
+     * @param signature where to write it
+     */
+    static void encode(int[] rows, int[] cols, int count, int transform, long[] signature)
+    {
+        Classifier.encodeInto(rows, cols, count, transform, signature, 0);
+    }
+
+    /**
+     * Allows to compute the signature of some cells in one of their orientations at an offset of an array.
+     */
+    private static void encodeInto(int[] rows, int[] cols, int count, int transform, long[] signature, int offset)
+    {
+        int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE, left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+        for (int k = 0; k < count; k++) {
+            int i = Classifier.row(rows[k], cols[k], transform), j = Classifier.column(rows[k], cols[k], transform);
+            top = Math.min(top, i);
+            bottom = Math.max(bottom, i);
+            left = Math.min(left, j);
+            right = Math.max(right, j);
+        }
+        int height = bottom - top + 1;
+        signature[offset] = height;
+        signature[offset + 1] = right - left + 1;
+        Arrays.fill(signature, offset + 2, offset + 2 + SPAN, 0);
+        for (int k = 0; k < count; k++) {
+            int i = Classifier.row(rows[k], cols[k], transform), j = Classifier.column(rows[k], cols[k], transform);
+            signature[offset + 2 + i - top] |= 1L << (j - left);
+        }
+    }
+
+    /**
+     * @return int the row of a cell in an orientation
+     */
+    private static int row(int i, int j, int transform)
+    {
+        int row = (transform & 4) != 0 ? j : i;
+        return (transform & 1) != 0 ? -row : row;
+    }
+
+    /**
+     * @return int the column of a cell in an orientation
+     */
+    private static int column(int i, int j, int transform)
+    {
+        int column = (transform & 4) != 0 ? i : j;
+        return (transform & 2) != 0 ? -column : column;
+    }
+
+    /**
+     * Allows to order two signatures, by height, width and then rows.
+     */
+    private static int compare(long[] a, long[] b)
+    {
+        return Classifier.compare(a, 0, b, 0);
+    }
+
+    /**
+     * Allows to order two signatures at offsets of arrays.
+     */
+    private static int compare(long[] a, int from, long[] b, int to)
+    {
+        for (int k = 0; k < 2 + a[from]; k++) {
+            int order = Long.compareUnsigned(a[from + k], b[to + k]);
+            if (order != 0) return order;
+        }
+        return 0;
+    }
+
+    /**
+     * @return String the end of the code of a signature: its height x its width and its rows in hexadecimal
+     */
+    private static String body(long[] signature)
+    {
+        StringBuilder body = new StringBuilder().append(signature[0]).append('x').append(signature[1]).append('_');
+        for (int i = 0; i < signature[0]; i++) {
+            if (i > 0) body.append('.');
+            body.append(Long.toHexString(signature[2 + i]));
+        }
+        return body.toString();
+    }
+
+    /**
+     * Allows to know the common name of an object.
+     *
+     * @param object the object
+     * @return String its name, null if it has none
+     */
+    public String getName(ObjectClass object)
+    {
+        return names.get(object.getCode());
+    }
+
+    /**
+     * @return int the number of signatures remembered
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+}
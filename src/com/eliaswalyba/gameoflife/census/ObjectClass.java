@@ -0,0 +1,109 @@
+package com.eliaswalyba.gameoflife.census;
+
+public final class ObjectClass
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: ObjectClass
+     * @description: A kind of object left by the soups: a still life, an oscillator or a spaceship
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * An object is told by its code, in the spirit of the apgcodes of Catagolue: the prefix tells what it does,
+     * xs and its population for a still life, xp and its period for an oscillator, xq and its period for a
+     * spaceship, zz for anything that was not identified; the rest is the smallest of its phases in its
+     * smallest orientation, as the height x the width of the phase and its rows in hexadecimal, bit j for the
+     * column j. The block is xs4_2x2_3.3 for instance. Two objects have the same code if and only if they are
+     * the same object, whatever their phase, their orientation and their place.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The code of the object
+     */
+    private final String code;
+
+    /**
+     * The period of the object, 1 for a still life and 0 if unidentified, and its population in the phase of
+     * the code
+     */
+    private final int period, population;
+
+    /**
+     * How many rows and columns the object moves over a period, 0 unless it is a spaceship
+     */
+    private final int dy, dx;
+
+    /**
+     * The constructor of the class
+     *
+     * @param code       the code of the object
+     * @param period     its period, 1 for a still life and 0 if unidentified
+     * @param population its population in the phase of the code
+     * @param dy         the rows it moves over a period
+     * @param dx         the columns it moves over a period
+     */
+    ObjectClass(String code, int period, int population, int dy, int dx)
+    {
+        this.code = code;
+        this.period = period;
+        this.population = population;
+        this.dy = dy;
+        this.dx = dx;
+    }
+
+    /**
+     * @return String the code of the object
+     */
+    public String getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return int the period of the object, 1 for a still life and 0 if it was not identified
+     */
+    public int getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * @return int the population of the object in the phase of its code
+     */
+    public int getPopulation()
+    {
+        return population;
+    }
+
+    /**
+     * @return boolean true if the object moves
+     */
+    public boolean isSpaceship()
+    {
+        return dx != 0 || dy != 0;
+    }
+
+    /**
+     * @return int the rows the object moves over a period
+     */
+    public int getDy()
+    {
+        return dy;
+    }
+
+    /**
+     * @return int the columns the object moves over a period
+     */
+    public int getDx()
+    {
+        return dx;
+    }
+
+    @Override
+    public String toString()
+    {
+        return code;
+    }
+
+}
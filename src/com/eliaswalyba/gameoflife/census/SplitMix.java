@@ -0,0 +1,68 @@
+package com.eliaswalyba.gameoflife.census;
+
+import com.eliaswalyba.gameoflife.backend.BoardHash;
+
+public final class SplitMix
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: SplitMix
+     * @description: A fast generator of random numbers, SplitMix64, that can be seeded again without allocating
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The state is a counter moved by the golden gamma at each draw, and the draw is the counter passed through
+     * the finalizer of SplitMix64 (see BoardHash.mix): a few multiplications, no lock, no object. A census seeds
+     * it again for each soup from the seed of the census and the index of the soup, so that the soup k is the
+     * same board whatever the thread and the order it is run in.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The golden gamma, by which the state moves at each draw
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The state of the generator
+     */
+    private long state;
+
+    /**
+     * Allows to seed the generator again.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed)
+    {
+        this.state = seed;
+    }
+
+    /**
+     * Allows to seed the generator for an element of a sequence, the soups of a census for instance.
+     *
+     * @param seed  the seed of the sequence
+     * @param index the index of the element
+     */
+    public void setSeed(long seed, long index)
+    {
+        this.state = BoardHash.mix(seed + BoardHash.mix(index * GAMMA));
+    }
+
+    /**
+     * @return long 64 random bits
+     */
+    public long nextLong()
+    {
+        return BoardHash.mix(state += GAMMA);
+    }
+
+    /**
+     * @return double a random number between 0 included and 1 excluded
+     */
+    public double nextDouble()
+    {
+        return (this.nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+}
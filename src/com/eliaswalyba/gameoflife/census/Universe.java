@@ -0,0 +1,251 @@
+package com.eliaswalyba.gameoflife.census;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CycleDetector;
+import com.eliaswalyba.gameoflife.backend.Rule;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+final class Universe
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Universe
+     * @description: The board and the buffers of a thread of a census, reused from a soup to the next
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A thread of a census owns a universe and runs its soups one after the other in it: the soup is drawn into
+     * the same words, loaded into the same BitEngine and followed by the same CycleDetector, and its objects are
+     * found with the same buffers, so that a soup allocates nothing once the common objects are known.
+     * The soup runs until its board is empty, stable or an oscillator, which on a torus includes the spaceships
+     * coming back around. Its objects are the groups of alive cells closer than 3 cells to each other, the
+     * distance at which two objects start to feel each other: the two halves of a beacon are one object in both
+     * its phases, and two still lifes touching through a dead cell are one pseudo object.
+     * Each universe counts its own objects and outcomes without sharing anything, and the census adds up the
+     * universes once all the soups are done.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The size of the soups, their density and the seed of the census
+     */
+    private final int size;
+    private final double density;
+    private final long seed;
+
+    /**
+     * The most generations a soup is run for
+     */
+    private final long maxGenerations;
+
+    /**
+     * The objects known to all the threads
+     */
+    private final Classifier classifier;
+
+    /**
+     * The board, the cycle detector and the generator of the soups
+     */
+    private final BitEngine board;
+    private final CycleDetector detector;
+    private final SplitMix random = new SplitMix();
+
+    /**
+     * The words of the soup, and the view loading them into the board
+     */
+    private final long[] soup;
+    private final LongBuffer view;
+
+    /**
+     * The soup each cell was last visited in, and its coordinates when visited, unwrapped from the torus
+     */
+    private final int[] visited, unwrappedRows, unwrappedCols;
+
+    /**
+     * The cells of the object being found, in the order they were found, and the buffer of the classifier
+     */
+    private final int[] rows, cols;
+    private final long[] buffer = Classifier.buffer();
+
+    /**
+     * The number of the soup being run, marking the cells visited
+     */
+    private int stamp;
+
+    /**
+     * The objects counted, the soups by outcome, and the generations run
+     */
+    private final Map<ObjectClass, long[]> objects = new HashMap<>();
+    private final long[] outcomes = new long[CycleDetector.Outcome.values().length];
+    private long generations;
+
+    /**
+     * The constructor of the class
+     *
+     * @param size           the size of the soups
+     * @param density        the probability of a cell of a soup to be alive
+     * @param seed           the seed of the census
+     * @param rule           the rule of the census
+     * @param maxGenerations the most generations a soup is run for
+     * @param maxPeriod      the longest period looked for
+     * @param classifier     the objects known to all the threads
+     */
+    Universe(int size, double density, long seed, Rule rule, long maxGenerations, int maxPeriod,
+             Classifier classifier)
+    {
+        this.size = size;
+        this.density = density;
+        this.seed = seed;
+        this.maxGenerations = maxGenerations;
+        this.classifier = classifier;
+        this.board = new BitEngine(size, size);
+        board.setRule(rule);
+        board.setHashing(true);
+        this.detector = new CycleDetector(maxPeriod);
+        int words = (size + 63) >>> 6;
+        this.soup = new long[size * words];
+        this.view = LongBuffer.wrap(soup);
+        this.visited = new int[size * size];
+        this.unwrappedRows = new int[size * size];
+        this.unwrappedCols = new int[size * size];
+        this.rows = new int[size * size];
+        this.cols = new int[size * size];
+    }
+
+    /**
+     * Allows to run a soup and to count what it leaves.
+     *
+     * @param index the index of the soup in the census
+     */
+    void run(long index)
+    {
+        this.draw(index);
+        detector.reset();
+        CycleDetector.Outcome outcome = detector.record(0, board.getHash());
+        long g = 0;
+        while (outcome == CycleDetector.Outcome.RUNNING && g < maxGenerations) {
+            board.nextGeneration();
+            outcome = detector.record(++g, board.getHash());
+        }
+        generations += g;
+        outcomes[outcome.ordinal()]++;
+        if (outcome != CycleDetector.Outcome.EMPTY) this.count();
+    }
+
+    /**
+     * Allows to draw a soup into the board. The soup only depends on the seed of the census and on its index.
+     */
+    private void draw(long index)
+    {
+        random.setSeed(seed, index);
+        int words = soup.length / size;
+        for (int i = 0; i < size; i++) {
+            for (int w = 0; w < words; w++) {
+                long word;
+                if (density == 0.5) {
+                    word = random.nextLong();
+                } else {
+                    word = 0;
+                    for (int b = 0; b < 64 && (w << 6) + b < size; b++)
+                        if (random.nextDouble() < density) word |= 1L << b;
+                }
+                soup[i * words + w] = word;
+            }
+        }
+        view.clear();
+        board.setWords(0, view);
+    }
+
+    /**
+     * Allows to find the objects of the board and to count them.
+     */
+    private void count()
+    {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = board.nextCell(i, 0, true); j < size; j = board.nextCell(i, j + 1, true)) {
+                if (visited[i * size + j] == stamp) continue;
+                ObjectClass object = this.collect(i, j);
+                long[] number = objects.get(object);
+                if (number == null) objects.put(object, number = new long[1]);
+                number[0]++;
+            }
+        }
+    }
+
+    /**
+     * Allows to collect the cells of the object of a cell, walking the torus, and to tell what it is.
+     *
+     * @param i the row of the cell
+     * @param j the column of the cell
+     * @return ObjectClass what the object is
+     */
+    private ObjectClass collect(int i, int j)
+    {
+        int count = this.visit(i, j, 0), head = 0;
+        boolean wrapped = false;
+        while (head < count) {
+            int row = rows[head], col = cols[head++];
+            for (int di = -2; di <= 2; di++) {
+                for (int dj = -2; dj <= 2; dj++) {
+                    int r = Math.floorMod(row + di, size), c = Math.floorMod(col + dj, size), cell = r * size + c;
+                    if (!board.get(r, c)) continue;
+                    if (visited[cell] != stamp) count = this.visit(row + di, col + dj, count);
+                    else if (unwrappedRows[cell] != row + di || unwrappedCols[cell] != col + dj) wrapped = true;
+                }
+            }
+        }
+        return wrapped ? Classifier.TORUS : classifier.classify(rows, cols, count, buffer);
+    }
+
+    /**
+     * Allows to add a cell to the object being collected.
+     *
+     * @param row   the row of the cell, unwrapped from the torus
+     * @param col   the column of the cell, unwrapped
+     * @param count the number of cells collected so far
+     * @return int the number of cells collected with this one
+     */
+    private int visit(int row, int col, int count)
+    {
+        int cell = Math.floorMod(row, size) * size + Math.floorMod(col, size);
+        visited[cell] = stamp;
+        unwrappedRows[cell] = row;
+        unwrappedCols[cell] = col;
+        rows[count] = row;
+        cols[count] = col;
+        return count + 1;
+    }
+
+    /**
+     * @return Map the objects counted by this universe, with their numbers
+     */
+    Map<ObjectClass, long[]> getObjects()
+    {
+        return objects;
+    }
+
+    /**
+     * @return long[] the soups run by this universe, by outcome (see CycleDetector.Outcome)
+     */
+    long[] getOutcomes()
+    {
+        return outcomes;
+    }
+
+    /**
+     * @return long the generations run by this universe
+     */
+    long getGenerations()
+    {
+        return generations;
+    }
+
+}
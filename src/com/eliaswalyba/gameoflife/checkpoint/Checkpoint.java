@@ -0,0 +1,688 @@
+package com.eliaswalyba.gameoflife.checkpoint;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSink;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class Checkpoint
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Checkpoint
+     * @description: The binary file holding the whole state of a run, to resume it after the JVM died
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A checkpoint is a header followed by the cells, all in little endian:
+     *     "GOLCKPT" 0, version (int), compression (int), height (int), width (int), generation (long),
+     *     population (long), top (long), left (long), rule (short length + ASCII), boundary (short length +
+     *     ASCII), zeros up to a multiple of 8 bytes
+     * The board of an engine simulating the whole plane (see Plane) is the smallest rectangle holding its alive
+     * cells: top and left give its position in the plane and its boundary is PLANE. The other boards are at
+     * (0, 0), and the files of version 1, which have no position, are read as such.
+     * The cells are the words of a BitEngine (64 cells per long, row by row, see BitKernel), stored:
+     *     NONE:  as they are, height x words longs
+     *     RUNS:  as runs of words: a positive long n followed by n words, or a negative long -n for n empty words
+     *     TILES: as tiles of 64 rows x 1 word: a bitmap of the tiles holding alive cells, tile row by tile row,
+     *            followed by the words of those tiles only
+     * Without compression the file is the memory of the engine, and resuming is a bulk copy from the mapped file.
+     * The board is written band by band of 64 rows (see Rows), the runs ending with each band: a board outside
+     * of the heap is never copied on it.
+     * The files are written and read through mappings of 128 MB windows, so their size is only bounded by the disk.
+     * A checkpoint is written in a temporary file which replaces the previous one only once it is complete, and
+     * the population written in the header is checked when it is read back.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The ways to store the cells
+     */
+    public enum Compression { NONE, RUNS, TILES }
+
+    /**
+     * The version of the format written, and the first bytes of the files
+     */
+    public static final int VERSION = 2;
+    private static final byte[] MAGIC = {'G', 'O', 'L', 'C', 'K', 'P', 'T', 0};
+
+    /**
+     * The boundary of the boards of the engines simulating the whole plane
+     */
+    public static final String PLANE = "PLANE";
+
+    /**
+     * The size of the windows of the files mapped at once, a multiple of 8
+     */
+    private static final long WINDOW = 1L << 27;
+
+    /**
+     * The number of rows of a tile
+     */
+    private static final int TILE_ROWS = 64;
+
+    /**
+     * The dimensions of the board
+     */
+    private final int height, width;
+
+    /**
+     * The generation of the board and its number of alive cells (-1 until it is written)
+     */
+    private final long generation, population;
+
+    /**
+     * The coordinates in the plane of the north west cell of the board
+     */
+    private final long top, left;
+
+    /**
+     * The rule of the game and the behavior of the borders of the board
+     */
+    private final String rule, boundary;
+
+    /**
+     * The way the cells are stored
+     */
+    private final Compression compression;
+
+    /**
+     * The constructor of the header of a checkpoint to write
+     *
+     * @param height      the number of rows of the board
+     * @param width       the number of columns of the board
+     * @param generation  the generation of the board
+     * @param rule        the rule of the game, like B3/S23
+     * @param boundary    the behavior of the borders of the board, like TORUS
+     * @param compression the way the cells are stored
+     */
+    public Checkpoint(int height, int width, long generation, String rule, String boundary, Compression compression)
+    {
+        this(0, 0, height, width, generation, -1, rule, boundary, compression);
+    }
+
+    /**
+     * The constructor of the header of a checkpoint of a rectangle of the plane to write
+     *
+     * @param top         the row in the plane of the north west cell of the rectangle
+     * @param left        the column in the plane of the north west cell of the rectangle
+     * @param height      the number of rows of the rectangle
+     * @param width       the number of columns of the rectangle
+     * @param generation  the generation of the board
+     * @param rule        the rule of the game, like B3/S23
+     * @param compression the way the cells are stored
+     */
+    public Checkpoint(long top, long left, int height, int width, long generation, String rule,
+                      Compression compression)
+    {
+        this(top, left, height, width, generation, -1, rule, PLANE, compression);
+    }
+
+    /**
+     * The constructor of the header of a checkpoint written
+     */
+    private Checkpoint(long top, long left, int height, int width, long generation, long population, String rule,
+                       String boundary, Compression compression)
+    {
+        if (height <= 0 || width <= 0)
+            throw new IllegalArgumentException("The board must have at least one cell: " + height + "x" + width);
+        this.top = top;
+        this.left = left;
+        this.height = height;
+        this.width = width;
+        this.generation = generation;
+        this.population = population;
+        this.rule = rule;
+        this.boundary = boundary;
+        this.compression = compression;
+    }
+
+    /**
+     * Allows to write a checkpoint.
+     *
+     * @param header the header of the checkpoint
+     * @param cells  the words of the board, laid out like in a BitEngine; they must not change while written
+     * @param path   the file to write
+     * @return Checkpoint the header written, with the population of the board
+     * @throws IOException if the file cannot be written
+     */
+    public static Checkpoint write(Checkpoint header, long[] cells, Path path) throws IOException
+    {
+        int words = (header.width + 63) >>> 6;
+        return write(header, (top, count, band) -> System.arraycopy(cells, top * words, band, 0, count * words),
+                path);
+    }
+
+    /**
+     * Allows to write a checkpoint of a board read band by band, a board outside of the heap for instance. The
+     * board is read twice, once to size the file and once to write it.
+     *
+     * @param header the header of the checkpoint
+     * @param board  the rows of the board; they must not change while written
+     * @param path   the file to write
+     * @return Checkpoint the header written, with the population of the board
+     * @throws IOException if the file cannot be written
+     */
+    public static Checkpoint write(Checkpoint header, Rows board, Path path) throws IOException
+    {
+        int height = header.height, words = (header.width + 63) >>> 6;
+        long[] band = new long[TILE_ROWS * words], tiles = null;
+        if (header.compression == Compression.TILES)
+            tiles = new long[(int) (((long) ((height + TILE_ROWS - 1) / TILE_ROWS) * words + 63) >>> 6)];
+        long population = 0, body = tiles == null ? 0 : tiles.length;
+        for (int top = 0; top < height; top += TILE_ROWS) {
+            int rows = Math.min(TILE_ROWS, height - top), count = rows * words;
+            board.copy(top, rows, band);
+            for (int k = 0; k < count; k++) population += Long.bitCount(band[k]);
+            switch (header.compression) {
+                case RUNS:
+                    body += runs(band, count, null);
+                    break;
+                case TILES:
+                    for (int w = 0, t = top / TILE_ROWS * words; w < words; w++, t++) {
+                        for (int r = 0; r < rows; r++) {
+                            if (band[r * words + w] == 0) continue;
+                            tiles[t >>> 6] |= 1L << t;
+                            body += rows;
+                            break;
+                        }
+                    }
+                    break;
+                default:
+                    body += count;
+            }
+        }
+        Checkpoint written = new Checkpoint(header.top, header.left, header.height, header.width, header.generation,
+                population, header.rule, header.boundary, header.compression);
+
+        byte[] head = written.encode();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Output out = new Output(temporary, head.length + 8 * body)) {
+            out.put(head);
+            if (tiles != null) out.putLongs(tiles, 0, tiles.length);
+            /* The runs stop at the end of each band, the reader carrying a run from a band to the next one */
+            for (int top = 0; top < height; top += TILE_ROWS) {
+                int rows = Math.min(TILE_ROWS, height - top), count = rows * words;
+                board.copy(top, rows, band);
+                switch (header.compression) {
+                    case RUNS:
+                        runs(band, count, out);
+                        break;
+                    case TILES:
+                        for (int w = 0, t = top / TILE_ROWS * words; w < words; w++, t++)
+                            if ((tiles[t >>> 6] & 1L << t) != 0)
+                                for (int r = 0; r < rows; r++) out.putLong(band[r * words + w]);
+                        break;
+                    default:
+                        out.putLongs(band, 0, count);
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Allows to write the words as runs, or only to count the longs it takes.
+     *
+     * @param cells the words
+     * @param count the number of words
+     * @param out   the file, null to only count
+     * @return long the number of longs written
+     * @throws IOException if the file cannot be written
+     */
+    private static long runs(long[] cells, int count, Output out) throws IOException
+    {
+        long longs = 0;
+        for (int k = 0; k < count; ) {
+            int from = k;
+            if (cells[k] == 0) {
+                while (k < count && cells[k] == 0) k++;
+                if (out != null) out.putLong(from - k);
+                longs++;
+            } else {
+                while (k < count && cells[k] != 0) k++;
+                if (out != null) {
+                    out.putLong(k - from);
+                    out.putLongs(cells, from, k - from);
+                }
+                longs += 1 + k - from;
+            }
+        }
+        return longs;
+    }
+
+    /**
+     * @return byte[] the header as written in the file
+     */
+    private byte[] encode()
+    {
+        byte[] r = rule.getBytes(StandardCharsets.US_ASCII), b = boundary.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer head = ByteBuffer.allocate((MAGIC.length + 52 + r.length + b.length + 7) & ~7)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        head.put(MAGIC).putInt(VERSION).putInt(compression.ordinal()).putInt(height).putInt(width)
+                .putLong(generation).putLong(population).putLong(top).putLong(left)
+                .putShort((short) r.length).put(r).putShort((short) b.length).put(b);
+        return head.array();
+    }
+
+    /**
+     * Allows to read the header of a checkpoint.
+     *
+     * @param path the file to read
+     * @return Checkpoint the header
+     * @throws IOException if the file cannot be read or is not a checkpoint
+     */
+    public static Checkpoint readHeader(Path path) throws IOException
+    {
+        try (Input in = new Input(path)) {
+            return decode(in, path);
+        }
+    }
+
+    /**
+     * Allows to read a checkpoint. The cells are copied in bulk from the mapped file into a BitEngine, and given
+     * run by run to the other storages.
+     *
+     * @param path the file to read
+     * @param sink the storage receiving the board
+     * @return Checkpoint the header of the checkpoint
+     * @throws IOException if the file cannot be read or is not a valid checkpoint
+     */
+    public static Checkpoint read(Path path, CellSink sink) throws IOException
+    {
+        try (Input in = new Input(path)) {
+            Checkpoint header = decode(in, path);
+            int height = header.height, width = header.width, words = (width + 63) >>> 6;
+            long population = 0;
+            sink.begin(height, width);
+            if (header.compression == Compression.NONE && sink instanceof BitEngine) {
+                BitEngine engine = (BitEngine) sink;
+                for (int k = 0, count = height * words; k < count; ) {
+                    LongBuffer window = in.longs(count - k);
+                    int n = window.remaining();
+                    engine.setWords(k, window);
+                    k += n;
+                }
+                population = engine.getPopulation();
+            } else {
+                long[] band = new long[TILE_ROWS * words], tiles = null;
+                if (header.compression == Compression.TILES) {
+                    long count = (long) ((height + TILE_ROWS - 1) / TILE_ROWS) * words;
+                    tiles = new long[(int) ((count + 63) >>> 6)];
+                    in.getLongs(tiles, 0, tiles.length);
+                }
+                long[] run = new long[2];
+                for (int top = 0; top < height; top += TILE_ROWS) {
+                    int rows = Math.min(TILE_ROWS, height - top), count = rows * words;
+                    switch (header.compression) {
+                        case RUNS:
+                            decodeRuns(in, band, count, run);
+                            break;
+                        case TILES:
+                            Arrays.fill(band, 0);
+                            for (int w = 0, t = top / TILE_ROWS * words; w < words; w++, t++)
+                                if ((tiles[t >>> 6] & 1L << t) != 0)
+                                    for (int r = 0; r < rows; r++) band[r * words + w] = in.getLong();
+                            break;
+                        default:
+                            in.getLongs(band, 0, count);
+                    }
+                    for (int r = 0; r < rows; r++) band[r * words + words - 1] &= -1L >>> (-width & 63);
+                    for (int k = 0; k < count; k++) population += Long.bitCount(band[k]);
+                    if (sink instanceof BitEngine)
+                        ((BitEngine) sink).setWords(top * words, LongBuffer.wrap(band, 0, count));
+                    else
+                        emit(band, rows, words, top, sink);
+                }
+            }
+            sink.end();
+            if (population != header.population)
+                throw new IOException("The checkpoint is corrupted: " + population + " alive cells instead of "
+                        + header.population);
+            return header;
+        }
+    }
+
+    /**
+     * Allows to decode the runs of words of a band of rows.
+     *
+     * @param in    the file
+     * @param band  the words of the band
+     * @param count the number of words of the band
+     * @param run   the words of the current run still to decode: the empty words and the stored words
+     * @throws IOException if the file cannot be read or is corrupted
+     */
+    private static void decodeRuns(Input in, long[] band, int count, long[] run) throws IOException
+    {
+        for (int k = 0; k < count; ) {
+            if (run[0] == 0 && run[1] == 0) {
+                long token = in.getLong();
+                if (token == 0) throw new IOException("The checkpoint is corrupted: empty run");
+                run[token < 0 ? 0 : 1] = Math.abs(token);
+            }
+            int n = (int) Math.min(run[0] + run[1], count - k);
+            if (run[0] > 0) {
+                Arrays.fill(band, k, k + n, 0);
+                run[0] -= n;
+            } else {
+                in.getLongs(band, k, n);
+                run[1] -= n;
+            }
+            k += n;
+        }
+    }
+
+    /**
+     * Allows to give the alive cells of a band of rows to a storage, run by run.
+     *
+     * @param band  the words of the band
+     * @param rows  the number of rows of the band
+     * @param words the number of words in a row
+     * @param top   the first row of the band on the board
+     * @param sink  the storage
+     */
+    private static void emit(long[] band, int rows, int words, int top, CellSink sink)
+    {
+        for (int r = 0; r < rows; r++) {
+            for (int w = 0; w < words; w++) {
+                long word = band[r * words + w];
+                while (word != 0) {
+                    int from = Long.numberOfTrailingZeros(word);
+                    int to = Math.min(64, from + Long.numberOfTrailingZeros(~(word >>> from)));
+                    sink.setRun(top + r, (w << 6) + from, to - from);
+                    word = to == 64 ? 0 : word & -1L << to;
+                }
+            }
+        }
+    }
+
+    /**
+     * Allows to read the header at the beginning of a file.
+     */
+    private static Checkpoint decode(Input in, Path path) throws IOException
+    {
+        ByteBuffer head = in.head();
+        byte[] magic = new byte[MAGIC.length];
+        if (head.remaining() < MAGIC.length + 40) throw new IOException("Not a checkpoint: " + path);
+        head.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a checkpoint: " + path);
+        int version = head.getInt(), compression = head.getInt();
+        if (version > VERSION) throw new IOException("Unsupported checkpoint version " + version + ": " + path);
+        if (compression < 0 || compression >= Compression.values().length)
+            throw new IOException("Unknown compression " + compression + ": " + path);
+        int height = head.getInt(), width = head.getInt();
+        long generation = head.getLong(), population = head.getLong();
+        long top = version > 1 ? head.getLong() : 0, left = version > 1 ? head.getLong() : 0;
+        String rule = string(head), boundary = string(head);
+        head.position((head.position() + 7) & ~7);
+        try {
+            return new Checkpoint(top, left, height, width, generation, population, rule, boundary,
+                    Compression.values()[compression]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The checkpoint is corrupted: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return String a string of the header, written as its length and its ASCII characters
+     */
+    private static String string(ByteBuffer head)
+    {
+        byte[] bytes = new byte[head.getShort() & 0xFFFF];
+        head.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return int the number of rows of the board
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return int the number of columns of the board
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return long the row in the plane of the north west cell of the board, 0 unless its boundary is PLANE
+     */
+    public long getTop()
+    {
+        return top;
+    }
+
+    /**
+     * @return long the column in the plane of the north west cell of the board, 0 unless its boundary is PLANE
+     */
+    public long getLeft()
+    {
+        return left;
+    }
+
+    /**
+     * @return long the generation of the board
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return long the number of alive cells, -1 for a header not written yet
+     */
+    public long getPopulation()
+    {
+        return population;
+    }
+
+    /**
+     * @return String the rule of the game
+     */
+    public String getRule()
+    {
+        return rule;
+    }
+
+    /**
+     * @return String the behavior of the borders of the board
+     */
+    public String getBoundary()
+    {
+        return boundary;
+    }
+
+    /**
+     * @return Compression the way the cells are stored
+     */
+    public Compression getCompression()
+    {
+        return compression;
+    }
+
+    public interface Rows
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Rows
+         * @description: Gives the words of a board to write, a band of rows at a time
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * Allows to copy rows of the board.
+         *
+         * @param top   the first row
+         * @param count the number of rows
+         * @param band  the array receiving the rows, (width + 63) / 64 words per row from its first index
+         */
+        void copy(int top, int count, long[] band);
+
+    }
+
+    private static final class Input implements AutoCloseable
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Input
+         * @description: Reads the longs of a file through windows of it mapped in memory
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private MappedByteBuffer window;
+
+        Input(Path path) throws IOException
+        {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+            this.map(0);
+        }
+
+        private void map(long at) throws IOException
+        {
+            position = at;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(WINDOW, size - at));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * @return ByteBuffer the first window, to read the header
+         */
+        ByteBuffer head()
+        {
+            return window;
+        }
+
+        /**
+         * @return LongBuffer a view of the next longs of the file, at most max of them
+         */
+        LongBuffer longs(int max) throws IOException
+        {
+            if (window.remaining() < 8) {
+                if (window.hasRemaining() || position + window.capacity() >= size)
+                    throw new EOFException("The checkpoint is truncated");
+                this.map(position + window.capacity());
+            }
+            int n = Math.min(max, window.remaining() >>> 3);
+            LongBuffer view = window.asLongBuffer();
+            view.limit(n);
+            window.position(window.position() + 8 * n);
+            return view;
+        }
+
+        long getLong() throws IOException
+        {
+            if (window.remaining() < 8) this.longs(0);
+            return window.getLong();
+        }
+
+        void getLongs(long[] target, int from, int count) throws IOException
+        {
+            while (count > 0) {
+                LongBuffer view = this.longs(count);
+                int n = view.remaining();
+                view.get(target, from, n);
+                from += n;
+                count -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    private static final class Output implements AutoCloseable
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Output
+         * @description: Writes a file of a known size through windows of it mapped in memory
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private MappedByteBuffer window;
+
+        Output(Path path, long size) throws IOException
+        {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = size;
+            this.map(0);
+        }
+
+        private void map(long at) throws IOException
+        {
+            if (window != null) window.force();
+            position = at;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, at, Math.min(WINDOW, size - at));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void room() throws IOException
+        {
+            if (!window.hasRemaining()) this.map(position + window.capacity());
+        }
+
+        void put(byte[] bytes) throws IOException
+        {
+            this.room();
+            window.put(bytes);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            this.room();
+            window.putLong(value);
+        }
+
+        void putLongs(long[] source, int from, int count) throws IOException
+        {
+            while (count > 0) {
+                this.room();
+                int n = Math.min(count, window.remaining() >>> 3);
+                window.asLongBuffer().put(source, from, n);
+                window.position(window.position() + 8 * n);
+                from += n;
+                count -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            window.force();
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.eliaswalyba.gameoflife.checkpoint;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.Controller;
+import com.eliaswalyba.gameoflife.backend.Engine;
+import com.eliaswalyba.gameoflife.backend.OffHeapBoard;
+import com.eliaswalyba.gameoflife.backend.OffHeapEngine;
+import com.eliaswalyba.gameoflife.backend.Plane;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class Checkpointer implements AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Checkpointer
+     * @description: Writes checkpoints in the background while the simulation goes on
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Saving a BitEngine copies nothing: the engine lends its current generation to the checkpoint and keeps on
+     * stepping into other buffers, the lent one being left alone until the checkpoint thread has written it.
+     * So the simulation only waits for the lending, whatever the size of the board. The board of an OffHeapEngine
+     * is overwritten in place by the next generation: it is streamed from outside of the heap into the file,
+     * band by band, before save returns. The other engines are first copied into a BitEngine, on the thread of
+     * the simulation.
+     * The engines simulating the whole plane (see Plane) save the smallest rectangle holding their alive cells,
+     * wherever they went, with its position in the plane: their window would lose the cells that left it.
+     * A checkpoint only tells the alive cells from the dead ones: the boards of the rules of more than 2 states
+     * (the Generations rules of the Controller) are refused rather than saved without their dying cells.
+     * The checkpoints are written one after the other, in the order they were asked.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The boundary written in the checkpoints of the bounded engines other than the Controller
+     */
+    private static final String BOUNDARY = "TORUS";
+
+    /**
+     * The thread writing the checkpoints
+     */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The way the cells are stored
+     */
+    private final Checkpoint.Compression compression;
+
+    /**
+     * The constructor of the class
+     *
+     * @param compression the way the cells are stored
+     */
+    public Checkpointer(Checkpoint.Compression compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * Allows to save the board of an engine. It must be called by the thread running the engine, between two
+     * generations; the engine can go on stepping right away.
+     *
+     * @param engine     the engine
+     * @param generation the generation of the board
+     * @param path       the file to write
+     * @return Future the header of the checkpoint, once written
+     */
+    public Future<Checkpoint> save(Engine engine, long generation, Path path)
+    {
+        return this.save(engine, generation, 0, 0, path);
+    }
+
+    /**
+     * Allows to save the board of an engine whose plane was moved, a run resumed from a checkpoint of the plane
+     * for instance. It must be called by the thread running the engine, between two generations; the engine can
+     * go on stepping right away.
+     *
+     * @param engine     the engine
+     * @param generation the generation of the board
+     * @param top        the row in the plane of the cell (0, 0) of the engine, for the engines of the plane
+     * @param left       the column in the plane of the cell (0, 0) of the engine, for the engines of the plane
+     * @param path       the file to write
+     * @return Future the header of the checkpoint, once written
+     */
+    public Future<Checkpoint> save(Engine engine, long generation, long top, long left, Path path)
+    {
+        if (engine.getRule().getStates() > 2)
+            throw new IllegalArgumentException("A checkpoint cannot hold the dying cells of the rule "
+                    + engine.getRule());
+        if (engine instanceof OffHeapEngine) {
+            OffHeapBoard rows = ((OffHeapEngine) engine).getBoard();
+            int words = rows.getWords();
+            Checkpoint header = new Checkpoint(rows.getHeight(), rows.getWidth(), generation,
+                    engine.getRule().toString(), BOUNDARY, compression);
+            return await(writer.submit(() -> Checkpoint.write(header, (first, count, band) -> {
+                for (int r = 0; r < count; r++) rows.getRow(first + r, band, r * words);
+            }, path)));
+        }
+        BitEngine board;
+        long[] bounds = null;
+        if (engine instanceof BitEngine) {
+            board = (BitEngine) engine;
+        } else if (engine instanceof Plane) {
+            bounds = ((Plane) engine).getBounds();
+            if (bounds[2] > Integer.MAX_VALUE || bounds[3] > Integer.MAX_VALUE
+                    || bounds[2] * ((bounds[3] + 63) >>> 6) > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("The alive cells are too far apart to be saved: "
+                        + bounds[2] + "x" + bounds[3]);
+            board = new BitEngine(1, 1);
+            CellSource.copy(((Plane) engine).window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]), board);
+        } else if (engine instanceof CellSource) {
+            board = new BitEngine(1, 1);
+            CellSource.copy((CellSource) engine, board);
+        } else {
+            board = new BitEngine(engine.getCells());
+        }
+        long[] cells = board.lend();
+        Checkpoint header = bounds != null
+                ? new Checkpoint(top + bounds[0], left + bounds[1], board.getHeight(), board.getWidth(), generation,
+                        engine.getRule().toString(), compression)
+                : new Checkpoint(board.getHeight(), board.getWidth(), generation, engine.getRule().toString(),
+                        boundary(engine), compression);
+        return writer.submit(() -> {
+            try {
+                return Checkpoint.write(header, cells, path);
+            } finally {
+                board.giveBack(cells);
+            }
+        });
+    }
+
+    /**
+     * Allows to wait for a checkpoint to be written, even if the thread is interrupted: the board is not left
+     * alone before.
+     *
+     * @param checkpoint the checkpoint being written
+     * @return Future the checkpoint, written or failed
+     */
+    private static Future<Checkpoint> await(Future<Checkpoint> checkpoint)
+    {
+        boolean interrupted = false;
+        while (!checkpoint.isDone()) {
+            try {
+                checkpoint.get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                /* The failure is given by the future */
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return checkpoint;
+    }
+
+    /**
+     * @return String the boundary of the board of an engine, the other engines than the Controller being tori
+     */
+    private static String boundary(Engine engine)
+    {
+        return engine instanceof Controller ? ((Controller) engine).getBoundary().name() : BOUNDARY;
+    }
+
+    /**
+     * Allows to wait for the checkpoints still being written, and to stop the thread writing them.
+     */
+    @Override
+    public void close()
+    {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
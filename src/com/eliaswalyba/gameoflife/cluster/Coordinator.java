@@ -0,0 +1,297 @@
+package com.eliaswalyba.gameoflife.cluster;
+
+import com.eliaswalyba.gameoflife.backend.Boundary;
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.pattern.Patterns;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class Coordinator
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Coordinator
+     * @description: Cuts a board in stripes of rows between several worker JVMs and holds their barrier
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The coordinator never holds any cell: it waits for the workers (see Worker), gives each one a stripe of
+     * rows of the board and the address of the worker below it, and then only counts the workers at the barrier
+     * every --sync generations. The workers load their own rows and exchange their halos between themselves, a
+     * row up and a row down per generation, so the traffic does not grow with the height of the board and each
+     * worker streams through its own part of the memory: on a large board the throughput grows with the number
+     * of workers, as long as they have cores and memory channels to themselves.
+     * The board follows the boundaries of the Controller, except GROWING (see StripeEngine). At the end the
+     * workers report the population and the hash of their stripes: the hash of the board is the one a BitEngine
+     * would have after the same run, so a run can be checked against the batch mode.
+     * With --local N the coordinator starts the N workers itself, as processes of the same JVM and classpath on
+     * the same machine; with --workers N it waits for N workers started anywhere with
+     * "Worker --coordinator HOST:PORT".
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The help printed when the arguments are wrong
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: Coordinator [options]",
+            "  --workers N           wait for N workers started elsewhere",
+            "  --local N             start N workers on this machine",
+            "  --port P              the port the workers connect to (default 7420, any with --local)",
+            "  --pattern FILE        the pattern to load (.rle, .cells or .mc), read by every worker",
+            "  --soup SIZE           a random soup of SIZE x SIZE cells instead of a pattern",
+            "  --density D           the probability of a cell of the soup to be alive (default 0.5)",
+            "  --seed S              the seed of the soup (default 1)",
+            "  --size HxW            the size of the board, the pattern being centered (default: the pattern)",
+            "  --boundary NAME       torus, dead or klein_bottle (default torus)",
+            "  --rule RULE           B36/S23, 23/3... of 2 states (default B3/S23)",
+            "  --generations N       the number of generations to run (default 1000)",
+            "  --sync K              the generations between two barriers (default 1)"
+    );
+
+    /**
+     * The options of the run
+     */
+    private Path pattern;
+    private int workers, port = 7420, soup, height, width;
+    private boolean local;
+    private double density = 0.5;
+    private long seed = 1, generations = 1000, sync = 1;
+    private Rule rule = Rule.LIFE;
+    private Boundary boundary = Boundary.TORUS;
+
+    /**
+     * The entry point of the distributed mode.
+     *
+     * @param args the options, see USAGE
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        Coordinator coordinator = new Coordinator();
+        try {
+            coordinator.parse(args);
+            coordinator.run(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Allows to read the options.
+     *
+     * @param args the options, see USAGE
+     */
+    void parse(String[] args)
+    {
+        for (int k = 0; k < args.length; k++) {
+            String option = args[k];
+            if (k + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++k];
+            try {
+                switch (option) {
+                    case "--workers":     workers = Integer.parseInt(value); local = false; break;
+                    case "--local":       workers = Integer.parseInt(value); local = true; break;
+                    case "--port":        port = Integer.parseInt(value); break;
+                    case "--pattern":     pattern = Paths.get(value).toAbsolutePath(); break;
+                    case "--soup":        soup = Integer.parseInt(value); break;
+                    case "--density":     density = Double.parseDouble(value); break;
+                    case "--seed":        seed = Long.parseLong(value); break;
+                    case "--rule":        rule = Rule.parse(value); break;
+                    case "--generations": generations = Long.parseLong(value); break;
+                    case "--sync":        sync = Long.parseLong(value); break;
+                    case "--boundary":
+                        try {
+                            boundary = Boundary.valueOf(value.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown boundary " + value);
+                        }
+                        break;
+                    case "--size":
+                        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                        if (size.length != 2) throw new IllegalArgumentException("The size must be HxW: " + value);
+                        height = Integer.parseInt(size[0]);
+                        width = Integer.parseInt(size[1]);
+                        break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (workers <= 0) throw new IllegalArgumentException("Give the number of workers");
+        if ((pattern != null ? 1 : 0) + (soup > 0 ? 1 : 0) != 1)
+            throw new IllegalArgumentException("Give either a pattern or a soup");
+        if (boundary == Boundary.GROWING)
+            throw new IllegalArgumentException("A board cut in stripes cannot have the boundary " + boundary);
+        if (rule.getStates() != 2) throw new IllegalArgumentException("The rule " + rule + " has more than 2 states");
+        if (sync <= 0) throw new IllegalArgumentException("The barrier must come every 1 generation or more");
+    }
+
+    /**
+     * Allows to run the simulation on the workers and to print its report.
+     *
+     * @param out where to print the report
+     * @throws IOException if the pattern cannot be read or a worker fails
+     */
+    void run(PrintStream out) throws IOException
+    {
+        if (soup > 0) {
+            height = soup;
+            width = soup;
+        } else if (height <= 0 || width <= 0) {
+            this.measure();
+        }
+        if (height < workers)
+            throw new IllegalArgumentException("The " + height + " rows cannot be cut between " + workers + " workers");
+
+        List<Process> processes = new ArrayList<>();
+        List<SocketChannel> channels = new ArrayList<>();
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(local ? 0 : port))) {
+            if (local) {
+                int bound = ((InetSocketAddress) server.getLocalAddress()).getPort();
+                for (int k = 0; k < workers; k++) processes.add(spawn(bound));
+            }
+            String[] hosts = new String[workers];
+            int[] ports = new int[workers];
+            for (int k = 0; k < workers; k++) {
+                SocketChannel channel = server.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channels.add(channel);
+                ports[k] = Wire.receive(channel, Wire.HELLO).getInt();
+                hosts[k] = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+            }
+
+            /* The partition map: the rows are shared as evenly as possible, in the order the workers arrived */
+            String file = pattern != null ? pattern.toString() : "";
+            for (int k = 0, top = 0; k < workers; k++) {
+                int rows = height / workers + (k < height % workers ? 1 : 0), below = (k + 1) % workers;
+                ByteBuffer assign = Wire.message(Wire.ASSIGN, Integer.BYTES * 8 + Long.BYTES * 4
+                        + Wire.length(rule.toString()) + Wire.length(file) + Wire.length(hosts[below]));
+                assign.putInt(k).putInt(workers).putInt(height).putInt(width).putInt(top).putInt(rows)
+                        .putInt(boundary.ordinal()).putLong(generations).putLong(sync).putLong(seed)
+                        .putDouble(density);
+                Wire.putString(assign, rule.toString());
+                Wire.putString(assign, file);
+                Wire.putString(assign, hosts[below]);
+                assign.putInt(ports[below]);
+                Wire.send(channels.get(k), assign);
+                top += rows;
+            }
+            for (SocketChannel channel : channels) Wire.receive(channel, Wire.READY);
+
+            out.printf(Locale.ROOT, "workers: %d%n", workers);
+            out.printf(Locale.ROOT, "rule: %s%n", rule);
+            out.printf(Locale.ROOT, "boundary: %s%n", boundary.name().toLowerCase(Locale.ROOT));
+            out.printf(Locale.ROOT, "board: %dx%d%n", height, width);
+            long start = System.nanoTime();
+            this.go(channels);
+            for (long g = sync; g < generations; g += sync) {
+                for (SocketChannel channel : channels) {
+                    long reached = Wire.receive(channel, Wire.DONE).getLong();
+                    if (reached != g)
+                        throw new IOException("A worker reached the generation " + reached + " instead of " + g);
+                }
+                this.go(channels);
+            }
+            long population = 0, hash = 0, slowest = 0;
+            for (SocketChannel channel : channels) {
+                ByteBuffer report = Wire.receive(channel, Wire.REPORT);
+                population += report.getLong();
+                hash ^= report.getLong();
+                slowest = Math.max(slowest, report.getLong());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            out.printf(Locale.ROOT, "generations: %d%n", generations);
+            out.printf(Locale.ROOT, "wall time: %.3f s%n", seconds);
+            out.printf(Locale.ROOT, "slowest worker: %.3f s%n", slowest / 1e9);
+            out.printf(Locale.ROOT, "generations per second: %.1f%n", generations / seconds);
+            out.printf(Locale.ROOT, "cell updates per second: %.4g%n", generations * (double) height * width / seconds);
+            out.printf(Locale.ROOT, "final population: %d%n", population);
+            out.printf(Locale.ROOT, "hash: %016x%n", hash);
+        } finally {
+            for (SocketChannel channel : channels) channel.close();
+            for (Process process : processes) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Allows to let all the workers go on.
+     *
+     * @param channels the channels to the workers
+     * @throws IOException if a worker cannot be reached
+     */
+    private void go(List<SocketChannel> channels) throws IOException
+    {
+        for (SocketChannel channel : channels) Wire.send(channel, Wire.message(Wire.GO, 0));
+    }
+
+    /**
+     * Allows to read the size of the pattern, without keeping any of its cells.
+     *
+     * @throws IOException if the pattern cannot be read
+     */
+    private void measure() throws IOException
+    {
+        Patterns.read(pattern, new CellSink()
+        {
+            @Override
+            public void begin(int h, int w)
+            {
+                height = h;
+                width = w;
+            }
+
+            @Override
+            public void setRun(int i, int j, int length)
+            {
+            }
+        });
+    }
+
+    /**
+     * Allows to start a worker on this machine, with the options and the classpath of this JVM.
+     *
+     * @param port the port of the coordinator
+     * @return Process the worker
+     * @throws IOException if the worker cannot be started
+     */
+    private static Process spawn(int port) throws IOException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Worker.class.getName());
+        command.add("--coordinator");
+        command.add("127.0.0.1:" + port);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+}
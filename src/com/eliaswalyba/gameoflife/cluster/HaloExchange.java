@@ -0,0 +1,150 @@
+package com.eliaswalyba.gameoflife.cluster;
+
+import com.eliaswalyba.gameoflife.backend.StripeEngine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+final class HaloExchange implements AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: HaloExchange
+     * @description: Swaps the edges of a stripe with the halos of its neighbors, over non-blocking channels
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A stripe has a channel to the stripe above and a channel to the stripe below, null when the board is DEAD
+     * beyond it. At each generation its first row goes up and its last row goes down, while the last row of the
+     * stripe above and the first row of the stripe below come in as its halos. The rows are sent as soon as the
+     * generation starts (see start), and received once the inner rows are computed (see finish): a single
+     * selector writes what the channels accept and reads what they have, so two neighbors sending each other a
+     * long row at the same time never wait for each other.
+     * Nothing else is needed to keep the stripes in step: a stripe cannot compute its edges before it got the
+     * halos of the same generation, so a stripe never gets ahead of its neighbors by more than one generation.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The stripe
+     */
+    private final StripeEngine stripe;
+
+    /**
+     * The channels to the stripe above and to the stripe below, null if there is none
+     */
+    private final SocketChannel up, down;
+
+    /**
+     * The selector waiting for the channels
+     */
+    private final Selector selector;
+
+    /**
+     * The rows sent up and down, and the halos received from above and from below
+     */
+    private final ByteBuffer toUp, toDown, fromUp, fromDown;
+
+    /**
+     * The constructor of the class
+     *
+     * @param stripe the stripe
+     * @param up     the channel to the stripe above, null if there is none
+     * @param down   the channel to the stripe below, null if there is none
+     * @throws IOException if the channels cannot be registered
+     */
+    HaloExchange(StripeEngine stripe, SocketChannel up, SocketChannel down) throws IOException
+    {
+        this.stripe = stripe;
+        this.up = up;
+        this.down = down;
+        this.selector = Selector.open();
+        int bytes = stripe.getRowWords() * Long.BYTES;
+        this.toUp = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        this.toDown = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        this.fromUp = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        this.fromDown = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (SocketChannel channel : new SocketChannel[]{up, down}) {
+            if (channel == null) continue;
+            channel.configureBlocking(false);
+            channel.register(selector, 0);
+        }
+    }
+
+    /**
+     * Allows to send the edges of the current generation, as far as the channels accept them right away.
+     *
+     * @throws IOException if a row cannot be sent
+     */
+    void start() throws IOException
+    {
+        if (up != null) {
+            toUp.clear();
+            stripe.getEdge(true, toUp.asLongBuffer());
+            up.write(toUp);
+            fromUp.clear();
+        }
+        if (down != null) {
+            toDown.clear();
+            stripe.getEdge(false, toDown.asLongBuffer());
+            down.write(toDown);
+            fromDown.clear();
+        }
+    }
+
+    /**
+     * Allows to finish sending the edges and to wait for the halos, which are then given to the stripe.
+     *
+     * @throws IOException if a row cannot be sent or received
+     */
+    void finish() throws IOException
+    {
+        while (this.pending(up, toUp, fromUp) | this.pending(down, toDown, fromDown)) {
+            selector.select();
+            selector.selectedKeys().clear();
+        }
+        if (up != null) {
+            fromUp.flip();
+            stripe.setHalo(true, fromUp.asLongBuffer());
+        }
+        if (down != null) {
+            fromDown.flip();
+            stripe.setHalo(false, fromDown.asLongBuffer());
+        }
+    }
+
+    /**
+     * Allows to move the bytes a channel is ready for, and to tell the selector what is still expected from it.
+     *
+     * @param channel the channel, null if there is none
+     * @param out     the row being sent on it
+     * @param in      the halo being received from it
+     * @return boolean true if the channel still has something to send or to receive
+     * @throws IOException if the channel fails or is closed by the other side
+     */
+    private boolean pending(SocketChannel channel, ByteBuffer out, ByteBuffer in) throws IOException
+    {
+        if (channel == null) return false;
+        if (out.hasRemaining()) channel.write(out);
+        if (in.hasRemaining() && channel.read(in) < 0)
+            throw new EOFException("The stripe at " + channel.getRemoteAddress() + " is gone");
+        int interest = (out.hasRemaining() ? SelectionKey.OP_WRITE : 0)
+                | (in.hasRemaining() ? SelectionKey.OP_READ : 0);
+        channel.keyFor(selector).interestOps(interest);
+        return interest != 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        selector.close();
+        if (up != null) up.close();
+        if (down != null) down.close();
+    }
+
+}
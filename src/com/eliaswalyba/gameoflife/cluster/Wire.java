@@ -0,0 +1,133 @@
+package com.eliaswalyba.gameoflife.cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+final class Wire
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Wire
+     * @description: The messages between the coordinator and the workers, and the way they are framed
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A message is its length, an int, followed by its body, which starts with its type. The messages go over
+     * blocking channels: they are few and small, the halos go over their own channels (see HaloExchange).
+     *      - HELLO, worker to coordinator: the port on which the worker accepts the halos of the stripe above
+     *      - ASSIGN, coordinator to worker: the stripe, the board, how to fill it and the worker below
+     *      - READY, worker to coordinator: the board is loaded and the halo channels are connected
+     *      - DONE, worker to coordinator: the worker reached the barrier of a generation
+     *      - GO, coordinator to worker: all the workers reached the barrier, or are ready
+     *      - REPORT, worker to coordinator: the population and the hash of the stripe at the end
+     *      - HALO, worker to worker: the index of the worker above, first thing on a halo channel
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The types of the messages
+     */
+    static final int HELLO = 1, ASSIGN = 2, READY = 3, DONE = 4, GO = 5, REPORT = 6, HALO = 7;
+
+    /**
+     * This class only holds static methods.
+     */
+    private Wire() {}
+
+    /**
+     * Allows to start a message.
+     *
+     * @param type     the type of the message
+     * @param capacity the greatest length of its body, its type excluded
+     * @return ByteBuffer the buffer in which to put the body
+     */
+    static ByteBuffer message(int type, int capacity)
+    {
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES * 2 + capacity);
+        message.putInt(0).putInt(type);
+        return message;
+    }
+
+    /**
+     * Allows to send a message.
+     *
+     * @param channel the channel, in blocking mode
+     * @param message the message started by message, its body put
+     * @throws IOException if the message cannot be sent
+     */
+    static void send(SocketChannel channel, ByteBuffer message) throws IOException
+    {
+        message.putInt(0, message.position() - Integer.BYTES);
+        message.flip();
+        while (message.hasRemaining()) channel.write(message);
+    }
+
+    /**
+     * Allows to receive a message of a given type.
+     *
+     * @param channel the channel, in blocking mode
+     * @param type    the type expected
+     * @return ByteBuffer the body of the message, after its type
+     * @throws IOException if the message cannot be received or is of another type
+     */
+    static ByteBuffer receive(SocketChannel channel, int type) throws IOException
+    {
+        ByteBuffer length = fill(channel, ByteBuffer.allocate(Integer.BYTES));
+        ByteBuffer body = fill(channel, ByteBuffer.allocate(length.getInt()));
+        int received = body.getInt();
+        if (received != type)
+            throw new IOException("Unexpected message " + received + " instead of " + type + " from "
+                    + channel.getRemoteAddress());
+        return body;
+    }
+
+    /**
+     * Allows to read a buffer until it is full.
+     *
+     * @param channel the channel, in blocking mode
+     * @param buffer  the buffer
+     * @return ByteBuffer the buffer, flipped
+     * @throws IOException if the channel is closed before
+     */
+    static ByteBuffer fill(SocketChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0) throw new EOFException("The connection was closed by the other side");
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Allows to put a string in a message, as its length then its UTF-8 bytes.
+     *
+     * @param message the message
+     * @param value   the string
+     */
+    static void putString(ByteBuffer message, String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        message.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * @return String the string read from a message, put by putString
+     */
+    static String getString(ByteBuffer message)
+    {
+        byte[] bytes = new byte[message.getShort() & 0xFFFF];
+        message.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return int the number of bytes a string takes in a message
+     */
+    static int length(String value)
+    {
+        return Short.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.eliaswalyba.gameoflife.cluster;
+
+import com.eliaswalyba.gameoflife.backend.Boundary;
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.backend.StripeEngine;
+import com.eliaswalyba.gameoflife.pattern.Patterns;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+public class Worker
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Worker
+     * @description: Computes a stripe of a board cut between several JVMs, one of the processes of a cluster
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A worker connects to the Coordinator, which gives it a stripe of rows of the board and the address of the
+     * worker holding the stripe below. The worker builds its own part of the board, from the pattern file or
+     * from the soup, connects to the worker below and accepts the worker above, then runs the generations with
+     * a StripeEngine: the edges go to the neighbors while the inner rows are computed (see HaloExchange), and
+     * every few generations it waits at the barrier of the coordinator. At the end it reports the population
+     * and the hash of its stripe.
+     * A row of the soup only depends on the seed and on the index of the row, never on the stripes, so that a
+     * soup is the same board whatever the number of workers.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The help printed when the arguments are wrong
+     */
+    private static final String USAGE = "usage: Worker --coordinator HOST:PORT";
+
+    /**
+     * The entry point of a worker.
+     *
+     * @param args the options, see USAGE
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 2 || !args[0].equals("--coordinator")) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        int colon = args[1].lastIndexOf(':');
+        try {
+            InetSocketAddress coordinator = new InetSocketAddress(args[1].substring(0, colon),
+                    Integer.parseInt(args[1].substring(colon + 1)));
+            run(coordinator);
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            System.err.println("Not an address: " + args[1]);
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Allows to run the stripe given by a coordinator until the end of the simulation.
+     *
+     * @param coordinator the address of the coordinator
+     * @throws IOException if the coordinator or a neighbor cannot be reached
+     */
+    static void run(InetSocketAddress coordinator) throws IOException
+    {
+        try (ServerSocketChannel halos = ServerSocketChannel.open().bind(new InetSocketAddress(0));
+             SocketChannel control = SocketChannel.open(coordinator)) {
+            control.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer hello = Wire.message(Wire.HELLO, Integer.BYTES);
+            hello.putInt(((InetSocketAddress) halos.getLocalAddress()).getPort());
+            Wire.send(control, hello);
+
+            ByteBuffer assign = Wire.receive(control, Wire.ASSIGN);
+            int index = assign.getInt(), count = assign.getInt(), height = assign.getInt(), width = assign.getInt();
+            int top = assign.getInt(), rows = assign.getInt();
+            Boundary boundary = Boundary.values()[assign.getInt()];
+            long generations = assign.getLong(), sync = assign.getLong(), seed = assign.getLong();
+            double density = assign.getDouble();
+            Rule rule = Rule.parse(Wire.getString(assign));
+            String pattern = Wire.getString(assign), below = Wire.getString(assign);
+            int belowPort = assign.getInt();
+
+            StripeEngine stripe = new StripeEngine(top, rows, height, width, rule, boundary);
+            if (pattern.isEmpty()) soup(stripe, height, width, seed, density);
+            else Patterns.read(Paths.get(pattern), CellSink.centered(stripe, height, width));
+
+            /* The worker below listens since it said hello: connecting first and accepting next never waits forever */
+            SocketChannel down = null, up = null;
+            if (stripe.needsHalo(false)) {
+                down = SocketChannel.open(new InetSocketAddress(below, belowPort));
+                down.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                ByteBuffer halo = Wire.message(Wire.HALO, Integer.BYTES);
+                halo.putInt(index);
+                Wire.send(down, halo);
+            }
+            if (stripe.needsHalo(true)) {
+                up = halos.accept();
+                up.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                int above = Wire.receive(up, Wire.HALO).getInt();
+                if (above != (index + count - 1) % count)
+                    throw new IOException("The worker " + above + " is not above the worker " + index);
+            }
+
+            try (HaloExchange exchange = new HaloExchange(stripe, up, down)) {
+                Wire.send(control, Wire.message(Wire.READY, 0));
+                Wire.receive(control, Wire.GO);
+                long start = System.nanoTime();
+                for (long g = 1; g <= generations; g++) {
+                    exchange.start();
+                    stripe.stepInner();
+                    exchange.finish();
+                    stripe.stepEdges();
+                    stripe.swap();
+                    if (g % sync == 0 && g < generations) {
+                        ByteBuffer done = Wire.message(Wire.DONE, Long.BYTES);
+                        done.putLong(g);
+                        Wire.send(control, done);
+                        Wire.receive(control, Wire.GO);
+                    }
+                }
+                ByteBuffer report = Wire.message(Wire.REPORT, Long.BYTES * 3);
+                report.putLong(stripe.getPopulation()).putLong(stripe.getHash()).putLong(System.nanoTime() - start);
+                Wire.send(control, report);
+            }
+        }
+    }
+
+    /**
+     * Allows to give the rows of a random soup to a stripe. The row i is drawn from its own generator, seeded
+     * from the seed of the soup and from i.
+     *
+     * @param sink    the stripe, or any storage
+     * @param height  the number of rows of the soup
+     * @param width   the number of columns of the soup
+     * @param seed    the seed of the soup
+     * @param density the probability of a cell to be alive
+     */
+    public static void soup(CellSink sink, int height, int width, long seed, double density)
+    {
+        sink.begin(height, width);
+        int from = 0, to = height;
+        if (sink instanceof StripeEngine) {
+            from = ((StripeEngine) sink).getTop();
+            to = from + ((StripeEngine) sink).getRows();
+        }
+        for (int i = from; i < to; i++) {
+            SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + i);
+            for (int j = 0; j < width; j++)
+                if (random.nextDouble() < density) sink.setRun(i, j, 1);
+        }
+        sink.end();
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.eliaswalyba.gameoflife.export;
+
+import com.eliaswalyba.gameoflife.backend.CellSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FrameExporter implements AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: FrameExporter
+     * @description: Writes frames of the board as PNG images, encoded in the background while the simulation goes on
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A frame is a part of the board (the crop, the whole board by default), each cell drawn as a square of scale
+     * x scale pixels, black when alive and white when dead as in the Grid. The frames are drawn into plain
+     * arrays of one bit per pixel, without AWT: the thread of the simulation only walks the runs of alive cells
+     * of the crop and sets their bits, then it hands the image over to the encoders and goes on stepping.
+     * The encoders compress the images into PNG files in parallel (see PngWriter), and give them back once
+     * written.
+     * The images are made once and reused: there are twice as many as encoders, so the memory used does not
+     * grow with the number of frames. When all of them wait to be encoded, the simulation waits for one to come
+     * back (see getWaitNanos): the export never queues more than it can write.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The PNG writer of each encoder, reused from a frame to the next
+     */
+    private static final ThreadLocal<PngWriter> WRITERS = ThreadLocal.withInitial(PngWriter::new);
+
+    private static final class Slot
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Slot
+         * @description: An image reused from a frame to the next, one bit per pixel.
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The size of the image in pixels, and the bytes of a row
+         */
+        final int height, width, stride;
+
+        /**
+         * The rows of stride bytes, eight pixels to a byte, the leftmost one in the highest bit, set when the cell
+         * is alive
+         */
+        final byte[] pixels;
+
+        /**
+         * The constructor of an empty image
+         *
+         * @param height the number of rows of pixels
+         * @param width  the number of pixels of a row
+         */
+        Slot(int height, int width)
+        {
+            this.height = height;
+            this.width = width;
+            this.stride = (width + 7) >>> 3;
+            this.pixels = new byte[height * stride];
+        }
+    }
+
+    /**
+     * The threads encoding the frames
+     */
+    private final ExecutorService encoders;
+
+    /**
+     * The images not being drawn nor encoded, the number of images there can be and the number made so far
+     */
+    private final ArrayBlockingQueue<Slot> free;
+    private final int images;
+    private int made;
+
+    /**
+     * The crop asked for: top, left, height and width, the height and the width being 0 for the whole board
+     */
+    private final int top, left;
+    private int height, width;
+
+    /**
+     * The number of pixels of the side of a cell
+     */
+    private final int scale;
+
+    /**
+     * The first frame that could not be written
+     */
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    /**
+     * The number of frames handed over, and the time the simulation waited for an image
+     */
+    private long frames, waited;
+
+    /**
+     * The constructor of the class
+     *
+     * @param top     the first row of the crop
+     * @param left    the first column of the crop
+     * @param height  the number of rows of the crop, 0 for all the rows from top
+     * @param width   the number of columns of the crop, 0 for all the columns from left
+     * @param scale   the number of pixels of the side of a cell
+     * @param threads the number of encoders
+     */
+    public FrameExporter(int top, int left, int height, int width, int scale, int threads)
+    {
+        if (top < 0 || left < 0 || height < 0 || width < 0) throw new IllegalArgumentException("Wrong crop");
+        if (scale < 1) throw new IllegalArgumentException("The scale must be at least 1");
+        if (threads < 1) throw new IllegalArgumentException("There must be at least one encoder");
+        this.top = top;
+        this.left = left;
+        this.height = height;
+        this.width = width;
+        this.scale = scale;
+        AtomicInteger count = new AtomicInteger();
+        this.encoders = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "export-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.images = 2 * threads;
+        this.free = new ArrayBlockingQueue<>(images);
+    }
+
+    /**
+     * Allows to write a frame of a board. It must be called by the thread running the engine, between two
+     * generations; the engine can go on stepping as soon as it returns.
+     *
+     * @param board the board
+     * @param path  the PNG file to write
+     * @throws IOException if a previous frame could not be written
+     */
+    public void export(CellSource board, Path path) throws IOException
+    {
+        this.rethrow();
+        if (made == 0) {
+            /* The crop is fixed by the first board: the frames of a board that changes size are clipped */
+            if (top >= board.getHeight() || left >= board.getWidth())
+                throw new IllegalArgumentException("The crop is out of the board");
+            if (height == 0 || top + height > board.getHeight()) height = board.getHeight() - top;
+            if (width == 0 || left + width > board.getWidth()) width = board.getWidth() - left;
+            if ((long) height * scale * ((width * (long) scale + 7) >>> 3) > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The frames would be too large, crop the board or lower the scale");
+        }
+        Slot slot = free.poll();
+        if (slot == null && made < images) {
+            slot = new Slot(height * scale, width * scale);
+            made++;
+        }
+        if (slot == null) {
+            long start = System.nanoTime();
+            try {
+                slot = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for an encoder", e);
+            } finally {
+                waited += System.nanoTime() - start;
+            }
+        }
+        this.draw(board, slot);
+        frames++;
+        Slot drawn = slot;
+        encoders.execute(() -> {
+            try {
+                if (failure.get() == null)
+                    WRITERS.get().write(drawn.pixels, drawn.height, drawn.width, drawn.stride, path);
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                free.add(drawn);
+            }
+        });
+    }
+
+    /**
+     * Allows to draw the crop of a board into an image, run by run.
+     *
+     * @param board the board
+     * @param slot  the image
+     */
+    private void draw(CellSource board, Slot slot)
+    {
+        byte[] pixels = slot.pixels;
+        int stride = slot.stride, line = scale * stride;
+        Arrays.fill(pixels, (byte) 0);
+        int rows = Math.min(height, board.getHeight() - top), end = Math.min(left + width, board.getWidth());
+        for (int r = 0; r < rows; r++) {
+            int i = top + r, offset = r * line;
+            boolean any = false;
+            for (int j = board.nextCell(i, left, true); j < end; ) {
+                int dead = Math.min(board.nextCell(i, j, false), end);
+                fill(pixels, offset, (j - left) * scale, (dead - left) * scale);
+                any = true;
+                j = dead < end ? board.nextCell(i, dead, true) : end;
+            }
+            if (!any) continue;
+            for (int k = 1; k < scale; k++) System.arraycopy(pixels, offset, pixels, offset + k * stride, stride);
+        }
+    }
+
+    /**
+     * Allows to set the bits of a run of pixels of a line.
+     *
+     * @param pixels the bytes of the image
+     * @param offset the first byte of the line
+     * @param from   the first pixel of the run
+     * @param to     the pixel after the run
+     */
+    private static void fill(byte[] pixels, int offset, int from, int to)
+    {
+        int first = offset + (from >>> 3), last = offset + ((to - 1) >>> 3);
+        int head = 0xFF >>> (from & 7), tail = 0xFF << (7 - ((to - 1) & 7));
+        if (first == last) {
+            pixels[first] |= (byte) (head & tail);
+            return;
+        }
+        pixels[first] |= (byte) head;
+        Arrays.fill(pixels, first + 1, last, (byte) -1);
+        pixels[last] |= (byte) tail;
+    }
+
+    /**
+     * @throws IOException the first failure of the encoders, if there is one
+     */
+    private void rethrow() throws IOException
+    {
+        IOException e = failure.get();
+        if (e != null) throw new IOException("A frame could not be written: " + e.getMessage(), e);
+    }
+
+    /**
+     * @return long the number of frames handed over to the encoders
+     */
+    public long getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * @return long the time the simulation waited for the encoders, in nanoseconds
+     */
+    public long getWaitNanos()
+    {
+        return waited;
+    }
+
+    /**
+     * Allows to wait for the frames still being encoded, and to stop the encoders.
+     *
+     * @throws IOException if a frame could not be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        encoders.shutdown();
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.rethrow();
+    }
+
+}
@@ -1,11 +1,13 @@
 package com.eliaswalyba.gameoflife.frontend;
 
-import com.eliaswalyba.gameoflife.backend.Position;
-
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 public class Grid extends JPanel
 {
@@ -13,114 +15,320 @@ public class Grid extends JPanel
      * -----------------------------------------------------------------------------------------------------------------
      * @className: Grid
      * @description: Draws a nice grid to graphically represents the cells.
-     * @version: 0.1
+     * @version: 0.3
      * @author: Elias W. BA (eliaswalyba@gmail.com)
      * @date: february 2017
      * -----------------------------------------------------------------------------------------------------------------
-     * In this class we handle all the UI of the game. We use the Java Swing Graphics and Graphics 2D objects to draw
-     * a very nice and well shaped grid for the user.
+     * In this class we handle all the UI of the game. The panel shows a part of the board through a Viewport:
+     * the user zooms with the mouse wheel, pans by dragging with the right (or middle) button and draws by
+     * clicking or dragging with the left button.
+     * The visible part of the board is drawn in an image of the size of the panel whose pixels we write directly.
+     * When zoomed in, a cell is a square of pixels with a line of the color of the panel around it. When zoomed
+     * out, a pixel stands for a square of cells and its shade of grey tells how many of them are alive.
+     * When a new generation comes we only draw again the pixels of the cells that changed, and we only ask Swing
+     * to repaint the rectangle around them. There is no object per cell: the board is kept packed like in a
+     * BitEngine, 64 cells per word, so an 8k x 8k board takes 8 MB and the rest of the memory used by the panel
+     * only depends on its size. The generations come packed the same way (see FrameSlot).
+     * A few lines of text can be shown over the board, in its top left corner (the metrics of the simulation,
+     * for instance): only that corner is repainted when they change.
      *------------------------------------------------------------------------------------------------------------------
      */
 
+    /**
+     * The version of the serialized panels, Swing components being serializable.
+     */
+    private static final long serialVersionUID = 1L;
+
     /**
      * The number of cells in the grid.
      */
     private static final int MAX = 25;
 
     /**
-     * The states of the cells in the grid.
+     * The colors of the alive and of the dead cells.
+     */
+    private static final int ALIVE = Color.BLACK.getRGB(), DEAD = Color.WHITE.getRGB();
+
+    /**
+     * The colors of the box behind the lines shown over the board, and of the lines.
+     */
+    private static final Color OVERLAY = new Color(0, 0, 0, 160), OVERLAY_TEXT = Color.GREEN;
+
+    /**
+     * The number of rows and columns of the board.
+     */
+    private final int rows, columns;
+
+    /**
+     * The number of words per row of the board, and the words of the board: the cell (i, j) is the bit j % 64 of
+     * the word i * words + j / 64.
+     */
+    private final int words;
+    private final long[] cells;
+
+    /**
+     * The part of the board shown in the panel.
+     */
+    private final Viewport viewport;
+
+    /**
+     * The image of the visible part of the board and its pixels.
+     */
+    private BufferedImage image;
+    private int[] pixels;
+
+    /**
+     * For each row of pixels, the first and the last pixel to draw again after an update.
+     */
+    private int[] dirtyFrom, dirtyTo;
+
+    /**
+     * Who to notify when the user changes a cell.
      */
-    private int[][] states = new int[MAX][MAX];
+    private CellEditor editor;
 
     /**
-     * The cells in the grid.
+     * The lines shown over the board, null if none, and the rectangle they cover.
      */
-    private Cell[][] cells = new Cell[MAX][MAX];
+    private String[] overlay;
+    private Rectangle overlayBounds = new Rectangle();
 
-    private class Cell
+    public interface CellEditor
     {
         /*
          * -------------------------------------------------------------------------------------------------------------
-         * @className: Cell
-         * @description: Represents a cell in the GUI.
+         * @className: CellEditor
+         * @description: Receives the cells changed by the user in the grid.
          * @version: 0.1
-         * @author: Elias W. BA (eliaswalyba@gmail.com)
-         * @date: february 2017
          * -------------------------------------------------------------------------------------------------------------
          */
 
         /**
-         * The shape of the cell
-         */
-        private Shape shape;
-
-        /**
-         * The color of the cell in the grid
-         */
-        private Color color;
-
-        /**
-         * The position of the cell in the grid
-         */
-        private Position position;
-
-        /**
-         * Allows to create a shape.
+         * Called on the Event Dispatch Thread each time the user changes a cell.
          *
-         * @param shape the shape to create
-         * @param color the color of the shape to create
-         * @param i the abscissa of the shape in the grid
-         * @param j the ordinate of the shape in the grid
+         * @param i     the row of the cell
+         * @param j     the column of the cell
+         * @param alive the new state of the cell
          */
-        Cell(Shape shape, Color color, int i, int j) {
-            this.shape = shape;
-            this.color = color;
-            this.position = new Position(i, j);
-        }
+        void cellChanged(int i, int j, boolean alive);
 
     }
 
 
     /**
-     * Allows to create the panel and to draw the grid in it.
+     * Allows to create the panel and to draw the default grid in it.
      */
     public Grid()
     {
-        this.populateGrid(cells);
-        this.addMouseListener(new MouseAdapter() {
+        this(MAX, MAX, MAX + 1);
+    }
+
+    /**
+     * Allows to create the panel showing a board of any size.
+     *
+     * @param rows    the number of rows of the board
+     * @param columns the number of columns of the board
+     * @param pitch   the initial number of pixels per cell, including the line between two cells
+     */
+    public Grid(int rows, int columns, int pitch)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.words = (columns + 63) >>> 6;
+        this.cells = new long[rows * words];
+        this.viewport = new Viewport(pitch);
+        this.setPreferredSize(new Dimension(
+                (int) Math.min(1024, viewport.pixelXEnd(columns - 1)),
+                (int) Math.min(1024, viewport.pixelYEnd(rows - 1))
+        ));
+
+        MouseAdapter mouse = new MouseAdapter() {
+
+            /**
+             * The state given to the cells while drawing, and the last position of the mouse while panning
+             */
+            private int drawn;
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent mouseEvent)
+            {
+                if (SwingUtilities.isLeftMouseButton(mouseEvent)) {
+                    long i = viewport.row(mouseEvent.getY()), j = viewport.column(mouseEvent.getX());
+                    if (!contains(i, j)) return;
+                    drawn = isAlive((int) i, (int) j) ? 0 : 1;
+                    setCell((int) i, (int) j, drawn);
+                } else {
+                    last = mouseEvent.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent mouseEvent)
+            {
+                if (SwingUtilities.isLeftMouseButton(mouseEvent)) {
+                    long i = viewport.row(mouseEvent.getY()), j = viewport.column(mouseEvent.getX());
+                    if (contains(i, j)) setCell((int) i, (int) j, drawn);
+                } else if (last != null) {
+                    viewport.pan(mouseEvent.getX() - last.x, mouseEvent.getY() - last.y);
+                    last = mouseEvent.getPoint();
+                    redraw();
+                }
+            }
+
             @Override
-            public void mouseClicked(MouseEvent mouseEvent)
+            public void mouseWheelMoved(MouseWheelEvent mouseWheelEvent)
             {
-                super.mouseClicked(mouseEvent);
-                for (Cell line[] : cells) for (Cell c : line)
-                    if (c.shape.contains(mouseEvent.getPoint()))
-                    {
-                        int x = c.position.getX(), y = c.position.getY();
-                        c.color = c.color == Color.BLACK ? Color.WHITE : Color.BLACK;
-                        states[x][y] = (c.color == Color.BLACK) ? 0 : 1;
-                    }
-                repaint();
+                viewport.zoom(mouseWheelEvent.getWheelRotation() < 0, mouseWheelEvent.getX(), mouseWheelEvent.getY());
+                redraw();
             }
-        });
+        };
+        this.addMouseListener(mouse);
+        this.addMouseMotionListener(mouse);
+        this.addMouseWheelListener(mouse);
+    }
+
+    /**
+     * @return boolean true if the given cell is in the board
+     */
+    private boolean contains(long i, long j)
+    {
+        return i >= 0 && i < rows && j >= 0 && j < columns;
+    }
+
+    /**
+     * @return boolean true if the given cell of the board is alive
+     */
+    private boolean isAlive(int i, int j)
+    {
+        return (cells[i * words + (j >>> 6)] & 1L << j) != 0;
+    }
+
+    /**
+     * @return int the number of alive cells of a row between two columns
+     */
+    private int count(int i, int from, int to)
+    {
+        int first = i * words + (from >>> 6), last = i * words + ((to - 1) >>> 6);
+        long head = -1L << from, tail = -1L >>> -to;
+        if (first == last) return Long.bitCount(cells[first] & head & tail);
+        int alive = Long.bitCount(cells[first] & head) + Long.bitCount(cells[last] & tail);
+        for (int k = first + 1; k < last; k++) alive += Long.bitCount(cells[k]);
+        return alive;
+    }
+
+    /**
+     * Allows to change a cell drawn by the user and to notify the editor.
+     *
+     * @param i     the row of the cell
+     * @param j     the column of the cell
+     * @param state the new state of the cell
+     */
+    private void setCell(int i, int j, int state)
+    {
+        if ((isAlive(i, j) ? 1 : 0) == state) return;
+        cells[i * words + (j >>> 6)] ^= 1L << j;
+        if (image != null) {
+            markDirty(i, j, j);
+            drawDirty();
+        }
+        if (editor != null) editor.cellChanged(i, j, state == 1);
+    }
+
+    /**
+     * Allows to draw the whole panel again, after a zoom, a pan or a resize.
+     */
+    private void redraw()
+    {
+        int width = Math.max(1, getWidth()), height = Math.max(1, getHeight());
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            dirtyFrom = new int[height];
+            dirtyTo = new int[height];
+            Arrays.fill(dirtyFrom, width);
+            Arrays.fill(dirtyTo, -1);
+        }
+        for (int py = 0; py < height; py++) drawPixels(py, 0, width);
+        repaint();
     }
 
     /**
-     * This method allows to populate the grid the first time we launch the application.
-     * It fills all the cells with a white color because initially all cells are considered dead.
+     * Allows to draw a part of a row of pixels.
      *
-     * @param cells the matrix of cell to populate
+     * @param py   the row of pixels
+     * @param from the first pixel to draw
+     * @param to   the pixel after the last one to draw
      */
-    private void populateGrid(Cell[][] cells)
+    private void drawPixels(int py, int from, int to)
     {
-        for (int k = 0, i = 0; k < MAX && i < cells.length * MAX; k++, i += (MAX + 1))
-            for (int l = 0, j = 0; l < MAX && j < cells.length * MAX; l++, j += (MAX + 1)) {
-                Cell c = new Cell(new Rectangle(j, i, MAX, MAX), Color.WHITE, k, l);
-                cells[k][l] = c;
+        int offset = py * image.getWidth(), outside = getBackground().getRGB();
+        long i = viewport.row(py);
+        if (!viewport.isAggregated()) {
+            boolean gap = viewport.isGapY(py);
+            for (int px = from; px < to; px++) {
+                long j = viewport.column(px);
+                if (!contains(i, j) || gap || viewport.isGapX(px)) pixels[offset + px] = outside;
+                else pixels[offset + px] = isAlive((int) i, (int) j) ? ALIVE : DEAD;
             }
+            return;
+        }
+        int side = viewport.getCellsPerPixel();
+        int top = (int) Math.max(0, i), bottom = (int) Math.max(top, Math.min(rows, i + side));
+        for (int px = from; px < to; px++) {
+            long j = viewport.column(px);
+            int left = (int) Math.max(0, Math.min(columns, j)), right = (int) Math.max(left, Math.min(columns, j + side));
+            if (top == bottom || left == right) {
+                pixels[offset + px] = outside;
+                continue;
+            }
+            int alive = 0;
+            for (int k = top; k < bottom; k++) alive += count(k, left, right);
+            int grey = 255 - (int) (255L * alive / ((long) (bottom - top) * (right - left)));
+            pixels[offset + px] = 0xFF000000 | (grey << 16) | (grey << 8) | grey;
+        }
     }
 
     /**
-     * We redefine the paintComponent method to draw our super designed grid.
+     * Allows to remember that the pixels of a part of a row of cells have to be drawn again.
+     *
+     * @param i    the row of cells
+     * @param from the first column that changed
+     * @param to   the last column that changed
+     */
+    private void markDirty(int i, int from, int to)
+    {
+        int width = image.getWidth(), height = image.getHeight();
+        int top = (int) Math.max(0, viewport.pixelY(i)), bottom = (int) Math.min(height, viewport.pixelYEnd(i));
+        int left = (int) Math.max(0, viewport.pixelX(from)), right = (int) Math.min(width, viewport.pixelXEnd(to));
+        if (left >= right) return;
+        for (int py = top; py < bottom; py++) {
+            dirtyFrom[py] = Math.min(dirtyFrom[py], left);
+            dirtyTo[py] = Math.max(dirtyTo[py], right);
+        }
+    }
+
+    /**
+     * Allows to draw the dirty pixels again, each one only once, and to repaint the rectangle around them.
+     */
+    private void drawDirty()
+    {
+        int width = image.getWidth(), top = -1, bottom = -1, left = width, right = 0;
+        for (int py = 0; py < dirtyFrom.length; py++) {
+            if (dirtyTo[py] < 0) continue;
+            drawPixels(py, dirtyFrom[py], dirtyTo[py]);
+            if (top < 0) top = py;
+            bottom = py;
+            left = Math.min(left, dirtyFrom[py]);
+            right = Math.max(right, dirtyTo[py]);
+            dirtyFrom[py] = width;
+            dirtyTo[py] = -1;
+        }
+        if (top >= 0) repaint(left, top, right - left, bottom - top + 1);
+    }
+
+    /**
+     * We redefine the paintComponent method to copy the part of the image that has to be repainted.
      *
      * @param g the graphics
      */
@@ -128,41 +336,90 @@ public class Grid extends JPanel
     protected void paintComponent(Graphics g)
     {
         super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g.create();
-        for (Cell[] line : cells) for (Cell c : line) {
-                g2.setColor(c.color);
-                g2.fill(c.shape);
-                int x = c.position.getX(), y = c.position.getY();
-                if (c.color == Color.BLACK) this.states[x][y] = 1;
-                else this.states[c.position.getX()][c.position.getY()] = 0;
+        if (image == null || image.getWidth() != getWidth() || image.getHeight() != getHeight()) {
+            if (image == null) viewport.center(rows, columns, getWidth(), getHeight());
+            redraw();
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+        g.drawImage(image,
+                clip.x, clip.y, clip.x + clip.width, clip.y + clip.height,
+                clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, null);
+        if (overlay != null && overlayBounds.intersects(clip)) {
+            FontMetrics metrics = g.getFontMetrics();
+            g.setColor(OVERLAY);
+            g.fillRect(overlayBounds.x, overlayBounds.y, overlayBounds.width, overlayBounds.height);
+            g.setColor(OVERLAY_TEXT);
+            for (int k = 0; k < overlay.length; k++)
+                g.drawString(overlay[k], 8, 4 + metrics.getAscent() + k * metrics.getHeight());
         }
-        g2.dispose();
     }
 
     /**
-     * We call this method any time the user presses the <<Next Generation>> button.
-     * It injects in the panel the new cells resulting from the nextGeneration method in the Controller class.
+     * Allows to show a few lines of text over the board, in its top left corner.
      *
-     * @param grid the new grid to inject
+     * @param lines the lines, or null to show nothing
      */
-    public void updateGrid(int[][] grid)
+    public void setOverlay(String[] lines)
     {
-        this.states = grid;
-        for (Cell line[] : cells) for (Cell c : line) {
-                int x = c.position.getX(), y = c.position.getY();
-                c.color = states[x][y] == 1 ? Color.BLACK : Color.WHITE;
+        Rectangle old = overlayBounds;
+        overlay = lines;
+        overlayBounds = new Rectangle();
+        if (lines != null) {
+            FontMetrics metrics = getFontMetrics(getFont());
+            int width = 0;
+            for (String line : lines) width = Math.max(width, metrics.stringWidth(line));
+            overlayBounds = new Rectangle(4, 4, width + 8, lines.length * metrics.getHeight() + 4);
         }
-        repaint();
+        repaint(old.union(overlayBounds));
+    }
+
+    /**
+     * We call this method any time a new generation is available.
+     * It copies in the panel the new cells resulting from the nextGeneration method of the engine: the grid keeps
+     * its own words, the engine can go on mutating the ones it gave.
+     * Only the visible cells that changed are drawn again, and only the rectangle around them is repainted.
+     *
+     * @param grid the words of the new grid to inject, packed like in a BitEngine
+     */
+    public void updateGrid(long[] grid)
+    {
+        for (int i = 0; i < rows; i++) {
+            int start = i * words, end = start + words;
+            int first = Arrays.mismatch(cells, start, end, grid, start, end);
+            if (first < 0) continue;
+            int last = end - 1;
+            while (cells[last] == grid[last]) last--;
+            int j = (first << 6) + Long.numberOfTrailingZeros(cells[start + first] ^ grid[start + first]);
+            int l = (last - start << 6) + 63 - Long.numberOfLeadingZeros(cells[last] ^ grid[last]);
+            System.arraycopy(grid, start + first, cells, start + first, last - start - first + 1);
+            if (image != null) markDirty(i, j, l);
+        }
+        if (image != null) drawDirty();
     }
 
     /**
      * Allows to access the states of the cells.
      *
-     * @return int[][] a matrix containing all the states of the cells.
+     * @return int[][] a matrix containing all the states of the cells, built from the board.
      */
     public int[][] getStates()
     {
-        return states;
+        int[][] copy = new int[rows][columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                copy[i][j] = isAlive(i, j) ? 1 : 0;
+        return copy;
+    }
+
+    /**
+     * Allows to be notified when the user changes a cell.
+     *
+     * @param editor who to notify
+     */
+    public void setCellEditor(CellEditor editor)
+    {
+        this.editor = editor;
     }
 
 }
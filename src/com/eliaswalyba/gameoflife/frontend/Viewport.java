@@ -0,0 +1,228 @@
+package com.eliaswalyba.gameoflife.frontend;
+
+public class Viewport
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Viewport
+     * @description: Maps the pixels of the panel to the cells of the board, whatever the zoom and the panning
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Imagine the whole board drawn in a huge image at the current zoom: the viewport is the rectangle of that
+     * image shown in the panel, and (x, y) is the position of its top left corner in the huge image.
+     * When we zoom in a cell is a square of pitch x pitch pixels. When we zoom out past one pixel per cell, a pixel
+     * is a square of 2^shift x 2^shift cells. In both cases finding the cell under a pixel, or the pixels of a
+     * cell, is a couple of arithmetic operations.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The biggest pitch and shift allowed, and the smallest pitch at which the lines between the cells are drawn.
+     */
+    public static final int MAX_PITCH = 128, MAX_SHIFT = 16, MIN_GAP_PITCH = 4;
+
+    /**
+     * The number of pixels per cell (when shift is 0) and the log2 of the number of cells per pixel (when pitch
+     * is 1).
+     */
+    private int pitch, shift;
+
+    /**
+     * The position of the viewport in the board drawn at the current zoom, in pixels.
+     */
+    private long x, y;
+
+    /**
+     * Allows to create a viewport on the top left corner of the board.
+     *
+     * @param pitch the number of pixels per cell
+     */
+    public Viewport(int pitch)
+    {
+        this.pitch = Math.max(1, Math.min(MAX_PITCH, pitch));
+    }
+
+    /**
+     * @return boolean true when a pixel stands for several cells
+     */
+    public boolean isAggregated()
+    {
+        return shift > 0;
+    }
+
+    /**
+     * @return int the number of pixels per cell, 1 when a pixel stands for several cells
+     */
+    public int getPitch()
+    {
+        return pitch;
+    }
+
+    /**
+     * @return int the side of the square of cells under a pixel, 1 when a cell takes several pixels
+     */
+    public int getCellsPerPixel()
+    {
+        return 1 << shift;
+    }
+
+    /**
+     * Allows to find the column of the cell under a pixel, the first one of the block when aggregated.
+     *
+     * @param px the abscissa of the pixel in the panel
+     * @return long the column, which may be out of the board
+     */
+    public long column(int px)
+    {
+        return toCell(x + px);
+    }
+
+    /**
+     * Allows to find the row of the cell under a pixel, the first one of the block when aggregated.
+     *
+     * @param py the ordinate of the pixel in the panel
+     * @return long the row, which may be out of the board
+     */
+    public long row(int py)
+    {
+        return toCell(y + py);
+    }
+
+    /**
+     * @return long the abscissa in the panel of the first pixel of a column, which may be out of the panel
+     */
+    public long pixelX(long j)
+    {
+        return toPixel(j) - x;
+    }
+
+    /**
+     * @return long the abscissa in the panel of the pixel after the last pixel of a column
+     */
+    public long pixelXEnd(long j)
+    {
+        return toPixelEnd(j) - x;
+    }
+
+    /**
+     * @return long the ordinate in the panel of the first pixel of a row, which may be out of the panel
+     */
+    public long pixelY(long i)
+    {
+        return toPixel(i) - y;
+    }
+
+    /**
+     * @return long the ordinate in the panel of the pixel after the last pixel of a row
+     */
+    public long pixelYEnd(long i)
+    {
+        return toPixelEnd(i) - y;
+    }
+
+    /**
+     * @return boolean true if the pixel column is a line between two columns of cells
+     */
+    public boolean isGapX(int px)
+    {
+        return isGap(x + px);
+    }
+
+    /**
+     * @return boolean true if the pixel row is a line between two rows of cells
+     */
+    public boolean isGapY(int py)
+    {
+        return isGap(y + py);
+    }
+
+    /**
+     * Allows to move the viewport when the user drags the board.
+     *
+     * @param dx the horizontal move of the mouse in pixels
+     * @param dy the vertical move of the mouse in pixels
+     */
+    public void pan(int dx, int dy)
+    {
+        x -= dx;
+        y -= dy;
+    }
+
+    /**
+     * Allows to zoom in or out by a factor of 2, keeping the same cell under a given pixel.
+     *
+     * @param in true to zoom in, false to zoom out
+     * @param px the abscissa of the pixel in the panel
+     * @param py the ordinate of the pixel in the panel
+     */
+    public void zoom(boolean in, int px, int py)
+    {
+        double before = scale(), cx = (x + px) / before, cy = (y + py) / before;
+        if (in) {
+            if (shift > 0) shift--;
+            else pitch = Math.min(MAX_PITCH, pitch * 2);
+        } else {
+            if (pitch > 1) pitch = Math.max(1, pitch / 2);
+            else shift = Math.min(MAX_SHIFT, shift + 1);
+        }
+        double after = scale();
+        x = Math.round(cx * after) - px;
+        y = Math.round(cy * after) - py;
+    }
+
+    /**
+     * Allows to put the center of the board at the center of the panel.
+     *
+     * @param rows    the number of rows of the board
+     * @param columns the number of columns of the board
+     * @param width   the width of the panel
+     * @param height  the height of the panel
+     */
+    public void center(int rows, int columns, int width, int height)
+    {
+        x = (toPixelEnd(columns - 1) - width) / 2;
+        y = (toPixelEnd(rows - 1) - height) / 2;
+    }
+
+    /**
+     * @return double the number of pixels per cell, below 1 when aggregated
+     */
+    private double scale()
+    {
+        return shift > 0 ? 1.0 / (1 << shift) : pitch;
+    }
+
+    /**
+     * @return long the cell under a pixel of the board drawn at the current zoom
+     */
+    private long toCell(long pixel)
+    {
+        return shift > 0 ? pixel << shift : Math.floorDiv(pixel, pitch);
+    }
+
+    /**
+     * @return long the first pixel of a cell in the board drawn at the current zoom
+     */
+    private long toPixel(long cell)
+    {
+        return shift > 0 ? cell >> shift : cell * pitch;
+    }
+
+    /**
+     * @return long the pixel after the last pixel of a cell in the board drawn at the current zoom
+     */
+    private long toPixelEnd(long cell)
+    {
+        return shift > 0 ? (cell >> shift) + 1 : (cell + 1) * pitch;
+    }
+
+    /**
+     * @return boolean true if a pixel of the board drawn at the current zoom is a line between two cells
+     */
+    private boolean isGap(long pixel)
+    {
+        return shift == 0 && pitch >= MIN_GAP_PITCH && Math.floorMod(pixel, pitch) == pitch - 1;
+    }
+
+}
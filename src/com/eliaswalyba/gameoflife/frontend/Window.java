@@ -1,44 +1,230 @@
 package com.eliaswalyba.gameoflife.frontend;
 
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
 import com.eliaswalyba.gameoflife.backend.Config;
-import com.eliaswalyba.gameoflife.backend.Controller;
+import com.eliaswalyba.gameoflife.backend.FrameSlot;
+import com.eliaswalyba.gameoflife.backend.History;
+import com.eliaswalyba.gameoflife.backend.Metrics;
+import com.eliaswalyba.gameoflife.backend.Simulation;
 import com.eliaswalyba.gameoflife.frontend.Grid;
+import com.eliaswalyba.gameoflife.pattern.Patterns;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
 
 public class Window extends JFrame {
 
+    /**
+     * The version of the serialized windows, Swing components being serializable.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Allows to open the window on a board of the default size.
+     *
+     * @param title the title of the window
+     * @param w     the width of the window
+     * @param h     the height of the window
+     */
     public Window(String title, int w, int h) {
+        this(title, w, h, Config.BOARD_SIZE, Config.BOARD_SIZE);
+    }
+
+    /**
+     * Allows to open the window on a board of any size, bigger than the window if need be: the board is then
+     * zoomed and panned in the grid.
+     *
+     * @param title  the title of the window
+     * @param w      the width of the window
+     * @param h      the height of the window
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    public Window(String title, int w, int h, int height, int width) {
         this.setTitle(title);
         this.setSize(w, h);
-        this.setResizable(false);
+        this.setResizable(true);
         this.setLocationRelativeTo(null);
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setLayout(new BorderLayout());
-        Grid grid = new Grid();
+        Grid grid = new Grid(height, width, Config.CELL_PITCH);
+        Simulation simulation = new Simulation(
+                new BitEngine(height, width), height, width, Config.GENERATIONS_PER_SECOND
+        );
+        grid.setCellEditor(simulation::setCell);
+        Metrics metrics = simulation.getMetrics();
+
+        JButton _play_ = new JButton(Config.PLAY_BUTTON_TITLE);
+        JButton _previousGeneration_ = new JButton(Config.PREVIOUS_GENERATION_BUTTON_TITLE);
         JButton _nextGeneration_ = new JButton(Config.NEXT_GENERATION_BUTTON_TITLE);
-        this.add(_nextGeneration_, BorderLayout.SOUTH);
+        JSlider _history_ = new JSlider(0, 0, 0);
+        JSlider _speed_ = new JSlider(1, Config.MAX_GENERATIONS_PER_SECOND, Config.GENERATIONS_PER_SECOND);
+        JButton _open_ = new JButton(Config.OPEN_BUTTON_TITLE);
+        JButton _save_ = new JButton(Config.SAVE_BUTTON_TITLE);
+        JCheckBox _metrics_ = new JCheckBox(Config.METRICS_BUTTON_TITLE);
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Patterns (.rle, .cells, .mc)", "rle", "cells", "txt", "mc"));
+        JPanel controls = new JPanel(new FlowLayout());
+        controls.add(_play_);
+        controls.add(_previousGeneration_);
+        controls.add(_nextGeneration_);
+        controls.add(_history_);
+        controls.add(_speed_);
+        controls.add(_open_);
+        controls.add(_save_);
+        controls.add(_metrics_);
+        this.add(controls, BorderLayout.SOUTH);
         this.add(grid, BorderLayout.CENTER);
         this.setVisible(true);
+
+        _play_.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (simulation.isPlaying()) {
+                    simulation.pause();
+                    _play_.setText(Config.PLAY_BUTTON_TITLE);
+                } else if (hasPattern(metrics)) {
+                    simulation.play();
+                    _play_.setText(Config.PAUSE_BUTTON_TITLE);
+                }
+            }
+        });
         _nextGeneration_.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
-                int[][] states = grid.getStates();
-                boolean noPatternDrawn = true;
-                for (int row[] : states) for (int cell : row)
-                    if (cell != 0) noPatternDrawn = false;
-                if (noPatternDrawn) {
-                    JOptionPane.showMessageDialog(null, Config.EMPTY_PATTERN_ALERT_MESSAGE);
-                } else {
-                    Controller controller = new Controller(states);
-                    controller.nextGeneration();
-                    grid.updateGrid(controller.getCells());
+                if (hasPattern(metrics)) {
+                    simulation.step();
+                    _play_.setText(Config.PLAY_BUTTON_TITLE);
                 }
             }
         });
+        _previousGeneration_.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                simulation.stepBack();
+                _play_.setText(Config.PLAY_BUTTON_TITLE);
+            }
+        });
+        /* The slider follows the history, it only rewinds the simulation when the user moves it */
+        boolean[] following = {false};
+        _history_.addChangeListener(changeEvent -> {
+            if (following[0] || _history_.getValue() == simulation.getHistory().getCurrent()) return;
+            simulation.rewind(_history_.getValue());
+            _play_.setText(Config.PLAY_BUTTON_TITLE);
+        });
+        _speed_.addChangeListener(changeEvent -> simulation.setGenerationsPerSecond(_speed_.getValue()));
+
+        /* The files are read and written by the simulation thread, straight from the storage of the engine */
+        _open_.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (chooser.showOpenDialog(Window.this) != JFileChooser.APPROVE_OPTION) return;
+                Path path = chooser.getSelectedFile().toPath();
+                simulation.pause();
+                _play_.setText(Config.PLAY_BUTTON_TITLE);
+                simulation.submit(engine -> {
+                    try {
+                        Patterns.read(path, CellSink.centered((CellSink) engine, height, width));
+                    } catch (IOException | IllegalArgumentException e) {
+                        alert(e.getMessage());
+                    }
+                });
+            }
+        });
+        _save_.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (chooser.showSaveDialog(Window.this) != JFileChooser.APPROVE_OPTION) return;
+                Path path = chooser.getSelectedFile().toPath();
+                simulation.submit(engine -> {
+                    try {
+                        Patterns.write((CellSource) engine, path);
+                    } catch (IOException | IllegalArgumentException e) {
+                        alert(e.getMessage());
+                    }
+                });
+            }
+        });
+
+        /* The UI takes the latest generation at its own pace, the generations computed in between are skipped */
+        FrameSlot frames = simulation.getFrames();
+        History history = simulation.getHistory();
+        new Timer(1000 / Config.FRAMES_PER_SECOND, actionEvent -> {
+            if (!frames.poll()) return;
+            long start = System.nanoTime();
+            grid.updateGrid(frames.front());
+            metrics.recordFrame(System.nanoTime() - start);
+            if (!_history_.getValueIsAdjusting() && history.getOldest() >= 0) {
+                following[0] = true;
+                _history_.getModel().setRangeProperties((int) history.getCurrent(), 0, (int) history.getOldest(),
+                        (int) history.getNewest(), false);
+                following[0] = false;
+            }
+        }).start();
+
+        /* The metrics are always measured and published through JMX, the overlay only shows them */
+        metrics.register("window");
+        new Timer(Config.METRICS_REFRESH_MILLIS, actionEvent -> {
+            if (_metrics_.isSelected()) grid.setOverlay(describe(metrics));
+        }).start();
+        _metrics_.addActionListener(actionEvent -> grid.setOverlay(_metrics_.isSelected() ? describe(metrics) : null));
+        simulation.start();
+    }
+
+    /**
+     * Allows to write the metrics of the simulation in a few lines, for the overlay.
+     *
+     * @param metrics the metrics
+     * @return String[] the lines
+     */
+    private static String[] describe(Metrics metrics)
+    {
+        long births = metrics.getBirths(), allocated = metrics.getAllocatedBytesPerGeneration();
+        return new String[]{
+                String.format(Locale.ROOT, "generation %d, %.1f gen/s, %.3g cells/s", metrics.getGenerations(),
+                        metrics.getGenerationsPerSecond(), metrics.getCellUpdatesPerSecond()),
+                births < 0
+                        ? String.format(Locale.ROOT, "population %d", metrics.getPopulation())
+                        : String.format(Locale.ROOT, "population %d, +%d -%d", metrics.getPopulation(), births,
+                        metrics.getDeaths()),
+                String.format(Locale.ROOT, "step p50 %.1f us, p99 %.1f us, max %.1f us", metrics.getStepP50Micros(),
+                        metrics.getStepP99Micros(), metrics.getStepMaxMicros()),
+                String.format(Locale.ROOT, "frame %.2f ms, p99 %.2f ms", metrics.getFrameMeanMillis(),
+                        metrics.getFrameP99Millis()),
+                allocated < 0 ? "allocated: unknown" : "allocated " + allocated + " B/gen"
+        };
+    }
+
+    /**
+     * Allows to show a message from any thread.
+     *
+     * @param message the message
+     */
+    private static void alert(String message)
+    {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message));
+    }
+
+    /**
+     * Allows to check that the user drew something before running the simulation, alerting the user if not. The
+     * population is the one the simulation measured, the board is not scanned.
+     *
+     * @param metrics the metrics of the simulation
+     * @return boolean true if at least one cell is alive
+     */
+    private static boolean hasPattern(Metrics metrics)
+    {
+        if (metrics.getPopulation() > 0) return true;
+        JOptionPane.showMessageDialog(null, Config.EMPTY_PATTERN_ALERT_MESSAGE);
+        return false;
     }
 
 }
@@ -0,0 +1,299 @@
+package com.eliaswalyba.gameoflife.pattern;
+
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.HashLifeEngine;
+import com.eliaswalyba.gameoflife.backend.QuadTree;
+import com.eliaswalyba.gameoflife.backend.Rule;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class Macrocell
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Macrocell
+     * @description: Reads and writes the patterns in the Macrocell format (.mc files) of the Hashlife programs
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A Macrocell file is a quadtree: after the "[M2]" line and the comments ('#'), each line is a node, numbered
+     * from 1. A leaf of 8x8 cells is drawn like a Plaintext pattern on one line, '$' ending its rows ("$.*$**$"),
+     * and a bigger node is written "level nw ne sw se", its children being the numbers of previous lines (0 for an
+     * empty node). The last node is the whole pattern.
+     * A HashLifeEngine takes the tree as it is, so the patterns far too big to be stored cell by cell can be
+     * loaded. The other engines receive the cells row by row, the tree being walked once per row and the empty
+     * nodes being skipped; the board is then the smallest rectangle holding all the alive cells.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The biggest side of a board filled cell by cell
+     */
+    private static final long MAX_SIDE = 1 << 30;
+
+    /**
+     * This class only holds static methods.
+     */
+    private Macrocell() {}
+
+    /**
+     * Allows to read a pattern.
+     *
+     * @param path the file to read
+     * @param sink the storage receiving the pattern
+     * @throws IOException if the file cannot be read or is not a valid Macrocell file
+     */
+    public static void read(Path path, CellSink sink) throws IOException
+    {
+        QuadTree tree = readTree(path);
+        if (sink instanceof HashLifeEngine) {
+            ((HashLifeEngine) sink).setTree(tree);
+            return;
+        }
+
+        /* The bounds of the alive cells of each node, relative to the north west corner of the node */
+        int size = tree.size();
+        long[] bounds = new long[4 * (size + 1)];
+        for (int id = 1; id <= size; id++) bound(tree, id, bounds);
+        boolean empty = size == 0 || bounds[4 * size] == Long.MAX_VALUE;
+        long x = empty ? 0 : bounds[4 * size], y = empty ? 0 : bounds[4 * size + 1];
+        long width = empty ? 0 : bounds[4 * size + 2] - x + 1, height = empty ? 0 : bounds[4 * size + 3] - y + 1;
+        if (width > MAX_SIDE || height > MAX_SIDE)
+            throw new IllegalArgumentException("The pattern (" + height + "x" + width + ") is too big to be loaded"
+                    + " cell by cell, load it in a HashLifeEngine");
+
+        sink.begin((int) height, (int) width);
+        for (int i = 0; i < height; i++) emit(tree, size, -x, -y, i, bounds, sink);
+        sink.end();
+    }
+
+    /**
+     * Allows to read the tree of a pattern.
+     *
+     * @param path the file to read
+     * @return QuadTree the tree
+     * @throws IOException if the file cannot be read or is not a valid Macrocell file
+     */
+    public static QuadTree readTree(Path path) throws IOException
+    {
+        QuadTree tree = new QuadTree();
+        try (MappedInput in = new MappedInput(path)) {
+            StringBuilder line = new StringBuilder();
+            if (!line(in, line) || !line.toString().startsWith("[M2]"))
+                throw new IOException("Not a Macrocell file: " + path);
+            while (line(in, line)) {
+                if (line.length() == 0 || line.charAt(0) == '#') continue;
+                char first = line.charAt(0);
+                try {
+                    if (first == '.' || first == '*' || first == '$') tree.leaf(leaf(line));
+                    else node(tree, line.toString());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid node " + (tree.size() + 1) + ": " + e.getMessage());
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Allows to read a line of the file, without its end.
+     *
+     * @param in   the file
+     * @param line the buffer receiving the line
+     * @return boolean false at the end of the file
+     */
+    private static boolean line(MappedInput in, StringBuilder line) throws IOException
+    {
+        line.setLength(0);
+        int b = in.read();
+        if (b < 0) return false;
+        for (; b >= 0 && b != '\n'; b = in.read()) if (b != '\r') line.append((char) b);
+        return true;
+    }
+
+    /**
+     * @return long the cells of a leaf drawn on a line, the cell (x, y) being the bit y * 8 + x
+     */
+    private static long leaf(CharSequence line)
+    {
+        long cells = 0;
+        int x = 0, y = 0;
+        for (int k = 0; k < line.length(); k++) {
+            char c = line.charAt(k);
+            if (c == '$') {
+                x = 0;
+                y++;
+                continue;
+            }
+            if (x > 7 || y > 7) throw new IllegalArgumentException("A leaf has only 8x8 cells");
+            if (c == '*') cells |= 1L << (y * 8 + x);
+            else if (c != '.') throw new IllegalArgumentException("Unexpected character '" + c + "'");
+            x++;
+        }
+        return cells;
+    }
+
+    /**
+     * Allows to add a node written "level nw ne sw se" to a tree.
+     */
+    private static void node(QuadTree tree, String line)
+    {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length != 5) throw new IllegalArgumentException("A node needs a level and 4 children");
+        int[] values = new int[5];
+        for (int k = 0; k < 5; k++) values[k] = Integer.parseInt(fields[k]);
+        if (values[0] == 1) throw new IllegalArgumentException("The multi-state Macrocell files are not supported");
+        tree.node(values[0], values[1], values[2], values[3], values[4]);
+    }
+
+    /**
+     * Allows to compute the bounds of the alive cells of a node from the bounds of its children.
+     *
+     * @param tree   the tree
+     * @param id     the node
+     * @param bounds the west, north, east and south bounds of each node, filled for the nodes before this one
+     */
+    private static void bound(QuadTree tree, int id, long[] bounds)
+    {
+        long west = Long.MAX_VALUE, north = Long.MAX_VALUE, east = Long.MIN_VALUE, south = Long.MIN_VALUE;
+        if (tree.level(id) == QuadTree.LEAF_LEVEL) {
+            long cells = tree.cells(id);
+            for (int k = 0; k < 64; k++) {
+                if ((cells >>> k & 1) == 0) continue;
+                west = Math.min(west, k & 7);
+                east = Math.max(east, k & 7);
+                north = Math.min(north, k >>> 3);
+                south = Math.max(south, k >>> 3);
+            }
+        } else {
+            long half = 1L << (tree.level(id) - 1);
+            for (int q = 0; q < 4; q++) {
+                int child = tree.child(id, q);
+                if (child == 0 || bounds[4 * child] == Long.MAX_VALUE) continue;
+                long dx = (q & 1) * half, dy = (q >> 1) * half;
+                west = Math.min(west, dx + bounds[4 * child]);
+                north = Math.min(north, dy + bounds[4 * child + 1]);
+                east = Math.max(east, dx + bounds[4 * child + 2]);
+                south = Math.max(south, dy + bounds[4 * child + 3]);
+            }
+        }
+        bounds[4 * id] = west;
+        bounds[4 * id + 1] = north;
+        bounds[4 * id + 2] = east;
+        bounds[4 * id + 3] = south;
+    }
+
+    /**
+     * Allows to give the alive cells of a row of a node to a storage.
+     *
+     * @param tree   the tree
+     * @param id     the node
+     * @param x      the column of the north west cell of the node on the board
+     * @param y      the row of the north west cell of the node on the board
+     * @param row    the row of the board
+     * @param bounds the bounds of the alive cells of each node
+     * @param sink   the storage
+     */
+    private static void emit(QuadTree tree, int id, long x, long y, int row, long[] bounds, CellSink sink)
+    {
+        if (id == 0 || bounds[4 * id] == Long.MAX_VALUE) return;
+        if (row < y + bounds[4 * id + 1] || row > y + bounds[4 * id + 3]) return;
+        if (tree.level(id) == QuadTree.LEAF_LEVEL) {
+            int cells = (int) (tree.cells(id) >>> ((row - y) * 8)) & 0xFF;
+            while (cells != 0) {
+                int from = Integer.numberOfTrailingZeros(cells);
+                int to = from + Integer.numberOfTrailingZeros(~(cells >>> from));
+                sink.setRun(row, (int) (x + from), to - from);
+                cells &= -1 << to;
+            }
+            return;
+        }
+        long half = 1L << (tree.level(id) - 1);
+        boolean north = row < y + half;
+        long top = north ? y : y + half;
+        emit(tree, tree.child(id, north ? 0 : 2), x, top, row, bounds, sink);
+        emit(tree, tree.child(id, north ? 1 : 3), x + half, top, row, bounds, sink);
+    }
+
+    /**
+     * Allows to write a pattern. The whole universe of a HashLifeEngine is written, not only its window.
+     *
+     * @param source the storage holding the pattern
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, Path path) throws IOException
+    {
+        write(source, Patterns.rule(source), path);
+    }
+
+    /**
+     * Allows to write a pattern of a given rule. The whole universe of a HashLifeEngine is written, not only its
+     * window.
+     *
+     * @param source the storage holding the pattern
+     * @param rule   the rule of the pattern
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, Rule rule, Path path) throws IOException
+    {
+        HashLifeEngine universe;
+        if (source instanceof HashLifeEngine) {
+            universe = (HashLifeEngine) source;
+        } else {
+            universe = new HashLifeEngine(new int[0][0]);
+            CellSource.copy(source, universe);
+        }
+        writeTree(universe.getTree(), rule, path);
+    }
+
+    /**
+     * Allows to write the tree of a pattern of the game of life.
+     *
+     * @param tree the tree
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeTree(QuadTree tree, Path path) throws IOException
+    {
+        writeTree(tree, Rule.LIFE, path);
+    }
+
+    /**
+     * Allows to write the tree of a pattern.
+     *
+     * @param tree the tree
+     * @param rule the rule of the pattern
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeTree(QuadTree tree, Rule rule, Path path) throws IOException
+    {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            out.write("[M2] (gameoflife)\n#R " + rule + "\n");
+            StringBuilder line = new StringBuilder();
+            for (int id = 1; id <= tree.size(); id++) {
+                line.setLength(0);
+                if (tree.level(id) == QuadTree.LEAF_LEVEL) {
+                    long cells = tree.cells(id);
+                    for (int y = 0; y < 8 && cells >>> (y * 8) != 0; y++) {
+                        int row = (int) (cells >>> (y * 8)) & 0xFF;
+                        for (int x = 0; row >>> x != 0; x++) line.append((row >>> x & 1) != 0 ? '*' : '.');
+                        line.append('$');
+                    }
+                } else {
+                    line.append(tree.level(id));
+                    for (int q = 0; q < 4; q++) line.append(' ').append(tree.child(id, q));
+                }
+                out.append(line).append('\n');
+            }
+        }
+    }
+
+}
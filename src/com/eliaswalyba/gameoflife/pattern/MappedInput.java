@@ -0,0 +1,122 @@
+package com.eliaswalyba.gameoflife.pattern;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class MappedInput implements AutoCloseable
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: MappedInput
+     * @description: Reads a file byte by byte through a window of it mapped in memory
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The pattern files can weigh gigabytes, which is more than a single mapping can hold: the file is mapped
+     * window by window, the next window being mapped when the previous one is consumed. The bytes are read by
+     * the operating system straight from the page cache, nothing is copied on the heap.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The size of the windows mapped at once
+     */
+    private static final long WINDOW = 1L << 26;
+
+    /**
+     * The file
+     */
+    private final FileChannel channel;
+
+    /**
+     * The size of the file, and the position of the current window in the file
+     */
+    private final long size;
+    private long position;
+
+    /**
+     * The current window
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * The constructor of the class
+     *
+     * @param path the file to read
+     * @throws IOException if the file cannot be opened
+     */
+    MappedInput(Path path) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.rewind();
+    }
+
+    /**
+     * Allows to read the next byte.
+     *
+     * @return int the byte, -1 at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    int read() throws IOException
+    {
+        if (!window.hasRemaining()) {
+            position += window.capacity();
+            if (position >= size) return -1;
+            this.map();
+        }
+        return window.get() & 0xFF;
+    }
+
+    /**
+     * Allows to read the next byte without consuming it.
+     *
+     * @return int the byte, -1 at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    int peek() throws IOException
+    {
+        int b = this.read();
+        if (b >= 0) window.position(window.position() - 1);
+        return b;
+    }
+
+    /**
+     * Allows to skip the rest of the current line.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    void skipLine() throws IOException
+    {
+        for (int b = this.read(); b >= 0 && b != '\n'; b = this.read()) ;
+    }
+
+    /**
+     * Allows to read the file again from its beginning.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    void rewind() throws IOException
+    {
+        position = 0;
+        this.map();
+    }
+
+    /**
+     * Allows to map the window starting at the current position.
+     */
+    private void map() throws IOException
+    {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+}
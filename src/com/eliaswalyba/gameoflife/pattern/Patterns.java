@@ -0,0 +1,111 @@
+package com.eliaswalyba.gameoflife.pattern;
+
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.Engine;
+import com.eliaswalyba.gameoflife.backend.HashLifeEngine;
+import com.eliaswalyba.gameoflife.backend.Plane;
+import com.eliaswalyba.gameoflife.backend.Rule;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public final class Patterns
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Patterns
+     * @description: Reads and writes the patterns in the format given by the extension of their file
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * .rle files are read and written by Rle, .cells (and .txt) files by Plaintext and .mc files by Macrocell.
+     * The engines of the plane (see Plane) are written as the smallest rectangle holding all their alive cells,
+     * not through their window which would lose the ones that left it. Only the RLE files keep its position.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * This class only holds static methods.
+     */
+    private Patterns() {}
+
+    /**
+     * Allows to read a pattern.
+     *
+     * @param path the file to read
+     * @param sink the storage receiving the pattern
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static void read(Path path, CellSink sink) throws IOException
+    {
+        switch (extension(path)) {
+            case "rle":   Rle.read(path, sink); break;
+            case "cells":
+            case "txt":   Plaintext.read(path, sink); break;
+            case "mc":    Macrocell.read(path, sink); break;
+            default: throw new IllegalArgumentException("Unknown pattern format: " + path);
+        }
+    }
+
+    /**
+     * Allows to write a pattern.
+     *
+     * @param source the storage holding the pattern
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, Path path) throws IOException
+    {
+        write(source, 0, 0, path);
+    }
+
+    /**
+     * Allows to write a pattern whose plane was moved, a run resumed from a checkpoint of the plane for instance.
+     *
+     * @param source the storage holding the pattern
+     * @param top    the row in the plane of the cell (0, 0) of the storage
+     * @param left   the column in the plane of the cell (0, 0) of the storage
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, long top, long left, Path path) throws IOException
+    {
+        Rule rule = rule(source);
+        if (source instanceof Plane && !(source instanceof HashLifeEngine && extension(path).equals("mc"))) {
+            long[] bounds = ((Plane) source).getBounds();
+            if (bounds[2] > Integer.MAX_VALUE || bounds[3] > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The alive cells are too far apart to be written: "
+                        + bounds[2] + "x" + bounds[3]);
+            source = ((Plane) source).window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]);
+            top += bounds[0];
+            left += bounds[1];
+        }
+        switch (extension(path)) {
+            case "rle":   Rle.write(source, rule, top, left, path); break;
+            case "cells":
+            case "txt":   Plaintext.write(source, path); break;
+            case "mc":    Macrocell.write(source, rule, path); break;
+            default: throw new IllegalArgumentException("Unknown pattern format: " + path);
+        }
+    }
+
+    /**
+     * @return Rule the rule written in the header of a pattern, the one of the engine if the source is an engine
+     */
+    static Rule rule(CellSource source)
+    {
+        return source instanceof Engine ? ((Engine) source).getRule() : Rule.LIFE;
+    }
+
+    /**
+     * @return String the extension of a file, in lower case
+     */
+    private static String extension(Path path)
+    {
+        String name = path.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+}
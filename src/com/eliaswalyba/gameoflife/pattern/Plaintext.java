@@ -0,0 +1,108 @@
+package com.eliaswalyba.gameoflife.pattern;
+
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public final class Plaintext
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Plaintext
+     * @description: Reads and writes the patterns in the Plaintext format (.cells files)
+     * @version: 0.2
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A Plaintext file draws the pattern row by row: a dead cell is a '.' and an alive cell is an 'O' (some files
+     * use '*'). The lines starting with '!' are comments. The rows may have different lengths, the missing cells
+     * being dead.
+     * The size of the pattern is not written anywhere, so the file is read twice: once to measure the pattern and
+     * once to stream its cells to the engine. Both passes go through the same mapping of the file.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * This class only holds static methods.
+     */
+    private Plaintext() {}
+
+    /**
+     * Allows to read a pattern.
+     *
+     * @param path the file to read
+     * @param sink the storage receiving the pattern, just big enough for it
+     * @throws IOException if the file cannot be read
+     */
+    public static void read(Path path, CellSink sink) throws IOException
+    {
+        try (MappedInput in = new MappedInput(path)) {
+            int height = 0, width = 0;
+            while (in.peek() >= 0) {
+                if (in.peek() == '!') {
+                    in.skipLine();
+                    continue;
+                }
+                int length = 0;
+                for (int b = in.read(); b >= 0 && b != '\n'; b = in.read()) if (b != '\r') length++;
+                width = Math.max(width, length);
+                height++;
+            }
+
+            sink.begin(height, width);
+            in.rewind();
+            for (int i = 0; in.peek() >= 0; ) {
+                if (in.peek() == '!') {
+                    in.skipLine();
+                    continue;
+                }
+                int j = 0, run = -1;
+                for (int b = in.read(); b >= 0 && b != '\n'; b = in.read()) {
+                    if (b == '\r') continue;
+                    boolean alive = b == 'O' || b == '*';
+                    if (alive && run < 0) {
+                        run = j;
+                    } else if (!alive && run >= 0) {
+                        sink.setRun(i, run, j - run);
+                        run = -1;
+                    }
+                    j++;
+                }
+                if (run >= 0) sink.setRun(i, run, j - run);
+                i++;
+            }
+            sink.end();
+        }
+    }
+
+    /**
+     * Allows to write a pattern.
+     *
+     * @param source the storage holding the pattern
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, Path path) throws IOException
+    {
+        int height = source.getHeight(), width = source.getWidth();
+        byte[] line = new byte[width + 1];
+        line[width] = '\n';
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            for (int i = 0; i < height; i++) {
+                Arrays.fill(line, 0, width, (byte) '.');
+                for (int j = source.nextCell(i, 0, true); j < width; ) {
+                    int dead = source.nextCell(i, j, false);
+                    Arrays.fill(line, j, dead, (byte) 'O');
+                    j = dead < width ? source.nextCell(i, dead, true) : width;
+                }
+                out.write(line);
+            }
+        }
+    }
+
+}
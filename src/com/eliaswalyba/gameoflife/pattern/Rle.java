@@ -0,0 +1,174 @@
+package com.eliaswalyba.gameoflife.pattern;
+
+import com.eliaswalyba.gameoflife.backend.CellSink;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.Rule;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class Rle
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Rle
+     * @description: Reads and writes the patterns in the Run Length Encoded format (.rle files)
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * An RLE file starts with comment lines ('#'), then a header giving the size of the pattern and its rule:
+     *     x = 3, y = 3, rule = B3/S23
+     * then the cells, row by row, as runs: "3o" is 3 alive cells, "2b" 2 dead cells and "$" ends a row ("4$" ends
+     * it and skips 3 empty rows). The pattern ends with a '!'. A count of 1 is not written and the dead cells at
+     * the end of a row are not written either.
+     * A pattern that is not at the coordinates (0, 0) of the plane, the bounding box of the cells of a
+     * SparseEngine for instance, gets the "#CXRLE Pos=x,y" line of Golly giving the column and the row of its
+     * north west cell; it is skipped like any comment when read.
+     * The runs are given to the engine as they are decoded, so a soup of billions of cells is loaded without any
+     * intermediate matrix. The letters of the multi-state patterns are read as alive cells.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The longest line written, as required by the format
+     */
+    private static final int LINE_LENGTH = 70;
+
+    /**
+     * This class only holds static methods.
+     */
+    private Rle() {}
+
+    /**
+     * Allows to read a pattern.
+     *
+     * @param path the file to read
+     * @param sink the storage receiving the pattern, of the size given in the header
+     * @throws IOException if the file cannot be read or is not a valid RLE file
+     */
+    public static void read(Path path, CellSink sink) throws IOException
+    {
+        try (MappedInput in = new MappedInput(path)) {
+            int b = in.peek();
+            while (b == '#' || b == '\r' || b == '\n') {
+                in.skipLine();
+                b = in.peek();
+            }
+            StringBuilder header = new StringBuilder();
+            for (b = in.read(); b >= 0 && b != '\n'; b = in.read()) header.append((char) b);
+            int width = -1, height = -1;
+            for (String field : header.toString().split(",")) {
+                String[] pair = field.split("=");
+                if (pair.length != 2) continue;
+                String key = pair[0].trim(), value = pair[1].trim();
+                try {
+                    if (key.equals("x")) width = Integer.parseInt(value);
+                    else if (key.equals("y")) height = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Not a valid RLE header: " + header);
+                }
+            }
+            if (width < 0 || height < 0) throw new IOException("Not a valid RLE header: " + header);
+
+            sink.begin(height, width);
+            long i = 0, j = 0, count = 0;
+            for (b = in.read(); b >= 0 && b != '!'; b = in.read()) {
+                if (b >= '0' && b <= '9') {
+                    count = count * 10 + b - '0';
+                    if (count > Integer.MAX_VALUE) throw new IOException("Run too long at row " + i);
+                    continue;
+                }
+                /* Whitespaces and the prefixes of the states above 24 ("pA") do not end a run */
+                if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || (b >= 'p' && b <= 'y')) continue;
+                long n = count == 0 ? 1 : count;
+                count = 0;
+                if (b == '$') {
+                    i += n;
+                    j = 0;
+                } else if (b == 'b' || b == '.') {
+                    j += n;
+                } else if (b == 'o' || (b >= 'A' && b <= 'X')) {
+                    if (i >= height || j + n > width)
+                        throw new IOException("Cells outside of the pattern at row " + i + ", column " + j);
+                    sink.setRun((int) i, (int) j, (int) n);
+                    j += n;
+                } else {
+                    throw new IOException("Unexpected character '" + (char) b + "' at row " + i);
+                }
+            }
+            sink.end();
+        }
+    }
+
+    /**
+     * Allows to write a pattern.
+     *
+     * @param source the storage holding the pattern
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, Path path) throws IOException
+    {
+        write(source, Patterns.rule(source), 0, 0, path);
+    }
+
+    /**
+     * Allows to write a pattern placed somewhere in the plane.
+     *
+     * @param source the storage holding the pattern
+     * @param rule   the rule of the pattern
+     * @param top    the row in the plane of the north west cell of the pattern
+     * @param left   the column in the plane of the north west cell of the pattern
+     * @param path   the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CellSource source, Rule rule, long top, long left, Path path) throws IOException
+    {
+        int height = source.getHeight(), width = source.getWidth();
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            if (top != 0 || left != 0) out.write("#CXRLE Pos=" + left + "," + top + "\n");
+            out.write("x = " + width + ", y = " + height + ", rule = " + rule + "\n");
+            int column = 0, ends = 0;
+            for (int i = 0; i < height; i++) {
+                int j = source.nextCell(i, 0, true);
+                if (j < width && ends > 0) column = token(out, column, ends, '$');
+                if (j < width) ends = 0;
+                for (int previous = 0; j < width; ) {
+                    int dead = source.nextCell(i, j, false);
+                    if (j > previous) column = token(out, column, j - previous, 'b');
+                    column = token(out, column, dead - j, 'o');
+                    previous = dead;
+                    j = dead < width ? source.nextCell(i, dead, true) : width;
+                }
+                ends++;
+            }
+            token(out, column, 1, '!');
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Allows to write a run, starting a new line when the current one would be too long.
+     *
+     * @param out    the file
+     * @param column the length of the current line
+     * @param count  the length of the run
+     * @param tag    the state of the run
+     * @return int the length of the current line after the run
+     * @throws IOException if the file cannot be written
+     */
+    private static int token(Writer out, int column, int count, char tag) throws IOException
+    {
+        String token = count == 1 ? String.valueOf(tag) : count + String.valueOf(tag);
+        if (column + token.length() > LINE_LENGTH) {
+            out.write('\n');
+            column = 0;
+        }
+        out.write(token);
+        return column + token.length();
+    }
+
+}
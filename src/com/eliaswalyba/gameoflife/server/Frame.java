@@ -0,0 +1,135 @@
+package com.eliaswalyba.gameoflife.server;
+
+import java.nio.ByteBuffer;
+
+final class Frame
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Frame
+     * @description: A generation encoded once, tile by tile, to be sent to every viewer looking at it
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The board is cut in tiles of TILE x TILE cells, a word of a bit-packed row wide. A message starts with a
+     * header (its type, the generation and the size of the board) followed by the records of the tiles that
+     * changed, each one encoded in its own read-only buffer:
+     *      - int: the number of the tile, row by row, (width + 63) / 64 tiles a row
+     *      - byte: TOGGLES, then a short n and n shorts, the row of a cell in the tile times 64 plus its column
+     *      - byte: ROWS, then a long telling which rows of the tile follow and a long for each of them
+     * The cells given are flipped: in a DELTA they are the cells born and dead since the previous message, in a
+     * KEYFRAME the alive cells of the tiles, the viewer clearing its board first. Each tile takes the shorter
+     * of the two encodings.
+     * A viewer only gets the tiles crossing its viewport (see message): the header and the records are the same
+     * buffers for all the viewers, only the few bytes of the header of the WebSocket frame are built for each one.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The side of a tile, and the size of the header of a message
+     */
+    static final int TILE = 64, HEADER = 17;
+
+    /**
+     * The types of the messages, and the encodings of the tiles
+     */
+    static final byte DELTA = 0, KEYFRAME = 1, TOGGLES = 0, ROWS = 1;
+
+    /**
+     * The generation encoded
+     */
+    final long generation;
+
+    /**
+     * The number of rows and columns of the board, and the number of tiles in a row and in a column
+     */
+    final int height, width, across, down;
+
+    /**
+     * The header of the delta and the changes of each tile, null where nothing changed
+     */
+    final ByteBuffer delta;
+    final ByteBuffer[] changes;
+
+    /**
+     * The header of the keyframe and the alive cells of each tile, null where there is none; both null when the
+     * keyframe was not encoded
+     */
+    final ByteBuffer keyframe;
+    final ByteBuffer[] cells;
+
+    /**
+     * Whether the delta does not follow the previous frame, so that every viewer needs the keyframe
+     */
+    final boolean reset;
+
+    /**
+     * The constructor of the class
+     *
+     * @param generation the generation encoded
+     * @param height     the number of rows of the board
+     * @param width      the number of columns of the board
+     * @param changes    the changes of each tile, null where nothing changed
+     * @param cells      the alive cells of each tile, or null if the keyframe is not encoded
+     * @param reset      whether the delta does not follow the previous frame
+     */
+    Frame(long generation, int height, int width, ByteBuffer[] changes, ByteBuffer[] cells, boolean reset)
+    {
+        this.generation = generation;
+        this.height = height;
+        this.width = width;
+        this.across = (width + TILE - 1) / TILE;
+        this.down = (height + TILE - 1) / TILE;
+        this.changes = changes;
+        this.cells = cells;
+        this.reset = reset;
+        this.delta = Frame.header(DELTA, generation, height, width);
+        this.keyframe = cells != null ? Frame.header(KEYFRAME, generation, height, width) : null;
+    }
+
+    /**
+     * @return ByteBuffer the header of a message, read-only
+     */
+    private static ByteBuffer header(byte type, long generation, int height, int width)
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.put(type).putLong(generation).putInt(height).putInt(width);
+        return header.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Allows to gather the WebSocket frame of a viewport, made of views of the shared buffers.
+     *
+     * @param key      true for the keyframe, false for the delta
+     * @param viewport the top, left, height and width of the viewport, within the board
+     * @return ByteBuffer[] the buffers to write one after the other
+     */
+    ByteBuffer[] message(boolean key, int[] viewport)
+    {
+        ByteBuffer[] tiles = key ? cells : changes;
+        int first = viewport[0] / TILE, last = (viewport[0] + viewport[2] + TILE - 1) / TILE - 1;
+        int from = viewport[1] / TILE, to = (viewport[1] + viewport[3] + TILE - 1) / TILE - 1;
+        int count = 0;
+        long length = HEADER;
+        for (int ti = first; ti <= last; ti++) {
+            for (int tj = from; tj <= to; tj++) {
+                ByteBuffer tile = tiles[ti * across + tj];
+                if (tile == null) continue;
+                count++;
+                length += tile.remaining();
+            }
+        }
+        ByteBuffer[] message = new ByteBuffer[2 + count];
+        message[0] = WebSocket.header(WebSocket.BINARY, length);
+        message[1] = (key ? keyframe : delta).duplicate();
+        int k = 2;
+        for (int ti = first; ti <= last; ti++) {
+            for (int tj = from; tj <= to; tj++) {
+                ByteBuffer tile = tiles[ti * across + tj];
+                if (tile != null) message[k++] = tile.duplicate();
+            }
+        }
+        return message;
+    }
+
+}
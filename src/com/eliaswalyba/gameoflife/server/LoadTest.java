@@ -0,0 +1,485 @@
+package com.eliaswalyba.gameoflife.server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+public class LoadTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: LoadTest
+     * @description: Simulates many viewers of a StreamServer on the same machine, some of them slow
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The load test opens --clients WebSockets to a StreamServer on the loopback interface, all from a single
+     * thread with a selector, each one with a viewport of --viewport cells placed at random on the board. The
+     * --slow first clients only read --rate bytes per second, through a small socket buffer, so that the server
+     * has to coalesce their messages or to drop them; the others read as fast as they can.
+     * Each client decodes every message it gets: the tiles must be inside its viewport, the records must fill
+     * the message exactly and the generations must grow. It keeps its viewport bit-packed, applying the cells
+     * flipped by each message, so the cost of decoding is the one of a real viewer.
+     * At the end the slow clients read what is left for them, to know whether the server dropped them, and the
+     * test prints how many messages, keyframes and bytes the fast and the slow clients got, how many clients
+     * the server dropped and how many errors were found.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The help printed when the arguments are wrong
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: LoadTest [options]",
+            "  --port P              the port of the server on the loopback interface (default 7430)",
+            "  --clients N           the number of viewers (default 100)",
+            "  --slow K              how many of them read slowly (default 10)",
+            "  --rate B              the bytes per second a slow viewer reads, 0 for none at all (default 4096)",
+            "  --viewport HxW        the size of the viewport of each viewer (default 128x128)",
+            "  --seconds S           the duration of the test (default 10)",
+            "  --seed S              the seed placing the viewports (default 1)"
+    );
+
+    /**
+     * The time between two reads of the slow clients, and their socket buffer
+     */
+    private static final int TICK_MILLIS = 100, SLOW_BUFFER = 8192;
+
+    /**
+     * The time given to the slow clients at the end to read what is left for them
+     */
+    private static final int DRAIN_MILLIS = 2000;
+
+    /**
+     * The longest message accepted
+     */
+    private static final long MAX_MESSAGE = 1L << 28;
+
+    /**
+     * The options of the test
+     */
+    private int port = 7430, clients = 100, slow = 10, rate = 4096, height = 128, width = 128;
+    private double seconds = 10;
+    private long seed = 1;
+
+    /**
+     * The entry point of the load test.
+     *
+     * @param args the options, see USAGE
+     */
+    public static void main(String[] args)
+    {
+        LoadTest test = new LoadTest();
+        try {
+            test.parse(args);
+            test.run(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Allows to read the options.
+     *
+     * @param args the options, see USAGE
+     */
+    void parse(String[] args)
+    {
+        for (int k = 0; k < args.length; k++) {
+            String option = args[k];
+            if (k + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++k];
+            try {
+                switch (option) {
+                    case "--port":    port = Integer.parseInt(value); break;
+                    case "--clients": clients = Integer.parseInt(value); break;
+                    case "--slow":    slow = Integer.parseInt(value); break;
+                    case "--rate":    rate = Integer.parseInt(value); break;
+                    case "--seconds": seconds = Double.parseDouble(value); break;
+                    case "--seed":    seed = Long.parseLong(value); break;
+                    case "--viewport":
+                        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                        if (size.length != 2) throw new IllegalArgumentException("The viewport must be HxW: " + value);
+                        height = Integer.parseInt(size[0]);
+                        width = Integer.parseInt(size[1]);
+                        break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (clients <= 0) throw new IllegalArgumentException("The number of clients must be positive");
+        if (slow < 0 || slow > clients) throw new IllegalArgumentException("The slow clients must be 0 to " + clients);
+        if (rate < 0) throw new IllegalArgumentException("The rate cannot be negative");
+        if (height <= 0 || width <= 0) throw new IllegalArgumentException("The viewport cannot be empty");
+        if (!(seconds > 0)) throw new IllegalArgumentException("The duration must be positive");
+    }
+
+    /**
+     * Allows to run the test and to print its report.
+     *
+     * @param out where to print the report
+     * @throws IOException if the selector cannot be opened
+     */
+    void run(PrintStream out) throws IOException
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        InetSocketAddress server = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        List<Client> all = new ArrayList<>();
+        try (Selector selector = Selector.open()) {
+            for (int k = 0; k < clients; k++) {
+                Client client = new Client(k < slow, random);
+                SocketChannel channel = SocketChannel.open();
+                if (client.slow) channel.setOption(StandardSocketOptions.SO_RCVBUF, SLOW_BUFFER);
+                channel.configureBlocking(false);
+                client.channel = channel;
+                client.key = channel.register(selector, SelectionKey.OP_CONNECT, client);
+                all.add(client);
+                if (channel.connect(server)) client.connect();
+            }
+
+            long start = System.nanoTime(), end = start + (long) (seconds * 1e9), tick = start;
+            while (System.nanoTime() - end < 0) {
+                selector.select(TICK_MILLIS);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) client.connect();
+                        if (key.isValid() && key.isReadable()) client.read(Integer.MAX_VALUE);
+                    } catch (IOException e) {
+                        client.close(e);
+                    }
+                }
+                selector.selectedKeys().clear();
+                /* The slow clients read their share of bytes at each tick, whatever the selector says */
+                long now = System.nanoTime();
+                if (now - tick >= TICK_MILLIS * 1_000_000L) {
+                    int share = (int) (rate * (now - tick) / 1e9);
+                    tick = now;
+                    for (Client client : all) {
+                        if (!client.slow || !client.open || !client.upgraded || share == 0) continue;
+                        try {
+                            client.read(share);
+                        } catch (IOException e) {
+                            client.close(e);
+                        }
+                    }
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            /* What the slow clients did not read yet is on its way: reading it tells whether they were dropped */
+            for (Client client : all) {
+                if (client.open && client.slow && client.upgraded) client.key.interestOps(SelectionKey.OP_READ);
+                else if (client.open) client.close(null);
+            }
+            for (long drain = System.nanoTime() + DRAIN_MILLIS * 1_000_000L; System.nanoTime() - drain < 0; ) {
+                selector.select(TICK_MILLIS);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) client.read(Integer.MAX_VALUE);
+                    } catch (IOException e) {
+                        client.close(e);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+            for (Client client : all) if (client.open) client.close(null);
+            this.report(out, all, elapsed);
+        }
+    }
+
+    /**
+     * Allows to print what the fast and the slow clients got.
+     */
+    private void report(PrintStream out, List<Client> all, double elapsed)
+    {
+        out.printf(Locale.ROOT, "clients: %d (%d slow at %d B/s)%n", clients, slow, rate);
+        out.printf(Locale.ROOT, "viewport: %dx%d%n", height, width);
+        out.printf(Locale.ROOT, "duration: %.1f s%n", elapsed);
+        long last = 0;
+        for (Client client : all) last = Math.max(last, client.generation);
+        for (boolean kind : new boolean[]{false, true}) {
+            List<Client> group = new ArrayList<>();
+            for (Client client : all) if (client.slow == kind) group.add(client);
+            if (group.isEmpty()) continue;
+            long messages = 0, keyframes = 0, bytes = 0, dropped = 0, upgraded = 0, behind = 0;
+            double[] rates = new double[group.size()];
+            for (int k = 0; k < group.size(); k++) {
+                Client client = group.get(k);
+                messages += client.messages;
+                keyframes += client.keyframes;
+                bytes += client.bytes;
+                if (client.dropped) dropped++;
+                if (client.upgraded) upgraded++;
+                behind = Math.max(behind, last - client.generation);
+                rates[k] = client.messages / elapsed;
+            }
+            Arrays.sort(rates);
+            out.printf(Locale.ROOT, "%s clients: %d connected, %d dropped by the server%n", kind ? "slow" : "fast",
+                    upgraded, dropped);
+            out.printf(Locale.ROOT, "  messages: %d (%.1f/s per client: min %.1f, median %.1f, max %.1f)%n",
+                    messages, messages / elapsed / group.size(), rates[0], rates[rates.length / 2],
+                    rates[rates.length - 1]);
+            out.printf(Locale.ROOT, "  keyframes: %d, received: %.2f MB (%.1f KB/s per client)%n", keyframes,
+                    bytes / 1e6, bytes / 1e3 / elapsed / group.size());
+            out.printf(Locale.ROOT, "  furthest behind the last generation seen: %d%n", behind);
+        }
+        long errors = 0;
+        String first = null;
+        for (Client client : all) {
+            if (client.error == null) continue;
+            errors++;
+            if (first == null) first = client.error;
+        }
+        out.printf(Locale.ROOT, "errors: %d%s%n", errors, first != null ? " (" + first + ")" : "");
+    }
+
+    private final class Client
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Client
+         * @description: A simulated viewer: its connection, its viewport and what it received
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * Whether the client reads slowly
+         */
+        final boolean slow;
+
+        /**
+         * The corner of the viewport asked for, anywhere: the server fits it in the board
+         */
+        private final int top, left;
+
+        /**
+         * The connection, and its key in the selector
+         */
+        SocketChannel channel;
+        SelectionKey key;
+
+        /**
+         * The key sent in the handshake
+         */
+        private final String secret;
+
+        /**
+         * The bytes received and not handled yet
+         */
+        private ByteBuffer in = ByteBuffer.allocate(1 << 16);
+
+        /**
+         * Whether the connection is open, whether the handshake is done and whether the server closed it
+         */
+        boolean open = true, upgraded, dropped;
+
+        /**
+         * The viewport, bit-packed like a board of the size of the viewport, and whether a keyframe was received
+         */
+        private final long[] cells;
+        private final int words;
+        private boolean synced;
+
+        /**
+         * The last generation received, and the numbers of messages, keyframes and bytes received
+         */
+        long generation = -1, messages, keyframes, bytes;
+
+        /**
+         * The first error found, null if none
+         */
+        String error;
+
+        Client(boolean slow, SplittableRandom random)
+        {
+            this.slow = slow;
+            this.top = random.nextInt(1 << 16);
+            this.left = random.nextInt(1 << 16);
+            this.words = (width + 63) >>> 6;
+            this.cells = new long[height * words];
+            byte[] secret = new byte[16];
+            random.nextBytes(secret);
+            this.secret = Base64.getEncoder().encodeToString(secret);
+        }
+
+        /**
+         * Allows to finish connecting and to send the handshake, once the connection is made.
+         *
+         * @throws IOException if the connection fails
+         */
+        void connect() throws IOException
+        {
+            channel.finishConnect();
+            String request = "GET /stream?top=" + top + "&left=" + left + "&height=" + height + "&width=" + width
+                    + " HTTP/1.1\r\nHost: localhost:" + port + "\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: " + secret + "\r\nSec-WebSocket-Version: 13\r\n\r\n";
+            ByteBuffer buffer = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) channel.write(buffer);
+            /* A slow client reads the answer to its handshake at once, and its messages at its own pace */
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Allows to read and to handle what the server sent.
+         *
+         * @param most the most bytes to read
+         * @return int the number of bytes read
+         * @throws IOException if the connection is broken or the server breaks the protocol
+         */
+        int read(int most) throws IOException
+        {
+            if (!in.hasRemaining()) in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+            int limit = in.limit();
+            in.limit((int) Math.min(limit, (long) in.position() + most));
+            int n;
+            try {
+                n = channel.read(in);
+            } catch (IOException e) {
+                dropped = true;
+                throw e;
+            } finally {
+                in.limit(limit);
+            }
+            if (n < 0) {
+                dropped = true;
+                throw new IOException("Closed by the server");
+            }
+            bytes += n;
+            in.flip();
+            try {
+                if (!upgraded) {
+                    this.handshake();
+                    if (upgraded && slow) key.interestOps(0);
+                }
+                if (upgraded) {
+                    int[] opcode = new int[1];
+                    for (byte[] payload; (payload = WebSocket.next(in, MAX_MESSAGE, opcode)) != null; ) {
+                        if (opcode[0] == WebSocket.CLOSE) {
+                            dropped = true;
+                            throw new IOException("Closed by the server");
+                        }
+                        if (opcode[0] == WebSocket.BINARY) this.decode(ByteBuffer.wrap(payload));
+                    }
+                }
+            } finally {
+                in.compact();
+            }
+            return n;
+        }
+
+        /**
+         * Allows to check the answer of the server to the handshake, once it is all received.
+         *
+         * @throws IOException if the server refused the upgrade
+         */
+        private void handshake() throws IOException
+        {
+            String text = StandardCharsets.ISO_8859_1.decode(in.duplicate()).toString();
+            int end = text.indexOf("\r\n\r\n");
+            if (end < 0) return;
+            in.position(in.position() + end + 4);
+            if (!text.startsWith("HTTP/1.1 101") || !text.contains(WebSocket.accept(secret)))
+                throw new IOException("The server refused the upgrade: " + text.substring(0, text.indexOf('\r')));
+            upgraded = true;
+        }
+
+        /**
+         * Allows to check a message and to apply it to the viewport.
+         *
+         * @param message the payload of the message
+         * @throws IOException if the message is not well formed
+         */
+        private void decode(ByteBuffer message) throws IOException
+        {
+            byte type = message.get();
+            long generation = message.getLong();
+            int boardHeight = message.getInt(), boardWidth = message.getInt();
+            if (type == Frame.KEYFRAME) {
+                keyframes++;
+                synced = true;
+                Arrays.fill(cells, 0);
+            } else if (type != Frame.DELTA || !synced) {
+                throw new IOException("A delta came before any keyframe");
+            }
+            if (generation <= this.generation) throw new IOException("The generation " + generation + " came late");
+            this.generation = generation;
+            messages++;
+
+            int vt = Math.max(0, Math.min(top, boardHeight - 1)), vl = Math.max(0, Math.min(left, boardWidth - 1));
+            int vh = Math.min(height, boardHeight - vt), vw = Math.min(width, boardWidth - vl);
+            int across = (boardWidth + Frame.TILE - 1) / Frame.TILE;
+            while (message.hasRemaining()) {
+                int tile = message.getInt(), y = tile / across * Frame.TILE, x = tile % across * Frame.TILE;
+                if (y + Frame.TILE <= vt || y >= vt + vh || x + Frame.TILE <= vl || x >= vl + vw)
+                    throw new IOException("The tile " + tile + " is out of the viewport");
+                byte kind = message.get();
+                if (kind == Frame.TOGGLES) {
+                    for (int k = message.getShort() & 0xFFFF; k > 0; k--) {
+                        int cell = message.getShort() & 0xFFFF;
+                        this.flip(y + cell / Frame.TILE - vt, x + cell % Frame.TILE - vl, 1L);
+                    }
+                } else if (kind == Frame.ROWS) {
+                    for (long mask = message.getLong(); mask != 0; mask &= mask - 1)
+                        this.flip(y + Long.numberOfTrailingZeros(mask) - vt, x - vl, message.getLong());
+                } else {
+                    throw new IOException("Unknown encoding " + kind);
+                }
+            }
+        }
+
+        /**
+         * Allows to flip cells of a row of the viewport, the ones out of it being ignored.
+         *
+         * @param i    the row in the viewport
+         * @param j    the column in the viewport of the first cell of bits
+         * @param bits the cells to flip, from the column j on
+         */
+        private void flip(int i, int j, long bits)
+        {
+            if (i < 0 || i >= height) return;
+            for (; bits != 0; bits &= bits - 1) {
+                int column = j + Long.numberOfTrailingZeros(bits);
+                if (column >= 0 && column < width) cells[i * words + (column >>> 6)] ^= 1L << column;
+            }
+        }
+
+        /**
+         * Allows to close the connection.
+         *
+         * @param e the error, null at the end of the test
+         */
+        void close(IOException e)
+        {
+            if (e != null && !dropped && error == null) error = e.getMessage();
+            open = false;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,565 @@
+package com.eliaswalyba.gameoflife.server;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.backend.Simulation;
+import com.eliaswalyba.gameoflife.pattern.Patterns;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class StreamServer
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: StreamServer
+     * @description: Runs a simulation and streams its generations to many viewers over WebSockets
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The server runs a single headless Simulation and listens on the loopback interface only. A
+     * browser opening http://localhost:PORT/ gets a small page drawing the board, which connects back to
+     * /stream; any other client can connect to /stream directly, with the viewport it wants in the query
+     * (?top=0&left=0&height=256&width=256), and move it later with a text message "viewport T L H W".
+     * Each generation is encoded once by the TileEncoder, tile by tile, and each viewer gets the tiles crossing
+     * its viewport, written from the very same buffers (see Frame). A viewer gets a keyframe first, and deltas
+     * afterwards.
+     * A single thread runs all the connections with a selector, never waiting for any of them: a viewer more
+     * than --lag messages late skips them and gets a keyframe instead; a viewer that skipped --skips times
+     * without taking a single keyframe, or that read nothing for --timeout seconds, is disconnected. The
+     * simulation never waits for the server either: the events coalesce when the encoder is late (see
+     * GenerationPublisher).
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The help printed when the arguments are wrong
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: StreamServer [options]",
+            "  --port P              the port on the loopback interface (default 7430)",
+            "  --pattern FILE        the pattern to load (.rle, .cells or .mc)",
+            "  --soup SIZE           a random soup of SIZE x SIZE cells instead of a pattern (default 512)",
+            "  --density D           the probability of a cell of the soup to be alive (default 0.5)",
+            "  --seed S              the seed of the soup (default 1)",
+            "  --rule RULE           B36/S23, 23/3... of 2 states (default B3/S23)",
+            "  --speed G             the generations per second (default 30)",
+            "  --lag N               the messages a viewer can be late before it skips them (default 8)",
+            "  --skips N             the skips without taking a keyframe before a viewer is dropped (default 4)",
+            "  --timeout S           the seconds a viewer can read nothing before it is dropped (default 10)",
+            "  --report S            the seconds between two lines of statistics (default 10)"
+    );
+
+    /**
+     * The page of the viewer: it keeps the board, applies the messages to it (see Frame) and draws its viewport,
+     * passing its own query to /stream
+     */
+    private static final String PAGE = String.join("\n",
+            "<!DOCTYPE html>",
+            "<html><head><meta charset=\"utf-8\"><title>Game of Life</title>",
+            "<style>body{margin:0;background:#222;color:#ccc;font:12px monospace}",
+            "canvas{image-rendering:pixelated;width:100vmin;height:100vmin;background:#fff}</style></head>",
+            "<body><div id=\"info\">connecting</div><canvas id=\"board\"></canvas><script>",
+            "const query = new URLSearchParams(location.search);",
+            "const canvas = document.getElementById('board'), info = document.getElementById('info');",
+            "const context = canvas.getContext('2d');",
+            "let height = 0, width = 0, cells = null, dirty = false, generation = 0;",
+            "const socket = new WebSocket('ws://' + location.host + '/stream' + location.search);",
+            "socket.binaryType = 'arraybuffer';",
+            "socket.onclose = () => info.textContent = 'disconnected at generation ' + generation;",
+            "socket.onmessage = message => {",
+            "  const data = new DataView(message.data);",
+            "  const type = data.getUint8(0);",
+            "  generation = Number(data.getBigInt64(1));",
+            "  height = data.getInt32(9); width = data.getInt32(13);",
+            "  if (type === 1) {",
+            "    if (!cells || cells.length !== height * width) cells = new Uint8Array(height * width);",
+            "    else cells.fill(0);",
+            "  }",
+            "  const across = (width + 63) >> 6;",
+            "  for (let p = 17; p < data.byteLength; ) {",
+            "    const tile = data.getInt32(p), top = Math.floor(tile / across) * 64, left = (tile % across) * 64;",
+            "    const kind = data.getUint8(p + 4);",
+            "    p += 5;",
+            "    if (kind === 0) {",
+            "      const count = data.getUint16(p);",
+            "      p += 2;",
+            "      for (let k = 0; k < count; k++, p += 2) {",
+            "        const cell = data.getUint16(p);",
+            "        cells[(top + (cell >> 6)) * width + left + (cell & 63)] ^= 1;",
+            "      }",
+            "    } else {",
+            "      const high = data.getUint32(p), low = data.getUint32(p + 4);",
+            "      p += 8;",
+            "      for (let r = 0; r < 64; r++) {",
+            "        if (!((r < 32 ? low >>> r : high >>> (r - 32)) & 1)) continue;",
+            "        const a = data.getUint32(p + 4), b = data.getUint32(p);",
+            "        p += 8;",
+            "        for (let c = 0; c < 64; c++)",
+            "          if ((c < 32 ? a >>> c : b >>> (c - 32)) & 1) cells[(top + r) * width + left + c] ^= 1;",
+            "      }",
+            "    }",
+            "  }",
+            "  dirty = true;",
+            "};",
+            "function draw() {",
+            "  requestAnimationFrame(draw);",
+            "  if (!dirty) return;",
+            "  dirty = false;",
+            "  const top = Math.max(0, Math.min(+(query.get('top') || 0), height - 1));",
+            "  const left = Math.max(0, Math.min(+(query.get('left') || 0), width - 1));",
+            "  const h = Math.min(+(query.get('height') || height), height - top);",
+            "  const w = Math.min(+(query.get('width') || width), width - left);",
+            "  if (canvas.height !== h || canvas.width !== w) { canvas.height = h; canvas.width = w; }",
+            "  const image = context.createImageData(w, h);",
+            "  for (let i = 0; i < h; i++)",
+            "    for (let j = 0; j < w; j++) {",
+            "      const v = cells[(top + i) * width + left + j] ? 0 : 255, o = (i * w + j) * 4;",
+            "      image.data[o] = image.data[o + 1] = image.data[o + 2] = v;",
+            "      image.data[o + 3] = 255;",
+            "    }",
+            "  context.putImageData(image, 0, 0);",
+            "  info.textContent = 'generation ' + generation + ', board ' + height + 'x' + width;",
+            "}",
+            "requestAnimationFrame(draw);",
+            "</script></body></html>"
+    );
+
+    /**
+     * The longest request accepted, and the longest message accepted from a viewer
+     */
+    private static final int MAX_REQUEST = 8192, MAX_MESSAGE = 1024;
+
+    /**
+     * The connections waiting to be accepted, many viewers may arrive at once
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The longest the selector waits, so that the stalled viewers and the statistics are looked at
+     */
+    private static final long TICK_MILLIS = 250;
+
+    /**
+     * The socket buffer of a viewer: small, so that a late viewer is noticed by its queue, which coalesces,
+     * rather than hidden by a large buffer of the kernel
+     */
+    private static final int SEND_BUFFER = 1 << 16;
+
+    /**
+     * The options of the server
+     */
+    private Path pattern;
+    private int port = 7430, soup, lag = 8, skips = 4;
+    private double density = 0.5, speed = 30, timeout = 10, report = 10;
+    private long seed = 1;
+    private Rule rule = Rule.LIFE;
+
+    /**
+     * The frames encoded and not sent yet, handed from the encoder to the thread of the server
+     */
+    private final ConcurrentLinkedQueue<Frame> frames = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The connections
+     */
+    private final List<Viewer> viewers = new ArrayList<>();
+
+    /**
+     * The selector of the server
+     */
+    private Selector selector;
+
+    /**
+     * The encoder of the generations
+     */
+    private TileEncoder encoder;
+
+    /**
+     * The number of frames sent to viewers, of bytes written, of times a viewer skipped frames and of viewers
+     * dropped
+     */
+    private long sent, written, coalesced, dropped;
+
+    /**
+     * The entry point of the server mode.
+     *
+     * @param args the options, see USAGE
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        StreamServer server = new StreamServer();
+        try {
+            server.parse(args);
+            server.run(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Allows to read the options.
+     *
+     * @param args the options, see USAGE
+     */
+    void parse(String[] args)
+    {
+        for (int k = 0; k < args.length; k++) {
+            String option = args[k];
+            if (k + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++k];
+            try {
+                switch (option) {
+                    case "--port":    port = Integer.parseInt(value); break;
+                    case "--pattern": pattern = Paths.get(value); break;
+                    case "--soup":    soup = Integer.parseInt(value); break;
+                    case "--density": density = Double.parseDouble(value); break;
+                    case "--seed":    seed = Long.parseLong(value); break;
+                    case "--rule":    rule = Rule.parse(value); break;
+                    case "--speed":   speed = Double.parseDouble(value); break;
+                    case "--lag":     lag = Integer.parseInt(value); break;
+                    case "--skips":   skips = Integer.parseInt(value); break;
+                    case "--timeout": timeout = Double.parseDouble(value); break;
+                    case "--report":  report = Double.parseDouble(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (pattern != null && soup > 0) throw new IllegalArgumentException("Give either a pattern or a soup");
+        if (pattern == null && soup <= 0) soup = 512;
+        if (!(speed > 0)) throw new IllegalArgumentException("The speed must be positive");
+        if (lag <= 0 || skips <= 0) throw new IllegalArgumentException("The lag and the skips must be positive");
+        if (!(timeout > 0) || !(report > 0)) throw new IllegalArgumentException("The delays must be positive");
+    }
+
+    /**
+     * Allows to run the simulation and to serve the viewers until the JVM is stopped.
+     *
+     * @param out where to print the statistics
+     * @throws IOException if the pattern cannot be read or the port cannot be listened on
+     */
+    void run(PrintStream out) throws IOException
+    {
+        BitEngine engine = new BitEngine(1, 1);
+        if (pattern != null) Patterns.read(pattern, engine);
+        else this.soup(engine);
+        engine.setRule(rule);
+
+        selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        out.printf(Locale.ROOT, "board: %dx%d%n", engine.getHeight(), engine.getWidth());
+        out.printf(Locale.ROOT, "listening on http://localhost:%d/%n",
+                ((InetSocketAddress) server.getLocalAddress()).getPort());
+
+        encoder = new TileEncoder(frame -> {
+            frames.add(frame);
+            selector.wakeup();
+        });
+        /* Only the events are streamed: no frames, no history and no look-ahead */
+        Simulation simulation = new Simulation(engine, engine.getHeight(), engine.getWidth(), speed, true);
+        simulation.getEvents().subscribe(encoder);
+        simulation.start();
+        simulation.play();
+
+        long nanos = (long) (timeout * 1e9), every = (long) (report * 1e9), next = System.nanoTime() + every;
+        while (true) {
+            selector.select(TICK_MILLIS);
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) {
+                    this.accept(server);
+                } else {
+                    Viewer viewer = (Viewer) key.attachment();
+                    try {
+                        if (key.isReadable()) this.read(viewer);
+                        if (key.isValid() && key.isWritable()) this.write(viewer);
+                    } catch (IOException e) {
+                        this.close(viewer);
+                    }
+                }
+            }
+            selector.selectedKeys().clear();
+            for (Frame frame; (frame = frames.poll()) != null; ) this.broadcast(frame);
+
+            long now = System.nanoTime();
+            for (Viewer viewer : new ArrayList<>(viewers)) {
+                if (viewer.stalled(now, nanos)) {
+                    dropped++;
+                    this.close(viewer);
+                }
+            }
+            if (now - next >= 0) {
+                next = now + every;
+                out.printf(Locale.ROOT, "generation %d: %d viewers, %d frames encoded (%.1f MB), %d queued, "
+                                + "%.1f MB written, %d coalesced, %d dropped%n",
+                        simulation.getMetrics().getGenerations(), viewers.size(), encoder.getFrames(),
+                        encoder.getBytes() / 1e6, sent, written / 1e6, coalesced, dropped);
+            }
+        }
+    }
+
+    /**
+     * Allows to accept a connection.
+     *
+     * @param server the channel listening
+     * @throws IOException if the selector is closed
+     */
+    private void accept(ServerSocketChannel server) throws IOException
+    {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Viewer viewer = new Viewer(channel, key);
+        key.attach(viewer);
+        viewers.add(viewer);
+    }
+
+    /**
+     * Allows to read what a viewer sent: its request, then its messages.
+     *
+     * @param viewer the viewer
+     * @throws IOException if the connection is broken or the viewer breaks the protocol
+     */
+    private void read(Viewer viewer) throws IOException
+    {
+        if (viewer.channel.read(viewer.in) < 0) throw new IOException("Closed by the viewer");
+        viewer.in.flip();
+        try {
+            if (!viewer.streaming) {
+                this.request(viewer);
+            } else {
+                int[] opcode = new int[1];
+                for (byte[] payload; (payload = WebSocket.next(viewer.in, MAX_MESSAGE, opcode)) != null; ) {
+                    if (opcode[0] == WebSocket.CLOSE) throw new IOException("Closed by the viewer");
+                    if (opcode[0] == WebSocket.TEXT) this.command(viewer, new String(payload, StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            viewer.in.compact();
+        }
+        if (!viewer.in.hasRemaining()) throw new IOException("The request of the viewer is too long");
+    }
+
+    /**
+     * Allows to answer the HTTP request of a viewer once it is all received.
+     *
+     * @param viewer the viewer, its bytes received ready to be read
+     * @throws IOException if the request is not one of a viewer
+     */
+    private void request(Viewer viewer) throws IOException
+    {
+        String text = StandardCharsets.ISO_8859_1.decode(viewer.in.duplicate()).toString();
+        int end = text.indexOf("\r\n\r\n");
+        if (end < 0) {
+            if (text.length() >= MAX_REQUEST) throw new IOException("The request of the viewer is too long");
+            return;
+        }
+        viewer.in.position(viewer.in.position() + end + 4);
+        String[] lines = text.substring(0, end).split("\r\n");
+        String[] line = lines[0].split(" ");
+        Map<String, String> headers = new HashMap<>();
+        for (int k = 1; k < lines.length; k++) {
+            int colon = lines[k].indexOf(':');
+            if (colon < 0) continue;
+            String name = lines[k].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            headers.put(name, lines[k].substring(colon + 1).trim());
+        }
+        if (line.length != 3 || !line[0].equals("GET")) {
+            this.answer(viewer, "405 Method Not Allowed", "text/plain", "Only GET is served\n");
+            return;
+        }
+        int question = line[1].indexOf('?');
+        String path = question < 0 ? line[1] : line[1].substring(0, question);
+        String query = question < 0 ? "" : line[1].substring(question + 1);
+        if (path.equals("/")) {
+            this.answer(viewer, "200 OK", "text/html; charset=utf-8", PAGE);
+        } else if (path.equals("/stream") && "websocket".equalsIgnoreCase(headers.get("upgrade"))
+                && headers.containsKey("sec-websocket-key")) {
+            String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + WebSocket.accept(headers.get("sec-websocket-key")) + "\r\n\r\n";
+            try {
+                this.viewport(viewer, query.split("&"));
+            } catch (NumberFormatException e) {
+                this.answer(viewer, "400 Bad Request", "text/plain", "The viewport is top, left, height, width\n");
+                return;
+            }
+            viewer.offer(new ByteBuffer[]{ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII))}, true);
+            viewer.streaming = true;
+            encoder.request();
+            this.write(viewer);
+        } else {
+            this.answer(viewer, "404 Not Found", "text/plain", "Try / or /stream\n");
+        }
+    }
+
+    /**
+     * Allows to answer a plain HTTP request and to close the connection once the answer is written.
+     *
+     * @param viewer the viewer
+     * @param status the status of the answer
+     * @param type   the type of its body
+     * @param body   its body
+     * @throws IOException if the connection is broken
+     */
+    private void answer(Viewer viewer, String status, String type, String body) throws IOException
+    {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + "\r\nContent-Type: " + type + "\r\nContent-Length: " + content.length
+                + "\r\nConnection: close\r\n\r\n";
+        viewer.offer(new ByteBuffer[]{ByteBuffer.wrap(head.getBytes(StandardCharsets.US_ASCII)),
+                ByteBuffer.wrap(content)}, true);
+        viewer.closing = true;
+        viewer.in.position(viewer.in.limit());
+        this.write(viewer);
+    }
+
+    /**
+     * Allows to apply a text message of a viewer, "viewport T L H W" being the only one.
+     *
+     * @param viewer  the viewer
+     * @param command the message
+     */
+    private void command(Viewer viewer, String command)
+    {
+        String[] words = command.trim().split("\\s+");
+        if (words.length != 5 || !words[0].equals("viewport")) return;
+        try {
+            this.viewport(viewer, new String[]{"top=" + words[1], "left=" + words[2], "height=" + words[3],
+                    "width=" + words[4]});
+        } catch (NumberFormatException e) {
+            return;
+        }
+        viewer.lost = true;
+        encoder.request();
+    }
+
+    /**
+     * Allows to set the viewport asked by a viewer from the parameters of its query.
+     *
+     * @param viewer     the viewer
+     * @param parameters the parameters, "top=128" for instance
+     */
+    private void viewport(Viewer viewer, String[] parameters)
+    {
+        for (String parameter : parameters) {
+            int equal = parameter.indexOf('=');
+            if (equal < 0) continue;
+            String name = parameter.substring(0, equal), value = parameter.substring(equal + 1);
+            int index = name.equals("top") ? 0 : name.equals("left") ? 1 : name.equals("height") ? 2
+                    : name.equals("width") ? 3 : -1;
+            if (index >= 0) viewer.asked[index] = Math.max(0, Integer.parseInt(value));
+        }
+    }
+
+    /**
+     * Allows to queue a frame for every viewer, the delta or the keyframe of its viewport, or to let the viewers
+     * that are too late skip it.
+     *
+     * @param frame the frame
+     */
+    private void broadcast(Frame frame)
+    {
+        for (Viewer viewer : new ArrayList<>(viewers)) {
+            if (!viewer.streaming) continue;
+            if (frame.reset) viewer.lost = true;
+            if (!viewer.lost && viewer.backlog() >= lag) {
+                viewer.coalesce();
+                coalesced++;
+                if (viewer.skips >= skips) {
+                    dropped++;
+                    this.close(viewer);
+                    continue;
+                }
+            }
+            if (viewer.lost && frame.cells == null) {
+                encoder.request();
+                continue;
+            }
+            viewer.clamp(frame.height, frame.width);
+            viewer.offer(frame.message(viewer.lost, viewer.viewport), false);
+            viewer.lost = false;
+            sent++;
+            try {
+                this.write(viewer);
+            } catch (IOException e) {
+                this.close(viewer);
+            }
+        }
+    }
+
+    /**
+     * Allows to write what waits for a viewer, and to close it if it is done.
+     *
+     * @param viewer the viewer
+     * @throws IOException if the connection is broken
+     */
+    private void write(Viewer viewer) throws IOException
+    {
+        written += viewer.flush();
+        if (viewer.closing && viewer.idle()) this.close(viewer);
+    }
+
+    /**
+     * Allows to close a connection.
+     *
+     * @param viewer the viewer
+     */
+    private void close(Viewer viewer)
+    {
+        viewers.remove(viewer);
+        viewer.key.cancel();
+        try {
+            viewer.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Allows to give the random soup described by the options to a storage, row by row.
+     *
+     * @param engine the engine receiving the soup
+     */
+    private void soup(BitEngine engine)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        engine.begin(soup, soup);
+        for (int i = 0; i < soup; i++) {
+            for (int j = 0; j < soup; j++)
+                if (random.nextDouble() < density) engine.setRun(i, j, 1);
+        }
+        engine.end();
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.eliaswalyba.gameoflife.server;
+
+import com.eliaswalyba.gameoflife.backend.GenerationEvent;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+final class TileEncoder implements Flow.Subscriber<GenerationEvent>
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: TileEncoder
+     * @description: Encodes the events of a simulation into frames, once for all the viewers
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The encoder subscribes to the events of the simulation (see GenerationPublisher) and keeps its own copy of
+     * the board, bit-packed, moved forward by the cells born and dead of each event. The changes are grouped by
+     * tile, the XOR of each row of a tile being a single word, and each tile that changed is encoded into its
+     * own buffer (see Frame): a generation costs the cells that changed, not the size of the board.
+     * The keyframe, the alive cells of every tile, is only encoded when a viewer asked for it (see request) or
+     * when the events do not follow each other anymore, and then it is shared by all the viewers needing it.
+     * The encoder runs on the thread delivering the events: when it is late the publisher coalesces them, so the
+     * simulation never waits for it.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Where the frames go, on the thread delivering the events
+     */
+    private final Consumer<Frame> sink;
+
+    /**
+     * Whether a viewer waits for a keyframe
+     */
+    private final AtomicBoolean wanted = new AtomicBoolean();
+
+    /**
+     * The board, bit-packed, its size, the number of words in a row and the number of tiles in a row
+     */
+    private long[] board = new long[0];
+    private int height, width, words, across;
+
+    /**
+     * The generation of the board, and whether it is known
+     */
+    private long generation;
+    private boolean known;
+
+    /**
+     * The rows of the tiles that changed: the slot of each tile (-1 if it did not change), the XOR of the 64 rows
+     * of each slot, which rows are not zero, and the tile of each slot
+     */
+    private int[] slots = new int[0];
+    private long[] rows = new long[Frame.TILE * 16], masks = new long[16];
+    private int[] tiles = new int[16];
+    private int used;
+
+    /**
+     * The number of frames and bytes encoded
+     */
+    private volatile long frames, bytes;
+
+    /**
+     * The constructor of the class
+     *
+     * @param sink where the frames go, on the thread delivering the events
+     */
+    TileEncoder(Consumer<Frame> sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * Allows a viewer to ask for a keyframe, which comes with the next frame.
+     */
+    void request()
+    {
+        wanted.set(true);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(GenerationEvent event)
+    {
+        boolean reset = !known || event.getBase() != generation
+                || event.getHeight() != height || event.getWidth() != width;
+        ByteBuffer[] changes;
+        if (reset) {
+            /* The first event, and an event following a board we did not see, are keyframes */
+            if (!event.isKeyframe()) return;
+            height = event.getHeight();
+            width = event.getWidth();
+            words = (width + 63) >>> 6;
+            across = (width + Frame.TILE - 1) / Frame.TILE;
+            board = event.getCells().clone();
+            slots = new int[across * ((height + Frame.TILE - 1) / Frame.TILE)];
+            Arrays.fill(slots, -1);
+            changes = new ByteBuffer[slots.length];
+        } else {
+            changes = this.changes(event.getBorn(), event.getDied());
+        }
+        ByteBuffer[] cells = reset | wanted.getAndSet(false) ? this.cells() : null;
+        generation = event.getGeneration();
+        known = true;
+        frames++;
+        sink.accept(new Frame(generation, height, width, changes, cells, reset));
+    }
+
+    /**
+     * Allows to encode the tiles that changed and to move the board forward.
+     *
+     * @param born the packed cells born, sorted
+     * @param died the packed cells dead, sorted
+     * @return ByteBuffer[] the changes of each tile, null where nothing changed
+     */
+    private ByteBuffer[] changes(long[] born, long[] died)
+    {
+        used = 0;
+        this.flip(born);
+        this.flip(died);
+        ByteBuffer[] changes = new ByteBuffer[slots.length];
+        for (int s = 0; s < used; s++) {
+            int tile = tiles[s], top = tile / across * Frame.TILE, column = tile % across;
+            changes[tile] = this.encode(tile, masks[s], rows, s * Frame.TILE);
+            for (long mask = masks[s]; mask != 0; mask &= mask - 1) {
+                int r = Long.numberOfTrailingZeros(mask);
+                board[(top + r) * words + column] ^= rows[s * Frame.TILE + r];
+                rows[s * Frame.TILE + r] = 0;
+            }
+            slots[tile] = -1;
+        }
+        return changes;
+    }
+
+    /**
+     * Allows to add cells to the rows of the tiles that changed.
+     *
+     * @param keys the packed cells (see GenerationEvent)
+     */
+    private void flip(long[] keys)
+    {
+        for (long key : keys) {
+            int i = GenerationEvent.row(key), j = GenerationEvent.column(key);
+            int tile = (i / Frame.TILE) * across + j / Frame.TILE, slot = slots[tile];
+            if (slot < 0) {
+                if (used == tiles.length) {
+                    tiles = Arrays.copyOf(tiles, used << 1);
+                    masks = Arrays.copyOf(masks, used << 1);
+                    rows = Arrays.copyOf(rows, (used << 1) * Frame.TILE);
+                }
+                slot = used++;
+                slots[tile] = slot;
+                tiles[slot] = tile;
+                masks[slot] = 0;
+            }
+            masks[slot] |= 1L << (i % Frame.TILE);
+            rows[slot * Frame.TILE + i % Frame.TILE] ^= 1L << j;
+        }
+    }
+
+    /**
+     * Allows to encode the alive cells of every tile.
+     *
+     * @return ByteBuffer[] the alive cells of each tile, null where there is none
+     */
+    private ByteBuffer[] cells()
+    {
+        ByteBuffer[] cells = new ByteBuffer[slots.length];
+        long[] tile = new long[Frame.TILE];
+        for (int t = 0; t < slots.length; t++) {
+            int top = t / across * Frame.TILE, column = t % across;
+            long mask = 0;
+            for (int r = 0; r < Frame.TILE && top + r < height; r++) {
+                tile[r] = board[(top + r) * words + column];
+                if (tile[r] != 0) mask |= 1L << r;
+            }
+            if (mask != 0) cells[t] = this.encode(t, mask, tile, 0);
+        }
+        return cells;
+    }
+
+    /**
+     * Allows to encode a tile in the shorter of the two encodings (see Frame).
+     *
+     * @param tile   the number of the tile
+     * @param mask   which rows are not zero
+     * @param rows   the rows of the tile
+     * @param offset the position of the first row of the tile in rows
+     * @return ByteBuffer the record of the tile, read-only
+     */
+    private ByteBuffer encode(int tile, long mask, long[] rows, int offset)
+    {
+        int count = 0;
+        for (long m = mask; m != 0; m &= m - 1) count += Long.bitCount(rows[offset + Long.numberOfTrailingZeros(m)]);
+        int toggles = 2 + 2 * count, words = 8 + 8 * Long.bitCount(mask);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + 1 + Math.min(toggles, words));
+        record.putInt(tile);
+        if (toggles <= words) {
+            record.put(Frame.TOGGLES).putShort((short) count);
+            for (long m = mask; m != 0; m &= m - 1) {
+                int r = Long.numberOfTrailingZeros(m);
+                for (long bits = rows[offset + r]; bits != 0; bits &= bits - 1)
+                    record.putShort((short) (r * Frame.TILE + Long.numberOfTrailingZeros(bits)));
+            }
+        } else {
+            record.put(Frame.ROWS).putLong(mask);
+            for (long m = mask; m != 0; m &= m - 1) record.putLong(rows[offset + Long.numberOfTrailingZeros(m)]);
+        }
+        bytes += record.capacity();
+        return record.flip().asReadOnlyBuffer();
+    }
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+        known = false;
+    }
+
+    @Override
+    public void onComplete()
+    {
+    }
+
+    /**
+     * @return long the number of frames encoded
+     */
+    long getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * @return long the number of bytes of the records encoded
+     */
+    long getBytes()
+    {
+        return bytes;
+    }
+
+}
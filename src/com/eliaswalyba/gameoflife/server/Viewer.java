@@ -0,0 +1,185 @@
+package com.eliaswalyba.gameoflife.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+final class Viewer
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Viewer
+     * @description: A connection to the server: its request, its viewport and the messages it has not read yet
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A connection starts with an HTTP request. The page of the viewer is sent and the connection closed, or the
+     * connection is upgraded to a WebSocket and streams the frames of the viewport asked for (see Frame).
+     * The messages waiting to be written are queued as arrays of buffers, written with a single gathering write
+     * as far as the socket takes them. The server never waits for a viewer: one that is more than a few messages
+     * late has the messages it did not start reading dropped and gets a keyframe instead (see coalesce), one
+     * that does not even take the keyframes, or that read nothing for a long while, is disconnected. Only the
+     * thread of the server touches a viewer.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The connection, and its key in the selector of the server
+     */
+    final SocketChannel channel;
+    final SelectionKey key;
+
+    /**
+     * The bytes received and not handled yet
+     */
+    final ByteBuffer in = ByteBuffer.allocate(8192);
+
+    /**
+     * Whether the connection is a WebSocket, and whether it is closed once its messages are written
+     */
+    boolean streaming, closing;
+
+    /**
+     * The viewport asked for, and the viewport within the current board: top, left, height and width
+     */
+    final int[] asked = {0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE}, viewport = new int[4];
+
+    /**
+     * Whether the next message must be a keyframe
+     */
+    boolean lost = true;
+
+    /**
+     * The messages not written yet, the first one maybe partly written, and the number of messages at its head
+     * that must be written whatever happens, the answer to the handshake for instance
+     */
+    private final ArrayDeque<ByteBuffer[]> queue = new ArrayDeque<>();
+    private int kept;
+
+    /**
+     * The number of times the messages were dropped since the socket last took a whole keyframe
+     */
+    int skips;
+
+    /**
+     * When the socket last took some bytes, or when the queue was last empty
+     */
+    private long progress = System.nanoTime();
+
+    /**
+     * The constructor of the class
+     *
+     * @param channel the connection, in non-blocking mode
+     * @param key     its key in the selector of the server
+     */
+    Viewer(SocketChannel channel, SelectionKey key)
+    {
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Allows to fit the viewport asked for in a board.
+     *
+     * @param height the number of rows of the board
+     * @param width  the number of columns of the board
+     */
+    void clamp(int height, int width)
+    {
+        viewport[0] = Math.max(0, Math.min(asked[0], height - 1));
+        viewport[1] = Math.max(0, Math.min(asked[1], width - 1));
+        viewport[2] = Math.max(0, Math.min(asked[2], height - viewport[0]));
+        viewport[3] = Math.max(0, Math.min(asked[3], width - viewport[1]));
+    }
+
+    /**
+     * Allows to queue a message.
+     *
+     * @param message the buffers of the message
+     * @param keep    whether the message must be written even if the viewer is late
+     */
+    void offer(ByteBuffer[] message, boolean keep)
+    {
+        if (queue.isEmpty()) progress = System.nanoTime();
+        if (keep && kept == queue.size()) kept++;
+        queue.add(message);
+    }
+
+    /**
+     * @return int the number of messages that could be dropped
+     */
+    int backlog()
+    {
+        return queue.size() - this.protectedCount();
+    }
+
+    /**
+     * @return int the number of messages at the head of the queue that cannot be dropped
+     */
+    private int protectedCount()
+    {
+        return Math.max(kept, this.started() ? 1 : 0);
+    }
+
+    /**
+     * @return boolean true if some of the first message is written
+     */
+    private boolean started()
+    {
+        ByteBuffer[] first = queue.peek();
+        return first != null && first[0].position() > 0;
+    }
+
+    /**
+     * Allows to drop the messages not started yet; the next message must be a keyframe.
+     */
+    void coalesce()
+    {
+        for (int k = queue.size() - this.protectedCount(); k > 0; k--) queue.pollLast();
+        lost = true;
+        skips++;
+    }
+
+    /**
+     * Allows to write the queued messages as far as the socket takes them, and to wait for it to take more if
+     * some are left.
+     *
+     * @return long the number of bytes written
+     * @throws IOException if the connection is broken
+     */
+    long flush() throws IOException
+    {
+        long written = 0;
+        while (!queue.isEmpty()) {
+            ByteBuffer[] first = queue.peek();
+            written += channel.write(first);
+            if (first[first.length - 1].hasRemaining()) break;
+            queue.poll();
+            if (kept > 0) kept--;
+            else if (first[1].get(0) == Frame.KEYFRAME) skips = 0;
+        }
+        if (written > 0 || queue.isEmpty()) progress = System.nanoTime();
+        if (key.isValid())
+            key.interestOps(queue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return written;
+    }
+
+    /**
+     * @return boolean true if the viewer read nothing for a while though messages wait for it
+     */
+    boolean stalled(long now, long timeout)
+    {
+        return !queue.isEmpty() && now - progress > timeout;
+    }
+
+    /**
+     * @return boolean true if all the messages are written
+     */
+    boolean idle()
+    {
+        return queue.isEmpty();
+    }
+
+}
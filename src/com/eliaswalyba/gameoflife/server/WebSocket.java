@@ -0,0 +1,145 @@
+package com.eliaswalyba.gameoflife.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+final class WebSocket
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: WebSocket
+     * @description: The framing of the WebSocket protocol (RFC 6455), as much of it as the stream needs
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * A frame is 2 bytes (the end of the message and the opcode, then the mask bit and a length of 7 bits),
+     * followed by a length of 16 or 64 bits when it does not fit in 7, by the 4 bytes of the mask when there is
+     * one, and by the payload. The server only sends whole binary messages, unmasked; the clients mask what they
+     * send. Fragmented messages are not accepted: the viewers only send short texts (see Viewer).
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The opcodes of the frames
+     */
+    static final int TEXT = 0x1, BINARY = 0x2, CLOSE = 0x8, PING = 0x9, PONG = 0xA;
+
+    /**
+     * The key of the protocol, appended to the key of the client to accept it
+     */
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * This class only holds static methods.
+     */
+    private WebSocket() {}
+
+    /**
+     * Allows to compute the answer of the server to the key of a client during the handshake.
+     *
+     * @param key the Sec-WebSocket-Key of the client
+     * @return String the Sec-WebSocket-Accept of the server
+     */
+    static String accept(String key)
+    {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is missing from the JVM", e);
+        }
+    }
+
+    /**
+     * Allows to build the header of an unmasked frame holding a whole message.
+     *
+     * @param opcode the opcode of the frame
+     * @param length the length of the payload
+     * @return ByteBuffer the header, ready to be written
+     */
+    static ByteBuffer header(int opcode, long length)
+    {
+        ByteBuffer header = ByteBuffer.allocate(10);
+        header.put((byte) (0x80 | opcode));
+        if (length < 126) {
+            header.put((byte) length);
+        } else if (length < 1 << 16) {
+            header.put((byte) 126).putShort((short) length);
+        } else {
+            header.put((byte) 127).putLong(length);
+        }
+        return header.flip();
+    }
+
+    /**
+     * Allows to build a masked frame holding a whole message, as a client sends it.
+     *
+     * @param opcode  the opcode of the frame
+     * @param payload the payload
+     * @param mask    the mask
+     * @return ByteBuffer the frame, ready to be written
+     */
+    static ByteBuffer masked(int opcode, byte[] payload, int mask)
+    {
+        ByteBuffer frame = ByteBuffer.allocate(14 + payload.length);
+        frame.put((byte) (0x80 | opcode));
+        if (payload.length < 126) {
+            frame.put((byte) (0x80 | payload.length));
+        } else if (payload.length < 1 << 16) {
+            frame.put((byte) (0x80 | 126)).putShort((short) payload.length);
+        } else {
+            frame.put((byte) (0x80 | 127)).putLong(payload.length);
+        }
+        frame.putInt(mask);
+        for (int k = 0; k < payload.length; k++) frame.put((byte) (payload[k] ^ (mask >>> (24 - 8 * (k & 3)))));
+        return frame.flip();
+    }
+
+    /**
+     * Allows to take the next frame out of the bytes received, if it is all there.
+     *
+     * @param in     the bytes received, ready to be read; the frame is consumed only if it is complete
+     * @param limit  the longest payload accepted
+     * @param opcode receives the opcode of the frame in its first element
+     * @return byte[] the payload of the frame, unmasked, or null if the frame is not complete yet
+     * @throws IOException if the frame is fragmented or too long
+     */
+    static byte[] next(ByteBuffer in, long limit, int[] opcode) throws IOException
+    {
+        int start = in.position();
+        if (in.remaining() < 2) return null;
+        int first = in.get() & 0xFF, second = in.get() & 0xFF;
+        if ((first & 0x80) == 0 || (first & 0x0F) == 0) throw new IOException("Fragmented messages are not accepted");
+        long length = second & 0x7F;
+        if (length == 126) {
+            if (in.remaining() < 2) return WebSocket.rewind(in, start);
+            length = in.getShort() & 0xFFFF;
+        } else if (length == 127) {
+            if (in.remaining() < 8) return WebSocket.rewind(in, start);
+            length = in.getLong();
+        }
+        if (length < 0 || length > limit) throw new IOException("A frame of " + length + " bytes is too long");
+        boolean masked = (second & 0x80) != 0;
+        if (in.remaining() < (masked ? 4 : 0) + length) return WebSocket.rewind(in, start);
+        int mask = masked ? in.getInt() : 0;
+        byte[] payload = new byte[(int) length];
+        in.get(payload);
+        if (masked) for (int k = 0; k < payload.length; k++) payload[k] ^= (byte) (mask >>> (24 - 8 * (k & 3)));
+        opcode[0] = first & 0x0F;
+        return payload;
+    }
+
+    /**
+     * @return byte[] null, once the bytes of an incomplete frame are put back
+     */
+    private static byte[] rewind(ByteBuffer in, int start)
+    {
+        in.position(start);
+        return null;
+    }
+
+}
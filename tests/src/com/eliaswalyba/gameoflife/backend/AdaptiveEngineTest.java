@@ -0,0 +1,44 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: AdaptiveEngineTest
+     * @description: Checks that the engine switching representations follows the naive stepper through its stages
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReference()
+    {
+        Reference.checkPlane(AdaptiveEngine::new, "B3/S23", "B36/S23");
+    }
+
+    @Test
+    void keepsTheBoardAcrossMigrations()
+    {
+        /* A soup settling into still lifes and gliders goes through the three stages */
+        int[][] soup = Reference.soup(64, 64, 0.5, 1);
+        AdaptiveEngine adaptive = new AdaptiveEngine(soup);
+        SparseEngine sparse = new SparseEngine(soup);
+        for (int g = 1; g <= 3000; g++) {
+            adaptive.nextGeneration();
+            sparse.nextGeneration();
+            if (g % 250 != 0) continue;
+            long[] bounds = sparse.getBounds();
+            assertArrayEquals(bounds, adaptive.getBounds(), "generation " + g);
+            assertArrayEquals(Reference.matrix(sparse.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3])),
+                    Reference.matrix(adaptive.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3])),
+                    "generation " + g);
+        }
+        assertEquals(sparse.getPopulation(), adaptive.getPopulation());
+    }
+
+}
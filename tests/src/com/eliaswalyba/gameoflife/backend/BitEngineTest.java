@@ -0,0 +1,43 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BitEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BitEngineTest
+     * @description: Checks the bit-packed engine against the naive stepper, and its cells across the words
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReference()
+    {
+        Reference.checkTorus(BitEngine::new, "B3/S23");
+    }
+
+    @Test
+    void cellsAreKeptAcrossTheWords()
+    {
+        int[][] soup = Reference.soup(9, 130, 0.4, 3);
+        BitEngine engine = new BitEngine(9, 130);
+        long population = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 130; j++) {
+                engine.set(i, j, soup[i][j] == 1);
+                population += soup[i][j];
+            }
+        }
+        assertArrayEquals(soup, engine.getCells());
+        assertEquals(population, engine.getPopulation());
+        int[][] copy = new int[9][130];
+        engine.copyCells(copy);
+        assertArrayEquals(soup, copy);
+    }
+
+}
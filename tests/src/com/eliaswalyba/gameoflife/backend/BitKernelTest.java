@@ -0,0 +1,86 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BitKernelTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BitKernelTest
+     * @description: Checks the loop of the inner words against stepWords, whichever is loaded, and the scans of rows
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Maven runs the tests of the bit-packed engines twice: with the Vector API, where BitKernel loads the
+     * VectorKernel if the processor has vectors of several words, and without it, where the scalar stepWords is
+     * the only loop. The second run sets -Dgameoflife.kernel=scalar, so that it can tell the loop it expects.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The name of the system property telling the loop a run of the tests expects
+     */
+    private static final String KERNEL_PROPERTY = "gameoflife.kernel";
+
+    @Test
+    void kernelIsTheOneExpected()
+    {
+        String expected = System.getProperty(KERNEL_PROPERTY);
+        assumeTrue(expected != null, "the loop depends on the processor");
+        assertEquals(expected, BitEngine.getKernel());
+    }
+
+    @Test
+    void wordsFollowTheScalarLoop()
+    {
+        SplittableRandom random = new SplittableRandom(37);
+        for (String name : new String[]{"B3/S23", "B36/S23", "B2/S"}) {
+            long[] rule = BitKernel.compile(Rule.parse(name));
+            for (int words = 2; words <= 40; words++) {
+                long[] a = random.longs(words).toArray(), r = random.longs(words).toArray();
+                long[] b = random.longs(words).toArray();
+                long[] expected = new long[words], actual = new long[words];
+                BitKernel.stepWords(a, 0, r, 0, b, 0, expected, 0, 1, words - 1, rule);
+                BitKernel.WORDS.step(a, 0, r, 0, b, 0, actual, 0, 1, words - 1, rule);
+                assertArrayEquals(expected, actual, name + " on " + words + " words with " + BitEngine.getKernel());
+            }
+        }
+    }
+
+    @Test
+    void nextCellFindsEveryRunAcrossTheWords()
+    {
+        for (int width : new int[]{1, 63, 64, 65, 130, 200}) {
+            /* Sparse rows and full ones, for the scans crossing empty words and words without a dead cell */
+            int[][] cells = Reference.soup(6, width, 0.02, width);
+            for (int j = 0; j < width; j++) cells[3][j] = 1;
+            cells[4] = Reference.soup(1, width, 0.9, width + 1)[0];
+            OffHeapEngine offHeap = new OffHeapEngine(OffHeapBoard.allocate(1, 1), 1);
+            offHeap.setCells(cells);
+            try {
+                for (CellSource source : new CellSource[]{new BitEngine(cells), offHeap, new AdaptiveEngine(cells)}) {
+                    String name = source.getClass().getSimpleName() + " of width " + width;
+                    assertArrayEquals(cells, Reference.matrix(source), name);
+                    for (int i = 0; i < cells.length; i++) {
+                        for (int j = 0; j <= width; j++) {
+                            int alive = j, dead = j;
+                            while (alive < width && cells[i][alive] == 0) alive++;
+                            while (dead < width && cells[i][dead] == 1) dead++;
+                            assertEquals(alive, source.nextCell(i, j, true), name + " at " + i + "," + j);
+                            assertEquals(dead, source.nextCell(i, j, false), name + " at " + i + "," + j);
+                        }
+                    }
+                }
+            } finally {
+                offHeap.close();
+            }
+        }
+    }
+
+}
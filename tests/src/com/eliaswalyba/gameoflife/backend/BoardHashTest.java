@@ -0,0 +1,102 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class BoardHashTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: BoardHashTest
+     * @description: Checks that the hashes kept generation by generation are the ones computed from scratch
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The number of generations compared
+     */
+    private static final int GENERATIONS = 100;
+
+    @Test
+    void changesOnlyKeyTheWordsThatChanged()
+    {
+        SplittableRandom random = new SplittableRandom(3);
+        long[] before = new long[500], after = new long[500];
+        for (int k = 0; k < before.length; k++) {
+            before[k] = random.nextInt(4) == 0 ? 0 : random.nextLong();
+            after[k] = random.nextInt(3) == 0 ? random.nextLong() : before[k];
+        }
+        long expected = BoardHash.words(before) ^ BoardHash.words(after);
+        assertEquals(expected, BoardHash.changes(before, after, 0, before.length));
+        assertEquals(expected, BoardHash.changes(0, before, after, before.length));
+        assertEquals(0, BoardHash.changes(before, before, 0, before.length));
+        assertEquals(0, BoardHash.words(new long[8]));
+    }
+
+    @Test
+    void bitEnginesKeepTheHashOfTheirBoard()
+    {
+        int[][] soup = Reference.soup(50, 130, 0.4, 11);
+        BitEngine bit = new BitEngine(soup);
+        ParallelEngine parallel = new ParallelEngine(soup, 3, 8);
+        try {
+            for (BoardHash engine : new BoardHash[]{bit, parallel}) engine.setHashing(true);
+            for (int g = 1; g <= GENERATIONS; g++) {
+                bit.nextGeneration();
+                parallel.nextGeneration();
+                long expected = new BitEngine(bit.getCells()).getHash();
+                assertEquals(expected, bit.getHash(), "bit, generation " + g);
+                assertEquals(expected, parallel.getHash(), "parallel, generation " + g);
+            }
+        } finally {
+            parallel.close();
+        }
+    }
+
+    @Test
+    void hashOfAnEditedBoardIsComputedAgain()
+    {
+        BitEngine engine = new BitEngine(Reference.soup(20, 70, 0.4, 13));
+        engine.setHashing(true);
+        long before = engine.getHash();
+        engine.set(3, 65, !engine.get(3, 65));
+        assertNotEquals(before, engine.getHash());
+        assertEquals(new BitEngine(engine.getCells()).getHash(), engine.getHash());
+    }
+
+    @Test
+    void controllerKeepsTheHashOnlyWhenAsked()
+    {
+        for (String name : new String[]{"B3/S23", "B2/S/C3"}) {
+            Rule rule = Rule.parse(name);
+            int[][] soup = Reference.soup(30, 45, 0.4, 17);
+            Controller kept = new Controller(soup, rule), computed = new Controller(soup, rule);
+            kept.setHashing(true);
+            for (int g = 1; g <= GENERATIONS; g++) {
+                kept.nextGeneration();
+                computed.nextGeneration();
+                long expected = new Controller(kept.getCells(), rule).getHash();
+                assertEquals(expected, kept.getHash(), name + ", generation " + g);
+                if (g % 10 == 0) assertEquals(expected, computed.getHash(), name + ", generation " + g);
+            }
+        }
+    }
+
+    @Test
+    void sparseEngineKeepsTheHashOfThePlane()
+    {
+        int[][] soup = Reference.soup(30, 30, 0.4, 19);
+        SparseEngine engine = new SparseEngine(soup);
+        for (int g = 1; g <= GENERATIONS; g++) engine.nextGeneration();
+        SparseEngine copy = new SparseEngine(new int[0][0]);
+        engine.forEachCell(key -> copy.set(SparseEngine.x(key), SparseEngine.y(key), true));
+        assertEquals(copy.getHash(), engine.getHash());
+        assertEquals(0, new SparseEngine(new int[4][4]).getHash());
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ControllerTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: ControllerTest
+     * @description: Checks the Controller against the naive stepper on rectangular boards of every boundary
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReferenceOnEveryBoundary()
+    {
+        for (Boundary boundary : new Boundary[]{Boundary.TORUS, Boundary.DEAD, Boundary.KLEIN_BOTTLE}) {
+            for (String name : new String[]{"B3/S23", "B36/S23", "B2/S/C3", "B2/S34/C5"}) {
+                Rule rule = Rule.parse(name);
+                for (int[] size : Reference.SIZES) {
+                    int[][] expected = Reference.soup(size[0], size[1], 0.4, size[0] * 31L + size[1]);
+                    Controller engine = new Controller(expected, rule, boundary);
+                    for (int g = 1; g <= Reference.GENERATIONS; g++) {
+                        engine.nextGeneration();
+                        expected = Reference.next(expected, rule, boundary);
+                        assertArrayEquals(expected, engine.getCells(), name + " on a " + boundary + " of "
+                                + size[0] + "x" + size[1] + ", generation " + g);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void populationFollowsTheBirthsAndTheDeaths()
+    {
+        for (String name : new String[]{"B3/S23", "B2/S/C3", "B2/S34/C5"}) {
+            Controller engine = new Controller(Reference.soup(40, 70, 0.4, 41), Rule.parse(name));
+            Metrics metrics = new Metrics(40 * 70);
+            metrics.watch(engine);
+            for (int g = 1; g <= Reference.GENERATIONS; g++) {
+                long before = engine.getPopulation();
+                metrics.step(engine);
+                long alive = 0;
+                for (int[] row : engine.getCells()) for (int cell : row) if (cell == 1) alive++;
+                assertEquals(alive, engine.getPopulation(), name + ", generation " + g);
+                assertEquals(before + engine.getBirths() - engine.getDeaths(), alive, name + ", generation " + g);
+                assertEquals(alive, metrics.getPopulation(), name + ", generation " + g);
+            }
+        }
+    }
+
+}
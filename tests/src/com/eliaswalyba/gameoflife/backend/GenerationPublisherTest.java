@@ -0,0 +1,325 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationPublisherTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: GenerationPublisherTest
+     * @description: Checks the events of the publisher, and what each backpressure does with a late subscriber
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The events are delivered by tasks queued in a list and run by the test (see drain), so that the queue of a
+     * subscriber fills up exactly when the test says. Only BLOCK runs on a thread of its own, the simulation
+     * having to wait for the subscriber.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The tasks delivering the events, run by drain
+     */
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    /**
+     * The boards published, bit-packed, by generation
+     */
+    private final List<long[]> boards = new ArrayList<>();
+
+    /**
+     * The engine whose generations are published
+     */
+    private final BitEngine engine = new BitEngine(Reference.soup(30, 100, 0.4, 43));
+
+    @Test
+    void deltasRebuildTheBoard()
+    {
+        GenerationPublisher publisher = new GenerationPublisher(GenerationPublisher.Backpressure.DROP, 1000, 16,
+                tasks::add);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        publisher.subscribe(recorder);
+        this.publish(publisher, 0, 100);
+        this.drain();
+        assertEquals(101, recorder.events.size());
+        GenerationEvent first = recorder.events.get(0);
+        assertTrue(first.isKeyframe());
+        assertEquals(-1, first.getBase());
+        long[] board = first.getCells().clone();
+        for (int g = 1; g <= 100; g++) {
+            GenerationEvent event = recorder.events.get(g);
+            assertEquals(g - 1, event.getBase());
+            assertEquals(g, event.getGeneration());
+            assertEquals(g % 16 == 0, event.isKeyframe(), "generation " + g);
+            apply(event, board);
+            assertArrayEquals(boards.get(g), board, "generation " + g);
+            if (event.isKeyframe()) assertArrayEquals(board, event.getCells(), "generation " + g);
+        }
+    }
+
+    @Test
+    void droppedEventsAreFollowedByAKeyframe()
+    {
+        GenerationPublisher publisher = new GenerationPublisher(GenerationPublisher.Backpressure.DROP, 2, 1000,
+                tasks::add);
+        Recorder recorder = new Recorder(0);
+        publisher.subscribe(recorder);
+        this.publish(publisher, 0, 5);
+        recorder.subscription.request(2);
+        this.drain();
+        assertEquals(List.of(0L, 1L), recorder.generations());
+        /* The generations 2 to 5 were dropped: the next event holds the whole board */
+        this.publish(publisher, 6, 7);
+        recorder.subscription.request(10);
+        this.drain();
+        assertEquals(List.of(0L, 1L, 6L, 7L), recorder.generations());
+        GenerationEvent keyframe = recorder.events.get(2);
+        assertTrue(keyframe.isKeyframe());
+        assertArrayEquals(boards.get(6), keyframe.getCells());
+        assertFalse(recorder.events.get(3).isKeyframe());
+    }
+
+    @Test
+    void coalescedEventsMergeIntoTheLastOne()
+    {
+        GenerationPublisher publisher = new GenerationPublisher(GenerationPublisher.Backpressure.COALESCE, 2, 1000,
+                tasks::add);
+        Recorder recorder = new Recorder(0);
+        publisher.subscribe(recorder);
+        this.publish(publisher, 0, 40);
+        recorder.subscription.request(Long.MAX_VALUE);
+        this.drain();
+        assertEquals(List.of(0L, 40L), recorder.generations());
+        GenerationEvent merged = recorder.events.get(1);
+        assertEquals(0, merged.getBase());
+        long[] board = recorder.events.get(0).getCells().clone();
+        apply(merged, board);
+        assertArrayEquals(boards.get(40), board);
+    }
+
+    @Test
+    void blockedPublisherWaitsForTheDemand() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        GenerationPublisher publisher = new GenerationPublisher(GenerationPublisher.Backpressure.BLOCK, 1, 1000,
+                executor);
+        Recorder recorder = new Recorder(0);
+        publisher.subscribe(recorder);
+        AtomicInteger published = new AtomicInteger();
+        Thread simulation = new Thread(() -> {
+            for (int g = 0; g <= 20; g++) {
+                publisher.publish(g, engine);
+                published.incrementAndGet();
+                engine.nextGeneration();
+            }
+        });
+        try {
+            simulation.start();
+            /* The first event fills the queue, the second one waits for the subscriber */
+            waitFor(() -> simulation.getState() == Thread.State.WAITING);
+            assertEquals(1, published.get());
+            recorder.subscription.request(1);
+            waitFor(() -> published.get() == 2 && simulation.getState() == Thread.State.WAITING);
+            recorder.subscription.request(Long.MAX_VALUE);
+            simulation.join(10_000);
+            assertFalse(simulation.isAlive());
+            waitFor(() -> recorder.events.size() == 21);
+            for (int g = 1; g <= 20; g++) assertEquals(g - 1, recorder.events.get(g).getBase());
+        } finally {
+            publisher.close();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void nonPositiveRequestsAreErrors()
+    {
+        GenerationPublisher publisher = new GenerationPublisher(GenerationPublisher.Backpressure.DROP, 4, 1000,
+                tasks::add);
+        Recorder recorder = new Recorder(0);
+        publisher.subscribe(recorder);
+        recorder.subscription.request(0);
+        this.drain();
+        assertInstanceOf(IllegalArgumentException.class, recorder.error);
+        assertFalse(publisher.hasSubscribers());
+        this.publish(publisher, 0, 3);
+        this.drain();
+        assertTrue(recorder.events.isEmpty());
+    }
+
+    @Test
+    void closeDeliversTheQueuedEventsBeforeCompleting()
+    {
+        GenerationPublisher publisher = new GenerationPublisher(GenerationPublisher.Backpressure.DROP, 10, 1000,
+                tasks::add);
+        Recorder recorder = new Recorder(0);
+        publisher.subscribe(recorder);
+        this.publish(publisher, 0, 3);
+        publisher.close();
+        publisher.publish(4, engine);
+        this.drain();
+        assertFalse(recorder.completed);
+        recorder.subscription.request(Long.MAX_VALUE);
+        this.drain();
+        assertEquals(List.of(0L, 1L, 2L, 3L), recorder.generations());
+        assertTrue(recorder.completed);
+        assertNull(recorder.error);
+        assertFalse(publisher.hasSubscribers());
+
+        Recorder late = new Recorder(1);
+        publisher.subscribe(late);
+        this.drain();
+        assertTrue(late.completed);
+        assertTrue(late.events.isEmpty());
+    }
+
+    /**
+     * Allows to publish the generations of the engine, recording their boards.
+     *
+     * @param publisher the publisher
+     * @param from      the first generation published, the one of the engine
+     * @param to        the last generation published
+     */
+    private void publish(GenerationPublisher publisher, int from, int to)
+    {
+        for (int g = from; g <= to; g++) {
+            if (g > from) engine.nextGeneration();
+            long[] board = new long[engine.getHeight() * ((engine.getWidth() + 63) >>> 6)];
+            CellSource.toWords(engine, board);
+            while (boards.size() <= g) boards.add(null);
+            boards.set(g, board);
+            publisher.publish(g, engine);
+        }
+    }
+
+    /**
+     * Allows to run the tasks delivering the events, and the ones they queue.
+     */
+    private void drain()
+    {
+        for (Runnable task; (task = tasks.poll()) != null; ) task.run();
+    }
+
+    /**
+     * Allows to apply the changes of an event on a board.
+     *
+     * @param event the event
+     * @param board the board of the base of the event, bit-packed
+     */
+    private static void apply(GenerationEvent event, long[] board)
+    {
+        int words = (event.getWidth() + 63) >>> 6;
+        for (long key : event.getBorn())
+            board[GenerationEvent.row(key) * words + (GenerationEvent.column(key) >>> 6)] |=
+                    1L << GenerationEvent.column(key);
+        for (long key : event.getDied())
+            board[GenerationEvent.row(key) * words + (GenerationEvent.column(key) >>> 6)] &=
+                    ~(1L << GenerationEvent.column(key));
+    }
+
+    /**
+     * Allows to wait, at most 10 seconds, for a condition set by another thread.
+     */
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) throw new AssertionError("Timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class Recorder implements Flow.Subscriber<GenerationEvent>
+    {
+        /*
+         * -------------------------------------------------------------------------------------------------------------
+         * @className: Recorder
+         * @description: A subscriber keeping everything it is given
+         * @version: 0.1
+         * -------------------------------------------------------------------------------------------------------------
+         */
+
+        /**
+         * The number of events asked for once subscribed
+         */
+        private final long initial;
+
+        /**
+         * The events received
+         */
+        final List<GenerationEvent> events = new CopyOnWriteArrayList<>();
+
+        /**
+         * The subscription, the error received and whether the subscription completed
+         */
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        /**
+         * The constructor of the class
+         *
+         * @param initial the number of events asked for once subscribed, none if 0
+         */
+        Recorder(long initial)
+        {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            if (initial > 0) subscription.request(initial);
+        }
+
+        @Override
+        public void onNext(GenerationEvent event)
+        {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error)
+        {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed = true;
+        }
+
+        /**
+         * @return List the generations of the events received
+         */
+        List<Long> generations()
+        {
+            List<Long> generations = new ArrayList<>();
+            for (GenerationEvent event : events) generations.add(event.getGeneration());
+            return generations;
+        }
+
+    }
+
+}
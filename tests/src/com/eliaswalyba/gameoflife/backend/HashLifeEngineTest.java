@@ -0,0 +1,39 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HashLifeEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: HashLifeEngineTest
+     * @description: Checks the quadtree engine against the naive stepper, one generation and many at once
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReference()
+    {
+        Reference.checkPlane(cells -> new HashLifeEngine(cells, 1_000_000), "B3/S23");
+    }
+
+    @Test
+    void jumpsToTheSameBoard()
+    {
+        int[][] soup = Reference.soup(48, 48, 0.35, 7);
+        HashLifeEngine stepped = new HashLifeEngine(soup), jumped = new HashLifeEngine(soup);
+        for (int g = 0; g < 1000; g++) stepped.nextGeneration();
+        jumped.advance(1000);
+        assertEquals(stepped.getPopulation(), jumped.getPopulation());
+        long[] bounds = stepped.getBounds();
+        assertArrayEquals(bounds, jumped.getBounds());
+        CellSource a = stepped.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]);
+        CellSource b = jumped.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]);
+        assertArrayEquals(Reference.matrix(a), Reference.matrix(b));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: HistoryTest
+     * @description: Checks that the history gives back the boards recorded, in any order, within its budget
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Allows to record the generations of a soup, keeping a copy of each one.
+     *
+     * @param history     the history
+     * @param generations the number of generations recorded after the first one
+     * @return List the boards, by generation
+     */
+    private static List<int[][]> record(History history, int generations)
+    {
+        BitEngine engine = new BitEngine(Reference.soup(40, 100, 0.4, 23));
+        List<int[][]> boards = new ArrayList<>();
+        for (int g = 0; g <= generations; g++) {
+            if (g > 0) engine.nextGeneration();
+            history.record(g, engine);
+            boards.add(engine.getCells());
+        }
+        return boards;
+    }
+
+    @Test
+    void restoresAnyBoardInAnyOrder()
+    {
+        History history = new History(1L << 30, 16);
+        List<int[][]> boards = record(history, 200);
+        assertEquals(0, history.getOldest());
+        assertEquals(200, history.getNewest());
+        SplittableRandom random = new SplittableRandom(29);
+        BitEngine target = new BitEngine(1, 1);
+        for (int k = 0; k < 300; k++) {
+            int generation = random.nextInt(201);
+            assertEquals(generation, history.restore(generation, target));
+            assertEquals(generation, history.getCurrent());
+            assertArrayEquals(boards.get(generation), target.getCells(), "generation " + generation);
+        }
+    }
+
+    @Test
+    void forgetsTheOldestBoardsOverTheBudget()
+    {
+        long keyframe = 40 * 2 * Long.BYTES;
+        History history = new History(8 * keyframe, 4);
+        List<int[][]> boards = record(history, 300);
+        assertTrue(history.getOldest() > 0, "nothing was forgotten");
+        assertTrue(history.getBytes() <= 8 * keyframe + 2 * keyframe, history.getBytes() + " bytes kept");
+        assertEquals(-1, history.restore(history.getOldest() - 1, new BitEngine(1, 1)));
+        BitEngine target = new BitEngine(1, 1);
+        for (long g = history.getOldest(); g <= 300; g++) {
+            history.restore(g, target);
+            assertArrayEquals(boards.get((int) g), target.getCells(), "generation " + g);
+        }
+    }
+
+    @Test
+    void recordingAfterGoingBackForgetsTheFuture()
+    {
+        History history = new History(1L << 30, 8);
+        List<int[][]> boards = record(history, 50);
+        BitEngine engine = new BitEngine(1, 1);
+        history.restore(20, engine);
+        engine.set(0, 0, !engine.get(0, 0));
+        history.record(20, engine);
+        assertEquals(20, history.getNewest());
+        engine.nextGeneration();
+        history.record(21, engine);
+        BitEngine target = new BitEngine(1, 1);
+        history.restore(21, target);
+        assertArrayEquals(engine.getCells(), target.getCells());
+        history.restore(19, target);
+        assertArrayEquals(boards.get(19), target.getCells());
+    }
+
+}
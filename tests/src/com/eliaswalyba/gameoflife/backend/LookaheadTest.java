@@ -0,0 +1,139 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LookaheadTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: LookaheadTest
+     * @description: Checks the generations taken from the look-ahead against a BitEngine stepped in lock-step
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The simulation's engine gets its generations only from take, while a plain BitEngine computes the same ones.
+     * Both must hold the same board after every take, and the births and the deaths recorded in the metrics must
+     * be the ones the plain engine counted.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The look-ahead checked, closed after each test
+     */
+    private Lookahead lookahead;
+
+    @AfterEach
+    void close()
+    {
+        if (lookahead != null) lookahead.close();
+    }
+
+    @Test
+    void takenGenerationsFollowTheEngine()
+    {
+        int[][] soup = Reference.soup(40, 130, 0.4, 47);
+        BitEngine target = new BitEngine(soup), expected = new BitEngine(soup);
+        expected.setCounting(true);
+        Metrics metrics = new Metrics(40 * 130);
+        metrics.watch(target);
+        lookahead = this.start(4, 0, target);
+        for (int g = 0; g < 200; g++) {
+            assertTrue(lookahead.take(g, target, metrics), "generation " + g);
+            expected.nextGeneration();
+            assertArrayEquals(expected.getCells(), target.getCells(), "generation " + (g + 1));
+            assertEquals(expected.getBirths(), metrics.getBirths(), "generation " + (g + 1));
+            assertEquals(expected.getDeaths(), metrics.getDeaths(), "generation " + (g + 1));
+            assertEquals(expected.getPopulation(), metrics.getPopulation(), "generation " + (g + 1));
+        }
+    }
+
+    @Test
+    void takeAfterRestartFollowsTheNewBoard()
+    {
+        BitEngine target = new BitEngine(Reference.soup(40, 130, 0.4, 53));
+        lookahead = this.start(3, 0, target);
+        for (int g = 0; g < 10; g++) assertTrue(lookahead.take(g, target, null));
+
+        /* The user loads another board at another generation */
+        int[][] soup = Reference.soup(40, 130, 0.3, 59);
+        target.setCells(soup);
+        BitEngine expected = new BitEngine(soup);
+        lookahead.restart(500, target);
+        assertFalse(lookahead.take(10, target, null));
+        for (long g = 500; g < 540; g++) {
+            assertTrue(lookahead.take(g, target, null), "generation " + g);
+            expected.nextGeneration();
+            assertArrayEquals(expected.getCells(), target.getCells(), "generation " + (g + 1));
+        }
+    }
+
+    @Test
+    void takeRefusesAnotherGenerationOrSize()
+    {
+        int[][] soup = Reference.soup(20, 70, 0.4, 61);
+        BitEngine target = new BitEngine(soup);
+        lookahead = this.start(2, 7, target);
+        assertFalse(lookahead.take(6, target, null));
+        assertFalse(lookahead.take(8, target, null));
+        BitEngine wider = new BitEngine(20, 71);
+        assertFalse(lookahead.take(7, wider, null));
+        assertArrayEquals(new BitEngine(20, 71).getCells(), wider.getCells());
+        assertFalse(lookahead.edit(6, 0, 0, true));
+        assertFalse(lookahead.edit(7, 20, 0, true));
+        assertTrue(lookahead.take(7, target, null));
+        BitEngine expected = new BitEngine(soup);
+        expected.nextGeneration();
+        assertArrayEquals(expected.getCells(), target.getCells());
+    }
+
+    @Test
+    void editsDiscardTheGenerationsComputedFromTheOldBoard()
+    {
+        /*
+         * A board large enough for the edits to land while the look-ahead is computing a generation: each take
+         * frees a slot of the ring, which the look-ahead starts filling at once. A generation of the old board
+         * kept in the ring would show as a board missing the edits.
+         */
+        int[][] soup = Reference.soup(1024, 1024, 0.4, 67);
+        BitEngine target = new BitEngine(soup), expected = new BitEngine(soup);
+        lookahead = this.start(4, 0, target);
+        SplittableRandom random = new SplittableRandom(71);
+        for (int g = 0; g < 60; g++) {
+            for (int k = random.nextInt(3); k > 0; k--) {
+                int i = random.nextInt(1024), j = random.nextInt(1024);
+                boolean alive = !target.get(i, j);
+                target.set(i, j, alive);
+                expected.set(i, j, alive);
+                assertTrue(lookahead.edit(g, i, j, alive), "generation " + g);
+            }
+            assertTrue(lookahead.take(g, target, null), "generation " + g);
+            expected.nextGeneration();
+            assertArrayEquals(expected.getCells(), target.getCells(), "generation " + (g + 1));
+        }
+    }
+
+    /**
+     * Allows to start a look-ahead following the board of an engine.
+     *
+     * @param depth      the number of frames computed ahead
+     * @param generation the generation of the board
+     * @param source     the engine holding the board
+     * @return Lookahead the look-ahead, started
+     */
+    private Lookahead start(int depth, long generation, BitEngine source)
+    {
+        Lookahead lookahead = new Lookahead(depth);
+        lookahead.start();
+        lookahead.restart(generation, source);
+        return lookahead;
+    }
+
+}
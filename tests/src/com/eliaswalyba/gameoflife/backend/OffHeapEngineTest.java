@@ -0,0 +1,55 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: OffHeapEngineTest
+     * @description: Checks the engine of the boards stored off the heap against the naive stepper
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReference()
+    {
+        Reference.checkTorus(cells -> {
+            OffHeapEngine engine = new OffHeapEngine(OffHeapBoard.allocate(1, 1), 3);
+            engine.setCells(cells);
+            return engine;
+        }, "B3/S23", "B36/S23");
+    }
+
+    @Test
+    void refusesEmptyBoards()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapEngine(OffHeapBoard.allocate(0, 8)));
+        try (OffHeapEngine engine = new OffHeapEngine(OffHeapBoard.allocate(3, 8))) {
+            assertThrows(IllegalArgumentException.class, () -> engine.setCells(new int[0][0]));
+            engine.nextGeneration();
+            assertEquals(3, engine.getHeight());
+        }
+    }
+
+    @Test
+    void keepsTheHashOfItsBoard()
+    {
+        int[][] soup = Reference.soup(50, 130, 0.4, 11);
+        BitEngine bit = new BitEngine(soup);
+        try (OffHeapEngine engine = new OffHeapEngine(OffHeapBoard.allocate(1, 1), 2)) {
+            engine.setCells(soup);
+            engine.setHashing(true);
+            for (int g = 1; g <= 100; g++) {
+                bit.nextGeneration();
+                engine.nextGeneration();
+                assertEquals(new BitEngine(bit.getCells()).getHash(), engine.getHash(), "generation " + g);
+            }
+        }
+    }
+
+}
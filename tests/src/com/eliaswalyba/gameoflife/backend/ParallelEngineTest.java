@@ -0,0 +1,31 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: ParallelEngineTest
+     * @description: Checks the engine stepping bands on a ForkJoinPool against the naive stepper
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Bands of 8 rows on boards of 5 to 70 rows give a single band, bands of every count, and a last band shorter
+     * than the others, so that the halos are checked between any two bands and across the torus.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReference()
+    {
+        Reference.checkTorus(cells -> new ParallelEngine(cells, 4, 8), "B3/S23");
+    }
+
+    @Test
+    void followsTheReferenceOnASingleThread()
+    {
+        Reference.checkTorus(cells -> new ParallelEngine(cells, 1, 8), "B3/S23");
+    }
+
+}
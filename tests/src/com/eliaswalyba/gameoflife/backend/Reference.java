@@ -0,0 +1,205 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+final class Reference
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: Reference
+     * @description: The naive stepper the engines are checked against, one cell and one neighbor at a time
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * It shares nothing with the engines but the rule's masks: no halo, no table, no packed word. The neighbors
+     * are found by wrapping their coordinates the way the boundary says, and the rule is applied from its masks
+     * of births and survivals. The bounded engines run soups on tori whose widths fall on both sides of a word of
+     * 64 cells, so that the wrapping of the packed words is checked too. The unbounded engines run a soup in the
+     * middle of the plane, checked through a window larger than anything the soup can reach.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The sizes of the bounded boards, height and width
+     */
+    static final int[][] SIZES = {{17, 63}, {40, 64}, {33, 65}, {70, 130}, {5, 200}};
+
+    /**
+     * The number of generations compared
+     */
+    static final int GENERATIONS = 60;
+
+    /**
+     * This class only holds static methods.
+     */
+    private Reference() {}
+
+    /**
+     * Allows to build a random board.
+     *
+     * @param height  the number of rows
+     * @param width   the number of columns
+     * @param density the probability of a cell to be alive
+     * @param seed    the seed of the board
+     * @return int[][] the matrix of cells
+     */
+    static int[][] soup(int height, int width, double density, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] cells = new int[height][width];
+        for (int[] row : cells)
+            for (int j = 0; j < width; j++)
+                row[j] = random.nextDouble() < density ? 1 : 0;
+        return cells;
+    }
+
+    /**
+     * Allows to put a board in the middle of a bigger empty one.
+     *
+     * @param cells  the board
+     * @param margin the number of dead cells added on each side
+     * @return int[][] the bigger board
+     */
+    static int[][] pad(int[][] cells, int margin)
+    {
+        int[][] padded = new int[cells.length + 2 * margin][cells[0].length + 2 * margin];
+        for (int i = 0; i < cells.length; i++)
+            System.arraycopy(cells[i], 0, padded[i + margin], margin, cells[i].length);
+        return padded;
+    }
+
+    /**
+     * Allows to compute the next generation of a board.
+     *
+     * @param cells    the board, left alone
+     * @param rule     the rule
+     * @param boundary TORUS, DEAD or KLEIN_BOTTLE
+     * @return int[][] the next generation
+     */
+    static int[][] next(int[][] cells, Rule rule, Boundary boundary)
+    {
+        int height = cells.length, width = cells[0].length;
+        int[][] next = new int[height][width];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                int n = 0;
+                for (int di = -1; di <= 1; di++)
+                    for (int dj = -1; dj <= 1; dj++)
+                        if ((di != 0 || dj != 0) && state(cells, i + di, j + dj, boundary) == 1) n++;
+                next[i][j] = apply(rule, cells[i][j], n);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Allows to check a bounded engine on tori of every size, generation by generation.
+     *
+     * @param factory builds the engine from a board
+     * @param rules   the rules checked
+     */
+    static void checkTorus(Function<int[][], Engine> factory, String... rules)
+    {
+        for (String name : rules) {
+            Rule rule = Rule.parse(name);
+            for (int[] size : SIZES) {
+                int[][] expected = soup(size[0], size[1], 0.4, size[0] * 31L + size[1]);
+                Engine engine = factory.apply(expected);
+                engine.setRule(rule);
+                try {
+                    for (int g = 1; g <= GENERATIONS; g++) {
+                        engine.nextGeneration();
+                        expected = next(expected, rule, Boundary.TORUS);
+                        assertArrayEquals(expected, engine.getCells(), name + " on " + size[0] + "x" + size[1]
+                                + ", generation " + g);
+                    }
+                } finally {
+                    close(engine);
+                }
+            }
+        }
+    }
+
+    /**
+     * Allows to check an unbounded engine, the soup being placed at (0, 0) of the plane.
+     *
+     * @param factory builds the engine from a board
+     * @param rules   the rules checked
+     */
+    static void checkPlane(Function<int[][], Engine> factory, String... rules)
+    {
+        int margin = GENERATIONS + 2;
+        for (String name : rules) {
+            Rule rule = Rule.parse(name);
+            int[][] soup = soup(24, 30, 0.45, 5);
+            int[][] expected = pad(soup, margin);
+            Engine engine = factory.apply(soup);
+            engine.setRule(rule);
+            for (int g = 1; g <= GENERATIONS; g++) {
+                engine.nextGeneration();
+                expected = next(expected, rule, Boundary.DEAD);
+                CellSource window = ((Plane) engine).window(-margin, -margin, expected.length, expected[0].length);
+                assertArrayEquals(expected, matrix(window), name + ", generation " + g);
+            }
+        }
+    }
+
+    /**
+     * @return int[][] the matrix of the cells of a storage
+     */
+    static int[][] matrix(CellSource source)
+    {
+        int[][] cells = new int[source.getHeight()][source.getWidth()];
+        for (int i = 0; i < cells.length; i++) {
+            for (int j = source.nextCell(i, 0, true); j < cells[i].length; ) {
+                int dead = source.nextCell(i, j, false);
+                for (int k = j; k < dead; k++) cells[i][k] = 1;
+                j = dead < cells[i].length ? source.nextCell(i, dead, true) : cells[i].length;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Allows to stop the threads or free the memory of an engine, if it holds some.
+     */
+    static void close(Engine engine)
+    {
+        if (!(engine instanceof AutoCloseable)) return;
+        try {
+            ((AutoCloseable) engine).close();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return int the state of a cell, its coordinates being wrapped according to the boundary
+     */
+    private static int state(int[][] cells, int i, int j, Boundary boundary)
+    {
+        int height = cells.length, width = cells[0].length;
+        if (boundary == Boundary.DEAD) return i < 0 || i >= height || j < 0 || j >= width ? 0 : cells[i][j];
+        if (boundary == Boundary.KLEIN_BOTTLE && (i < 0 || i >= height)) {
+            /* Through the top or the bottom edge, the board comes back upside down */
+            i = i < 0 ? height - 1 : 0;
+            j = width - 1 - j;
+        }
+        return cells[Math.floorMod(i, height)][Math.floorMod(j, width)];
+    }
+
+    /**
+     * @return int the next state of a cell, from the masks of the rule
+     */
+    private static int apply(Rule rule, int state, int n)
+    {
+        int states = rule.getStates();
+        if (state == 0) return (rule.getBorn() >>> n & 1) != 0 ? 1 : 0;
+        if (state == 1) return (rule.getSurvive() >>> n & 1) != 0 ? 1 : states == 2 ? 0 : 2;
+        return state + 1 < states ? state + 1 : 0;
+    }
+
+}
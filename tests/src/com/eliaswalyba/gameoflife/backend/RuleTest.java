@@ -0,0 +1,137 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RuleTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: RuleTest
+     * @description: Checks the rulestrings, and every engine under other rules than the game of life
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The rules of 2 states checked
+     */
+    private static final String[] RULES = {"B3/S23", "B36/S23", "B3678/S34678", "B2/S"};
+
+    /**
+     * The Generations rules checked, on the Controller only
+     */
+    private static final String[] GENERATIONS = {"B2/S/C3", "B2/S34/C5"};
+
+    @Test
+    void rulestringsAreRead()
+    {
+        assertSame(Rule.LIFE, Rule.parse("b3/s23"));
+        assertSame(Rule.LIFE, Rule.parse("23/3"));
+        assertEquals(Rule.parse("B36/S23"), Rule.parse("highlife"));
+        assertEquals("B2/S/C3", Rule.parse("brianbrain").toString());
+        assertEquals("B3678/S34678", Rule.parse("S34678/B3678").toString());
+        for (String invalid : new String[]{"B3", "B9/S23", "B3/S23/C1", "B3/B3", "X3/S23"})
+            assertThrows(IllegalArgumentException.class, () -> Rule.parse(invalid), invalid);
+    }
+
+    @Test
+    void bitEngineFollowsTheReference()
+    {
+        Reference.checkTorus(BitEngine::new, RULES);
+    }
+
+    @Test
+    void parallelEngineFollowsTheReference()
+    {
+        Reference.checkTorus(cells -> new ParallelEngine(cells, 4, 8), RULES);
+    }
+
+    @Test
+    void controllerFollowsTheReference()
+    {
+        Reference.checkTorus(Controller::new, RULES);
+        Reference.checkTorus(Controller::new, GENERATIONS);
+    }
+
+    @Test
+    void planeEnginesFollowTheReference()
+    {
+        Reference.checkPlane(SparseEngine::new, "B36/S23", "B2/S");
+        Reference.checkPlane(cells -> new HashLifeEngine(cells, 1_000_000), "B36/S23", "B2/S");
+    }
+
+    @Test
+    void rulesChangedAfterSteppingApplyToTheStableCells()
+    {
+        /* A block is stable under B3/S23 and dies at once under B3/S */
+        int[][] block = new int[8][8];
+        block[3][3] = block[3][4] = block[4][3] = block[4][4] = 1;
+        for (Function<int[][], Engine> factory : engines()) {
+            Engine engine = factory.apply(block);
+            try {
+                for (int g = 0; g < 3; g++) engine.nextGeneration();
+                assertEquals(4, engine.getPopulation());
+                engine.setRule(Rule.parse("B3/S"));
+                engine.nextGeneration();
+                assertEquals(0, engine.getPopulation(), engine.getClass().getSimpleName());
+            } finally {
+                Reference.close(engine);
+            }
+        }
+    }
+
+    @Test
+    void rulesChangedAfterSteppingFollowTheReference()
+    {
+        int margin = Reference.GENERATIONS + 2;
+        Rule before = Rule.LIFE, after = Rule.parse("B36/S2");
+        int[][] soup = Reference.soup(24, 30, 0.45, 9);
+        for (Function<int[][], Engine> factory : engines()) {
+            Engine engine = factory.apply(Reference.pad(soup, margin));
+            int[][] expected = Reference.pad(soup, margin);
+            String name = engine.getClass().getSimpleName();
+            try {
+                for (int g = 1; g <= Reference.GENERATIONS; g++) {
+                    if (g == 20) engine.setRule(after);
+                    expected = Reference.next(expected, g < 20 ? before : after, Boundary.DEAD);
+                    engine.nextGeneration();
+                    int[][] cells = engine instanceof Plane
+                            ? Reference.matrix(((Plane) engine).window(0, 0, expected.length, expected[0].length))
+                            : engine.getCells();
+                    assertArrayEquals(expected, cells, name + ", generation " + g);
+                }
+            } finally {
+                Reference.close(engine);
+            }
+        }
+    }
+
+    /**
+     * @return List the factories of every engine applying other rules than the game of life
+     */
+    private static List<Function<int[][], Engine>> engines()
+    {
+        return List.of(
+                BitEngine::new,
+                cells -> new ParallelEngine(cells, 2, 8),
+                Controller::new,
+                SparseEngine::new,
+                HashLifeEngine::new,
+                AdaptiveEngine::new,
+                cells -> {
+                    OffHeapEngine engine = new OffHeapEngine(OffHeapBoard.allocate(1, 1), 2);
+                    engine.setCells(cells);
+                    return engine;
+                }
+        );
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+class SparseEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: SparseEngineTest
+     * @description: Checks the engine of the active cells against the naive stepper
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    @Test
+    void followsTheReference()
+    {
+        Reference.checkPlane(SparseEngine::new, "B3/S23");
+    }
+
+}
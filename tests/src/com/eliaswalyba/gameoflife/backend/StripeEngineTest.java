@@ -0,0 +1,141 @@
+package com.eliaswalyba.gameoflife.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StripeEngineTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: StripeEngineTest
+     * @description: Checks a board cut in stripes against the naive stepper, the halos being swapped in memory
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The board is cut in 1 to 3 stripes, the last ones taking the rows left over. Before each generation every
+     * stripe gets the edges its neighbors had, as a worker gets them through its HaloExchange: on a single
+     * stripe its own last row is the halo above it and its own first row the halo below it.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The boundaries a board cut in stripes can have
+     */
+    private static final Boundary[] BOUNDARIES = {Boundary.TORUS, Boundary.DEAD, Boundary.KLEIN_BOTTLE};
+
+    @Test
+    void stripesFollowTheReferenceOnEveryBoundary()
+    {
+        for (Boundary boundary : BOUNDARIES) {
+            for (String name : new String[]{"B3/S23", "B36/S23"}) {
+                Rule rule = Rule.parse(name);
+                for (int[] size : Reference.SIZES) {
+                    for (int count = 1; count <= 3; count++) {
+                        int[][] expected = Reference.soup(size[0], size[1], 0.4, size[0] * 31L + size[1]);
+                        StripeEngine[] stripes = cut(expected, count, rule, boundary);
+                        String board = name + " on a " + boundary + " of " + size[0] + "x" + size[1] + " in "
+                                + count + " stripes";
+                        for (int g = 1; g <= Reference.GENERATIONS; g++) {
+                            step(stripes);
+                            expected = Reference.next(expected, rule, boundary);
+                            assertArrayEquals(expected, cells(stripes, size[0], size[1]), board + ", generation " + g);
+                            long population = 0, hash = 0;
+                            for (StripeEngine stripe : stripes) {
+                                population += stripe.getPopulation();
+                                hash ^= stripe.getHash();
+                            }
+                            BitEngine whole = new BitEngine(expected);
+                            assertEquals(whole.getPopulation(), population, board + ", generation " + g);
+                            assertEquals(whole.getHash(), hash, board + ", generation " + g);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void reversedRowsReadFromTheOtherSide()
+    {
+        SplittableRandom random = new SplittableRandom(73);
+        for (int width : new int[]{1, 63, 64, 65, 130, 200}) {
+            int words = (width + 63) >>> 6;
+            long[] row = new long[words], reversed = new long[words + 1], back = new long[words];
+            for (int k = 0; k < words; k++) row[k] = random.nextLong();
+            row[words - 1] = BitKernel.mask(width, row[words - 1]);
+            StripeEngine.reverse(row, reversed, 1, words, width);
+            for (int j = 0; j < width; j++) {
+                int mirror = width - 1 - j;
+                assertEquals(row[j >>> 6] >>> j & 1, reversed[1 + (mirror >>> 6)] >>> mirror & 1,
+                        "cell " + j + " of " + width);
+            }
+            assertEquals(0, reversed[0]);
+            assertEquals(reversed[words], BitKernel.mask(width, reversed[words]), "padding of " + width);
+            StripeEngine.reverse(Arrays.copyOfRange(reversed, 1, words + 1), back, 0, words, width);
+            assertArrayEquals(row, back, "twice on " + width);
+        }
+    }
+
+    /**
+     * Allows to cut a board in stripes.
+     *
+     * @param cells    the board
+     * @param count    the number of stripes
+     * @param rule     the rule
+     * @param boundary the boundary of the board
+     * @return StripeEngine[] the stripes, from the top of the board
+     */
+    private static StripeEngine[] cut(int[][] cells, int count, Rule rule, Boundary boundary)
+    {
+        int height = cells.length, width = cells[0].length;
+        StripeEngine[] stripes = new StripeEngine[count];
+        for (int k = 0, top = 0; k < count; k++) {
+            int rows = (height - top) / (count - k);
+            stripes[k] = new StripeEngine(top, rows, height, width, rule, boundary);
+            CellSource.copy(new BitEngine(cells), stripes[k]);
+            top += rows;
+        }
+        return stripes;
+    }
+
+    /**
+     * Allows to compute a generation of all the stripes, each one getting the edges of its neighbors first.
+     *
+     * @param stripes the stripes, from the top of the board
+     */
+    private static void step(StripeEngine[] stripes)
+    {
+        int count = stripes.length, words = stripes[0].getRowWords();
+        long[][] firsts = new long[count][words], lasts = new long[count][words];
+        for (int k = 0; k < count; k++) {
+            stripes[k].getEdge(true, LongBuffer.wrap(firsts[k]));
+            stripes[k].getEdge(false, LongBuffer.wrap(lasts[k]));
+        }
+        for (int k = 0; k < count; k++) {
+            StripeEngine stripe = stripes[k];
+            if (stripe.needsHalo(true)) stripe.setHalo(true, LongBuffer.wrap(lasts[(k + count - 1) % count]));
+            if (stripe.needsHalo(false)) stripe.setHalo(false, LongBuffer.wrap(firsts[(k + 1) % count]));
+            stripe.nextGeneration();
+        }
+    }
+
+    /**
+     * @return int[][] the matrix of the cells of the stripes
+     */
+    private static int[][] cells(StripeEngine[] stripes, int height, int width)
+    {
+        int[][] cells = new int[height][width];
+        for (StripeEngine stripe : stripes)
+            for (int i = stripe.getTop(); i < stripe.getTop() + stripe.getRows(); i++)
+                for (int j = 0; j < width; j++)
+                    cells[i][j] = stripe.get(i, j) ? 1 : 0;
+        return cells;
+    }
+
+}
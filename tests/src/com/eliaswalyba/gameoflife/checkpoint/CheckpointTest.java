@@ -0,0 +1,145 @@
+package com.eliaswalyba.gameoflife.checkpoint;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.Controller;
+import com.eliaswalyba.gameoflife.backend.OffHeapBoard;
+import com.eliaswalyba.gameoflife.backend.OffHeapEngine;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.backend.SparseEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckpointTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: CheckpointTest
+     * @description: Checks that a board written in a checkpoint is read back as it was, in every compression
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The folder of the checkpoints written
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * @return int[][] a random board, with a blank band for the runs and the tiles to skip
+     */
+    private static int[][] soup(int height, int width, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] cells = new int[height][width];
+        for (int i = 0; i < height; i++)
+            for (int j = 0; j < width; j++)
+                cells[i][j] = i % 50 < 20 && random.nextInt(3) == 0 ? 1 : 0;
+        return cells;
+    }
+
+    @Test
+    void boardsComeBackInEveryCompression() throws Exception
+    {
+        int[][] cells = soup(150, 201, 3);
+        long population = 0;
+        for (int[] row : cells) for (int cell : row) population += cell;
+        for (Checkpoint.Compression compression : Checkpoint.Compression.values()) {
+            Path path = folder.resolve(compression + ".ckpt");
+            BitEngine board = new BitEngine(cells);
+            Checkpoint written = Checkpoint.write(new Checkpoint(150, 201, 42, "B3/S23", "TORUS", compression),
+                    board.lend(), path);
+            assertEquals(population, written.getPopulation());
+
+            BitEngine read = new BitEngine(1, 1);
+            Checkpoint header = Checkpoint.read(path, read);
+            assertEquals(42, header.getGeneration());
+            assertEquals("B3/S23", header.getRule());
+            assertEquals("TORUS", header.getBoundary());
+            assertEquals(compression, header.getCompression());
+            assertEquals(population, header.getPopulation());
+            assertArrayEquals(cells, read.getCells(), compression.name());
+
+            SparseEngine sparse = new SparseEngine(new int[0][0]);
+            Checkpoint.read(path, sparse);
+            BitEngine copy = new BitEngine(1, 1);
+            CellSource.copy(sparse.window(0, 0, 150, 201), copy);
+            assertArrayEquals(cells, copy.getCells(), compression + " into a sparse engine");
+        }
+    }
+
+    @Test
+    void offHeapBoardsAreStreamedInEveryCompression() throws Exception
+    {
+        int[][] cells = soup(150, 201, 7);
+        OffHeapEngine engine = new OffHeapEngine(OffHeapBoard.allocate(1, 1), 2);
+        engine.setCells(cells);
+        try (Checkpointer checkpointer = new Checkpointer(Checkpoint.Compression.NONE)) {
+            for (Checkpoint.Compression compression : Checkpoint.Compression.values()) {
+                Path streamed = folder.resolve(compression + "-offheap.ckpt"), copied = folder.resolve("copy.ckpt");
+                Checkpoint header = Checkpoint.write(new Checkpoint(150, 201, 3, "B3/S23", "TORUS", compression),
+                        (top, count, band) -> {
+                            for (int r = 0; r < count; r++) engine.getBoard().getRow(top + r, band, r * 4);
+                        }, streamed);
+                Checkpoint.write(new Checkpoint(150, 201, 3, "B3/S23", "TORUS", compression),
+                        new BitEngine(cells).lend(), copied);
+                assertArrayEquals(Files.readAllBytes(copied), Files.readAllBytes(streamed), compression.name());
+                assertEquals(new BitEngine(cells).getPopulation(), header.getPopulation());
+            }
+            Path saved = folder.resolve("saved.ckpt");
+            checkpointer.save(engine, 9, saved).get();
+            engine.nextGeneration();
+            BitEngine read = new BitEngine(1, 1);
+            assertEquals(9, Checkpoint.read(saved, read).getGeneration());
+            assertArrayEquals(cells, read.getCells());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    void planesAreSavedAsTheBoxOfTheirCells() throws Exception
+    {
+        int[][] cells = new int[5][5];
+        cells[1][2] = cells[2][3] = cells[3][1] = cells[3][2] = cells[3][3] = 1;
+        SparseEngine engine = new SparseEngine(cells);
+        for (int g = 0; g < 8; g++) engine.nextGeneration();
+        Path path = folder.resolve("plane.ckpt");
+        try (Checkpointer checkpointer = new Checkpointer(Checkpoint.Compression.RUNS)) {
+            checkpointer.save(engine, 8, 100, -50, path).get();
+        }
+        Checkpoint header = Checkpoint.readHeader(path);
+        long[] bounds = engine.getBounds();
+        assertEquals(Checkpoint.PLANE, header.getBoundary());
+        assertEquals(100 + bounds[0], header.getTop());
+        assertEquals(-50 + bounds[1], header.getLeft());
+        assertEquals(bounds[2], header.getHeight());
+        assertEquals(bounds[3], header.getWidth());
+        assertEquals(5, header.getPopulation());
+
+        BitEngine read = new BitEngine(1, 1);
+        Checkpoint.read(path, read);
+        BitEngine expected = new BitEngine(1, 1);
+        CellSource.copy(engine.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]), expected);
+        assertArrayEquals(expected.getCells(), read.getCells());
+    }
+
+    @Test
+    void dyingCellsCannotBeSaved()
+    {
+        Controller engine = new Controller(new int[10][10], Rule.parse("B2/S/C3"));
+        try (Checkpointer checkpointer = new Checkpointer(Checkpoint.Compression.NONE)) {
+            assertThrows(IllegalArgumentException.class, () -> checkpointer.save(engine, 0, folder.resolve("x")));
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.eliaswalyba.gameoflife.cluster;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.Boundary;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.Controller;
+import com.eliaswalyba.gameoflife.backend.Rule;
+import com.eliaswalyba.gameoflife.backend.StripeEngine;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HaloExchangeTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: HaloExchangeTest
+     * @description: Checks stripes stepped on their own threads, swapping their halos over loopback sockets
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * Each stripe runs the loop of a Worker: its edges leave while its inner rows are computed, and its own edges
+     * are computed once the halos came in. The board they hold is compared with a Controller of the same
+     * boundary, which the backend tests check against the naive stepper.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The number of generations computed
+     */
+    private static final int GENERATIONS = 40;
+
+    @Test
+    void stripesFollowTheControllerOnEveryBoundary() throws Exception
+    {
+        Rule rule = Rule.LIFE;
+        for (Boundary boundary : new Boundary[]{Boundary.TORUS, Boundary.DEAD, Boundary.KLEIN_BOTTLE}) {
+            for (int count = 2; count <= 3; count++) {
+                int height = 40, width = 130;
+                int[][] cells = soup(height, width, 79 + count);
+                Controller expected = new Controller(cells, rule, boundary);
+                StripeEngine[] stripes = new StripeEngine[count];
+                for (int k = 0, top = 0; k < count; k++) {
+                    int rows = (height - top) / (count - k);
+                    stripes[k] = new StripeEngine(top, rows, height, width, rule, boundary);
+                    CellSource.copy(new Controller(cells, rule, boundary), stripes[k]);
+                    top += rows;
+                }
+                this.run(stripes);
+                for (int g = 0; g < GENERATIONS; g++) expected.nextGeneration();
+
+                String board = boundary + " in " + count + " stripes";
+                int[][] actual = new int[height][width];
+                long hash = 0;
+                for (StripeEngine stripe : stripes) {
+                    for (int i = stripe.getTop(); i < stripe.getTop() + stripe.getRows(); i++)
+                        for (int j = 0; j < width; j++)
+                            actual[i][j] = stripe.get(i, j) ? 1 : 0;
+                    hash ^= stripe.getHash();
+                }
+                assertArrayEquals(expected.getCells(), actual, board);
+                assertEquals(new BitEngine(actual).getHash(), hash, board);
+            }
+        }
+    }
+
+    /**
+     * Allows to step the stripes on their own threads, each linked to its neighbors by a pair of sockets.
+     *
+     * @param stripes the stripes, from the top of the board
+     * @throws Exception if a stripe fails
+     */
+    private void run(StripeEngine[] stripes) throws Exception
+    {
+        int count = stripes.length;
+        SocketChannel[] up = new SocketChannel[count], down = new SocketChannel[count];
+        List<SocketChannel> channels = new ArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(count);
+        try (ServerSocketChannel server = ServerSocketChannel.open()
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            /* The link k goes from the bottom of the stripe k to the top of the stripe below it */
+            for (int k = 0; k < count; k++) {
+                int below = (k + 1) % count;
+                if (!stripes[k].needsHalo(false)) continue;
+                down[k] = SocketChannel.open(server.getLocalAddress());
+                up[below] = server.accept();
+                channels.add(down[k]);
+                channels.add(up[below]);
+            }
+            List<Future<?>> done = new ArrayList<>();
+            for (int k = 0; k < count; k++) {
+                StripeEngine stripe = stripes[k];
+                SocketChannel above = up[k], under = down[k];
+                done.add(threads.submit(() -> {
+                    try (HaloExchange exchange = new HaloExchange(stripe, above, under)) {
+                        for (int g = 0; g < GENERATIONS; g++) {
+                            exchange.start();
+                            stripe.stepInner();
+                            exchange.finish();
+                            stripe.stepEdges();
+                            stripe.swap();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) future.get(30, TimeUnit.SECONDS);
+        } finally {
+            threads.shutdownNow();
+            for (SocketChannel channel : channels) channel.close();
+        }
+    }
+
+    /**
+     * @return int[][] a random board
+     */
+    private static int[][] soup(int height, int width, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] cells = new int[height][width];
+        for (int[] row : cells)
+            for (int j = 0; j < width; j++)
+                row[j] = random.nextInt(5) < 2 ? 1 : 0;
+        return cells;
+    }
+
+}
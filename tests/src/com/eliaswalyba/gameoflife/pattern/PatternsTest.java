@@ -0,0 +1,104 @@
+package com.eliaswalyba.gameoflife.pattern;
+
+import com.eliaswalyba.gameoflife.backend.BitEngine;
+import com.eliaswalyba.gameoflife.backend.CellSource;
+import com.eliaswalyba.gameoflife.backend.HashLifeEngine;
+import com.eliaswalyba.gameoflife.backend.SparseEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatternsTest
+{
+    /*
+     * -----------------------------------------------------------------------------------------------------------------
+     * @className: PatternsTest
+     * @description: Checks that a pattern written in every format is read back as it was
+     * @version: 0.1
+     * -----------------------------------------------------------------------------------------------------------------
+     *
+     * The corners of the boards are alive, the Plaintext and the Macrocell formats keeping only the box of the
+     * alive cells.
+     *------------------------------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * The folder of the patterns written
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * @return int[][] a random board whose north west and south east corners are alive
+     */
+    private static int[][] soup(int height, int width, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] cells = new int[height][width];
+        for (int[] row : cells)
+            for (int j = 0; j < width; j++)
+                row[j] = random.nextInt(3) == 0 ? 1 : 0;
+        cells[0][0] = cells[height - 1][width - 1] = 1;
+        return cells;
+    }
+
+    @Test
+    void patternsComeBackInEveryFormat() throws Exception
+    {
+        int[][] cells = soup(37, 150, 5);
+        for (String extension : new String[]{"rle", "cells", "mc"}) {
+            Path path = folder.resolve("soup." + extension);
+            Patterns.write(new BitEngine(cells), path);
+            BitEngine read = new BitEngine(1, 1);
+            Patterns.read(path, read);
+            assertArrayEquals(cells, read.getCells(), extension);
+        }
+    }
+
+    @Test
+    void hashLifeTreesComeBackWhole() throws Exception
+    {
+        int[][] cells = soup(40, 40, 7);
+        HashLifeEngine engine = new HashLifeEngine(cells);
+        engine.advance(64);
+        Path path = folder.resolve("tree.mc");
+        Patterns.write(engine, path);
+        HashLifeEngine read = new HashLifeEngine(new int[1][1]);
+        Patterns.read(path, read);
+        assertEquals(engine.getPopulation(), read.getPopulation());
+        /* A Macrocell file holds no position: the tree read is put at (0, 0), only its box is compared */
+        long[] bounds = engine.getBounds(), moved = read.getBounds();
+        assertEquals(bounds[2], moved[2]);
+        assertEquals(bounds[3], moved[3]);
+        BitEngine expected = new BitEngine(1, 1), copy = new BitEngine(1, 1);
+        CellSource.copy(engine.window(bounds[0], bounds[1], (int) bounds[2], (int) bounds[3]), expected);
+        CellSource.copy(read.window(moved[0], moved[1], (int) moved[2], (int) moved[3]), copy);
+        assertArrayEquals(expected.getCells(), copy.getCells());
+    }
+
+    @Test
+    void planesAreWrittenAsTheBoxOfTheirCells() throws Exception
+    {
+        int[][] cells = new int[5][5];
+        cells[1][2] = cells[2][3] = cells[3][1] = cells[3][2] = cells[3][3] = 1;
+        SparseEngine engine = new SparseEngine(cells);
+        for (int g = 0; g < 40; g++) engine.nextGeneration();
+        long[] bounds = engine.getBounds();
+        Path path = folder.resolve("glider.rle");
+        Patterns.write(engine, 7, -3, path);
+        String text = Files.readString(path);
+        assertTrue(text.contains("#CXRLE Pos=" + (bounds[1] - 3) + "," + (bounds[0] + 7)), text);
+        assertTrue(text.contains("x = 3, y = 3"), text);
+        BitEngine read = new BitEngine(1, 1);
+        Patterns.read(path, read);
+        assertArrayEquals(new int[][]{{0, 1, 0}, {0, 0, 1}, {1, 1, 1}}, read.getCells());
+    }
+
+}